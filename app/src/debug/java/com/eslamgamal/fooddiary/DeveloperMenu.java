@@ -0,0 +1,71 @@
+package com.eslamgamal.fooddiary;
+
+import android.app.Activity;
+import android.util.Log;
+import android.view.Menu;
+import android.view.MenuItem;
+import android.widget.Toast;
+
+import androidx.appcompat.app.AlertDialog;
+
+/**
+ * Developer entries for the navigation drawer. Debug builds only; the release source set
+ * has an empty counterpart, so the soak harness is not part of the release APK.
+ */
+final class DeveloperMenu {
+
+    private DeveloperMenu() {
+    }
+
+    /**
+     * Add the developer entries below the regular drawer items
+     * @param menu Drawer menu
+     */
+    static void install(Menu menu) {
+        menu.add(R.id.group_developer, R.id.nav_soak_test, Menu.NONE, "Sync Soak Test")
+                .setIcon(R.drawable.ic_sync_now);
+    }
+
+    /**
+     * Handle a drawer click on a developer entry
+     * @param activity Activity showing the drawer
+     * @param item Selected item
+     * @return true if the item was a developer entry
+     */
+    static boolean onItemSelected(Activity activity, MenuItem item) {
+        if (item.getItemId() == R.id.nav_soak_test) {
+            showSoakTestDialog(activity);
+            return true;
+        }
+        return false;
+    }
+
+    private static void showSoakTestDialog(Activity activity) {
+        if (SyncSoakRunner.isRunning()) {
+            Toast.makeText(activity, "A soak run is already in progress", Toast.LENGTH_SHORT).show();
+            return;
+        }
+
+        String[] durations = {"5 minutes", "1 hour", "4 hours"};
+        long[] durationMinutes = {5, 60, 240};
+
+        new AlertDialog.Builder(activity)
+                .setTitle("Sync soak test (in-memory backend)")
+                .setItems(durations, (dialog, which) -> {
+                    SyncSoakRunner.Config config = new SyncSoakRunner.Config();
+                    config.durationMillis = durationMinutes[which] * 60 * 1000;
+                    new SyncSoakRunner(activity, config).start((report, reportFile) -> {
+                        Log.i("DeveloperMenu", report);
+                        if (activity.isFinishing() || activity.isDestroyed()) {
+                            return;
+                        }
+                        Toast.makeText(activity, reportFile != null
+                                ? "Soak report saved to " + reportFile.getAbsolutePath()
+                                : "Soak run finished", Toast.LENGTH_LONG).show();
+                    });
+                    Toast.makeText(activity, "Soak run started for " + durations[which], Toast.LENGTH_SHORT).show();
+                })
+                .setNegativeButton("Cancel", null)
+                .show();
+    }
+}
@@ -0,0 +1,303 @@
+package com.eslamgamal.fooddiary;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Soak harness for the sync engine. Replays a generated diary workload against a standalone
+ * {@link MealSyncManager} backed by an {@link InMemorySheetsBackend} with realistic latency,
+ * quota and failure injection: a multi-year history is bulk-uploaded, then adds, deletes,
+ * full syncs and offline/online switches run until the configured duration has passed.
+ * The report lists end-to-end latency percentiles per action and Java heap growth, and is
+ * written to the app's external files directory.
+ */
+class SyncSoakRunner {
+    private static final String TAG = "SyncSoakRunner";
+
+    private static final long OPERATION_TIMEOUT_MS = TimeUnit.MINUTES.toMillis(5);
+    private static final int MEMORY_SAMPLE_INTERVAL = 200;
+
+    private static volatile boolean running = false;
+
+    public interface Listener {
+        void onFinished(String report, File reportFile);
+    }
+
+    public static class Config {
+        int historyDays = 3 * 365;
+        long durationMillis = TimeUnit.HOURS.toMillis(1);
+        long meanThinkTimeMillis = 500;
+        long seed = 42;
+    }
+
+    // End-to-end latency samples of one action type
+    private static class LatencySamples {
+        private long[] samples = new long[256];
+        private int count = 0;
+        private int failures = 0;
+
+        void add(long millis, boolean success) {
+            if (count == samples.length) {
+                samples = Arrays.copyOf(samples, count * 2);
+            }
+            samples[count++] = millis;
+            if (!success) {
+                failures++;
+            }
+        }
+
+        String format(String label) {
+            if (count == 0) {
+                return label + ": none\n";
+            }
+            long[] sorted = Arrays.copyOf(samples, count);
+            Arrays.sort(sorted);
+            return String.format(Locale.US, "%s: %d (%d failed), p50 %dms, p95 %dms, p99 %dms, max %dms\n",
+                    label, count, failures, percentile(sorted, 50), percentile(sorted, 95),
+                    percentile(sorted, 99), sorted[count - 1]);
+        }
+
+        private static long percentile(long[] sorted, double percentile) {
+            int rank = (int) Math.ceil(sorted.length * percentile / 100.0);
+            return sorted[Math.max(0, rank - 1)];
+        }
+    }
+
+    private final Context context;
+    private final Config config;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Map<DiaryWorkloadGenerator.EventType, LatencySamples> latencies =
+            new EnumMap<>(DiaryWorkloadGenerator.EventType.class);
+    private final LatencySamples bulkUpload = new LatencySamples();
+    private final List<long[]> memorySamples = new ArrayList<>(); // {events, used heap bytes}
+    private volatile boolean cancelled = false;
+
+    SyncSoakRunner(Context context, Config config) {
+        this.context = context.getApplicationContext();
+        this.config = config;
+        for (DiaryWorkloadGenerator.EventType type : DiaryWorkloadGenerator.EventType.values()) {
+            latencies.put(type, new LatencySamples());
+        }
+    }
+
+    static boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Run the soak on a background thread
+     * @param listener Receives the report on the main thread
+     * @return false if another soak run is still in progress
+     */
+    boolean start(Listener listener) {
+        synchronized (SyncSoakRunner.class) {
+            if (running) {
+                return false;
+            }
+            running = true;
+        }
+
+        Thread thread = new Thread(() -> {
+            String report;
+            try {
+                report = runSoak();
+            } catch (InterruptedException e) {
+                report = "Soak run interrupted";
+            } catch (RuntimeException e) {
+                Log.e(TAG, "Soak run failed", e);
+                report = "Soak run failed: " + e;
+            } finally {
+                running = false;
+            }
+
+            File reportFile = writeReport(report);
+            String finalReport = report;
+            mainHandler.post(() -> listener.onFinished(finalReport, reportFile));
+        }, "sync-soak");
+        thread.setPriority(Thread.MIN_PRIORITY);
+        thread.start();
+        return true;
+    }
+
+    void cancel() {
+        cancelled = true;
+    }
+
+    private String runSoak() throws InterruptedException {
+        InMemorySheetsBackend backend = InMemorySheetsBackend.builder()
+                .latency(150, 150)
+                .bandwidth(200 * 1024)
+                .quota(60, 10)
+                .rateLimitProbability(0.002)
+                .serverErrorProbability(0.01)
+                .seed(config.seed)
+                .build();
+        MealSyncManager engine = MealSyncManager.createWithBackend(context, backend);
+
+        DiaryWorkloadGenerator generator = new DiaryWorkloadGenerator(config.seed);
+        List<Meal> history = generator.generateHistory(new Date(), config.historyDays);
+        DiaryWorkloadGenerator.Session session = generator.newSession(history, new Date(), config.meanThinkTimeMillis);
+
+        long startedAt = SystemClock.elapsedRealtime();
+        long deadline = startedAt + config.durationMillis;
+        int events = 0;
+
+        try {
+            sampleMemory(0);
+            long bulkStart = SystemClock.elapsedRealtime();
+            boolean bulkOk = await(listener -> engine.syncMultipleMeals(history, listener));
+            bulkUpload.add(SystemClock.elapsedRealtime() - bulkStart, bulkOk);
+
+            while (!cancelled && SystemClock.elapsedRealtime() < deadline) {
+                DiaryWorkloadGenerator.Event event = session.next();
+                Thread.sleep(event.getThinkTimeMillis());
+
+                long opStart = SystemClock.elapsedRealtime();
+                boolean success = replay(engine, backend, session, event);
+                latencies.get(event.getType()).add(SystemClock.elapsedRealtime() - opStart, success);
+
+                events++;
+                if (events % MEMORY_SAMPLE_INTERVAL == 0) {
+                    sampleMemory(events);
+                    Log.i(TAG, events + " events replayed");
+                }
+            }
+            sampleMemory(events);
+
+            return formatReport(backend, engine, history.size(), events, SystemClock.elapsedRealtime() - startedAt);
+        } finally {
+            mainHandler.post(engine::shutdown);
+        }
+    }
+
+    private boolean replay(MealSyncManager engine, InMemorySheetsBackend backend,
+                           DiaryWorkloadGenerator.Session session, DiaryWorkloadGenerator.Event event)
+            throws InterruptedException {
+        switch (event.getType()) {
+            case ADD:
+                return await(listener -> engine.syncMeal(event.getMeal(), listener));
+            case DELETE:
+                if (!session.isOnline()) {
+                    engine.queueDelete(event.getMeal()); // As MainActivity does in offline mode
+                    return true;
+                }
+                return await(listener -> engine.deleteMeal(event.getMeal(), listener));
+            case FULL_SYNC:
+                List<Meal> localMeals = new ArrayList<>(session.getLiveMeals());
+                return await(listener -> engine.performFullSync(localMeals, listener));
+            case GO_OFFLINE:
+                backend.setOffline(true);
+                return true;
+            case GO_ONLINE:
+                backend.setOffline(false);
+                return await(engine::retryPendingSync);
+            default:
+                return true;
+        }
+    }
+
+    private interface EngineCall {
+        void start(MealSyncManager.SyncStatusListener listener);
+    }
+
+    // Start the call on the main thread, like the UI does, and block until it completes
+    private boolean await(EngineCall call) throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(1);
+        boolean[] result = new boolean[1];
+
+        mainHandler.post(() -> call.start(new MealSyncManager.SyncStatusListener() {
+            @Override
+            public void onSyncStarted() {
+            }
+
+            @Override
+            public void onSyncCompleted(boolean success, String message) {
+                result[0] = success;
+                done.countDown();
+            }
+
+            @Override
+            public void onSyncProgress(int completed, int total) {
+            }
+        }));
+
+        if (!done.await(OPERATION_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+            Log.w(TAG, "Operation did not complete within " + OPERATION_TIMEOUT_MS + "ms");
+            return false;
+        }
+        return result[0];
+    }
+
+    private void sampleMemory(int events) {
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        memorySamples.add(new long[]{events, runtime.totalMemory() - runtime.freeMemory()});
+    }
+
+    private String formatReport(InMemorySheetsBackend backend, MealSyncManager engine,
+                                int historySize, int events, long elapsedMillis) {
+        StringBuilder report = new StringBuilder();
+        report.append(String.format(Locale.US, "Sync soak: %d history meals, %d events in %d min (seed %d)\n\n",
+                historySize, events, TimeUnit.MILLISECONDS.toMinutes(elapsedMillis), config.seed));
+
+        report.append("End-to-end latency:\n");
+        report.append(bulkUpload.format("bulk upload"));
+        for (Map.Entry<DiaryWorkloadGenerator.EventType, LatencySamples> entry : latencies.entrySet()) {
+            report.append(entry.getValue().format(entry.getKey().name().toLowerCase(Locale.US)));
+        }
+
+        long firstHeap = memorySamples.get(0)[1];
+        long lastHeap = memorySamples.get(memorySamples.size() - 1)[1];
+        long peakHeap = 0;
+        for (long[] sample : memorySamples) {
+            peakHeap = Math.max(peakHeap, sample[1]);
+        }
+        report.append(String.format(Locale.US,
+                "\nJava heap: start %d KB, end %d KB, peak %d KB, growth %.1f KB per 1000 events\n",
+                firstHeap / 1024, lastHeap / 1024, peakHeap / 1024,
+                events > 0 ? (lastHeap - firstHeap) / 1024.0 * 1000 / events : 0.0));
+
+        report.append(String.format(Locale.US,
+                "\nBackend: %d requests, %d x 429, %d x 5xx, %d KB up, %d KB down, %d rows stored\n",
+                backend.getRequestCount(), backend.getRateLimitedCount(), backend.getServerErrorCount(),
+                backend.getRequestBytes() / 1024, backend.getResponseBytes() / 1024,
+                backend.getTotalRowCount()));
+        report.append("Pending after run: ").append(engine.getPendingSyncCount()).append("\n");
+        report.append("\nRequest metrics (process-wide):\n").append(engine.getMetricsSummary()).append("\n");
+        return report.toString();
+    }
+
+    private File writeReport(String report) {
+        File directory = context.getExternalFilesDir(null);
+        if (directory == null) {
+            directory = context.getFilesDir();
+        }
+        String fileName = "sync_soak_" + new SimpleDateFormat("yyyyMMdd_HHmmss", Locale.US).format(new Date()) + ".txt";
+        File file = new File(directory, fileName);
+        try (Writer writer = new FileWriter(file)) {
+            writer.write(report);
+            return file;
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to write soak report", e);
+            return null;
+        }
+    }
+}
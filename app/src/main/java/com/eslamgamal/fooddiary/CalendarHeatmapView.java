@@ -0,0 +1,291 @@
+package com.eslamgamal.fooddiary;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.RectF;
+import android.view.GestureDetector;
+import android.view.MotionEvent;
+import android.view.View;
+
+import androidx.annotation.NonNull;
+import androidx.core.content.ContextCompat;
+
+import java.text.DateFormatSymbols;
+import java.util.Calendar;
+
+/**
+ * Heatmap of the meals logged each day, drawn straight from {@link MealDayCounts}: a month
+ * as a week grid with one bar per category under each day, or a whole year as one row of
+ * days per month. Cells are drawn on the canvas rather than laid out as child views, so a
+ * year costs one pass over 366 packed values and never touches the meal history.
+ */
+public class CalendarHeatmapView extends View {
+
+    public interface OnDaySelectedListener {
+        /**
+         * @param year Year of the tapped day
+         * @param month Month of the tapped day, 0-based like {@link Calendar#MONTH}
+         * @param dayOfMonth Day of the month, 1-31
+         */
+        void onDaySelected(int year, int month, int dayOfMonth);
+    }
+
+    // Bar colors in Meal.VALID_CATEGORIES order
+    static final int[] CATEGORY_COLORS = {0xFFFFA000, 0xFF1E88E5, 0xFF8E24AA, 0xFFE53935};
+    // Days with at least this many meals get the full heat color
+    private static final int FULL_HEAT_MEALS = 6;
+    // Category bars reach full height at this many meals
+    private static final int FULL_BAR_MEALS = 3;
+    private static final int EMPTY_DAY_COLOR = 0xFFEEEEEE;
+    private static final int WEEK_ROWS = 6;
+    private static final int YEAR_COLUMNS = 31;
+
+    private final Paint fillPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint textPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint outlinePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final RectF rect = new RectF();
+    private final Calendar calendar = Calendar.getInstance();
+    private final String[] weekdayNames = new DateFormatSymbols().getShortWeekdays();
+    private final String[] monthNames = new DateFormatSymbols().getShortMonths();
+    private final int heatColor;
+    private final float density;
+    private final GestureDetector tapDetector;
+
+    private MealDayCounts counts = new MealDayCounts();
+    private OnDaySelectedListener listener;
+    private boolean yearMode;
+    private int year;
+    private int month;
+    private int selectedEpochDay = Integer.MIN_VALUE;
+
+    public CalendarHeatmapView(Context context) {
+        super(context);
+        density = getResources().getDisplayMetrics().density;
+        heatColor = ContextCompat.getColor(context, R.color.green_primary);
+        textPaint.setTextAlign(Paint.Align.CENTER);
+        outlinePaint.setStyle(Paint.Style.STROKE);
+        outlinePaint.setStrokeWidth(2 * density);
+        outlinePaint.setColor(Color.DKGRAY);
+        year = calendar.get(Calendar.YEAR);
+        month = calendar.get(Calendar.MONTH);
+
+        tapDetector = new GestureDetector(context, new GestureDetector.SimpleOnGestureListener() {
+            @Override
+            public boolean onDown(@NonNull MotionEvent e) {
+                return true;
+            }
+
+            @Override
+            public boolean onSingleTapUp(@NonNull MotionEvent e) {
+                return selectDayAt(e.getX(), e.getY());
+            }
+        });
+    }
+
+    public void setCounts(MealDayCounts counts) {
+        this.counts = counts;
+        invalidate();
+    }
+
+    public void setOnDaySelectedListener(OnDaySelectedListener listener) {
+        this.listener = listener;
+    }
+
+    // Outline the given day wherever it is shown
+    public void setSelectedDay(Calendar day) {
+        selectedEpochDay = MealAggregates.epochDay(day.get(Calendar.YEAR), day.get(Calendar.MONTH) + 1,
+                day.get(Calendar.DAY_OF_MONTH));
+        invalidate();
+    }
+
+    /**
+     * Show one month as a week grid
+     * @param year Year
+     * @param month Month, 0-based
+     */
+    public void showMonth(int year, int month) {
+        this.year = year;
+        this.month = month;
+        this.yearMode = false;
+        requestLayout();
+        invalidate();
+    }
+
+    // Show every month of a year, one row each
+    public void showYear(int year) {
+        this.year = year;
+        this.yearMode = true;
+        requestLayout();
+        invalidate();
+    }
+
+    public boolean isYearMode() {
+        return yearMode;
+    }
+
+    public int getYear() {
+        return year;
+    }
+
+    public int getMonth() {
+        return month;
+    }
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        int width = MeasureSpec.getSize(widthMeasureSpec);
+        int height = yearMode
+                ? Math.round(12 * yearCellSize(width))
+                : Math.round(monthHeaderHeight() + WEEK_ROWS * width / 7f);
+        setMeasuredDimension(width, resolveSize(height, heightMeasureSpec));
+    }
+
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
+        return tapDetector.onTouchEvent(event) || super.onTouchEvent(event);
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        if (yearMode) {
+            drawYear(canvas);
+        } else {
+            drawMonth(canvas);
+        }
+    }
+
+    private void drawMonth(Canvas canvas) {
+        float cell = getWidth() / 7f;
+        float header = monthHeaderHeight();
+        float gap = 2 * density;
+
+        textPaint.setColor(Color.GRAY);
+        textPaint.setTextSize(11 * getResources().getDisplayMetrics().scaledDensity);
+        int firstWeekday = calendar.getFirstDayOfWeek();
+        for (int column = 0; column < 7; column++) {
+            int weekday = (firstWeekday - 1 + column) % 7 + 1;
+            canvas.drawText(weekdayNames[weekday], (column + 0.5f) * cell, header * 0.7f, textPaint);
+        }
+
+        int firstEpochDay = MealAggregates.epochDay(year, month + 1, 1);
+        int offset = leadingDays();
+        int daysInMonth = daysInMonth(month);
+        textPaint.setTextSize(13 * getResources().getDisplayMetrics().scaledDensity);
+        for (int day = 1; day <= daysInMonth; day++) {
+            int position = offset + day - 1;
+            float left = (position % 7) * cell + gap;
+            float top = header + (position / 7) * cell + gap;
+            rect.set(left, top, left + cell - 2 * gap, top + cell - 2 * gap);
+
+            int epochDay = firstEpochDay + day - 1;
+            int packed = counts.get(epochDay);
+            fillPaint.setColor(heat(MealDayCounts.total(packed)));
+            canvas.drawRoundRect(rect, 4 * density, 4 * density, fillPaint);
+            if (epochDay == selectedEpochDay) {
+                canvas.drawRoundRect(rect, 4 * density, 4 * density, outlinePaint);
+            }
+
+            textPaint.setColor(Color.BLACK);
+            canvas.drawText(String.valueOf(day), rect.centerX(), rect.top + rect.height() * 0.45f, textPaint);
+
+            // One bar per category along the bottom of the cell
+            float barSpace = rect.width() / Meal.VALID_CATEGORIES.length;
+            float barMaxHeight = rect.height() * 0.3f;
+            for (int c = 0; c < Meal.VALID_CATEGORIES.length; c++) {
+                int count = MealDayCounts.count(packed, c);
+                if (count == 0) {
+                    continue;
+                }
+                float barHeight = barMaxHeight * Math.min(count, FULL_BAR_MEALS) / FULL_BAR_MEALS;
+                fillPaint.setColor(CATEGORY_COLORS[c]);
+                canvas.drawRect(rect.left + c * barSpace + gap, rect.bottom - gap - barHeight,
+                        rect.left + (c + 1) * barSpace - gap, rect.bottom - gap, fillPaint);
+            }
+        }
+    }
+
+    private void drawYear(Canvas canvas) {
+        float cell = yearCellSize(getWidth());
+        float labelWidth = getWidth() - YEAR_COLUMNS * cell;
+        float gap = Math.max(1, cell * 0.1f);
+
+        textPaint.setColor(Color.GRAY);
+        textPaint.setTextSize(cell * 0.7f);
+        for (int m = 0; m < 12; m++) {
+            float top = m * cell;
+            canvas.drawText(monthNames[m], labelWidth / 2, top + cell * 0.75f, textPaint);
+
+            int firstEpochDay = MealAggregates.epochDay(year, m + 1, 1);
+            int daysInMonth = daysInMonth(m);
+            for (int day = 1; day <= daysInMonth; day++) {
+                int epochDay = firstEpochDay + day - 1;
+                float left = labelWidth + (day - 1) * cell;
+                rect.set(left + gap, top + gap, left + cell - gap, top + cell - gap);
+                fillPaint.setColor(heat(MealDayCounts.total(counts.get(epochDay))));
+                canvas.drawRect(rect, fillPaint);
+                if (epochDay == selectedEpochDay) {
+                    canvas.drawRect(rect, outlinePaint);
+                }
+            }
+        }
+    }
+
+    private boolean selectDayAt(float x, float y) {
+        int selectedMonth;
+        int day;
+        if (yearMode) {
+            float cell = yearCellSize(getWidth());
+            selectedMonth = (int) (y / cell);
+            day = (int) ((x - (getWidth() - YEAR_COLUMNS * cell)) / cell) + 1;
+        } else {
+            float cell = getWidth() / 7f;
+            float top = y - monthHeaderHeight();
+            if (top < 0) {
+                return false;
+            }
+            selectedMonth = month;
+            day = (int) (top / cell) * 7 + (int) (x / cell) - leadingDays() + 1;
+        }
+        if (selectedMonth < 0 || selectedMonth > 11 || day < 1 || day > daysInMonth(selectedMonth)) {
+            return false;
+        }
+        if (listener != null) {
+            listener.onDaySelected(year, selectedMonth, day);
+        }
+        return true;
+    }
+
+    // Empty days are light grey; logged days shade towards the heat color with the meal count
+    private int heat(int meals) {
+        if (meals == 0) {
+            return EMPTY_DAY_COLOR;
+        }
+        float strength = 0.25f + 0.75f * Math.min(meals, FULL_HEAT_MEALS) / FULL_HEAT_MEALS;
+        return Color.argb(Math.round(255 * strength),
+                Color.red(heatColor), Color.green(heatColor), Color.blue(heatColor));
+    }
+
+    // Blank cells before the 1st in a week grid starting on the locale's first weekday
+    private int leadingDays() {
+        calendar.clear();
+        calendar.set(year, month, 1);
+        return (calendar.get(Calendar.DAY_OF_WEEK) - calendar.getFirstDayOfWeek() + 7) % 7;
+    }
+
+    private int daysInMonth(int month) {
+        calendar.clear();
+        calendar.set(year, month, 1);
+        return calendar.getActualMaximum(Calendar.DAY_OF_MONTH);
+    }
+
+    private float monthHeaderHeight() {
+        return 24 * density;
+    }
+
+    // Square cells, leaving room for a month label about two cells wide
+    private float yearCellSize(int width) {
+        return width / (YEAR_COLUMNS + 2.5f);
+    }
+}
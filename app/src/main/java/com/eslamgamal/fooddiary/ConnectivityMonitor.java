@@ -0,0 +1,96 @@
+package com.eslamgamal.fooddiary;
+
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.net.Network;
+import android.net.NetworkCapabilities;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+/**
+ * Follows the default network through {@link ConnectivityManager.NetworkCallback} and
+ * reports its {@link SyncFlushPolicy.NetworkClass} on the main thread whenever it changes.
+ * A network only counts once the system has validated it.
+ */
+class ConnectivityMonitor {
+    private static final String TAG = "ConnectivityMonitor";
+
+    interface Listener {
+        void onNetworkClassChanged(SyncFlushPolicy.NetworkClass networkClass);
+    }
+
+    private final ConnectivityManager connectivityManager;
+    private final Listener listener;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private volatile SyncFlushPolicy.NetworkClass networkClass = SyncFlushPolicy.NetworkClass.NONE;
+    private boolean registered = false;
+
+    private final ConnectivityManager.NetworkCallback callback = new ConnectivityManager.NetworkCallback() {
+        @Override
+        public void onCapabilitiesChanged(Network network, NetworkCapabilities capabilities) {
+            update(classify(capabilities));
+        }
+
+        @Override
+        public void onLost(Network network) {
+            update(SyncFlushPolicy.NetworkClass.NONE);
+        }
+    };
+
+    ConnectivityMonitor(Context context, Listener listener) {
+        this.connectivityManager = (ConnectivityManager) context.getApplicationContext()
+                .getSystemService(Context.CONNECTIVITY_SERVICE);
+        this.listener = listener;
+    }
+
+    void start() {
+        if (registered || connectivityManager == null) {
+            return;
+        }
+        try {
+            connectivityManager.registerDefaultNetworkCallback(callback);
+            registered = true;
+        } catch (RuntimeException e) {
+            // SecurityException without ACCESS_NETWORK_STATE, or too many callbacks registered
+            Log.w(TAG, "Could not register network callback", e);
+        }
+    }
+
+    void stop() {
+        if (!registered) {
+            return;
+        }
+        registered = false;
+        try {
+            connectivityManager.unregisterNetworkCallback(callback);
+        } catch (IllegalArgumentException e) {
+            // Already unregistered
+        }
+    }
+
+    SyncFlushPolicy.NetworkClass getNetworkClass() {
+        return networkClass;
+    }
+
+    static SyncFlushPolicy.NetworkClass classify(NetworkCapabilities capabilities) {
+        if (capabilities == null) {
+            return SyncFlushPolicy.NetworkClass.NONE;
+        }
+        return SyncFlushPolicy.classify(
+                capabilities.hasCapability(NetworkCapabilities.NET_CAPABILITY_VALIDATED),
+                !capabilities.hasCapability(NetworkCapabilities.NET_CAPABILITY_NOT_METERED),
+                capabilities.getLinkDownstreamBandwidthKbps());
+    }
+
+    // Callbacks arrive on a ConnectivityManager thread
+    private void update(SyncFlushPolicy.NetworkClass newClass) {
+        SyncFlushPolicy.NetworkClass oldClass = networkClass;
+        if (newClass == oldClass) {
+            return;
+        }
+        networkClass = newClass;
+        Diagnostics.d(TAG, "Default network changed: {} -> {}", oldClass, newClass);
+        mainHandler.post(() -> listener.onNetworkClassChanged(newClass));
+    }
+}
@@ -0,0 +1,166 @@
+package com.eslamgamal.fooddiary;
+
+import android.util.Log;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Fixed-size, lock-free ring buffer of diagnostic events for the sync hot paths.
+ * Events keep their message template and arguments and are only formatted when the
+ * ring is dumped (or when a warning is mirrored to Logcat), so disabled levels cost
+ * a single comparison. Use "{}" placeholders in templates.
+ */
+public final class Diagnostics {
+
+    private static final String TAG = "Diagnostics";
+
+    // Must be a power of two
+    private static final int CAPACITY = 512;
+
+    private static final AtomicReferenceArray<Event> ring = new AtomicReferenceArray<>(CAPACITY);
+    private static final AtomicLong sequence = new AtomicLong();
+
+    // Events below this level are dropped; uses android.util.Log priorities
+    private static volatile int minLevel = Log.DEBUG;
+
+    private Diagnostics() {
+    }
+
+    private static final class Event {
+        final long sequence;
+        final long timeMillis;
+        final int level;
+        final String tag;
+        final String template;
+        final Object arg0;
+        final Object arg1;
+        final Object arg2;
+
+        Event(long sequence, int level, String tag, String template, Object arg0, Object arg1, Object arg2) {
+            this.sequence = sequence;
+            this.timeMillis = System.currentTimeMillis();
+            this.level = level;
+            this.tag = tag;
+            this.template = template;
+            this.arg0 = arg0;
+            this.arg1 = arg1;
+            this.arg2 = arg2;
+        }
+
+        String formatMessage() {
+            StringBuilder message = new StringBuilder(template.length() + 32);
+            Object[] args = {arg0, arg1, arg2};
+            int argIndex = 0;
+            int start = 0;
+            int placeholder;
+            while ((placeholder = template.indexOf("{}", start)) != -1 && argIndex < args.length) {
+                message.append(template, start, placeholder).append(args[argIndex++]);
+                start = placeholder + 2;
+            }
+            message.append(template, start, template.length());
+            return message.toString();
+        }
+    }
+
+    public static void setMinLevel(int level) {
+        minLevel = level;
+    }
+
+    public static boolean isEnabled(int level) {
+        return level >= minLevel;
+    }
+
+    public static void d(String tag, String template) {
+        record(Log.DEBUG, tag, template, null, null, null);
+    }
+
+    public static void d(String tag, String template, Object arg0) {
+        record(Log.DEBUG, tag, template, arg0, null, null);
+    }
+
+    public static void d(String tag, String template, Object arg0, Object arg1) {
+        record(Log.DEBUG, tag, template, arg0, arg1, null);
+    }
+
+    public static void d(String tag, String template, Object arg0, Object arg1, Object arg2) {
+        record(Log.DEBUG, tag, template, arg0, arg1, arg2);
+    }
+
+    public static void w(String tag, String template) {
+        record(Log.WARN, tag, template, null, null, null);
+    }
+
+    public static void w(String tag, String template, Object arg0) {
+        record(Log.WARN, tag, template, arg0, null, null);
+    }
+
+    public static void w(String tag, String template, Object arg0, Object arg1) {
+        record(Log.WARN, tag, template, arg0, arg1, null);
+    }
+
+    public static void w(String tag, String template, Object arg0, Object arg1, Object arg2) {
+        record(Log.WARN, tag, template, arg0, arg1, arg2);
+    }
+
+    private static void record(int level, String tag, String template, Object arg0, Object arg1, Object arg2) {
+        if (level < minLevel) {
+            return;
+        }
+
+        long seq = sequence.getAndIncrement();
+        Event event = new Event(seq, level, tag, template, arg0, arg1, arg2);
+        ring.set((int) (seq & (CAPACITY - 1)), event);
+
+        // Warnings are rare and worth seeing live; everything else stays in the ring
+        if (level >= Log.WARN) {
+            Log.println(level, tag, event.formatMessage());
+        }
+    }
+
+    /**
+     * Format the events currently held in the ring, oldest first
+     * @return One line per event
+     */
+    public static String dump() {
+        long end = sequence.get();
+        long start = Math.max(0, end - CAPACITY);
+        SimpleDateFormat timeFormat = new SimpleDateFormat("MM-dd HH:mm:ss.SSS", Locale.US);
+        StringBuilder out = new StringBuilder();
+
+        for (long seq = start; seq < end; seq++) {
+            Event event = ring.get((int) (seq & (CAPACITY - 1)));
+            if (event == null || event.sequence != seq) {
+                continue; // Not published yet or already overwritten by a newer event
+            }
+            out.append(timeFormat.format(new Date(event.timeMillis)))
+                    .append(' ').append(levelChar(event.level))
+                    .append('/').append(event.tag)
+                    .append(": ").append(event.formatMessage())
+                    .append('\n');
+        }
+
+        if (start > 0) {
+            out.insert(0, "(" + start + " older events dropped)\n");
+        }
+        return out.toString();
+    }
+
+    private static char levelChar(int level) {
+        switch (level) {
+            case Log.VERBOSE:
+                return 'V';
+            case Log.DEBUG:
+                return 'D';
+            case Log.INFO:
+                return 'I';
+            case Log.WARN:
+                return 'W';
+            default:
+                return 'E';
+        }
+    }
+}
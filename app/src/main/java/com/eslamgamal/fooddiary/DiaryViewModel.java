@@ -0,0 +1,334 @@
+package com.eslamgamal.fooddiary;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.lifecycle.ViewModel;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Holds the diary screen state across configuration changes: the loaded meal history,
+ * the selected date, the sync initialization result and any wait for it, the bucketed snapshot of the
+ * selected day, and the day index, search index and statistics over the history. A recreated MainActivity renders
+ * straight from this state without reloading from the cloud or rebucketing the history.
+ * Snapshots of the days around the selected one are prefetched in the background, so
+ * swiping to a neighbouring day renders a ready snapshot. The search index and statistics
+ * are updated on a background thread of their own, in the order the changes were made.
+ */
+public class DiaryViewModel extends ViewModel {
+
+    // Prefetched snapshots kept; enough for the widest prefetch window on both sides
+    private static final int MAX_PREFETCHED_SNAPSHOTS = 24;
+
+    private final List<Meal> allMeals = new ArrayList<>();
+    private final Calendar selectedDate = Calendar.getInstance();
+    private final MealDayIndex dayIndex = new MealDayIndex();
+    private final MealSearchIndex searchIndex = new MealSearchIndex();
+    private final MealAggregates aggregates = new MealAggregates();
+    private DaySnapshot daySnapshot;
+
+    private final ExecutorService prefetchExecutor = Executors.newSingleThreadExecutor();
+    // Applies search index and statistics changes in submission order
+    private final ExecutorService indexExecutor = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    // Least recently used first; guarded by itself
+    private final Map<String, DaySnapshot> prefetched = new LinkedHashMap<String, DaySnapshot>(32, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, DaySnapshot> eldest) {
+            return size() > MAX_PREFETCHED_SNAPSHOTS;
+        }
+    };
+    // Used only on the prefetch thread
+    private final SimpleDateFormat prefetchDateFormat = new SimpleDateFormat("yyyy-MM-dd", Locale.getDefault());
+
+    private boolean initializationComplete = false;
+    private boolean initializationSuccess = false;
+    private boolean historyLoaded = false;
+
+    // The process-scoped sync engine holds this ViewModel while waiting, never an Activity
+    private boolean awaitingSyncReady = false;
+    private MealSyncManager.InitializationCallback syncReadyListener;
+
+    // Meals of a single day, already split by category
+    public static class DaySnapshot {
+        private final String date;
+        private final List<Meal> breakfast;
+        private final List<Meal> lunch;
+        private final List<Meal> dinner;
+        private final List<Meal> snacks;
+        private final long version; // Day index version the snapshot was built from
+
+        DaySnapshot(String date, List<Meal> breakfast, List<Meal> lunch, List<Meal> dinner, List<Meal> snacks,
+                    long version) {
+            this.date = date;
+            this.version = version;
+            this.breakfast = Collections.unmodifiableList(breakfast);
+            this.lunch = Collections.unmodifiableList(lunch);
+            this.dinner = Collections.unmodifiableList(dinner);
+            this.snacks = Collections.unmodifiableList(snacks);
+        }
+
+        public String getDate() {
+            return date;
+        }
+
+        public List<Meal> getBreakfast() {
+            return breakfast;
+        }
+
+        public List<Meal> getLunch() {
+            return lunch;
+        }
+
+        public List<Meal> getDinner() {
+            return dinner;
+        }
+
+        public List<Meal> getSnacks() {
+            return snacks;
+        }
+    }
+
+    // Live, mutable history list shared with the Activity
+    public List<Meal> getAllMeals() {
+        return allMeals;
+    }
+
+    // Kept in step with allMeals by the Activity on every add, edit, delete and merge
+    public MealDayIndex getDayIndex() {
+        return dayIndex;
+    }
+
+    // Kept in step with allMeals through indexMeals, unindexMeal and indexHistory
+    public MealSearchIndex getSearchIndex() {
+        return searchIndex;
+    }
+
+    // Kept in step with allMeals the same way as the search index
+    public MealAggregates getAggregates() {
+        return aggregates;
+    }
+
+    /**
+     * Add meals just added, edited or merged into allMeals to the search index and statistics
+     * @param meals Meals to index; copied before this returns
+     */
+    public void indexMeals(Collection<Meal> meals) {
+        List<Meal> snapshot = new ArrayList<>(meals);
+        indexExecutor.execute(() -> {
+            searchIndex.addAll(snapshot);
+            aggregates.addAll(snapshot);
+        });
+    }
+
+    // Drop a meal just removed from allMeals from the search index and statistics
+    public void unindexMeal(Meal meal) {
+        indexExecutor.execute(() -> {
+            searchIndex.remove(meal);
+            aggregates.remove(meal);
+        });
+    }
+
+    /**
+     * Index the meals merged in from the full cloud history. On a cold start the statistics
+     * are counted from the whole history in parallel rather than meal by meal.
+     * @param merged Meals the merge added or replaced; copied before this returns
+     * @param history The whole history after the merge; copied before this returns
+     * @param onIndexed Run on the main thread once the statistics are complete
+     */
+    public void indexHistory(List<Meal> merged, List<Meal> history, Runnable onIndexed) {
+        List<Meal> mergedSnapshot = new ArrayList<>(merged);
+        List<Meal> historySnapshot = new ArrayList<>(history);
+        indexExecutor.execute(() -> {
+            searchIndex.addAll(mergedSnapshot);
+            if (aggregates.size() == 0) {
+                aggregates.rebuild(historySnapshot);
+            } else {
+                aggregates.addAll(mergedSnapshot);
+            }
+            mainHandler.post(onIndexed);
+        });
+    }
+
+    public Calendar getSelectedDate() {
+        return selectedDate;
+    }
+
+    /**
+     * Get the retained snapshot for the given date, or null if none was built for it yet
+     * @param date Date in yyyy-MM-dd format
+     * @return The retained snapshot or null
+     */
+    public DaySnapshot getRetainedSnapshot(String date) {
+        if (daySnapshot != null && daySnapshot.getDate().equals(date)) {
+            return daySnapshot;
+        }
+        return null;
+    }
+
+    /**
+     * Bucket the meals of the given date and retain the result
+     * @param date Date in yyyy-MM-dd format
+     * @return The freshly built snapshot
+     */
+    public DaySnapshot buildSnapshot(String date) {
+        daySnapshot = bucket(date);
+        return daySnapshot;
+    }
+
+    /**
+     * Get a snapshot of the given date and retain it: the prefetched one if the history
+     * hasn't changed since it was built, otherwise a freshly built one
+     * @param date Date in yyyy-MM-dd format
+     * @return The snapshot
+     */
+    public DaySnapshot getSnapshot(String date) {
+        DaySnapshot snapshot;
+        synchronized (prefetched) {
+            snapshot = prefetched.get(date);
+        }
+        if (snapshot == null || snapshot.version != dayIndex.getVersion()) {
+            return buildSnapshot(date);
+        }
+        daySnapshot = snapshot;
+        return snapshot;
+    }
+
+    /**
+     * Build snapshots of the days around a date in the background, nearest first
+     * @param date The day being shown
+     * @param behind Days before it to prefetch
+     * @param ahead Days after it to prefetch
+     */
+    public void prefetchAround(Calendar date, int behind, int ahead) {
+        long millis = date.getTimeInMillis();
+        prefetchExecutor.execute(() -> {
+            Calendar day = Calendar.getInstance();
+            for (int distance = 1; distance <= Math.max(behind, ahead); distance++) {
+                if (distance <= ahead) {
+                    prefetch(day, millis, distance);
+                }
+                if (distance <= behind) {
+                    prefetch(day, millis, -distance);
+                }
+            }
+        });
+    }
+
+    // Runs on the prefetch thread
+    private void prefetch(Calendar day, long millis, int offset) {
+        day.setTimeInMillis(millis);
+        day.add(Calendar.DAY_OF_MONTH, offset);
+        String date = prefetchDateFormat.format(day.getTime());
+        synchronized (prefetched) {
+            DaySnapshot existing = prefetched.get(date);
+            if (existing != null && existing.version == dayIndex.getVersion()) {
+                return;
+            }
+        }
+        DaySnapshot snapshot = bucket(date);
+        synchronized (prefetched) {
+            prefetched.put(date, snapshot);
+        }
+    }
+
+    // Split the day's meals by category; safe on any thread
+    private DaySnapshot bucket(String date) {
+        List<Meal> meals;
+        long version;
+        synchronized (dayIndex) {
+            meals = dayIndex.mealsOn(date);
+            version = dayIndex.getVersion();
+        }
+
+        List<Meal> breakfastMeals = new ArrayList<>();
+        List<Meal> lunchMeals = new ArrayList<>();
+        List<Meal> dinnerMeals = new ArrayList<>();
+        List<Meal> snacksMeals = new ArrayList<>();
+
+        for (Meal meal : meals) {
+            switch (meal.getCategory()) {
+                case "breakfast":
+                    breakfastMeals.add(meal);
+                    break;
+                case "lunch":
+                    lunchMeals.add(meal);
+                    break;
+                case "dinner":
+                    dinnerMeals.add(meal);
+                    break;
+                case "snacks":
+                    snacksMeals.add(meal);
+                    break;
+            }
+        }
+
+        return new DaySnapshot(date, breakfastMeals, lunchMeals, dinnerMeals, snacksMeals, version);
+    }
+
+    public boolean isInitializationComplete() {
+        return initializationComplete;
+    }
+
+    public boolean isInitializationSuccess() {
+        return initializationSuccess;
+    }
+
+    public void setInitializationState(boolean complete, boolean success) {
+        this.initializationComplete = complete;
+        this.initializationSuccess = success;
+    }
+
+    /**
+     * Wait for the sync engine to become ready, unless a wait is already under way. The
+     * result goes to whichever listener is attached when it arrives, so an Activity
+     * recreated mid-wait takes over the wait of the one before it without a second request.
+     * @param syncManager Engine to wait for
+     */
+    public void awaitSyncReady(MealSyncManager syncManager) {
+        if (awaitingSyncReady) {
+            return;
+        }
+        awaitingSyncReady = true;
+        syncManager.whenReady((success, message) -> {
+            awaitingSyncReady = false;
+            MealSyncManager.InitializationCallback listener = syncReadyListener;
+            if (listener != null) {
+                listener.onInitializationComplete(success, message);
+            }
+        });
+    }
+
+    // Attach the current Activity's listener; detach with null in onDestroy
+    public void setSyncReadyListener(MealSyncManager.InitializationCallback listener) {
+        this.syncReadyListener = listener;
+    }
+
+    // Whether the full cloud history has been merged into allMeals; until then single
+    // days are filled in from the day cache
+    public boolean isHistoryLoaded() {
+        return historyLoaded;
+    }
+
+    public void setHistoryLoaded(boolean historyLoaded) {
+        this.historyLoaded = historyLoaded;
+    }
+
+    @Override
+    protected void onCleared() {
+        syncReadyListener = null;
+        prefetchExecutor.shutdownNow();
+        indexExecutor.shutdownNow();
+    }
+}
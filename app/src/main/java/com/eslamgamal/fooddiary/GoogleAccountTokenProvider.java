@@ -0,0 +1,62 @@
+package com.eslamgamal.fooddiary;
+
+import android.accounts.Account;
+import android.content.Context;
+
+import com.google.android.gms.auth.GoogleAuthException;
+import com.google.android.gms.auth.GoogleAuthUtil;
+
+import java.io.IOException;
+
+/**
+ * {@link AccessTokenProvider} for the signed-in Google account, backed by Play services.
+ * The token is kept until the server rejects it, so only the first request and the one
+ * after an expiry pay for the round trip to Play services.
+ */
+public class GoogleAccountTokenProvider implements AccessTokenProvider {
+
+    private final Context context;
+    private final Account account;
+    private final String scope;
+    private volatile String token;
+
+    /**
+     * @param context Context; the application context is kept
+     * @param account Signed-in account
+     * @param scope OAuth2 scope URL, e.g. {@link SheetsRestClient#SCOPE_SPREADSHEETS}
+     */
+    public GoogleAccountTokenProvider(Context context, Account account, String scope) {
+        this.context = context.getApplicationContext();
+        this.account = account;
+        this.scope = "oauth2:" + scope;
+    }
+
+    @Override
+    public String getAccessToken() throws IOException {
+        String current = token;
+        if (current != null) {
+            return current;
+        }
+        try {
+            current = GoogleAuthUtil.getToken(context, account, scope);
+        } catch (GoogleAuthException e) {
+            // Includes UserRecoverableAuthException: the user has to grant access again
+            throw new SheetsBackendException(SheetsBackendException.STATUS_UNAUTHORIZED,
+                    "Google account authorization failed: " + e.getMessage(), -1, e);
+        }
+        token = current;
+        return current;
+    }
+
+    @Override
+    public void invalidateAccessToken(String rejected) {
+        if (rejected.equals(token)) {
+            token = null;
+        }
+        try {
+            GoogleAuthUtil.clearToken(context, rejected);
+        } catch (GoogleAuthException | IOException e) {
+            // Play services keeps it until it expires; the next getToken may return it once more
+        }
+    }
+}
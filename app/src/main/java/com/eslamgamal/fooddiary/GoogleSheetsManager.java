@@ -8,51 +8,80 @@ import android.util.Log;
 
 import com.google.android.gms.auth.api.signin.GoogleSignIn;
 import com.google.android.gms.auth.api.signin.GoogleSignInAccount;
-import com.google.api.client.extensions.android.http.AndroidHttp;
-import com.google.api.client.googleapis.extensions.android.gms.auth.GoogleAccountCredential;
-import com.google.api.client.http.HttpTransport;
-import com.google.api.client.json.JsonFactory;
-import com.google.api.client.json.gson.GsonFactory;
-import com.google.api.services.sheets.v4.Sheets;
-import com.google.api.services.sheets.v4.SheetsScopes;
-import com.google.api.services.sheets.v4.model.AppendValuesResponse;
-import com.google.api.services.sheets.v4.model.BatchUpdateSpreadsheetRequest;
-import com.google.api.services.sheets.v4.model.ClearValuesRequest;
-import com.google.api.services.sheets.v4.model.Request;
-import com.google.api.services.sheets.v4.model.Spreadsheet;
-import com.google.api.services.sheets.v4.model.SpreadsheetProperties;
-import com.google.api.services.sheets.v4.model.ValueRange;
-import com.google.api.services.sheets.v4.model.DeleteDimensionRequest;
-import com.google.api.services.sheets.v4.model.DimensionRange;
 
 import java.io.IOException;
+import java.net.ConnectException;
+import java.net.NoRouteToHostException;
+import java.net.UnknownHostException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.text.SimpleDateFormat;
-import java.text.ParseException;
-import java.util.Locale;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
 
 public class GoogleSheetsManager {
     private static final String TAG = "GoogleSheetsManager";
     private static final String APPLICATION_NAME = "Food Diary App";
-    private static final JsonFactory JSON_FACTORY = GsonFactory.getDefaultInstance();
-    private static final List<String> SCOPES = Collections.singletonList(SheetsScopes.SPREADSHEETS);
 
     // SharedPreferences keys
     private static final String PREFS_NAME = "sheets_manager_prefs";
     private static final String KEY_SPREADSHEET_ID = "spreadsheet_id";
-
-    private Sheets sheetsService;
+    private static final String KEY_SCHEMA_VERSION_PREFIX = "schema_version_";
+    private static final String KEY_DIGEST_SHEET_PREFIX = "digest_sheet_";
+
+    // Rows per request when back-filling the hidden columns of a legacy sheet
+    private static final int MIGRATION_CHUNK_ROWS = 5000;
+
+    // Separate row ranges read for one day before reading the span covering all of them
+    private static final int MAX_DAY_RUNS = 4;
+
+    // Backoff for transient transport failures (network errors and 5xx); 429s go through the rate limiter.
+    // Appends, creates and row deletes are only resent when that cannot apply them twice
+    private static final int MAX_TRANSPORT_ATTEMPTS = 4;
+    private static final long BACKOFF_BASE_MS = 500;
+    private static final long BACKOFF_MAX_MS = 8000;
+    private static final int MAX_RATE_LIMITED_ATTEMPTS = 10;
+    private static final long RATE_LIMIT_MAX_WAIT_MS = 60000;
+
+    // Bulk uploads are split into chunks so a long offline backlog never becomes one huge request
+    private static final int MAX_ROWS_PER_CHUNK = 500;
+    private static final int MAX_CHUNK_BYTES = 256 * 1024;
+    private static final int MAX_CHUNKS_IN_FLIGHT = 3;
+
+    private SheetsBackend sheetsBackend;
+    private final boolean injectedBackend;
+    private String spreadsheetTitle = "Food Diary - User";
     private Context context;
     private ExecutorService executor;
+    private ExecutorService uploadExecutor;
+    private final SheetsRateLimiter rateLimiter = new SheetsRateLimiter();
+    private final SyncMetrics metrics = SyncMetrics.getInstance();
+    // Digest changes of acknowledged writes that are not in the Digests sheet yet
+    private final MealDigests pendingDigests = new MealDigests();
     private Handler mainHandler; // Add this for UI callbacks
-    private String spreadsheetId;
-    private boolean isInitialized = false;
-    private boolean isInitializing = false;
+    private volatile String spreadsheetId;
+    // Set on sign-out; nothing more is saved for the account
+    private volatile boolean accountCleared = false;
+    private volatile boolean isInitialized = false;
+    private volatile boolean isInitializing = false;
+    private volatile boolean initializationFailed = false;
+    // Set once the spreadsheet has been validated (or created) and migrated to the current schema
+    private volatile boolean spreadsheetValidated = false;
+    // Set while the spreadsheet is known to exist; any failed request clears it, so the next
+    // operation checks the spreadsheet again instead of every operation checking it
+    private volatile boolean spreadsheetConfirmed = false;
     private SharedPreferences prefs;
 
     // Callback interfaces
@@ -61,28 +90,113 @@ public class GoogleSheetsManager {
     }
     private InitializationCallback initCallback;
 
+    // One-shot readiness waiters, released as soon as the spreadsheet is validated or creation fails
+    private final List<InitializationCallback> readyCallbacks = new ArrayList<>();
+
     public void setInitializationCallback(InitializationCallback callback) {
         this.initCallback = callback;
     }
+
+    /**
+     * Register a one-shot callback fired on the main thread the moment the service and
+     * spreadsheet are ready, or as soon as initialization fails. If the service is already
+     * ready the callback is posted immediately; if initialization hasn't started yet or a
+     * previous attempt failed, it is (re)started.
+     * @param callback Callback to notify
+     */
+    public void whenReady(InitializationCallback callback) {
+        boolean restart = false;
+        synchronized (readyCallbacks) {
+            if (isReady()) {
+                mainHandler.post(() -> callback.onInitializationComplete(true, "Sync ready"));
+                return;
+            }
+            readyCallbacks.add(callback);
+            if (!isInitializing && (initializationFailed || !isInitialized)) {
+                restart = true;
+            }
+        }
+
+        if (restart) {
+            Log.d(TAG, "Sheets service not started or previously failed, starting initialization");
+            initializationFailed = false;
+            isInitialized = false;
+            spreadsheetValidated = false;
+            spreadsheetConfirmed = false;
+            initializeService();
+        }
+    }
+
+    private void dispatchInitializationResult(boolean success, String message) {
+        List<InitializationCallback> callbacks;
+        synchronized (readyCallbacks) {
+            initializationFailed = !success;
+            spreadsheetValidated = success;
+            spreadsheetConfirmed = success;
+            callbacks = new ArrayList<>(readyCallbacks);
+            readyCallbacks.clear();
+        }
+
+        InitializationCallback listener = initCallback;
+        mainHandler.post(() -> {
+            for (InitializationCallback callback : callbacks) {
+                callback.onInitializationComplete(success, message);
+            }
+            if (listener != null) {
+                listener.onInitializationComplete(success, message);
+            }
+        });
+    }
     public interface SyncCallback {
         void onSuccess(String message);
         void onError(String error);
     }
 
+    public interface BulkSyncCallback {
+        void onProgress(int completed, int total);
+        void onComplete(int syncedCount, List<Meal> failedMeals, String error);
+    }
+
     public interface LoadCallback {
         void onMealsLoaded(List<Meal> meals);
         void onError(String error);
     }
 
+    public interface DigestCallback {
+        void onDigestLoaded(long totalDigest);
+        void onError(String error);
+    }
+
     public GoogleSheetsManager(Context context) {
+        this(context, null);
+    }
+
+    /**
+     * Create a manager that talks to the given backend instead of the signed-in Google
+     * account, e.g. an {@link InMemorySheetsBackend} for load and soak runs. The spreadsheet
+     * ID is kept in preferences of its own so it never replaces the real one.
+     * @param context Context used for preferences
+     * @param backend Backend to use, or null to build the Google Sheets client on start
+     */
+    GoogleSheetsManager(Context context, SheetsBackend backend) {
         this.context = context;
+        this.sheetsBackend = backend;
+        this.injectedBackend = backend != null;
         this.executor = Executors.newSingleThreadExecutor();
+        this.uploadExecutor = Executors.newFixedThreadPool(MAX_CHUNKS_IN_FLIGHT);
         this.mainHandler = new Handler(Looper.getMainLooper()); // Initialize handler
-        this.prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        this.prefs = context.getSharedPreferences(
+                injectedBackend ? PREFS_NAME + "_" + backend.getClass().getSimpleName() : PREFS_NAME,
+                Context.MODE_PRIVATE);
 
         // Load saved spreadsheet ID
         this.spreadsheetId = prefs.getString(KEY_SPREADSHEET_ID, null);
 
+        // The Google API client graph is built lazily on the executor by start()/whenReady()
+    }
+
+    // Begin building the Sheets client in the background if it isn't running or ready already
+    public void start() {
         initializeService();
     }
 
@@ -97,76 +211,88 @@ public class GoogleSheetsManager {
 
         executor.execute(() -> {
             try {
+                if (injectedBackend) {
+                    isInitialized = true;
+                    isInitializing = false;
+                    validateOrCreateSpreadsheet();
+                    return;
+                }
+
                 // Get the signed-in Google account
                 GoogleSignInAccount account = GoogleSignIn.getLastSignedInAccount(context);
 
                 if (account == null) {
                     Log.e(TAG, "No signed-in Google account found");
                     isInitializing = false;
+                    dispatchInitializationResult(false, "No signed-in Google account");
                     return;
                 }
 
                 Log.d(TAG, "Using Google account: " + account.getEmail());
 
-                // Create credential using GoogleAccountCredential (modern approach)
-                GoogleAccountCredential credential = GoogleAccountCredential.usingOAuth2(
-                        context, SCOPES);
-                credential.setSelectedAccount(account.getAccount());
+                // The token is fetched from Play services on the first request and reused until rejected
+                AccessTokenProvider tokens = new GoogleAccountTokenProvider(
+                        context, account.getAccount(), SheetsRestClient.SCOPE_SPREADSHEETS);
 
-                HttpTransport transport = AndroidHttp.newCompatibleTransport();
-
-                Log.d(TAG, "Building Sheets service...");
-                sheetsService = new Sheets.Builder(transport, JSON_FACTORY, credential)
-                        .setApplicationName(APPLICATION_NAME)
-                        .build();
+                Log.d(TAG, "Building Sheets client...");
+                sheetsBackend = new SheetsRestClient(tokens, APPLICATION_NAME);
+                spreadsheetTitle = "Food Diary - " + (account.getEmail() != null ? account.getEmail() : "User");
 
                 Log.d(TAG, "✓ Google Sheets service initialized successfully!");
                 isInitialized = true;
                 isInitializing = false;
 
                 // Initialize user's spreadsheet if we don't have one
-                validateOrCreateSpreadsheet(account);
+                validateOrCreateSpreadsheet();
 
             } catch (Exception e) {
                 Log.e(TAG, "✗ ERROR during service initialization", e);
                 isInitialized = false;
                 isInitializing = false;
+                dispatchInitializationResult(false, "Failed to initialize Sheets service: " + e.getMessage());
             }
 
             Log.d(TAG, "=== INITIALIZATION COMPLETED. isInitialized: " + isInitialized + " ===");
         });
     }
 
-    private void initializeUserSpreadsheet(GoogleSignInAccount account) {
-        String userEmail = account.getEmail();
-        if (userEmail == null) {
-            userEmail = "User";
-        }
-        String spreadsheetTitle = "Food Diary - " + userEmail;
+    private void initializeUserSpreadsheet() {
+        String spreadsheetTitle = this.spreadsheetTitle;
 
         executor.execute(() -> {
             try {
                 if (!isInitialized) {
                     Log.e(TAG, "✗ Cannot create spreadsheet: Sheets service not initialized!");
+                    dispatchInitializationResult(false, "Sheets service not initialized");
                     return;
                 }
 
                 Log.d(TAG, "Creating new spreadsheet: " + spreadsheetTitle);
                 String newSpreadsheetId = createUserSpreadsheet(spreadsheetTitle);
+                if (accountCleared) {
+                    return; // Signed out while it was being created
+                }
                 this.spreadsheetId = newSpreadsheetId;
 
-                // Save spreadsheet ID for future use
-                prefs.edit().putString(KEY_SPREADSHEET_ID, spreadsheetId).apply();
+                // Save spreadsheet ID for future use; a new sheet starts on the current schema
+                prefs.edit()
+                        .putString(KEY_SPREADSHEET_ID, spreadsheetId)
+                        .putInt(KEY_SCHEMA_VERSION_PREFIX + spreadsheetId, SheetSchema.VERSION_CURRENT)
+                        .putBoolean(KEY_DIGEST_SHEET_PREFIX + spreadsheetId, true)
+                        .apply();
 
                 Log.d(TAG, "✓ User spreadsheet created successfully!");
                 Log.d(TAG, "✓ Spreadsheet ID: " + spreadsheetId);
                 Log.d(TAG, "✓ Spreadsheet URL: https://docs.google.com/spreadsheets/d/" + spreadsheetId);
+                dispatchInitializationResult(true, "Spreadsheet created");
 
             } catch (IOException e) {
                 Log.e(TAG, "✗ Failed to create user spreadsheet", e);
                 Log.e(TAG, "Error details: " + e.getMessage());
+                dispatchInitializationResult(false, "Failed to create spreadsheet: " + e.getMessage());
             } catch (Exception e) {
                 Log.e(TAG, "✗ Unexpected error creating spreadsheet", e);
+                dispatchInitializationResult(false, "Unexpected error: " + e.getMessage());
             }
         });
     }
@@ -177,33 +303,51 @@ public class GoogleSheetsManager {
         }
 
         // Create a new spreadsheet
-        Spreadsheet spreadsheet = new Spreadsheet()
-                .setProperties(new SpreadsheetProperties().setTitle(title));
-
-        spreadsheet = sheetsService.spreadsheets().create(spreadsheet).execute();
-        String newSpreadsheetId = spreadsheet.getSpreadsheetId();
+        // A resent create could leave an orphaned spreadsheet behind; failing lets the next start retry
+        String newSpreadsheetId = executeWithBackoff(SyncMetrics.Operation.VALIDATE, true,
+                () -> sheetsBackend.createSpreadsheet(title), 0, null);
 
         // Set up headers
         setupSpreadsheetHeaders(newSpreadsheetId);
+        setupDigestSheet(newSpreadsheetId);
 
         return newSpreadsheetId;
     }
 
     private void setupSpreadsheetHeaders(String spreadsheetId) throws IOException {
-        List<List<Object>> values = Arrays.asList(
-                Arrays.asList("Date", "Category", "Meal Name", "Time")
-        );
-
-        ValueRange body = new ValueRange().setValues(values);
-
-        sheetsService.spreadsheets().values()
-                .update(spreadsheetId, "Sheet1!A1:D1", body) // A1:D1
-                .setValueInputOption("RAW")
-                .execute();
+        List<List<Object>> values = Collections.singletonList(SheetSchema.HEADERS);
+
+        executeWithBackoff(SyncMetrics.Operation.VALIDATE, true,
+                () -> {
+                    sheetsBackend.updateValues(spreadsheetId, SheetSchema.HEADER_RANGE, values); // A1:G1
+                    return null;
+                });
+
+        // ID, Timestamp and Updated At are for the app; keep the sheet readable for people
+        executeWithBackoff(SyncMetrics.Operation.VALIDATE, true,
+                () -> {
+                    sheetsBackend.hideColumns(spreadsheetId, SheetSchema.SHEET_ID,
+                            SheetSchema.HIDDEN_START, SheetSchema.HIDDEN_END);
+                    return null;
+                });
 
         Log.d(TAG, "Spreadsheet headers set up successfully");
     }
 
+    // Add the Digests sheet with an empty history: header row and a zero total
+    private void setupDigestSheet(String spreadsheetId) throws IOException {
+        executeWithBackoff(SyncMetrics.Operation.DIGEST, true,
+                () -> sheetsBackend.addSheet(spreadsheetId, SheetSchema.DIGEST_SHEET), 0, null);
+
+        List<List<Object>> values = Arrays.asList(SheetSchema.DIGEST_HEADERS,
+                Arrays.asList(SheetSchema.DIGEST_TOTAL_LABEL, MealDigests.format(0)));
+        executeWithBackoff(SyncMetrics.Operation.DIGEST, true,
+                () -> {
+                    sheetsBackend.updateValues(spreadsheetId, SheetSchema.digestRange(1, 2), values);
+                    return null;
+                });
+    }
+
     public void syncMealToSheets(Meal meal, SyncCallback callback) {
         // Move the entire operation to background thread
         executor.execute(() -> {
@@ -213,24 +357,9 @@ public class GoogleSheetsManager {
             }
 
             try {
-                List<List<Object>> values = Arrays.asList(
-                        Arrays.asList(
-                                meal.getDate(),
-                                meal.getCategory(),
-                                meal.getName(),
-                                meal.getFormattedTime()
-                        )
-                );
-
-                ValueRange body = new ValueRange().setValues(values);
-
-                AppendValuesResponse result = sheetsService.spreadsheets().values()
-                        .append(spreadsheetId, "Sheet1!A:D", body)
-                        .setValueInputOption("RAW")
-                        .setInsertDataOption("INSERT_ROWS")
-                        .execute();
-
-                Log.d(TAG, "Meal synced to sheets: " + meal.getName());
+                appendMealRows(Collections.singletonList(meal));
+
+                Diagnostics.d(TAG, "Meal synced to sheets: {}", meal.getName());
                 mainHandler.post(() -> callback.onSuccess("Meal synced successfully"));
 
             } catch (IOException e) {
@@ -243,44 +372,133 @@ public class GoogleSheetsManager {
         });
     }
 
-    public void syncMultipleMealsToSheets(List<Meal> meals, SyncCallback callback) {
+    /**
+     * Append meals in size-bounded chunks with up to {@link #MAX_CHUNKS_IN_FLIGHT} chunks
+     * uploading concurrently. Each chunk is acknowledged on its own, so a failure only
+     * affects the meals in that chunk.
+     * @param meals Meals to append
+     * @param callback Receives progress after each acknowledged chunk and the failed meals at the end
+     */
+    public void syncMultipleMealsToSheets(List<Meal> meals, BulkSyncCallback callback) {
         // Move the entire operation to background thread
         executor.execute(() -> {
             if (!checkInitialization()) {
-                mainHandler.post(() -> callback.onError("Sheets service not initialized"));
+                mainHandler.post(() -> callback.onComplete(0, new ArrayList<>(meals), "Sheets service not initialized"));
                 return;
             }
 
-            try {
-                List<List<Object>> values = new ArrayList<>();
-
-                for (Meal meal : meals) {
-                    values.add(Arrays.asList(
-                            meal.getDate(),
-                            meal.getCategory(),
-                            meal.getName(),
-                            meal.getFormattedTime()
-                    ));
-                }
+            List<List<Meal>> chunks = splitIntoChunks(meals);
+            CompletionService<List<Meal>> completionService = new ExecutorCompletionService<>(uploadExecutor);
+            Map<Future<List<Meal>>, List<Meal>> chunkFutures = new HashMap<>();
 
-                ValueRange body = new ValueRange().setValues(values);
+            for (List<Meal> chunk : chunks) {
+                chunkFutures.put(completionService.submit(() -> {
+                    appendMealRows(chunk);
+                    return chunk;
+                }), chunk);
+            }
 
-                AppendValuesResponse result = sheetsService.spreadsheets().values()
-                        .append(spreadsheetId, "Sheet1!A:D", body)
-                        .setValueInputOption("RAW")
-                        .setInsertDataOption("INSERT_ROWS")
-                        .execute();
+            int completed = 0;
+            List<Meal> failedMeals = new ArrayList<>();
+            String lastError = null;
+
+            for (int i = 0; i < chunks.size(); i++) {
+                Future<List<Meal>> future;
+                try {
+                    future = completionService.take();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    lastError = "Upload interrupted";
+                    break;
+                }
 
-                Log.d(TAG, "Multiple meals synced to sheets: " + meals.size());
-                mainHandler.post(() -> callback.onSuccess(meals.size() + " meals synced successfully"));
+                List<Meal> chunk = chunkFutures.remove(future);
+                try {
+                    future.get();
+                    completed += chunk.size();
+                    int progress = completed;
+                    mainHandler.post(() -> callback.onProgress(progress, meals.size()));
+                } catch (ExecutionException | InterruptedException e) {
+                    Throwable cause = e.getCause() != null ? e.getCause() : e;
+                    Log.e(TAG, "Failed to sync chunk of " + chunk.size() + " meals", cause);
+                    failedMeals.addAll(chunk);
+                    lastError = "Failed to sync meals: " + cause.getMessage();
+                }
+            }
 
-            } catch (IOException e) {
-                Log.e(TAG, "Failed to sync meals to sheets", e);
-                mainHandler.post(() -> callback.onError("Failed to sync meals: " + e.getMessage()));
+            // Anything not acknowledged (e.g. after an interrupt) counts as failed
+            for (List<Meal> chunk : chunkFutures.values()) {
+                failedMeals.addAll(chunk);
             }
+
+            Diagnostics.d(TAG, "Multiple meals synced to sheets: {}/{} in {} chunks", completed, meals.size(), chunks.size());
+            int syncedCount = completed;
+            String error = lastError;
+            mainHandler.post(() -> callback.onComplete(syncedCount, failedMeals, error));
         });
     }
 
+    /**
+     * Append the rows of meals. An append is not idempotent, so after a failure that may
+     * have reached the server the ID column is read once and only the meals still missing
+     * from it are sent again; a resent chunk never duplicates rows.
+     */
+    private void appendMealRows(List<Meal> meals) throws IOException {
+        List<Meal> unsent = new ArrayList<>(meals);
+
+        long estimatedBytes = 0;
+        for (Meal meal : meals) {
+            estimatedBytes += estimateRowBytes(meal);
+        }
+
+        executeWithBackoff(SyncMetrics.Operation.APPEND, true,
+                () -> {
+                    List<List<Object>> values = new ArrayList<>(unsent.size());
+                    for (Meal meal : unsent) {
+                        values.add(MealCodec.encodeRow(meal));
+                    }
+                    return sheetsBackend.appendValues(spreadsheetId, SheetSchema.TABLE_RANGE, values);
+                }, estimatedBytes,
+                () -> {
+                    Map<String, Integer> stored = readRowNumbers(SyncMetrics.Operation.APPEND);
+                    unsent.removeIf(meal -> stored.containsKey(meal.getId()));
+                    return !unsent.isEmpty();
+                });
+
+        for (Meal meal : meals) {
+            pendingDigests.add(meal);
+        }
+    }
+
+    // Split meals into chunks bounded both by row count and by estimated request size
+    private List<List<Meal>> splitIntoChunks(List<Meal> meals) {
+        List<List<Meal>> chunks = new ArrayList<>();
+        List<Meal> current = new ArrayList<>();
+        int currentBytes = 0;
+
+        for (Meal meal : meals) {
+            int rowBytes = estimateRowBytes(meal);
+            if (!current.isEmpty() && (current.size() >= MAX_ROWS_PER_CHUNK || currentBytes + rowBytes > MAX_CHUNK_BYTES)) {
+                chunks.add(current);
+                current = new ArrayList<>();
+                currentBytes = 0;
+            }
+            current.add(meal);
+            currentBytes += rowBytes;
+        }
+
+        if (!current.isEmpty()) {
+            chunks.add(current);
+        }
+        return chunks;
+    }
+
+    private int estimateRowBytes(Meal meal) {
+        // JSON array framing and quotes, plus up to 3 UTF-8 bytes per char for the name (Arabic),
+        // plus the hidden ID (36 chars) and two epoch-millis columns (13 digits each)
+        return 56 + meal.getDate().length() + meal.getCategory().length() + 5 + meal.getName().length() * 3 + 36 + 26;
+    }
+
     public void loadMealsFromSheets(LoadCallback callback) {
         // Move the entire operation to background thread
         executor.execute(() -> {
@@ -290,31 +508,7 @@ public class GoogleSheetsManager {
             }
 
             try {
-                ValueRange response = sheetsService.spreadsheets().values()
-                        .get(spreadsheetId, "Sheet1!A2:D")
-                        .execute();
-
-                List<List<Object>> values = response.getValues();
-                List<Meal> meals = new ArrayList<>();
-
-                if (values != null) {
-                    for (List<Object> row : values) {
-                        if (row.size() >= 4) {
-                            String date = row.get(0).toString();
-                            String category = row.get(1).toString();
-                            String name = row.get(2).toString();
-                            String timeStr = row.get(3).toString();
-
-                            // Reconstruct timestamp from date and time
-                            java.util.Date mealTimestamp = reconstructTimestamp(date, timeStr);
-
-                            Meal meal = new Meal(name, category, mealTimestamp, date);
-                            meals.add(meal);
-                        }
-                    }
-                }
-
-                Log.d(TAG, "Loaded " + meals.size() + " meals from sheets");
+                List<Meal> meals = readAllMeals();
                 mainHandler.post(() -> callback.onMealsLoaded(meals));
 
             } catch (IOException e) {
@@ -324,91 +518,284 @@ public class GoogleSheetsManager {
         });
     }
 
-    public void loadMealsForDate(String date, LoadCallback callback) {
-        loadMealsFromSheets(new LoadCallback() {
-            @Override
-            public void onMealsLoaded(List<Meal> allMeals) {
-                List<Meal> mealsForDate = new ArrayList<>();
-                for (Meal meal : allMeals) {
-                    if (meal.getDate().equals(date)) {
-                        mealsForDate.add(meal);
+    /**
+     * Load every meal like {@link #loadMealsFromSheets(LoadCallback)} and, since the whole
+     * sheet is at hand, rewrite the stored digests from what it actually holds. This repairs
+     * digests that drifted, e.g. after rows were edited by hand or the app was killed before
+     * its pending digest changes were written.
+     * @param callback Receives all meals; a failed digest rewrite is only logged
+     */
+    public void loadMealsAndRebuildDigests(LoadCallback callback) {
+        executor.execute(() -> {
+            if (!checkInitialization()) {
+                mainHandler.post(() -> callback.onError("Sheets service not initialized"));
+                return;
+            }
+
+            List<Meal> meals;
+            try {
+                meals = readAllMeals();
+            } catch (IOException e) {
+                Log.e(TAG, "Failed to load meals from sheets", e);
+                mainHandler.post(() -> callback.onError("Failed to load meals: " + e.getMessage()));
+                return;
+            }
+
+            // Every acknowledged write ran on this executor before the read, so the
+            // loaded rows already include whatever the pending digests describe
+            try {
+                ensureDigestSheet();
+                Map<String, Long> actual = MealDigests.of(meals).getMonths();
+                Map<String, Long> stored = readStoredDigests();
+                if (!MealDigests.differingKeys(actual, stored).isEmpty()) {
+                    for (Map.Entry<String, Long> entry : stored.entrySet()) {
+                        entry.setValue(actual.getOrDefault(entry.getKey(), 0L));
                     }
+                    stored.putAll(actual);
+                    writeStoredDigests(stored);
+                    Diagnostics.d(TAG, "Rebuilt digests of {} months", stored.size());
                 }
-                callback.onMealsLoaded(mealsForDate);
+                pendingDigests.clear();
+            } catch (IOException e) {
+                Log.w(TAG, "Failed to rebuild digests: " + e.getMessage());
+            }
+
+            mainHandler.post(() -> callback.onMealsLoaded(meals));
+        });
+    }
+
+    private List<Meal> readAllMeals() throws IOException {
+        List<List<Object>> values = executeWithBackoff(SyncMetrics.Operation.LOAD, false,
+                () -> sheetsBackend.getValues(spreadsheetId, SheetSchema.DATA_RANGE));
+        List<Meal> meals = new ArrayList<>(values.size());
+
+        // Decoding dominates large loads once the download is done, so it is spread over cores
+        for (Meal meal : MealCodec.decodeRows(values)) {
+            if (meal != null) {
+                meals.add(meal);
+            }
+        }
+
+        Diagnostics.d(TAG, "Loaded {} meals from sheets", meals.size());
+        return meals;
+    }
+
+    /**
+     * Load the digest of the whole cloud history: the stored total plus the changes of
+     * writes that have not been written to the Digests sheet yet. This is a single-cell
+     * read, so comparing it with {@link MealDigests#getTotal()} of the local history is a
+     * cheap way to tell whether anything needs syncing at all.
+     * @param callback Receives the total digest
+     */
+    public void loadTotalDigest(DigestCallback callback) {
+        executor.execute(() -> {
+            if (!checkInitialization()) {
+                mainHandler.post(() -> callback.onError("Sheets service not initialized"));
+                return;
             }
 
-            @Override
-            public void onError(String error) {
-                callback.onError(error);
+            try {
+                ensureDigestSheet();
+                List<List<Object>> values = executeWithBackoff(SyncMetrics.Operation.DIGEST, false,
+                        () -> sheetsBackend.getValues(spreadsheetId, SheetSchema.DIGEST_TOTAL_RANGE));
+                long stored = values.isEmpty() || values.get(0).isEmpty()
+                        ? 0L : MealDigests.parse(values.get(0).get(0).toString());
+                long total = stored + pendingDigests.getTotal();
+                mainHandler.post(() -> callback.onDigestLoaded(total));
+
+            } catch (IOException e) {
+                Log.e(TAG, "Failed to load digest", e);
+                mainHandler.post(() -> callback.onError("Failed to load digest: " + e.getMessage()));
             }
         });
     }
 
-    public void deleteMealFromSheets(Meal mealToDelete, SyncCallback callback) {
-        // Move the entire operation to background thread
+    /**
+     * Add the digest changes of acknowledged writes to the Digests sheet
+     * @param callback Notified when the sheet is up to date; on failure the changes stay pending
+     */
+    public void flushDigests(SyncCallback callback) {
         executor.execute(() -> {
+            if (pendingDigests.isEmpty()) {
+                mainHandler.post(() -> callback.onSuccess("Digests up to date"));
+                return;
+            }
             if (!checkInitialization()) {
                 mainHandler.post(() -> callback.onError("Sheets service not initialized"));
                 return;
             }
 
             try {
-                // Get all data to find the row to delete
-                ValueRange response = sheetsService.spreadsheets().values()
-                        .get(spreadsheetId, "Sheet1!A:D")
-                        .execute();
-
-                List<List<Object>> values = response.getValues();
-                int rowToDelete = -1;
-
-                // Create unique identifier for the meal to delete
-                String targetSignature = createSheetMealSignature(
-                        mealToDelete.getDate(),
-                        mealToDelete.getFormattedTime(),
-                        mealToDelete.getName(),
-                        mealToDelete.getCategory()
-                );
-
-                // Find the row (skip header at index 0)
-                for (int i = 1; i < values.size(); i++) {
-                    List<Object> row = values.get(i);
-                    if (row.size() >= 4) {
-                        String date = row.get(0).toString();
-                        String category = row.get(1).toString();
-                        String name = row.get(2).toString();
-                        String time = row.get(3).toString();
-
-                        String rowSignature = createSheetMealSignature(date, time, name, category);
-
-                        if (targetSignature.equals(rowSignature)) {
-                            rowToDelete = i + 1; // +1 because sheets are 1-indexed
-                            Log.d(TAG, "Found meal to delete at row " + rowToDelete + ": " + targetSignature);
-                            break;
-                        }
-                    }
+                ensureDigestSheet();
+                MealDigests delta = pendingDigests.copy();
+                Map<String, Long> stored = readStoredDigests();
+                for (Map.Entry<String, Long> entry : delta.getMonths().entrySet()) {
+                    stored.put(entry.getKey(), stored.getOrDefault(entry.getKey(), 0L) + entry.getValue());
                 }
+                writeStoredDigests(stored);
+                pendingDigests.subtract(delta);
 
-                if (rowToDelete != -1) {
-                    // Delete the row
-                    List<Request> requests = new ArrayList<>();
-                    requests.add(new Request()
-                            .setDeleteDimension(new DeleteDimensionRequest()
-                                    .setRange(new DimensionRange()
-                                            .setSheetId(0)
-                                            .setDimension("ROWS")
-                                            .setStartIndex(rowToDelete - 1)
-                                            .setEndIndex(rowToDelete))));
+                Diagnostics.d(TAG, "Digests flushed for {} days", delta.getDays().size());
+                mainHandler.post(() -> callback.onSuccess("Digests updated"));
+
+            } catch (IOException e) {
+                Log.w(TAG, "Failed to flush digests: " + e.getMessage());
+                mainHandler.post(() -> callback.onError("Failed to update digests: " + e.getMessage()));
+            }
+        });
+    }
+
+    // Spreadsheets created before digests existed get the Digests sheet on first use
+    private void ensureDigestSheet() throws IOException {
+        String key = KEY_DIGEST_SHEET_PREFIX + spreadsheetId;
+        if (prefs.getBoolean(key, false)) {
+            return;
+        }
+
+        try {
+            executeWithBackoff(SyncMetrics.Operation.DIGEST, false,
+                    () -> sheetsBackend.getValues(spreadsheetId, SheetSchema.DIGEST_HEADER_RANGE));
+        } catch (SheetsBackendException e) {
+            // A range on a sheet that does not exist is a bad request
+            if (e.getStatusCode() != SheetsBackendException.STATUS_BAD_REQUEST) {
+                throw e;
+            }
+            Log.d(TAG, "Adding digest sheet to " + spreadsheetId);
+            setupDigestSheet(spreadsheetId);
+        }
+        prefs.edit().putBoolean(key, true).apply();
+    }
+
+    // Stored month digests by "yyyy-MM", including months whose digest is back to zero
+    private Map<String, Long> readStoredDigests() throws IOException {
+        List<List<Object>> rows = executeWithBackoff(SyncMetrics.Operation.DIGEST, false,
+                () -> sheetsBackend.getValues(spreadsheetId, SheetSchema.DIGEST_MONTHS_RANGE));
+
+        Map<String, Long> months = new TreeMap<>();
+        for (List<Object> row : rows) {
+            if (row.size() >= 2) {
+                months.put(row.get(0).toString().trim(), MealDigests.parse(row.get(1).toString()));
+            }
+        }
+        return months;
+    }
+
+    // Rewrite the total and month rows in one request; the month list never shrinks, so no stale rows remain
+    private void writeStoredDigests(Map<String, Long> months) throws IOException {
+        long total = 0;
+        List<List<Object>> rows = new ArrayList<>(months.size() + 1);
+        rows.add(null); // Total, filled in below
+        for (Map.Entry<String, Long> entry : new TreeMap<>(months).entrySet()) {
+            total += entry.getValue();
+            rows.add(Arrays.asList(entry.getKey(), MealDigests.format(entry.getValue())));
+        }
+        rows.set(0, Arrays.asList(SheetSchema.DIGEST_TOTAL_LABEL, MealDigests.format(total)));
+
+        String range = SheetSchema.digestRange(2, rows.size() + 1);
+        executeWithBackoff(SyncMetrics.Operation.DIGEST, true,
+                () -> {
+                    sheetsBackend.updateValues(spreadsheetId, range, rows);
+                    return null;
+                }, SheetsBackend.estimatePayloadBytes(rows));
+    }
+
+    /**
+     * Load the meals of one day without downloading the whole sheet: the Date column is
+     * read first, then only the rows on that day.
+     * @param date Date in yyyy-MM-dd format
+     * @param callback Receives every meal of the day, possibly none
+     */
+    public void loadMealsForDate(String date, LoadCallback callback) {
+        executor.execute(() -> {
+            if (!checkInitialization()) {
+                mainHandler.post(() -> callback.onError("Sheets service not initialized"));
+                return;
+            }
+
+            try {
+                List<Meal> meals = readMealsForDate(date);
+                mainHandler.post(() -> callback.onMealsLoaded(meals));
+
+            } catch (IOException e) {
+                Log.e(TAG, "Failed to load meals for " + date, e);
+                mainHandler.post(() -> callback.onError("Failed to load meals: " + e.getMessage()));
+            }
+        });
+    }
+
+    private List<Meal> readMealsForDate(String date) throws IOException {
+        List<List<Object>> dates = executeWithBackoff(SyncMetrics.Operation.LOAD, false,
+                () -> sheetsBackend.getValues(spreadsheetId, SheetSchema.DATE_COLUMN_RANGE));
 
-                    BatchUpdateSpreadsheetRequest batchRequest = new BatchUpdateSpreadsheetRequest()
-                            .setRequests(requests);
+        // 1-based first and last rows of each run of rows on the day; skip the header at index 0
+        List<int[]> runs = new ArrayList<>();
+        for (int i = 1; i < dates.size(); i++) {
+            List<Object> cell = dates.get(i);
+            if (cell.isEmpty() || !date.equals(cell.get(0).toString())) {
+                continue;
+            }
+            int[] last = runs.isEmpty() ? null : runs.get(runs.size() - 1);
+            if (last != null && last[1] == i) {
+                last[1] = i + 1;
+            } else {
+                runs.add(new int[]{i + 1, i + 1});
+            }
+        }
+        // Rows are appended as meals are logged, so a day is normally a single run; a sheet
+        // sorted or back-filled by hand is read in one span rather than many small requests
+        if (runs.size() > MAX_DAY_RUNS) {
+            int[] span = {runs.get(0)[0], runs.get(runs.size() - 1)[1]};
+            runs.clear();
+            runs.add(span);
+        }
+
+        List<Meal> meals = new ArrayList<>();
+        for (int[] run : runs) {
+            String range = SheetSchema.range(0, SheetSchema.COLUMN_COUNT - 1, run[0], run[1]);
+            List<List<Object>> rows = executeWithBackoff(SyncMetrics.Operation.LOAD, false,
+                    () -> sheetsBackend.getValues(spreadsheetId, range));
+            for (List<Object> row : rows) {
+                Meal meal = MealCodec.decodeRow(row);
+                // Rows can shift between the two reads if another device deletes one
+                if (meal != null && meal.getDate().equals(date)) {
+                    meals.add(meal);
+                }
+            }
+        }
+
+        Diagnostics.d(TAG, "Loaded {} meals for {} in {} ranges", meals.size(), date, runs.size());
+        return meals;
+    }
+
+    public void deleteMealFromSheets(Meal mealToDelete, SyncCallback callback) {
+        // Move the entire operation to background thread
+        executor.execute(() -> {
+            if (!checkInitialization()) {
+                mainHandler.post(() -> callback.onError("Sheets service not initialized"));
+                return;
+            }
 
-                    sheetsService.spreadsheets().batchUpdate(spreadsheetId, batchRequest).execute();
+            try {
+                int rowToDelete = findRowById(mealToDelete.getId(), SyncMetrics.Operation.DELETE);
 
-                    Log.d(TAG, "Meal deleted from sheets: " + mealToDelete.getName() + " at " + mealToDelete.getFormattedTime());
+                if (rowToDelete != -1) {
+                    // Delete the row
+                    int rowIndex = rowToDelete - 1;
+                    // Resending could delete the row that moved up into its place; a failed
+                    // delete is retried later by ID instead
+                    executeWithBackoff(SyncMetrics.Operation.DELETE, true,
+                            () -> {
+                                sheetsBackend.deleteRows(spreadsheetId, SheetSchema.SHEET_ID, rowIndex, rowIndex + 1);
+                                return null;
+                            }, 0, null);
+                    pendingDigests.remove(mealToDelete);
+
+                    Diagnostics.d(TAG, "Meal deleted from sheets: {} at {}", mealToDelete.getName(), mealToDelete.getFormattedTime());
                     mainHandler.post(() -> callback.onSuccess("Meal deleted successfully"));
                 } else {
-                    Log.w(TAG, "Meal not found in spreadsheet: " + targetSignature);
-                    mainHandler.post(() -> callback.onError("Meal not found in spreadsheet"));
+                    // Already gone, e.g. deleted from another device; nothing left to do
+                    Diagnostics.w(TAG, "Meal not found in spreadsheet: {}", mealToDelete.getId());
+                    mainHandler.post(() -> callback.onSuccess("Meal was not in the spreadsheet"));
                 }
 
             } catch (IOException e) {
@@ -418,21 +805,198 @@ public class GoogleSheetsManager {
         });
     }
 
-    //Helper method to create sheet-based meal signature
-    private String createSheetMealSignature(String date, String time, String name, String category) {
-        return date + "|" + time + "|" + name + "|" + category;
+    /**
+     * Rewrite the row of an edited meal in place: one read of the ID column to find the row,
+     * then one update of exactly that row's range. A meal not in the sheet yet is appended.
+     * @param before The meal as it was stored before the edit, to keep the digests exact
+     * @param meal The meal after the edit
+     * @param callback Notified on the main thread
+     */
+    public void updateMealInSheets(Meal before, Meal meal, SyncCallback callback) {
+        executor.execute(() -> {
+            if (!checkInitialization()) {
+                mainHandler.post(() -> callback.onError("Sheets service not initialized"));
+                return;
+            }
+
+            try {
+                List<List<Object>> values = Collections.singletonList(MealCodec.encodeRow(meal));
+                int row = findRowById(meal.getId(), SyncMetrics.Operation.UPDATE);
+
+                if (row != -1) {
+                    executeWithBackoff(SyncMetrics.Operation.UPDATE, true,
+                            () -> {
+                                sheetsBackend.updateValues(spreadsheetId, SheetSchema.rowRange(row), values);
+                                return null;
+                            }, SheetsBackend.estimatePayloadBytes(values));
+                    pendingDigests.remove(before);
+                    pendingDigests.add(meal);
+                } else {
+                    appendMealRows(Collections.singletonList(meal));
+                }
+
+                Diagnostics.d(TAG, "Meal updated in sheets: {} at row {}", meal.getId(), row);
+                mainHandler.post(() -> callback.onSuccess("Meal updated successfully"));
+
+            } catch (IOException e) {
+                Log.e(TAG, "Failed to update meal in sheets", e);
+                mainHandler.post(() -> callback.onError("Failed to update meal: " + e.getMessage()));
+            }
+        });
+    }
+
+    /**
+     * Rewrite and delete the rows of many meals with a single read of the ID column. Rows
+     * are rewritten first, then deleted bottom-up with adjacent rows merged into one
+     * request, so no row number read up front is shifted by an earlier delete. An updated
+     * meal that isn't in the sheet is appended; a deleted one that isn't there counts as done.
+     * Pending digests follow only the rows actually rewritten or removed.
+     * @param updates Meals whose rows are rewritten with their current values
+     * @param deletes Meals whose rows are removed
+     * @param stored Meal ID -> the meal as its row holds it, where known
+     * @param callback Receives the meals whose change could not be applied
+     */
+    public void applyRowChanges(List<Meal> updates, List<Meal> deletes, Map<String, Meal> stored,
+                                BulkSyncCallback callback) {
+        executor.execute(() -> {
+            int total = updates.size() + deletes.size();
+            if (!checkInitialization()) {
+                List<Meal> all = new ArrayList<>(updates);
+                all.addAll(deletes);
+                mainHandler.post(() -> callback.onComplete(0, all, "Sheets service not initialized"));
+                return;
+            }
+
+            List<Meal> remaining = new ArrayList<>(updates);
+            remaining.addAll(deletes);
+            String error = null;
+            try {
+                Map<String, Integer> rowsById = readRowNumbers(SyncMetrics.Operation.DELETE);
+
+                List<Meal> missing = new ArrayList<>();
+                for (Meal meal : updates) {
+                    Integer row = rowsById.get(meal.getId());
+                    if (row == null) {
+                        missing.add(meal);
+                        continue;
+                    }
+                    List<List<Object>> values = Collections.singletonList(MealCodec.encodeRow(meal));
+                    executeWithBackoff(SyncMetrics.Operation.UPDATE, true,
+                            () -> {
+                                sheetsBackend.updateValues(spreadsheetId, SheetSchema.rowRange(row), values);
+                                return null;
+                            }, SheetsBackend.estimatePayloadBytes(values));
+                    Meal previous = stored.get(meal.getId());
+                    if (previous != null) {
+                        pendingDigests.remove(previous);
+                        pendingDigests.add(meal);
+                    }
+                    remaining.remove(meal);
+                }
+                if (!missing.isEmpty()) {
+                    appendMealRows(missing);
+                    remaining.removeAll(missing);
+                }
+
+                // Row number -> meal; a meal already gone from the sheet is done
+                Map<Integer, Meal> mealsByRow = new HashMap<>();
+                for (Meal meal : deletes) {
+                    Integer row = rowsById.get(meal.getId());
+                    if (row != null) {
+                        mealsByRow.put(row, meal);
+                    } else {
+                        remaining.remove(meal);
+                    }
+                }
+                List<Integer> rows = new ArrayList<>(mealsByRow.keySet());
+                Collections.sort(rows, Collections.reverseOrder());
+                for (int i = 0; i < rows.size(); ) {
+                    // Extend the run while the next row up is adjacent
+                    int end = rows.get(i);
+                    int start = end;
+                    i++;
+                    while (i < rows.size() && rows.get(i) == start - 1) {
+                        start = rows.get(i);
+                        i++;
+                    }
+                    int startIndex = start - 1;
+                    int endIndex = end;
+                    executeWithBackoff(SyncMetrics.Operation.DELETE, true,
+                            () -> {
+                                sheetsBackend.deleteRows(spreadsheetId, SheetSchema.SHEET_ID, startIndex, endIndex);
+                                return null;
+                            }, 0, null);
+                    for (int row = start; row <= end; row++) {
+                        Meal meal = mealsByRow.get(row);
+                        Meal previous = stored.get(meal.getId());
+                        pendingDigests.remove(previous != null ? previous : meal);
+                        remaining.remove(meal);
+                    }
+                }
+
+            } catch (IOException e) {
+                Log.e(TAG, "Failed to apply row changes", e);
+                error = "Failed to apply changes: " + e.getMessage();
+            }
+
+            Diagnostics.d(TAG, "Applied {}/{} row changes", total - remaining.size(), total);
+            int appliedCount = total - remaining.size();
+            String finalError = error;
+            mainHandler.post(() -> callback.onComplete(appliedCount, remaining, finalError));
+        });
+    }
+
+    // 1-based row number of every meal ID in the sheet, from one read of the ID column
+    private Map<String, Integer> readRowNumbers(SyncMetrics.Operation operation) throws IOException {
+        List<List<Object>> ids = executeWithBackoff(operation, false,
+                () -> sheetsBackend.getValues(spreadsheetId, SheetSchema.ID_COLUMN_RANGE));
+
+        Map<String, Integer> rows = new HashMap<>(ids.size() * 2);
+        // Skip header at index 0; keep the first row if an ID was appended twice
+        for (int i = ids.size() - 1; i >= 1; i--) {
+            List<Object> cell = ids.get(i);
+            if (!cell.isEmpty()) {
+                rows.put(cell.get(0).toString(), i + 1);
+            }
+        }
+        return rows;
     }
 
-    // Helper method to reconstruct timestamp from date and time strings
-    private java.util.Date reconstructTimestamp(String dateStr, String timeStr) {
-        try {
-            // Assuming date format is "yyyy-MM-dd" and time format is "HH:mm"
-            SimpleDateFormat dateTimeFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm", Locale.getDefault());
-            return dateTimeFormat.parse(dateStr + " " + timeStr);
-        } catch (ParseException e) {
-            Log.w(TAG, "Failed to parse date/time: " + dateStr + " " + timeStr + ", using current time");
-            return new java.util.Date(); // Fallback to current time
+    /**
+     * Find the sheet row holding a meal. Normally only the hidden ID column is downloaded;
+     * if the ID is not there, rows written without an ID (by an older app version or by
+     * hand) are matched on the ID derived from their content.
+     * @param mealId ID of the meal
+     * @param operation Operation the lookup is accounted to
+     * @return 1-based row number, or -1 if the meal is not in the sheet
+     */
+    private int findRowById(String mealId, SyncMetrics.Operation operation) throws IOException {
+        List<List<Object>> ids = executeWithBackoff(operation, false,
+                () -> sheetsBackend.getValues(spreadsheetId, SheetSchema.ID_COLUMN_RANGE));
+
+        // Skip header at index 0
+        for (int i = 1; i < ids.size(); i++) {
+            List<Object> cell = ids.get(i);
+            if (!cell.isEmpty() && mealId.equals(cell.get(0).toString())) {
+                Diagnostics.d(TAG, "Found meal {} at row {}", mealId, i + 1);
+                return i + 1; // +1 because sheets are 1-indexed
+            }
         }
+
+        List<List<Object>> rows = executeWithBackoff(operation, false,
+                () -> sheetsBackend.getValues(spreadsheetId, SheetSchema.TABLE_RANGE));
+        for (int i = 1; i < rows.size(); i++) {
+            List<Object> row = rows.get(i);
+            if (row.size() > SheetSchema.COL_ID && !row.get(SheetSchema.COL_ID).toString().trim().isEmpty()) {
+                continue;
+            }
+            Meal meal = MealCodec.decodeRow(row);
+            if (meal != null && mealId.equals(meal.getId())) {
+                Diagnostics.d(TAG, "Found meal {} without stored ID at row {}", mealId, i + 1);
+                return i + 1;
+            }
+        }
+        return -1;
     }
 
     public void clearAllData(SyncCallback callback) {
@@ -444,12 +1008,23 @@ public class GoogleSheetsManager {
             }
 
             try {
-                ClearValuesRequest clearRequest = new ClearValuesRequest();
-                sheetsService.spreadsheets().values()
-                        .clear(spreadsheetId, "Sheet1!A2:D", clearRequest)
-                        .execute();
-
-                Log.d(TAG, "All meal data cleared from sheets");
+                executeWithBackoff(SyncMetrics.Operation.CLEAR, true,
+                        () -> {
+                            sheetsBackend.clearValues(spreadsheetId, SheetSchema.DATA_RANGE);
+                            return null;
+                        });
+
+                // An empty history has an empty digest
+                ensureDigestSheet();
+                executeWithBackoff(SyncMetrics.Operation.CLEAR, true,
+                        () -> {
+                            sheetsBackend.clearValues(spreadsheetId, SheetSchema.DIGEST_MONTHS_RANGE);
+                            return null;
+                        });
+                writeStoredDigests(new TreeMap<>());
+                pendingDigests.clear();
+
+                Diagnostics.d(TAG, "All meal data cleared from sheets");
                 mainHandler.post(() -> callback.onSuccess("All data cleared successfully"));
 
             } catch (IOException e) {
@@ -462,30 +1037,201 @@ public class GoogleSheetsManager {
     // Updated helper method - remove callback parameter and make synchronous
     private boolean checkInitialization() {
         if (!isInitialized) {
-            Log.w(TAG, "Sheets service not initialized");
+            Diagnostics.w(TAG, "Sheets service not initialized");
             return false;
         }
 
         if (spreadsheetId == null) {
-            Log.w(TAG, "Spreadsheet ID is null");
+            Diagnostics.w(TAG, "Spreadsheet ID is null");
             return false;
         }
 
+        if (spreadsheetConfirmed) {
+            return true;
+        }
+
         try {
-            sheetsService.spreadsheets().get(spreadsheetId).execute();
+            validateSpreadsheet();
+            spreadsheetConfirmed = true;
             return true;
         } catch (IOException e) {
+            if (!isSpreadsheetMissing(e)) {
+                // Transport failure that outlived the backoff; the spreadsheet itself is fine
+                Log.w(TAG, "Spreadsheet check failed: " + e.getMessage());
+                return false;
+            }
             Log.w(TAG, "Spreadsheet ID is invalid or deleted, recreating...");
+            spreadsheetValidated = false;
+            spreadsheetConfirmed = false;
             prefs.edit().remove(KEY_SPREADSHEET_ID).apply();
             spreadsheetId = null;
-            GoogleSignInAccount account = GoogleSignIn.getLastSignedInAccount(context);
-            if (account != null) {
-                initializeUserSpreadsheet(account);
-            }
+            initializeUserSpreadsheet();
             return false;
         }
     }
 
+    // A single backend request, re-invoked on every retry
+    private interface BackendCall<T> {
+        T execute() throws IOException;
+    }
+
+    // Decides whether a request that failed after possibly reaching the server may be sent again
+    private interface RetryGuard {
+        /**
+         * @return true to send the request again, false if the failed attempt turned out to
+         *         have been applied
+         */
+        boolean beforeRetry() throws IOException;
+    }
+
+    // Reads, updates and clears leave the sheet the same however often they are applied
+    private static final RetryGuard IDEMPOTENT = () -> true;
+
+    private void validateSpreadsheet() throws IOException {
+        executeWithBackoff(SyncMetrics.Operation.VALIDATE, false,
+                () -> {
+                    sheetsBackend.getSpreadsheet(spreadsheetId);
+                    return null;
+                });
+    }
+
+    /**
+     * Execute an idempotent backend request through the quota limiter, retrying transient
+     * transport failures with jittered exponential backoff. A 429 honours Retry-After and
+     * pauses the matching read/write budget; other non-transient failures (auth, 4xx) are
+     * thrown immediately. Must be called from a background thread.
+     * @param write true if the request counts against the write quota
+     */
+    private <T> T executeWithBackoff(SyncMetrics.Operation operation, boolean write, BackendCall<T> call) throws IOException {
+        return executeWithBackoff(operation, write, call, 0, IDEMPOTENT);
+    }
+
+    private <T> T executeWithBackoff(SyncMetrics.Operation operation, boolean write, BackendCall<T> call,
+                                     long estimatedBytesSent) throws IOException {
+        return executeWithBackoff(operation, write, call, estimatedBytesSent, IDEMPOTENT);
+    }
+
+    /**
+     * Like {@link #executeWithBackoff(SyncMetrics.Operation, boolean, BackendCall, long)} for
+     * requests that must not be applied twice. Rejected requests (429s, failures to connect)
+     * are retried as usual; a failure after the request may have reached the server is only
+     * retried if the guard says so, and thrown if there is no guard.
+     * @param guard Checks the sheet before a retry, or null if the request is never resent
+     * @return The call's result, or null if the guard found the failed attempt applied
+     */
+    private <T> T executeWithBackoff(SyncMetrics.Operation operation, boolean write, BackendCall<T> call,
+                                     long estimatedBytesSent, RetryGuard guard) throws IOException {
+        int attempt = 0;
+        int rateLimitedAttempt = 0;
+        while (true) {
+            try {
+                rateLimiter.acquire(write);
+            } catch (InterruptedException interrupted) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for Sheets quota", interrupted);
+            }
+
+            long startNanos = System.nanoTime();
+            try {
+                T result = call.execute();
+                metrics.recordRequest(operation, (System.nanoTime() - startNanos) / 1_000_000,
+                        estimatedBytesSent, estimateBytesReceived(result));
+                return result;
+            } catch (IOException e) {
+                if (isRateLimited(e)) {
+                    // Quota exhaustion is shaped, not failed: wait as long as the server asks
+                    rateLimitedAttempt++;
+                    if (rateLimitedAttempt >= MAX_RATE_LIMITED_ATTEMPTS) {
+                        recordFailure(operation);
+                        throw e;
+                    }
+                    metrics.recordRetry(operation);
+                    long delay = getRetryAfterMillis((SheetsBackendException) e, rateLimitedAttempt);
+                    Diagnostics.w(TAG, "Sheets quota exceeded, pausing {} for {}ms", write ? "writes" : "reads", delay);
+                    rateLimiter.onRateLimited(write, delay);
+                    continue;
+                }
+
+                attempt++;
+                boolean maybeApplied = !isRejectedBeforeSending(e);
+                if (!isTransientFailure(e) || attempt >= MAX_TRANSPORT_ATTEMPTS || (maybeApplied && guard == null)) {
+                    recordFailure(operation);
+                    throw e;
+                }
+                metrics.recordRetry(operation);
+
+                // Equal jitter: sleep between half and all of the exponential ceiling
+                long ceiling = Math.min(BACKOFF_MAX_MS, BACKOFF_BASE_MS << (attempt - 1));
+                long delay = ThreadLocalRandom.current().nextLong(ceiling / 2, ceiling + 1);
+                Diagnostics.w(TAG, "Transient Sheets failure, retrying in {}ms (attempt {}): {}", delay, attempt, e.getMessage());
+
+                try {
+                    Thread.sleep(delay);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    recordFailure(operation);
+                    throw e;
+                }
+
+                if (maybeApplied && !guard.beforeRetry()) {
+                    Diagnostics.d(TAG, "Failed {} request was applied, not resending", operation.getLabel());
+                    return null;
+                }
+            }
+        }
+    }
+
+    // After a failed request the spreadsheet may be gone; the next operation checks it again
+    private void recordFailure(SyncMetrics.Operation operation) {
+        spreadsheetConfirmed = false;
+        metrics.recordFailure(operation);
+    }
+
+    // Only value reads carry a meaningful body; everything else is a small status response
+    private long estimateBytesReceived(Object result) {
+        if (result instanceof List) {
+            @SuppressWarnings("unchecked")
+            List<List<Object>> rows = (List<List<Object>>) result;
+            return SheetsBackend.estimatePayloadBytes(rows);
+        }
+        return 0;
+    }
+
+    private boolean isRateLimited(IOException e) {
+        return e instanceof SheetsBackendException && ((SheetsBackendException) e).isRateLimited();
+    }
+
+    private long getRetryAfterMillis(SheetsBackendException e, int attempt) {
+        if (e.getRetryAfterSeconds() >= 0) {
+            return e.getRetryAfterSeconds() * 1000;
+        }
+        // No hint: the per-user quota window is one minute, so back off towards that
+        return Math.min(RATE_LIMIT_MAX_WAIT_MS, BACKOFF_BASE_MS << (attempt + 2));
+    }
+
+    private boolean isTransientFailure(IOException e) {
+        if (e instanceof SheetsBackendException) {
+            return ((SheetsBackendException) e).isServerError();
+        }
+        // Socket timeouts, resets, DNS failures and the like
+        return true;
+    }
+
+    // The connection was never established, so the server cannot have seen the request
+    private boolean isRejectedBeforeSending(IOException e) {
+        return e instanceof UnknownHostException || e instanceof ConnectException
+                || e instanceof NoRouteToHostException;
+    }
+
+    private boolean isSpreadsheetMissing(IOException e) {
+        return e instanceof SheetsBackendException
+                && ((SheetsBackendException) e).getStatusCode() == SheetsBackendException.STATUS_NOT_FOUND;
+    }
+
+    public SheetsRateLimiter getRateLimiter() {
+        return rateLimiter;
+    }
+
     public String getSpreadsheetUrl() {
         if (spreadsheetId != null) {
             return "https://docs.google.com/spreadsheets/d/" + spreadsheetId;
@@ -493,30 +1239,103 @@ public class GoogleSheetsManager {
         return null;
     }
 
-    private void validateOrCreateSpreadsheet(GoogleSignInAccount account) {
+    private void validateOrCreateSpreadsheet() {
         // This is already called from executor thread in initializeService()
         try {
             if (spreadsheetId != null) {
                 // Try to fetch spreadsheet metadata
-                sheetsService.spreadsheets().get(spreadsheetId).execute();
+                validateSpreadsheet();
                 Log.d(TAG, "Spreadsheet exists and is valid: " + spreadsheetId);
+                ensureCurrentSchema();
+                dispatchInitializationResult(true, "Spreadsheet validated");
             } else {
                 throw new IOException("Spreadsheet ID is null");
             }
         } catch (IOException e) {
+            if (spreadsheetId != null && !isSpreadsheetMissing(e)) {
+                Log.w(TAG, "Could not validate spreadsheet: " + e.getMessage());
+                dispatchInitializationResult(false, "Could not reach Google Sheets: " + e.getMessage());
+                return;
+            }
             Log.w(TAG, "Spreadsheet not found or deleted, creating a new one...");
             // Reset stored ID
             prefs.edit().remove(KEY_SPREADSHEET_ID).apply();
             spreadsheetId = null;
             // Create a new sheet
-            initializeUserSpreadsheet(account);
+            initializeUserSpreadsheet();
+        }
+    }
+
+    // Upgrade the spreadsheet to the current schema once; later starts only check a preference
+    private void ensureCurrentSchema() throws IOException {
+        String versionKey = KEY_SCHEMA_VERSION_PREFIX + spreadsheetId;
+        if (prefs.getInt(versionKey, SheetSchema.VERSION_LEGACY) >= SheetSchema.VERSION_CURRENT) {
+            return;
+        }
+
+        List<List<Object>> header = executeWithBackoff(SyncMetrics.Operation.VALIDATE, false,
+                () -> sheetsBackend.getValues(spreadsheetId, SheetSchema.HEADER_RANGE));
+        if (SheetSchema.detectVersion(header.isEmpty() ? null : header.get(0)) < SheetSchema.VERSION_CURRENT) {
+            migrateLegacyRows();
+        }
+        prefs.edit().putInt(versionKey, SheetSchema.VERSION_CURRENT).apply();
+    }
+
+    /**
+     * Back-fill ID, Timestamp and Updated At for every existing row, then write the new
+     * header and hide the extra columns. The header goes last, so an interrupted migration
+     * simply runs again; rows that already carry an ID keep it.
+     */
+    private void migrateLegacyRows() throws IOException {
+        Log.d(TAG, "Migrating spreadsheet to schema version " + SheetSchema.VERSION_CURRENT);
+        List<List<Object>> rows = executeWithBackoff(SyncMetrics.Operation.VALIDATE, false,
+                () -> sheetsBackend.getValues(spreadsheetId, SheetSchema.DATA_RANGE));
+
+        long now = System.currentTimeMillis();
+        Set<String> usedIds = new HashSet<>(rows.size() * 2);
+        List<List<Object>> hiddenColumns = new ArrayList<>(rows.size());
+        Meal[] decoded = MealCodec.decodeRows(rows);
+        for (int r = 0; r < rows.size(); r++) {
+            List<Object> row = rows.get(r);
+            Meal meal = decoded[r];
+            if (meal == null) {
+                // Blank or invalid row: leave whatever it holds, but keep the chunk aligned
+                List<Object> existing = new ArrayList<>();
+                for (int c = SheetSchema.COL_ID; c < SheetSchema.COLUMN_COUNT; c++) {
+                    existing.add(row.size() > c ? row.get(c) : "");
+                }
+                hiddenColumns.add(existing);
+                continue;
+            }
+            // The content-derived ID keeps meals already loaded this session addressable;
+            // identical rows (same meal twice in one minute) get distinct random IDs
+            String id = meal.getId();
+            if (!usedIds.add(id)) {
+                id = UUID.randomUUID().toString();
+                usedIds.add(id);
+            }
+            hiddenColumns.add(Arrays.asList(id, String.valueOf(meal.getTimestampMillis()),
+                    String.valueOf(row.size() > SheetSchema.COL_UPDATED_AT ? meal.getUpdatedAt() : now)));
         }
+
+        for (int from = 0; from < hiddenColumns.size(); from += MIGRATION_CHUNK_ROWS) {
+            List<List<Object>> chunk = hiddenColumns.subList(from, Math.min(from + MIGRATION_CHUNK_ROWS, hiddenColumns.size()));
+            String range = SheetSchema.range(SheetSchema.COL_ID, SheetSchema.COL_UPDATED_AT, from + 2, from + 1 + chunk.size());
+            executeWithBackoff(SyncMetrics.Operation.VALIDATE, true,
+                    () -> {
+                        sheetsBackend.updateValues(spreadsheetId, range, chunk);
+                        return null;
+                    }, SheetsBackend.estimatePayloadBytes(chunk));
+        }
+
+        setupSpreadsheetHeaders(spreadsheetId);
+        Log.d(TAG, "Migrated " + hiddenColumns.size() + " rows");
     }
 
+    // Ready only after validation and any schema migration have finished, not merely once
+    // a spreadsheet ID is known from preferences
     public boolean isReady() {
-        boolean ready = isInitialized && spreadsheetId != null;
-        Log.d(TAG, "isReady() check: initialized=" + isInitialized + ", spreadsheetId=" + (spreadsheetId != null ? "exists" : "null") + ", result=" + ready);
-        return ready;
+        return isInitialized && spreadsheetValidated && spreadsheetId != null;
     }
 
     public String getDetailedStatus() {
@@ -525,17 +1344,40 @@ public class GoogleSheetsManager {
         status.append("Service Initialized: ").append(isInitialized ? "✓ YES" : "✗ NO").append("\n");
         status.append("Is Initializing: ").append(isInitializing ? "YES" : "NO").append("\n");
         status.append("Spreadsheet ID: ").append(spreadsheetId != null ? "✓ EXISTS" : "✗ NULL").append("\n");
+        status.append("Spreadsheet Validated: ").append(spreadsheetValidated ? "✓ YES" : "✗ NO").append("\n");
         status.append("Service Ready: ").append(isReady() ? "✓ READY" : "✗ NOT READY").append("\n");
 
+        if (injectedBackend) {
+            status.append("Backend: ").append(sheetsBackend.getClass().getSimpleName()).append("\n");
+            status.append("====================================");
+            return status.toString();
+        }
         GoogleSignInAccount account = GoogleSignIn.getLastSignedInAccount(context);
         status.append("Google Sign-In Account: ").append(account != null ? "✓ SIGNED IN (" + account.getEmail() + ")" : "✗ NOT SIGNED IN").append("\n");
         status.append("====================================");
         return status.toString();
     }
 
+    /**
+     * Forget the spreadsheet of an account that signed out, with its schema and digest
+     * markers, so the next account finds or creates its own. Call after {@link #shutdown()}.
+     */
+    public void clearAccountState() {
+        accountCleared = true;
+        isInitialized = false;
+        spreadsheetValidated = false;
+        spreadsheetConfirmed = false;
+        spreadsheetId = null;
+        pendingDigests.clear();
+        prefs.edit().clear().apply();
+    }
+
     public void forceReinitialize() {
         isInitialized = false;
+        spreadsheetValidated = false;
+        spreadsheetConfirmed = false;
         isInitializing = false;
+        initializationFailed = false;
         spreadsheetId = null;
         prefs.edit().remove(KEY_SPREADSHEET_ID).apply();
         initializeService();
@@ -545,5 +1387,8 @@ public class GoogleSheetsManager {
         if (executor != null) {
             executor.shutdown();
         }
+        if (uploadExecutor != null) {
+            uploadExecutor.shutdown();
+        }
     }
 }
\ No newline at end of file
@@ -19,7 +19,6 @@ import com.google.android.gms.common.api.ApiException;
 import com.google.android.gms.common.api.Scope;
 import com.google.android.gms.tasks.OnCompleteListener;
 import com.google.android.gms.tasks.Task;
-import com.google.api.services.sheets.v4.SheetsScopes;
 import com.google.firebase.auth.AuthCredential;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseUser;
@@ -50,7 +49,7 @@ public class LoginActivity extends AppCompatActivity {
                 .requestIdToken(getString(R.string.default_web_client_id))
                 .requestEmail()
                 .requestScopes(
-                        new Scope(SheetsScopes.SPREADSHEETS),
+                        new Scope(SheetsRestClient.SCOPE_SPREADSHEETS),
                         new Scope("https://www.googleapis.com/auth/drive.file")
                 )
                 .build();
@@ -178,6 +177,9 @@ public class LoginActivity extends AppCompatActivity {
     }
 
     private void navigateToMainActivity() {
+        // Start bringing up the shared sync engine while MainActivity launches
+        MealSyncManager.getInstance(this).start();
+
         Intent intent = new Intent(LoginActivity.this, MainActivity.class);
         intent.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TASK);
         startActivity(intent);
@@ -1,30 +1,47 @@
 package com.eslamgamal.fooddiary;
 
 import android.app.DatePickerDialog;
+import android.app.TimePickerDialog;
 import android.app.ProgressDialog;
 import android.content.Intent;
+import android.net.Uri;
 import android.os.Bundle;
 import android.os.Handler;
 import android.os.Looper;
+import android.os.ParcelFileDescriptor;
+import android.text.Editable;
+import android.text.SpannableStringBuilder;
+import android.text.Spanned;
 import android.text.InputFilter;
 import android.text.InputType;
+import android.text.TextWatcher;
+import android.text.style.ForegroundColorSpan;
 import android.util.Log;
+import android.view.GestureDetector;
+import android.view.Gravity;
 import android.view.LayoutInflater;
+import android.view.MotionEvent;
 import android.view.View;
 import android.view.WindowManager;
+import android.widget.LinearLayout;
 import android.widget.Button;
 import android.widget.EditText;
+import android.widget.HorizontalScrollView;
 import android.widget.ImageButton;
+import android.widget.ScrollView;
 import android.widget.TextView;
 import android.widget.Toast;
 
 import androidx.activity.OnBackPressedCallback;
+import androidx.activity.result.ActivityResultLauncher;
+import androidx.activity.result.contract.ActivityResultContracts;
 import androidx.annotation.NonNull;
 import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.appcompat.widget.Toolbar;
 import androidx.core.view.GravityCompat;
 import androidx.drawerlayout.widget.DrawerLayout;
+import androidx.lifecycle.ViewModelProvider;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
@@ -33,17 +50,42 @@ import com.google.android.gms.auth.api.signin.GoogleSignInClient;
 import com.google.android.gms.auth.api.signin.GoogleSignInOptions;
 import com.google.android.gms.common.api.Scope;
 import com.google.android.material.navigation.NavigationView;
-import com.google.api.services.sheets.v4.SheetsScopes;
 import com.google.firebase.auth.FirebaseAuth;
 
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
-
-public class MainActivity extends AppCompatActivity implements MealAdapter.OnMealDeleteListener {
+import java.util.Map;
+import java.util.Set;
+
+public class MainActivity extends AppCompatActivity implements MealAdapter.OnMealDeleteListener,
+        MealAdapter.OnMealEditListener {
+
+    private static final long INITIALIZATION_TIMEOUT_MS = 10000;
+    private static final String STATE_SELECTED_DATE = "selected_date_millis";
+    private static final int SEARCH_RESULT_LIMIT = 200;
+    private static final int SUGGESTION_LIMIT = 5;
+
+    // Day swipes: a horizontal fling at least this long and fast moves one day
+    private static final int SWIPE_MIN_DISTANCE_DP = 80;
+    private static final int SWIPE_MIN_VELOCITY_DP = 400;
+    private static final int DRAWER_EDGE_DP = 24; // Flings starting here open the drawer instead
+    // Every this many dp/s of fling velocity prefetch one more day ahead, up to the maximum
+    private static final int PREFETCH_VELOCITY_STEP_DP = 1500;
+    private static final int MAX_PREFETCH_DAYS = 7;
+    private static final long DAY_SLIDE_MS = 150;
+    // Per-day counts saved for the calendar, mapped back before the history has loaded
+    private static final String CALENDAR_COUNTS_FILE = "calendar_counts.bin";
 
     private DrawerLayout drawerLayout;
     private NavigationView navigationView;
@@ -56,9 +98,16 @@ public class MainActivity extends AppCompatActivity implements MealAdapter.OnMea
     private ImageButton changeDateButton;
     private Button addBreakfastButton, addLunchButton, addDinnerButton, addSnacksButton;
     private RecyclerView breakfastRecycler, lunchRecycler, dinnerRecycler, snacksRecycler;
+    private View dayContent;
+    private GestureDetector dayGestureDetector;
 
-    // Data
+    // Data (retained across configuration changes by the ViewModel)
+    private DiaryViewModel diaryViewModel;
     private List<Meal> allMeals;
+    private MealDayIndex dayIndex;
+    private MealSearchIndex searchIndex;
+    private MealAggregates aggregates;
+    private MealSuggestions mealSuggestions;
     private MealAdapter breakfastAdapter, lunchAdapter, dinnerAdapter, snacksAdapter;
     private Calendar selectedDate;
 
@@ -71,9 +120,15 @@ public class MainActivity extends AppCompatActivity implements MealAdapter.OnMea
     // Initialization state
     private boolean isInitializationComplete = false;
     private boolean initializationSuccess = false;
+    private final Runnable initializationTimeout = () -> onInitializationFinished(false);
+
+    private final ActivityResultLauncher<String[]> importLauncher =
+            registerForActivityResult(new ActivityResultContracts.OpenDocument(), this::importDiary);
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
+        StartupTracer.begin(StartupTracer.PHASE_MAIN_ON_CREATE);
+        StartupTracer.begin(StartupTracer.PHASE_FIRST_DIARY_FRAME);
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_main);
 
@@ -85,7 +140,7 @@ public class MainActivity extends AppCompatActivity implements MealAdapter.OnMea
                 .requestIdToken(getString(R.string.default_web_client_id))
                 .requestEmail()
                 .requestScopes(
-                        new Scope(SheetsScopes.SPREADSHEETS),
+                        new Scope(SheetsRestClient.SCOPE_SPREADSHEETS),
                         new Scope("https://www.googleapis.com/auth/drive.file")
                 )
                 .build();
@@ -106,12 +161,22 @@ public class MainActivity extends AppCompatActivity implements MealAdapter.OnMea
         menuButton = findViewById(R.id.menu_button);
 
         // Initialize sync components
-        syncManager = new MealSyncManager(this);
+        syncManager = MealSyncManager.getInstance(this);
         mainHandler = new Handler(Looper.getMainLooper());
 
-        // Initialize data
-        allMeals = new ArrayList<>();
-        selectedDate = Calendar.getInstance();
+        // Initialize data from retained state
+        diaryViewModel = new ViewModelProvider(this).get(DiaryViewModel.class);
+        allMeals = diaryViewModel.getAllMeals();
+        dayIndex = diaryViewModel.getDayIndex();
+        searchIndex = diaryViewModel.getSearchIndex();
+        aggregates = diaryViewModel.getAggregates();
+        mealSuggestions = MealSuggestions.getInstance(this);
+        diaryViewModel.setSyncReadyListener(this::onSyncReady);
+        selectedDate = diaryViewModel.getSelectedDate();
+        if (savedInstanceState != null && !diaryViewModel.isInitializationComplete()) {
+            // Process was recreated; the ViewModel is fresh but the selected day can be restored
+            selectedDate.setTimeInMillis(savedInstanceState.getLong(STATE_SELECTED_DATE, selectedDate.getTimeInMillis()));
+        }
 
         // Setup UI
         setupMealLoggingInterface();
@@ -120,53 +185,70 @@ public class MainActivity extends AppCompatActivity implements MealAdapter.OnMea
 
         // Update date display
         updateDateDisplay();
-        loadMealsForSelectedDate();
+        renderSelectedDate();
+
+        StartupTracer.runAfterFirstFrame(this, () -> StartupTracer.end(StartupTracer.PHASE_FIRST_DIARY_FRAME));
+
+        if (diaryViewModel.isInitializationComplete()) {
+            // Recreated after a configuration change: sync state and history are already loaded
+            isInitializationComplete = true;
+            initializationSuccess = diaryViewModel.isInitializationSuccess();
+        } else {
+            // Bring up the Sheets client only after the diary has drawn its first frame; the
+            // selected day can come from the day cache well before the full history does
+            StartupTracer.runAfterFirstFrame(this, () -> {
+                checkInitializationStatus();
+                loadSelectedDayFromCache();
+            });
+        }
+
+        StartupTracer.end(StartupTracer.PHASE_MAIN_ON_CREATE);
+    }
 
-        // Start initialization check
-        checkInitializationStatus();
+    @Override
+    protected void onSaveInstanceState(@NonNull Bundle outState) {
+        super.onSaveInstanceState(outState);
+        outState.putLong(STATE_SELECTED_DATE, selectedDate.getTimeInMillis());
     }
 
     private void checkInitializationStatus() {
         // Show initialization progress
         showInitializationProgress("Setting up sync...");
+        isInitializationComplete = false;
+        diaryViewModel.setInitializationState(false, false);
 
-        // Check initialization status periodically
-        Handler checkHandler = new Handler(Looper.getMainLooper());
-        Runnable checkRunnable = new Runnable() {
-            int attempts = 0;
-            final int maxAttempts = 20; // 10 seconds max (20 * 500ms)
-
-            @Override
-            public void run() {
-                attempts++;
-
-                if (syncManager.isReady()) {
-                    // Success - initialization complete
-                    hideInitializationProgress();
-                    isInitializationComplete = true;
-                    initializationSuccess = true;
+        // Fall back to offline mode if the service doesn't report back in time
+        mainHandler.postDelayed(initializationTimeout, INITIALIZATION_TIMEOUT_MS);
 
-                    Toast.makeText(MainActivity.this, "Sync ready ✓", Toast.LENGTH_SHORT).show();
-                    loadMealsFromCloud();
+        // Unblock the UI the moment the Sheets service reports readiness. The ViewModel does
+        // the waiting, so the engine never holds this Activity across a configuration change
+        StartupTracer.begin(StartupTracer.PHASE_SYNC_READY);
+        diaryViewModel.awaitSyncReady(syncManager);
+    }
 
-                } else if (attempts >= maxAttempts) {
-                    // Timeout - initialization failed
-                    hideInitializationProgress();
-                    isInitializationComplete = true;
-                    initializationSuccess = false;
+    private void onSyncReady(boolean success, String message) {
+        mainHandler.removeCallbacks(initializationTimeout);
+        StartupTracer.end(StartupTracer.PHASE_SYNC_READY);
+        onInitializationFinished(success);
+    }
 
-                    Toast.makeText(MainActivity.this, "Sync unavailable - running in offline mode", Toast.LENGTH_LONG).show();
-                    showSyncStatus("⚠ Offline mode", true);
+    private void onInitializationFinished(boolean success) {
+        if (isInitializationComplete || isFinishing() || isDestroyed()) {
+            return;
+        }
 
-                } else {
-                    // Still waiting - check again
-                    checkHandler.postDelayed(this, 500);
-                }
-            }
-        };
+        hideInitializationProgress();
+        isInitializationComplete = true;
+        initializationSuccess = success;
+        diaryViewModel.setInitializationState(true, success);
 
-        // Start checking after a short delay
-        checkHandler.postDelayed(checkRunnable, 1000);
+        if (success) {
+            Toast.makeText(MainActivity.this, "Sync ready ✓", Toast.LENGTH_SHORT).show();
+            loadMealsFromCloud();
+        } else {
+            Toast.makeText(MainActivity.this, "Sync unavailable - running in offline mode", Toast.LENGTH_LONG).show();
+            showSyncStatus("⚠ Offline mode", true);
+        }
     }
 
     private void setupMealLoggingInterface() {
@@ -190,6 +272,7 @@ public class MainActivity extends AppCompatActivity implements MealAdapter.OnMea
 
         // Setup RecyclerViews
         setupRecyclerViews();
+        setupDaySwipe();
 
         // Setup click listeners
         changeDateButton.setOnClickListener(v -> showDatePicker());
@@ -199,12 +282,69 @@ public class MainActivity extends AppCompatActivity implements MealAdapter.OnMea
         addSnacksButton.setOnClickListener(v -> showAddMealDialog("snacks"));
     }
 
+    private void setupDaySwipe() {
+        dayContent = findViewById(R.id.meal_logging_scroll);
+        float density = getResources().getDisplayMetrics().density;
+
+        dayGestureDetector = new GestureDetector(this, new GestureDetector.SimpleOnGestureListener() {
+            @Override
+            public boolean onFling(MotionEvent e1, @NonNull MotionEvent e2, float velocityX, float velocityY) {
+                if (e1 == null || e1.getX() < DRAWER_EDGE_DP * density) {
+                    return false;
+                }
+                float distance = e2.getX() - e1.getX();
+                if (Math.abs(distance) < SWIPE_MIN_DISTANCE_DP * density
+                        || Math.abs(velocityX) < SWIPE_MIN_VELOCITY_DP * density
+                        || Math.abs(velocityX) < 2 * Math.abs(velocityY)) {
+                    return false; // Too short, too slow or mostly vertical: a scroll
+                }
+                // Swiping left turns the page to the next day
+                swipeToDay(distance < 0 ? 1 : -1, Math.abs(velocityX) / density);
+                return true;
+            }
+        });
+    }
+
+    @Override
+    public boolean dispatchTouchEvent(MotionEvent event) {
+        // Watch every touch, including the ones the meal lists handle, without consuming any
+        if (dayGestureDetector != null && !drawerLayout.isDrawerOpen(GravityCompat.START)) {
+            dayGestureDetector.onTouchEvent(event);
+        }
+        return super.dispatchTouchEvent(event);
+    }
+
+    /**
+     * Move the diary one day back or forward, rendering the prefetched snapshot of that day
+     * @param direction 1 for the next day, -1 for the previous one
+     * @param velocityDp Fling velocity in dp/s, which sets how far ahead to prefetch
+     */
+    private void swipeToDay(int direction, float velocityDp) {
+        selectedDate.add(Calendar.DAY_OF_MONTH, direction);
+        updateDateDisplay();
+        showDaySnapshot(diaryViewModel.getSnapshot(getSelectedDateString()));
+        loadSelectedDayFromCache();
+
+        // Fast flings tend to come in runs, so look further ahead in the same direction
+        int ahead = Math.min(MAX_PREFETCH_DAYS, 1 + (int) (velocityDp / PREFETCH_VELOCITY_STEP_DP));
+        diaryViewModel.prefetchAround(selectedDate, direction < 0 ? ahead : 1, direction > 0 ? ahead : 1);
+
+        // Slide the new day in from the side the swipe came from
+        dayContent.setTranslationX(direction * dayContent.getWidth() / 4f);
+        dayContent.setAlpha(0.4f);
+        dayContent.animate().translationX(0).alpha(1).setDuration(DAY_SLIDE_MS).start();
+    }
+
     private void setupRecyclerViews() {
         // Initialize adapters
         breakfastAdapter = new MealAdapter(new ArrayList<>(), this);
         lunchAdapter = new MealAdapter(new ArrayList<>(), this);
         dinnerAdapter = new MealAdapter(new ArrayList<>(), this);
         snacksAdapter = new MealAdapter(new ArrayList<>(), this);
+        breakfastAdapter.setOnMealEditListener(this);
+        lunchAdapter.setOnMealEditListener(this);
+        dinnerAdapter.setOnMealEditListener(this);
+        snacksAdapter.setOnMealEditListener(this);
 
         // Setup RecyclerViews
         breakfastRecycler.setLayoutManager(new LinearLayoutManager(this));
@@ -221,6 +361,9 @@ public class MainActivity extends AppCompatActivity implements MealAdapter.OnMea
     }
 
     private void setupNavigationDrawer() {
+        // Developer tools such as the soak harness; only the debug build adds any
+        DeveloperMenu.install(navigationView.getMenu());
+
         // Open drawer when menu button clicked
         menuButton.setOnClickListener(new View.OnClickListener() {
             @Override
@@ -246,11 +389,25 @@ public class MainActivity extends AppCompatActivity implements MealAdapter.OnMea
                     viewSpreadsheet();
                 } else if (id == R.id.nav_sync_settings) {
                     showSyncSettings();
+                } else if (id == R.id.nav_export_diary) {
+                    showExportDiaryDialog();
+                } else if (id == R.id.nav_import_diary) {
+                    importLauncher.launch(new String[]{"text/*", "application/json"});
+                } else if (id == R.id.nav_export_metrics) {
+                    exportSyncMetrics();
+                } else if (id == R.id.nav_share_diagnostics) {
+                    shareDiagnostics();
+                } else if (DeveloperMenu.onItemSelected(MainActivity.this, item)) {
+                    // Handled by the debug-only developer menu
                 } else if (id == R.id.nav_home) {
                     // Already on home screen
                     Toast.makeText(MainActivity.this, "You're on the home screen", Toast.LENGTH_SHORT).show();
                 } else if (id == R.id.nav_calendar) {
-                    showDatePicker();
+                    showCalendar();
+                } else if (id == R.id.nav_search) {
+                    showSearchDialog();
+                } else if (id == R.id.nav_statistics) {
+                    showStatistics();
                 }
                 drawerLayout.closeDrawer(GravityCompat.START);
                 return true;
@@ -279,8 +436,7 @@ public class MainActivity extends AppCompatActivity implements MealAdapter.OnMea
                 this,
                 (view, year, month, dayOfMonth) -> {
                     selectedDate.set(year, month, dayOfMonth);
-                    updateDateDisplay();
-                    loadMealsForSelectedDate();
+                    showSelectedDate();
                 },
                 selectedDate.get(Calendar.YEAR),
                 selectedDate.get(Calendar.MONTH),
@@ -289,6 +445,313 @@ public class MainActivity extends AppCompatActivity implements MealAdapter.OnMea
         datePickerDialog.show();
     }
 
+    /**
+     * Month or year heatmap of meals per day; tapping a day jumps to it. The counts come
+     * from the statistics once the history has loaded and from the last saved copy before
+     * that, so opening the calendar never walks the meal history.
+     */
+    private void showCalendar() {
+        CalendarHeatmapView heatmap = new CalendarHeatmapView(this);
+        heatmap.setCounts(calendarCounts());
+        heatmap.setSelectedDay(selectedDate);
+        heatmap.showMonth(selectedDate.get(Calendar.YEAR), selectedDate.get(Calendar.MONTH));
+
+        final TextView title = new TextView(this);
+        title.setGravity(Gravity.CENTER);
+        title.setTextSize(18);
+        Button previous = new Button(this, null, android.R.attr.borderlessButtonStyle);
+        previous.setText("‹");
+        Button next = new Button(this, null, android.R.attr.borderlessButtonStyle);
+        next.setText("›");
+        LinearLayout header = new LinearLayout(this);
+        header.setOrientation(LinearLayout.HORIZONTAL);
+        header.setGravity(Gravity.CENTER_VERTICAL);
+        header.addView(previous);
+        header.addView(title, new LinearLayout.LayoutParams(0, LinearLayout.LayoutParams.WRAP_CONTENT, 1));
+        header.addView(next);
+
+        TextView legend = new TextView(this);
+        legend.setText(calendarLegend());
+        legend.setGravity(Gravity.CENTER);
+
+        LinearLayout layout = new LinearLayout(this);
+        layout.setOrientation(LinearLayout.VERTICAL);
+        int padding = Math.round(16 * getResources().getDisplayMetrics().density);
+        layout.setPadding(padding, padding / 2, padding, 0);
+        layout.addView(header);
+        layout.addView(heatmap);
+        layout.addView(legend);
+
+        SimpleDateFormat monthFormat = new SimpleDateFormat("MMMM yyyy", Locale.getDefault());
+        Runnable updateTitle = () -> {
+            if (heatmap.isYearMode()) {
+                title.setText(String.valueOf(heatmap.getYear()));
+            } else {
+                Calendar month = Calendar.getInstance();
+                month.clear();
+                month.set(heatmap.getYear(), heatmap.getMonth(), 1);
+                title.setText(monthFormat.format(month.getTime()));
+            }
+        };
+        updateTitle.run();
+        previous.setOnClickListener(v -> {
+            stepCalendar(heatmap, -1);
+            updateTitle.run();
+        });
+        next.setOnClickListener(v -> {
+            stepCalendar(heatmap, 1);
+            updateTitle.run();
+        });
+        // Tapping the title switches between the month and the whole year
+        title.setOnClickListener(v -> {
+            if (heatmap.isYearMode()) {
+                heatmap.showMonth(heatmap.getYear(), heatmap.getMonth());
+            } else {
+                heatmap.showYear(heatmap.getYear());
+            }
+            updateTitle.run();
+        });
+
+        AlertDialog dialog = new AlertDialog.Builder(this)
+                .setView(layout)
+                .setNegativeButton("Close", null)
+                .create();
+        heatmap.setOnDaySelectedListener((year, month, dayOfMonth) -> {
+            selectedDate.set(year, month, dayOfMonth);
+            showSelectedDate();
+            dialog.dismiss();
+        });
+        dialog.show();
+    }
+
+    // Move the calendar a month or, in year mode, a year
+    private void stepCalendar(CalendarHeatmapView heatmap, int direction) {
+        if (heatmap.isYearMode()) {
+            heatmap.showYear(heatmap.getYear() + direction);
+            return;
+        }
+        int month = heatmap.getMonth() + direction;
+        int year = heatmap.getYear() + Math.floorDiv(month, 12);
+        heatmap.showMonth(year, Math.floorMod(month, 12));
+    }
+
+    private CharSequence calendarLegend() {
+        SpannableStringBuilder legend = new SpannableStringBuilder();
+        for (int c = 0; c < Meal.VALID_CATEGORIES.length; c++) {
+            int start = legend.length();
+            legend.append("■");
+            legend.setSpan(new ForegroundColorSpan(CalendarHeatmapView.CATEGORY_COLORS[c]),
+                    start, legend.length(), Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
+            String category = Meal.VALID_CATEGORIES[c];
+            legend.append(' ').append(category.substring(0, 1).toUpperCase()).append(category.substring(1)).append("  ");
+        }
+        return legend;
+    }
+
+    private MealDayCounts calendarCounts() {
+        File saved = new File(getFilesDir(), CALENDAR_COUNTS_FILE);
+        if (!diaryViewModel.isHistoryLoaded() && saved.exists()) {
+            try {
+                return MealDayCounts.map(saved);
+            } catch (IOException e) {
+                Log.w("MainActivity", "Ignoring unreadable calendar counts", e);
+            }
+        }
+        return aggregates.copyDayCounts();
+    }
+
+    // Save the live counts for the next cold start; only a full history gives complete counts
+    private void saveCalendarCounts() {
+        if (!diaryViewModel.isHistoryLoaded()) {
+            return;
+        }
+        MealDayCounts counts = aggregates.copyDayCounts();
+        File file = new File(getFilesDir(), CALENDAR_COUNTS_FILE);
+        new Thread(() -> {
+            try {
+                counts.writeTo(file);
+            } catch (IOException e) {
+                Log.w("MainActivity", "Failed to save calendar counts", e);
+            }
+        }, "calendar-counts").start();
+    }
+
+    private void showSearchDialog() {
+        AlertDialog.Builder builder = new AlertDialog.Builder(this);
+        builder.setTitle("Search Meals");
+
+        final EditText input = new EditText(this);
+        input.setInputType(InputType.TYPE_CLASS_TEXT);
+        input.setHint("Meal name");
+        input.setSingleLine(true);
+
+        final LinearLayout results = new LinearLayout(this);
+        results.setOrientation(LinearLayout.VERTICAL);
+        ScrollView scrollView = new ScrollView(this);
+        scrollView.addView(results);
+
+        LinearLayout layout = new LinearLayout(this);
+        layout.setOrientation(LinearLayout.VERTICAL);
+        layout.addView(input);
+        layout.addView(scrollView);
+        builder.setView(layout);
+        builder.setNegativeButton("Close", null);
+
+        AlertDialog dialog = builder.create();
+
+        // The index answers in well under a frame, so search on every keystroke
+        input.addTextChangedListener(new TextWatcher() {
+            @Override
+            public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+            }
+
+            @Override
+            public void onTextChanged(CharSequence s, int start, int before, int count) {
+            }
+
+            @Override
+            public void afterTextChanged(Editable s) {
+                String query = s.toString();
+                showSearchResults(query, searchIndex.search(query, SEARCH_RESULT_LIMIT), results, dialog);
+            }
+        });
+
+        dialog.show();
+        input.requestFocus();
+        dialog.getWindow().setSoftInputMode(WindowManager.LayoutParams.SOFT_INPUT_STATE_VISIBLE);
+    }
+
+    private void showSearchResults(String query, MealSearchIndex.SearchResult result,
+                                   LinearLayout container, AlertDialog dialog) {
+        container.removeAllViews();
+        int padding = (int) (8 * getResources().getDisplayMetrics().density);
+        SimpleDateFormat storedFormat = new SimpleDateFormat("yyyy-MM-dd", Locale.getDefault());
+        SimpleDateFormat displayFormat = new SimpleDateFormat("EEE, MMM d, yyyy", Locale.getDefault());
+
+        int shown = 0;
+        for (MealSearchIndex.DayHits day : result.getDays()) {
+            Date date;
+            try {
+                date = storedFormat.parse(day.getDate());
+            } catch (ParseException e) {
+                continue;
+            }
+
+            StringBuilder text = new StringBuilder(displayFormat.format(date));
+            for (Map.Entry<String, List<Meal>> category : day.getCategories().entrySet()) {
+                for (Meal meal : category.getValue()) {
+                    text.append("\n  ").append(meal.getCategoryDisplayName())
+                            .append(" · ").append(meal.getFormattedTimeDisplay())
+                            .append(" · ").append(meal.getName());
+                    shown++;
+                }
+            }
+
+            // Tapping a day opens it in the diary
+            TextView dayView = new TextView(this);
+            dayView.setText(text);
+            dayView.setPadding(padding, padding, padding, padding);
+            dayView.setOnClickListener(v -> {
+                selectedDate.setTime(date);
+                showSelectedDate();
+                dialog.dismiss();
+            });
+            container.addView(dayView);
+        }
+
+        String footer = null;
+        if (result.getTotalHits() > shown) {
+            footer = "Showing the newest " + shown + " of " + result.getTotalHits() + " meals";
+        } else if (shown == 0 && !query.trim().isEmpty()) {
+            footer = "No meals found";
+        }
+        if (footer != null) {
+            TextView footerView = new TextView(this);
+            footerView.setText(footer);
+            footerView.setPadding(padding, padding, padding, padding);
+            container.addView(footerView);
+        }
+    }
+
+    private void showStatistics() {
+        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd", Locale.getDefault());
+        Calendar day = Calendar.getInstance();
+        String today = dateFormat.format(day.getTime());
+        day.add(Calendar.DAY_OF_MONTH, -6);
+        String weekStart = dateFormat.format(day.getTime());
+        day.setTime(new Date());
+        day.set(Calendar.DAY_OF_MONTH, 1);
+        String monthStart = dateFormat.format(day.getTime());
+
+        StringBuilder message = new StringBuilder();
+        appendRangeStatistics(message, "Last 7 days", weekStart, today);
+        appendRangeStatistics(message, "This month", monthStart, today);
+
+        // Meals per day over the last week, oldest first
+        int[] daily = aggregates.dailyCounts(weekStart, today);
+        SimpleDateFormat dayName = new SimpleDateFormat("EEE", Locale.getDefault());
+        day.setTime(new Date());
+        day.add(Calendar.DAY_OF_MONTH, -6);
+        message.append("Daily meals:\n  ");
+        for (int i = 0; i < daily.length; i++) {
+            message.append(i > 0 ? ", " : "").append(dayName.format(day.getTime())).append(' ').append(daily[i]);
+            day.add(Calendar.DAY_OF_MONTH, 1);
+        }
+        message.append("\n\n");
+
+        message.append("Current streak: ").append(aggregates.currentStreak(today)).append(" days\n");
+        message.append("Longest streak: ").append(aggregates.longestStreak()).append(" days\n\n");
+
+        appendTopItems(message, "Most frequent this month", aggregates.topItems(monthStart, today, 5));
+        appendTopItems(message, "Most frequent overall", aggregates.topItems(5));
+
+        // Month totals for the last six months, newest first
+        SimpleDateFormat monthName = new SimpleDateFormat("MMMM yyyy", Locale.getDefault());
+        day.setTime(new Date());
+        day.set(Calendar.DAY_OF_MONTH, 1);
+        message.append("Monthly totals:\n");
+        for (int i = 0; i < 6; i++) {
+            String first = dateFormat.format(day.getTime());
+            day.set(Calendar.DAY_OF_MONTH, day.getActualMaximum(Calendar.DAY_OF_MONTH));
+            String last = dateFormat.format(day.getTime());
+            message.append("  ").append(monthName.format(day.getTime())).append(": ")
+                    .append(aggregates.count(first, last)).append(" meals\n");
+            day.set(Calendar.DAY_OF_MONTH, 1);
+            day.add(Calendar.MONTH, -1);
+        }
+
+        new AlertDialog.Builder(this)
+                .setTitle("Statistics")
+                .setMessage(message.toString().trim())
+                .setPositiveButton("Close", null)
+                .show();
+    }
+
+    private void appendRangeStatistics(StringBuilder message, String title, String from, String to) {
+        int[] categories = aggregates.categoryCounts(from, to);
+        message.append(title).append(": ").append(aggregates.count(from, to)).append(" meals on ")
+                .append(aggregates.loggedDays(from, to)).append(" days\n  ");
+        for (int i = 0; i < categories.length; i++) {
+            String category = Meal.VALID_CATEGORIES[i];
+            message.append(i > 0 ? " · " : "")
+                    .append(category.substring(0, 1).toUpperCase()).append(category.substring(1))
+                    .append(' ').append(categories[i]);
+        }
+        message.append("\n\n");
+    }
+
+    private void appendTopItems(StringBuilder message, String title, List<MealAggregates.ItemCount> items) {
+        if (items.isEmpty()) {
+            return;
+        }
+        message.append(title).append(":\n");
+        for (int i = 0; i < items.size(); i++) {
+            message.append("  ").append(i + 1).append(". ").append(items.get(i).getName())
+                    .append(" (").append(items.get(i).getCount()).append(")\n");
+        }
+        message.append('\n');
+    }
+
     private void updateDateDisplay() {
         SimpleDateFormat dateFormat = new SimpleDateFormat("EEEE - MMMM d, yyyy", Locale.getDefault());
         String dateString = dateFormat.format(selectedDate.getTime());
@@ -321,7 +784,33 @@ public class MainActivity extends AppCompatActivity implements MealAdapter.OnMea
         // Set max length filter
         input.setFilters(new InputFilter[]{new InputFilter.LengthFilter(Meal.MAX_NAME_LENGTH)});
 
-        builder.setView(input);
+        // Names this user eats in this category around this time, refreshed per keystroke
+        final LinearLayout suggestionRow = new LinearLayout(this);
+        suggestionRow.setOrientation(LinearLayout.HORIZONTAL);
+        HorizontalScrollView suggestionScroll = new HorizontalScrollView(this);
+        suggestionScroll.setHorizontalScrollBarEnabled(false);
+        suggestionScroll.addView(suggestionRow);
+        showMealSuggestions(input, suggestionRow, category);
+        input.addTextChangedListener(new TextWatcher() {
+            @Override
+            public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+            }
+
+            @Override
+            public void onTextChanged(CharSequence s, int start, int before, int count) {
+            }
+
+            @Override
+            public void afterTextChanged(Editable s) {
+                showMealSuggestions(input, suggestionRow, category);
+            }
+        });
+
+        LinearLayout layout = new LinearLayout(this);
+        layout.setOrientation(LinearLayout.VERTICAL);
+        layout.addView(input);
+        layout.addView(suggestionScroll);
+        builder.setView(layout);
 
         builder.setPositiveButton("Add", (dialog, which) -> {
             String mealName = input.getText().toString();
@@ -340,6 +829,24 @@ public class MainActivity extends AppCompatActivity implements MealAdapter.OnMea
         dialog.getWindow().setSoftInputMode(WindowManager.LayoutParams.SOFT_INPUT_STATE_VISIBLE);
     }
 
+    private void showMealSuggestions(EditText input, LinearLayout suggestionRow, String category) {
+        String typed = input.getText().toString();
+        suggestionRow.removeAllViews();
+        for (String suggestion : mealSuggestions.suggest(typed, category, SUGGESTION_LIMIT)) {
+            if (suggestion.equals(typed.trim())) {
+                continue;
+            }
+            Button button = new Button(this, null, android.R.attr.borderlessButtonStyle);
+            button.setAllCaps(false);
+            button.setText(suggestion);
+            button.setOnClickListener(v -> {
+                input.setText(suggestion);
+                input.setSelection(input.getText().length());
+            });
+            suggestionRow.addView(button);
+        }
+    }
+
     private void addMeal(String name, String category) {
         try {
             // Validate inputs
@@ -351,6 +858,9 @@ public class MainActivity extends AppCompatActivity implements MealAdapter.OnMea
             // Create meal with selected date
             Meal meal = createMealWithSelectedDate(name, category);
             allMeals.add(meal);
+            dayIndex.add(meal);
+            diaryViewModel.indexMeals(Collections.singletonList(meal));
+            mealSuggestions.record(meal);
             loadMealsForSelectedDate();
 
             Toast.makeText(this, name + " added to " + meal.getCategoryDisplayName(), Toast.LENGTH_SHORT).show();
@@ -359,8 +869,10 @@ public class MainActivity extends AppCompatActivity implements MealAdapter.OnMea
             if (isInitializationComplete && initializationSuccess) {
                 syncMealToCloud(meal);
             } else if (!isInitializationComplete) {
+                syncManager.queueAdd(meal);
                 showSyncStatus("⏳ Sync initializing, meal saved locally", false);
             } else {
+                syncManager.queueAdd(meal);
                 showSyncStatus("📱 Offline mode - meal saved locally", true);
             }
 
@@ -423,6 +935,7 @@ public class MainActivity extends AppCompatActivity implements MealAdapter.OnMea
                 mainHandler.post(() -> {
                     // Merge with local meals (avoid duplicates)
                     mergeCloudMeals(cloudMeals);
+                    diaryViewModel.setHistoryLoaded(true);
                     loadMealsForSelectedDate();
                     showSyncStatus("✓ Data loaded", false);
                 });
@@ -439,61 +952,89 @@ public class MainActivity extends AppCompatActivity implements MealAdapter.OnMea
     }
 
     private void mergeCloudMeals(List<Meal> cloudMeals) {
-        // Simple merge - in production you might want more sophisticated conflict resolution
-        for (Meal cloudMeal : cloudMeals) {
-            boolean exists = false;
-            for (Meal localMeal : allMeals) {
-                if (mealsAreEqual(localMeal, cloudMeal)) {
-                    exists = true;
-                    break;
-                }
-            }
-            if (!exists) {
-                allMeals.add(cloudMeal);
-            }
-        }
+        // Matched by meal ID; the more recently changed copy wins
+        List<Meal> merged = MealReconciler.mergeCloudMeals(allMeals, cloudMeals);
+        dayIndex.addAll(merged);
+        // Indexing and counting the whole history is too slow for the main thread
+        diaryViewModel.indexHistory(merged, allMeals, this::saveCalendarCounts);
+        // The full history is here now; relearn from it rather than counting meals twice
+        mealSuggestions.rebuild(allMeals);
     }
 
-    private boolean mealsAreEqual(Meal meal1, Meal meal2) {
-        return meal1.getName().equals(meal2.getName()) &&
-                meal1.getCategory().equals(meal2.getCategory()) &&
-                meal1.getDate().equals(meal2.getDate()) &&
-                Math.abs(meal1.getTimestamp().getTime() - meal2.getTimestamp().getTime()) < 60000; // Within 1 minute
+    // Merge one day's cloud meals while the full history is still missing
+    private void mergeDayMeals(List<Meal> dayMeals) {
+        List<Meal> merged = MealReconciler.mergeCloudMeals(allMeals, dayMeals);
+        dayIndex.addAll(merged);
+        diaryViewModel.indexMeals(merged);
     }
 
-    private void loadMealsForSelectedDate() {
-        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd", Locale.getDefault());
-        String selectedDateString = dateFormat.format(selectedDate.getTime());
+    // Show a newly selected date: the local history right away, then the day cache's copy
+    private void showSelectedDate() {
+        updateDateDisplay();
+        loadMealsForSelectedDate();
+        loadSelectedDayFromCache();
+    }
 
-        List<Meal> breakfastMeals = new ArrayList<>();
-        List<Meal> lunchMeals = new ArrayList<>();
-        List<Meal> dinnerMeals = new ArrayList<>();
-        List<Meal> snacksMeals = new ArrayList<>();
+    /**
+     * Until the full history has been loaded, the local history may not hold the selected
+     * day; fetch just that day through the sync engine's day cache and merge it in.
+     */
+    private void loadSelectedDayFromCache() {
+        if (diaryViewModel.isHistoryLoaded()) {
+            return;
+        }
 
-        for (Meal meal : allMeals) {
-            if (meal.getDate().equals(selectedDateString)) {
-                switch (meal.getCategory()) {
-                    case "breakfast":
-                        breakfastMeals.add(meal);
-                        break;
-                    case "lunch":
-                        lunchMeals.add(meal);
-                        break;
-                    case "dinner":
-                        dinnerMeals.add(meal);
-                        break;
-                    case "snacks":
-                        snacksMeals.add(meal);
-                        break;
-                }
+        String date = getSelectedDateString();
+        syncManager.loadMealsForDate(date, new GoogleSheetsManager.LoadCallback() {
+            @Override
+            public void onMealsLoaded(List<Meal> meals) {
+                mainHandler.post(() -> {
+                    // Once the full history is in, it already holds these meals
+                    if (isFinishing() || isDestroyed() || diaryViewModel.isHistoryLoaded()) {
+                        return;
+                    }
+                    mergeDayMeals(meals);
+                    if (date.equals(getSelectedDateString())) {
+                        loadMealsForSelectedDate();
+                    }
+                });
             }
+
+            @Override
+            public void onError(String error) {
+                // The day stays as the local history has it; the full load fills it in later
+            }
+        });
+    }
+
+    // Rebucket the selected date; call after the history or date changes
+    private void loadMealsForSelectedDate() {
+        showDaySnapshot(diaryViewModel.buildSnapshot(getSelectedDateString()));
+        diaryViewModel.prefetchAround(selectedDate, 1, 1);
+    }
+
+    // Render the selected date, reusing the retained snapshot when there is one
+    private void renderSelectedDate() {
+        String selectedDateString = getSelectedDateString();
+        DiaryViewModel.DaySnapshot snapshot = diaryViewModel.getRetainedSnapshot(selectedDateString);
+        if (snapshot == null) {
+            snapshot = diaryViewModel.buildSnapshot(selectedDateString);
         }
+        showDaySnapshot(snapshot);
+        diaryViewModel.prefetchAround(selectedDate, 1, 1);
+    }
 
+    private void showDaySnapshot(DiaryViewModel.DaySnapshot snapshot) {
         // Update adapters
-        breakfastAdapter.updateMeals(breakfastMeals);
-        lunchAdapter.updateMeals(lunchMeals);
-        dinnerAdapter.updateMeals(dinnerMeals);
-        snacksAdapter.updateMeals(snacksMeals);
+        breakfastAdapter.updateMeals(snapshot.getBreakfast());
+        lunchAdapter.updateMeals(snapshot.getLunch());
+        dinnerAdapter.updateMeals(snapshot.getDinner());
+        snacksAdapter.updateMeals(snapshot.getSnacks());
+    }
+
+    private String getSelectedDateString() {
+        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd", Locale.getDefault());
+        return dateFormat.format(selectedDate.getTime());
     }
 
     @Override
@@ -526,6 +1067,124 @@ public class MainActivity extends AppCompatActivity implements MealAdapter.OnMea
         return null;
     }
 
+    @Override
+    public void onMealEdit(Meal meal, int position) {
+        if (meal == null) {
+            Toast.makeText(this, "Error: Could not identify meal to edit", Toast.LENGTH_SHORT).show();
+            return;
+        }
+
+        showEditMealDialog(meal);
+    }
+
+    private void showEditMealDialog(Meal meal) {
+        AlertDialog.Builder builder = new AlertDialog.Builder(this);
+        builder.setTitle("Edit " + meal.getCategoryDisplayName());
+
+        final EditText input = new EditText(this);
+        input.setInputType(InputType.TYPE_CLASS_TEXT | InputType.TYPE_TEXT_FLAG_CAP_SENTENCES);
+        input.setMaxLines(1);
+        input.setSingleLine(true);
+        input.setFilters(new InputFilter[]{new InputFilter.LengthFilter(Meal.MAX_NAME_LENGTH)});
+        input.setText(meal.getName());
+        input.setSelection(input.getText().length());
+
+        // Time of day, changed through a picker; the date stays the same
+        final Calendar mealTime = Calendar.getInstance();
+        mealTime.setTime(new Date(meal.getTimestampMillis()));
+        final Button timeButton = new Button(this);
+        timeButton.setText(meal.getFormattedTimeDisplay());
+        timeButton.setOnClickListener(v -> new TimePickerDialog(this, (view, hourOfDay, minute) -> {
+            mealTime.set(Calendar.HOUR_OF_DAY, hourOfDay);
+            mealTime.set(Calendar.MINUTE, minute);
+            timeButton.setText(new SimpleDateFormat("hh:mm a", Locale.getDefault()).format(mealTime.getTime()));
+        }, mealTime.get(Calendar.HOUR_OF_DAY), mealTime.get(Calendar.MINUTE), false).show());
+
+        LinearLayout layout = new LinearLayout(this);
+        layout.setOrientation(LinearLayout.VERTICAL);
+        layout.addView(input);
+        layout.addView(timeButton);
+        builder.setView(layout);
+
+        builder.setPositiveButton("Save", (dialog, which) -> {
+            String mealName = input.getText().toString();
+            if (InputValidator.validateMealNameWithToast(this, mealName)) {
+                editMeal(meal, InputValidator.cleanMealName(mealName), mealTime.getTime());
+            }
+        });
+        builder.setNegativeButton("Cancel", (dialog, which) -> dialog.cancel());
+        builder.show();
+    }
+
+    private void editMeal(Meal meal, String name, Date timestamp) {
+        boolean nameChanged = !name.equals(meal.getName());
+        boolean timeChanged = !new SimpleDateFormat("HH:mm", Locale.getDefault()).format(timestamp)
+                .equals(meal.getFormattedTime());
+        if (!nameChanged && !timeChanged) {
+            return;
+        }
+
+        Meal before = meal.copy();
+        try {
+            if (nameChanged) {
+                meal.setName(name);
+            }
+            if (timeChanged) {
+                meal.setTimestamp(timestamp);
+            }
+        } catch (IllegalArgumentException e) {
+            Toast.makeText(this, "Invalid meal: " + e.getMessage(), Toast.LENGTH_SHORT).show();
+            return;
+        }
+        dayIndex.add(meal);
+        diaryViewModel.indexMeals(Collections.singletonList(meal));
+        if (nameChanged) {
+            mealSuggestions.replace(before, meal);
+        }
+
+        // The meal is edited in place, so only its own row needs to rebind
+        MealAdapter adapter = getAdapterForCategory(meal.getCategory());
+        if (adapter != null) {
+            adapter.notifyMealChanged(meal);
+        }
+
+        if (isInitializationComplete && initializationSuccess) {
+            syncManager.updateMeal(before, meal, new MealSyncManager.SyncStatusListener() {
+                @Override
+                public void onSyncStarted() {
+                }
+
+                @Override
+                public void onSyncCompleted(boolean success, String message) {
+                    mainHandler.post(() -> showSyncStatus(success ? "✓ Updated" : "⚠ Sync pending", !success));
+                }
+
+                @Override
+                public void onSyncProgress(int completed, int total) {
+                    // Not used for single meal sync
+                }
+            });
+        } else {
+            syncManager.queueUpdate(before, meal);
+            showSyncStatus("📱 Offline mode - edit saved locally", true);
+        }
+    }
+
+    private MealAdapter getAdapterForCategory(String category) {
+        switch (category) {
+            case "breakfast":
+                return breakfastAdapter;
+            case "lunch":
+                return lunchAdapter;
+            case "dinner":
+                return dinnerAdapter;
+            case "snacks":
+                return snacksAdapter;
+            default:
+                return null;
+        }
+    }
+
     private void showDeleteConfirmDialog(Meal meal) {
         new AlertDialog.Builder(this)
                 .setTitle("Delete Meal")
@@ -550,6 +1209,8 @@ public class MainActivity extends AppCompatActivity implements MealAdapter.OnMea
                 Toast.makeText(this, "Meal not found in local data", Toast.LENGTH_SHORT).show();
                 return;
             }
+            dayIndex.remove(meal);
+            diaryViewModel.unindexMeal(meal);
 
             loadMealsForSelectedDate();
 
@@ -557,6 +1218,8 @@ public class MainActivity extends AppCompatActivity implements MealAdapter.OnMea
             if (isInitializationComplete && initializationSuccess) {
                 deleteMealFromCloud(meal);
             } else {
+                // Cancels the meal's pending upload, or deletes it from the sheet on the next sync
+                syncManager.queueDelete(meal);
                 Toast.makeText(this, "Meal deleted locally (offline mode)", Toast.LENGTH_SHORT).show();
             }
 
@@ -567,6 +1230,8 @@ public class MainActivity extends AppCompatActivity implements MealAdapter.OnMea
             // Re-add meal if deletion failed
             if (!allMeals.contains(meal)) {
                 allMeals.add(meal);
+                dayIndex.add(meal);
+                diaryViewModel.indexMeals(Collections.singletonList(meal));
                 loadMealsForSelectedDate();
             }
         }
@@ -631,8 +1296,10 @@ public class MainActivity extends AppCompatActivity implements MealAdapter.OnMea
                     if (success) {
                         Toast.makeText(MainActivity.this, "Sync completed successfully", Toast.LENGTH_SHORT).show();
                         showSyncStatus("✓ Synced", false);
-                        // Reload data from cloud
-                        loadMealsFromCloud();
+                        // Reload data from cloud, unless both sides were already identical
+                        if (!MealSyncManager.MESSAGE_ALREADY_SYNCED.equals(message)) {
+                            loadMealsFromCloud();
+                        }
                     } else {
                         Toast.makeText(MainActivity.this, "Sync failed: " + message, Toast.LENGTH_LONG).show();
                         showSyncStatus("⚠ Sync failed", true);
@@ -699,16 +1366,21 @@ public class MainActivity extends AppCompatActivity implements MealAdapter.OnMea
         } else if (initializationSuccess) {
             message += "Status: Ready ✓\n\n";
             message += "Last sync: " + getLastSyncTimeString() + "\n\n";
+            message += "Sync metrics:\n" + syncManager.getMetricsSummary() + "\n\n";
+
+            message += "Network: " + syncManager.getNetworkSummary() + "\n\n";
+            message += "Day cache:\n" + syncManager.getDayCacheSummary() + "\n\n";
 
             if (syncManager.hasPendingSync()) {
                 message += "Pending items: " + syncManager.getPendingSyncCount() + "\n\n";
-                message += "Some items couldn't be synced. Try manual sync when you have internet connection.";
+                message += "Some items couldn't be synced yet. They are sent automatically once a network is available.";
             } else {
                 message += "All data is synced ✓";
             }
         } else {
             message += "Status: Unavailable ⚠\n\n";
-            message += "Sync service is not available. App is running in offline mode.";
+            message += "Sync service is not available. App is running in offline mode.\n\n";
+            message += "Day cache:\n" + syncManager.getDayCacheSummary();
         }
 
         builder.setMessage(message);
@@ -725,6 +1397,151 @@ public class MainActivity extends AppCompatActivity implements MealAdapter.OnMea
         builder.show();
     }
 
+    private void exportSyncMetrics() {
+        String fileName = "sync_metrics_" + new SimpleDateFormat("yyyyMMdd_HHmmss", Locale.US).format(new Date()) + ".csv";
+        File directory = getExternalFilesDir(null);
+        if (directory == null) {
+            directory = getFilesDir();
+        }
+        File file = new File(directory, fileName);
+
+        new Thread(() -> {
+            try {
+                syncManager.exportMetrics(file);
+                mainHandler.post(() -> Toast.makeText(this, "Metrics exported to " + file.getAbsolutePath(),
+                        Toast.LENGTH_LONG).show());
+            } catch (IOException e) {
+                Log.e("MainActivity", "Failed to export sync metrics", e);
+                mainHandler.post(() -> Toast.makeText(this, "Failed to export metrics", Toast.LENGTH_SHORT).show());
+            }
+        }, "metrics-export").start();
+    }
+
+    private void showExportDiaryDialog() {
+        new AlertDialog.Builder(this)
+                .setTitle("Export Diary")
+                .setItems(new String[]{"CSV", "JSON"}, (dialog, which) ->
+                        exportDiary(which == 0 ? MealArchive.Format.CSV : MealArchive.Format.JSON))
+                .setNegativeButton("Cancel", null)
+                .show();
+    }
+
+    private void exportDiary(MealArchive.Format format) {
+        String fileName = "food_diary_" + new SimpleDateFormat("yyyyMMdd_HHmmss", Locale.US).format(new Date())
+                + (format == MealArchive.Format.CSV ? ".csv" : ".json");
+        File directory = getExternalFilesDir(null);
+        if (directory == null) {
+            directory = getFilesDir();
+        }
+        File file = new File(directory, fileName);
+
+        // Meals are streamed to disk from a copy of the list, not of their contents
+        List<Meal> meals = new ArrayList<>(allMeals);
+        new Thread(() -> {
+            try (FileOutputStream output = new FileOutputStream(file)) {
+                int count = MealArchive.export(meals, output.getChannel(), format);
+                mainHandler.post(() -> Toast.makeText(this, count + " meals exported to " + file.getAbsolutePath(),
+                        Toast.LENGTH_LONG).show());
+            } catch (IOException e) {
+                Log.e("MainActivity", "Failed to export diary", e);
+                mainHandler.post(() -> Toast.makeText(this, "Failed to export diary", Toast.LENGTH_SHORT).show());
+            }
+        }, "diary-export").start();
+    }
+
+    private void importDiary(Uri uri) {
+        if (uri == null) {
+            return; // Picker cancelled
+        }
+        String type = getContentResolver().getType(uri);
+        String path = uri.getLastPathSegment();
+        MealArchive.Format format = (type != null && type.contains("json")) || (path != null && path.endsWith(".json"))
+                ? MealArchive.Format.JSON : MealArchive.Format.CSV;
+
+        Set<String> existingIds = new HashSet<>();
+        for (Meal meal : allMeals) {
+            existingIds.add(meal.getId());
+        }
+
+        showSyncProgress("Importing meals...");
+        new Thread(() -> {
+            try (ParcelFileDescriptor descriptor = getContentResolver().openFileDescriptor(uri, "r")) {
+                if (descriptor == null) {
+                    throw new IOException("Could not open " + uri);
+                }
+                MealArchive.ImportResult result;
+                try (FileInputStream input = new FileInputStream(descriptor.getFileDescriptor())) {
+                    result = MealArchive.importMeals(input.getChannel(), format, existingIds,
+                            Runtime.getRuntime().availableProcessors());
+                }
+                mainHandler.post(() -> onDiaryImported(result));
+            } catch (IOException | SecurityException e) {
+                Log.e("MainActivity", "Failed to import diary", e);
+                mainHandler.post(() -> {
+                    hideSyncProgress();
+                    Toast.makeText(this, "Failed to import diary", Toast.LENGTH_SHORT).show();
+                });
+            }
+        }, "diary-import").start();
+    }
+
+    private void onDiaryImported(MealArchive.ImportResult result) {
+        hideSyncProgress();
+        List<Meal> imported = result.getMeals();
+        String summary = imported.size() + " meals imported";
+        if (result.getDuplicates() > 0) {
+            summary += ", " + result.getDuplicates() + " already in the diary";
+        }
+        if (result.getRejected() > 0) {
+            summary += ", " + result.getRejected() + " invalid rows skipped";
+        }
+        Toast.makeText(this, summary, Toast.LENGTH_LONG).show();
+        if (imported.isEmpty()) {
+            return;
+        }
+
+        allMeals.addAll(imported);
+        dayIndex.addAll(imported);
+        diaryViewModel.indexMeals(imported);
+        mealSuggestions.rebuild(allMeals);
+        loadMealsForSelectedDate();
+
+        // Same chunked upload path as a full sync; meals stay queued if the upload can't run
+        syncManager.syncMultipleMeals(imported, new MealSyncManager.SyncStatusListener() {
+            @Override
+            public void onSyncStarted() {
+            }
+
+            @Override
+            public void onSyncCompleted(boolean success, String message) {
+                mainHandler.post(() -> showSyncStatus(success ? "✓ Imported meals synced" : "⚠ Sync pending", !success));
+            }
+
+            @Override
+            public void onSyncProgress(int completed, int total) {
+                // Progress is not shown for background uploads
+            }
+        });
+    }
+
+    private void shareDiagnostics() {
+        String report = "Food Diary diagnostics\n\n"
+                + syncManager.getDetailedStatus() + "\n\n"
+                + "Startup:\n" + StartupTracer.getSummary() + "\n"
+                + "Sync metrics:\n" + syncManager.getMetricsSummary() + "\n\n"
+                + "Recent events:\n" + Diagnostics.dump();
+
+        Intent intent = new Intent(Intent.ACTION_SEND);
+        intent.setType("text/plain");
+        intent.putExtra(Intent.EXTRA_SUBJECT, "Food Diary diagnostics");
+        intent.putExtra(Intent.EXTRA_TEXT, report);
+        try {
+            startActivity(Intent.createChooser(intent, "Share diagnostics"));
+        } catch (Exception e) {
+            Toast.makeText(this, "No app available to share diagnostics", Toast.LENGTH_SHORT).show();
+        }
+    }
+
     private void retryPendingSync() {
         if (!isInitializationComplete || !initializationSuccess) {
             Toast.makeText(this, "Sync service not available", Toast.LENGTH_SHORT).show();
@@ -819,10 +1636,10 @@ public class MainActivity extends AppCompatActivity implements MealAdapter.OnMea
 
         // Sign out from Google
         mGoogleSignInClient.signOut().addOnCompleteListener(this, task -> {
-            // Cleanup sync manager
-            if (syncManager != null) {
-                syncManager.shutdown();
-            }
+            // Tear down the shared sync engine so the next account starts fresh
+            MealSyncManager.releaseInstance();
+            mealSuggestions.clear();
+            new File(getFilesDir(), CALENDAR_COUNTS_FILE).delete();
 
             // Show logout message
             Toast.makeText(MainActivity.this, "Logged out successfully", Toast.LENGTH_SHORT).show();
@@ -835,12 +1652,18 @@ public class MainActivity extends AppCompatActivity implements MealAdapter.OnMea
         });
     }
 
+    @Override
+    protected void onStop() {
+        super.onStop();
+        saveCalendarCounts();
+    }
+
     @Override
     protected void onDestroy() {
         super.onDestroy();
-        if (syncManager != null) {
-            syncManager.shutdown();
-        }
+        // The sync engine is process-scoped and outlives this Activity, so it is not shut down here
+        diaryViewModel.setSyncReadyListener(null);
+        mainHandler.removeCallbacks(initializationTimeout);
         if (syncProgressDialog != null && syncProgressDialog.isShowing()) {
             syncProgressDialog.dismiss();
         }
@@ -16,16 +16,25 @@ public class MealAdapter extends RecyclerView.Adapter<MealAdapter.MealViewHolder
 
     private List<Meal> meals;
     private OnMealDeleteListener deleteListener;
+    private OnMealEditListener editListener;
 
     public interface OnMealDeleteListener {
         void onMealDelete(Meal meal, int position);
     }
 
+    public interface OnMealEditListener {
+        void onMealEdit(Meal meal, int position);
+    }
+
     public MealAdapter(List<Meal> meals, OnMealDeleteListener deleteListener) {
         this.meals = meals != null ? new ArrayList<>(meals) : new ArrayList<>();
         this.deleteListener = deleteListener;
     }
 
+    public void setOnMealEditListener(OnMealEditListener editListener) {
+        this.editListener = editListener;
+    }
+
     @NonNull
     @Override
     public MealViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
@@ -64,10 +73,17 @@ public class MealAdapter extends RecyclerView.Adapter<MealAdapter.MealViewHolder
         // Add accessibility support
         holder.deleteButton.setContentDescription("Delete " + meal.getName());
 
-        // Optional: Add long click for meal editing (future feature)
+        // Long click edits the meal
         holder.itemView.setOnLongClickListener(v -> {
-            // TODO: Implement meal editing functionality
-            return false;
+            int currentPosition = holder.getAdapterPosition();
+            if (currentPosition == RecyclerView.NO_POSITION ||
+                    currentPosition >= meals.size() ||
+                    editListener == null) {
+                return false;
+            }
+
+            editListener.onMealEdit(meals.get(currentPosition), currentPosition);
+            return true;
         });
     }
 
@@ -114,6 +130,20 @@ public class MealAdapter extends RecyclerView.Adapter<MealAdapter.MealViewHolder
         }
     }
 
+    /**
+     * Rebind the row of a meal that was edited in place
+     * @param meal The edited meal, matched by ID
+     */
+    public void notifyMealChanged(Meal meal) {
+        if (meal != null) {
+            int position = findMealPosition(meal);
+            if (position != -1) {
+                meals.set(position, meal);
+                notifyItemChanged(position);
+            }
+        }
+    }
+
     private int findMealPosition(Meal meal) {
         for (int i = 0; i < meals.size(); i++) {
             if (meals.get(i).getId().equals(meal.getId())) {
@@ -0,0 +1,112 @@
+package com.eslamgamal.fooddiary;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Process-wide, persisted {@link MealSuggester} for the add-meal dialog. The stored model
+ * is loaded in the background when the process starts, so suggestions are there before the
+ * history arrives from the cloud; each cloud load then rebuilds it from the full history,
+ * which also repairs any drift from edits and deletes. Queries run on the caller's thread
+ * and only touch the in-memory model.
+ */
+class MealSuggestions {
+    private static final String PREFS_NAME = "meal_suggestions";
+    private static final String KEY_MODEL = "model";
+
+    private static MealSuggestions instance;
+
+    private final SharedPreferences prefs;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private volatile MealSuggester suggester = new MealSuggester();
+
+    static synchronized MealSuggestions getInstance(Context context) {
+        if (instance == null) {
+            instance = new MealSuggestions(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private MealSuggestions(Context context) {
+        this.prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        executor.execute(() -> {
+            MealSuggester stored = MealSuggester.decode(prefs.getStringSet(KEY_MODEL, new HashSet<>()));
+            synchronized (this) {
+                if (suggester.size() == 0) { // A rebuild or new meals may have raced ahead
+                    suggester = stored;
+                }
+            }
+        });
+    }
+
+    /**
+     * Suggest names for a meal being added now
+     * @param prefix Text typed so far
+     * @param category Category the meal is added to
+     * @param limit Most names returned
+     * @return Names, best first
+     */
+    List<String> suggest(String prefix, String category, int limit) {
+        Calendar now = Calendar.getInstance();
+        return suggester.suggest(prefix, category, now.getTimeInMillis(), now.get(Calendar.HOUR_OF_DAY), limit);
+    }
+
+    // Learn a meal that was just added
+    void record(Meal meal) {
+        Calendar time = Calendar.getInstance();
+        time.setTimeInMillis(meal.getTimestampMillis());
+        suggester.record(meal.getName(), meal.getCategory(), meal.getTimestampMillis(),
+                time.get(Calendar.HOUR_OF_DAY));
+        save();
+    }
+
+    /**
+     * Learn an edited meal in place of the use it was learned as, so a rename doesn't count
+     * the meal twice
+     * @param before Copy of the meal as it was before the edit
+     * @param meal The edited meal
+     */
+    void replace(Meal before, Meal meal) {
+        Calendar time = Calendar.getInstance();
+        time.setTimeInMillis(before.getTimestampMillis());
+        suggester.forget(before.getName(), before.getCategory(), before.getTimestampMillis(),
+                time.get(Calendar.HOUR_OF_DAY));
+        record(meal);
+    }
+
+    /**
+     * Replace the model with one learned from the full history, in the background
+     * @param meals The whole history; copied before this returns
+     */
+    void rebuild(List<Meal> meals) {
+        List<Meal> snapshot = new ArrayList<>(meals);
+        executor.execute(() -> {
+            MealSuggester rebuilt = MealSuggester.of(snapshot);
+            synchronized (this) {
+                suggester = rebuilt;
+            }
+            prefs.edit().putStringSet(KEY_MODEL, rebuilt.encode()).apply();
+        });
+    }
+
+    // Forget everything, e.g. when the user logs out
+    void clear() {
+        executor.execute(() -> {
+            synchronized (this) {
+                suggester = new MealSuggester();
+            }
+            prefs.edit().clear().apply();
+        });
+    }
+
+    private void save() {
+        executor.execute(() -> prefs.edit().putStringSet(KEY_MODEL, suggester.encode()).apply());
+    }
+}
@@ -4,26 +4,65 @@ import android.content.Context;
 import android.content.SharedPreferences;
 import android.os.Handler;
 import android.os.Looper;
+import android.os.SystemClock;
 import android.util.Log;
 
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class MealSyncManager {
     private static final String TAG = "MealSyncManager";
     private static final String PREFS_NAME = "meal_sync_prefs";
-    private static final String KEY_PENDING_SYNC = "pending_sync_meals";
+    private static final String KEY_PENDING_SYNC = "pending_sync_meals"; // Pre-log queue of adds, migrated on start
+    private static final String KEY_OPERATION_LOG = "pending_operations";
     private static final String KEY_LAST_SYNC = "last_sync_timestamp";
     private static final String KEY_SPREADSHEET_ID = "spreadsheet_id";
-    private static final int MAX_RETRY_ATTEMPTS = 3;
-    private static final int RETRY_DELAY_MS = 2000;
+    private static final long READY_TIMEOUT_MS = 15000;
+
+    // Day cache budgets; overridable through these preference keys
+    private static final String KEY_DAY_CACHE_MEMORY_KB = "day_cache_memory_kb";
+    private static final String KEY_DAY_CACHE_DISK_KB = "day_cache_disk_kb";
+    private static final int DEFAULT_DAY_CACHE_MEMORY_KB = 512;
+    private static final int DEFAULT_DAY_CACHE_DISK_KB = 4096;
+    private static final String DAY_CACHE_DIR = "day_cache";
+
+    // Full sync result when the local and cloud histories were already identical
+    public static final String MESSAGE_ALREADY_SYNCED = "All meals are already synced";
 
     private Context context;
     private GoogleSheetsManager sheetsManager;
     private SharedPreferences prefs;
+    private final SyncOperationLog operationLog;
     private Handler mainHandler;
+    private final List<ReadyGatedOperation> parkedOperations = new ArrayList<>();
+    private boolean isShutdown = false;
+    private boolean accountCleared = false; // Nothing is saved for a signed-out account
+    private ConnectivityMonitor connectivityMonitor; // Only the shared instance flushes on its own
+    // Log replays and full syncs both upload pending adds, so they run one at a time;
+    // the ones that arrive meanwhile wait here, main thread only
+    private boolean uploadInProgress = false;
+    private final List<Runnable> waitingUploads = new ArrayList<>();
+    private final Runnable autoFlush = this::flushPendingForNetwork;
+    private final SyncMetrics metrics = SyncMetrics.getInstance();
+    // Cloud meals of single days for when the local history doesn't have them; changed only on its executor
+    private final MealDayCache dayCache;
+    private final ExecutorService dayCacheExecutor = Executors.newSingleThreadExecutor();
+    // Hashes and compares whole histories for full syncs, away from the main thread
+    private final ExecutorService compareExecutor = Executors.newSingleThreadExecutor();
 
     // Callbacks
     public interface InitializationCallback {
@@ -38,68 +77,206 @@ public class MealSyncManager {
         this.initCallback = callback;
         // Forward the callback to GoogleSheetsManager
         if (sheetsManager != null) {
-            sheetsManager.setInitializationCallback((GoogleSheetsManager.InitializationCallback) callback);
+            sheetsManager.setInitializationCallback(
+                    callback != null ? callback::onInitializationComplete : null);
         }
     }
+
+    // Start building the Sheets client in the background ahead of the first operation
+    public void start() {
+        sheetsManager.start();
+    }
+
+    // Fires once on the main thread as soon as the Sheets service is ready (or failed to initialize)
+    public void whenReady(InitializationCallback callback) {
+        sheetsManager.whenReady(callback::onInitializationComplete);
+    }
     public interface SyncStatusListener {
         void onSyncStarted();
         void onSyncCompleted(boolean success, String message);
         void onSyncProgress(int completed, int total);
     }
 
-    public MealSyncManager(Context context) {
-        this.context = context;
-        this.prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
-        this.sheetsManager = new GoogleSheetsManager(context);
-        this.mainHandler = new Handler(Looper.getMainLooper());
+    private static MealSyncManager instance;
+
+    /**
+     * Get the process-wide sync engine, creating it on first use. The engine is bound to the
+     * application context so it survives Activity recreation; only {@link #releaseInstance()}
+     * (on logout) tears it down.
+     * @param context Any context; only its application context is retained
+     * @return The shared MealSyncManager
+     */
+    public static synchronized MealSyncManager getInstance(Context context) {
+        if (instance == null) {
+            instance = new MealSyncManager(context.getApplicationContext());
+        }
+        return instance;
     }
 
-    public void syncMeal(Meal meal, SyncStatusListener listener) {
-        if (listener != null) {
-            listener.onSyncStarted();
+    /**
+     * Shut down and discard the shared engine on sign-out, and forget the account's
+     * pending changes and spreadsheet, so the next account gets a fresh Sheets client and
+     * never replays the previous one's changes into its own sheet
+     */
+    public static synchronized void releaseInstance() {
+        if (instance != null) {
+            instance.clearDayCache();
+            instance.shutdown();
+            instance.clearAccountState();
+            instance = null;
         }
+    }
 
-        syncMealWithRetry(meal, listener, 0);
+    private MealSyncManager(Context context) {
+        this(context, new GoogleSheetsManager(context), PREFS_NAME);
+        connectivityMonitor = new ConnectivityMonitor(context, this::onNetworkClassChanged);
+        connectivityMonitor.start();
     }
 
-    private void syncMealWithRetry(Meal meal, SyncStatusListener listener, int retryAttempt) {
-        if (!sheetsManager.isReady()) {
-            if (retryAttempt < MAX_RETRY_ATTEMPTS) {
-                Log.d(TAG, "Sheets service not ready, retrying in " + RETRY_DELAY_MS + "ms (attempt " + (retryAttempt + 1) + "/" + MAX_RETRY_ATTEMPTS + ")");
-                mainHandler.postDelayed(() -> {
-                    syncMealWithRetry(meal, listener, retryAttempt + 1);
-                }, RETRY_DELAY_MS);
-                return;
-            } else {
-                // Max retries reached, add to pending sync
-                Log.w(TAG, "Max retry attempts reached, adding meal to pending sync");
-                addToPendingSync(meal);
-                if (listener != null) {
-                    listener.onSyncCompleted(false, "Service not ready after multiple attempts. Meal saved for later sync.");
+    /**
+     * Create a standalone engine over the given backend, outside the shared instance, for
+     * load and soak runs against an {@link InMemorySheetsBackend}. Pending-sync state is kept
+     * in separate preferences so it never mixes with the user's real queue.
+     * @param context Context used for preferences
+     * @param backend Backend the engine syncs to
+     * @return A new engine; the caller must {@link #shutdown()} it
+     */
+    static MealSyncManager createWithBackend(Context context, SheetsBackend backend) {
+        return new MealSyncManager(context, new GoogleSheetsManager(context, backend),
+                PREFS_NAME + "_" + backend.getClass().getSimpleName());
+    }
+
+    private MealSyncManager(Context context, GoogleSheetsManager sheetsManager, String prefsName) {
+        this.context = context;
+        this.prefs = context.getSharedPreferences(prefsName, Context.MODE_PRIVATE);
+        this.sheetsManager = sheetsManager;
+        this.mainHandler = new Handler(Looper.getMainLooper());
+        this.operationLog = loadOperationLog();
+        this.dayCache = new MealDayCache(new File(new File(context.getCacheDir(), DAY_CACHE_DIR), prefsName),
+                prefs.getInt(KEY_DAY_CACHE_MEMORY_KB, DEFAULT_DAY_CACHE_MEMORY_KB) * 1024L,
+                prefs.getInt(KEY_DAY_CACHE_DISK_KB, DEFAULT_DAY_CACHE_DISK_KB) * 1024L);
+    }
+
+    private SyncOperationLog loadOperationLog() {
+        SyncOperationLog log = SyncOperationLog.decode(prefs.getStringSet(KEY_OPERATION_LOG, new HashSet<>()));
+
+        Set<String> legacyPending = prefs.getStringSet(KEY_PENDING_SYNC, null);
+        if (legacyPending != null) {
+            for (String mealData : legacyPending) {
+                Meal meal = parseMealFromString(mealData);
+                if (meal != null) {
+                    log.record(SyncOperationLog.Type.ADD, meal);
                 }
-                return;
             }
+            prefs.edit()
+                    .putStringSet(KEY_OPERATION_LOG, log.encode())
+                    .remove(KEY_PENDING_SYNC)
+                    .apply();
+        }
+        return log;
+    }
+
+    /**
+     * An operation parked until the Sheets service is ready. Exactly one of
+     * {@link #run()} or {@link #onUnavailable(String)} is invoked, on the main thread.
+     */
+    private abstract static class ReadyGatedOperation {
+        private final String name;
+        private final long submittedAtMillis = SystemClock.elapsedRealtime();
+        private boolean settled = false;
+
+        ReadyGatedOperation(String name) {
+            this.name = name;
+        }
+
+        abstract void run();
+
+        abstract void onUnavailable(String reason);
+    }
+
+    // Queue an operation behind the readiness signal; it is released the moment the
+    // service is up, or failed once the initialization fails or the ready timeout expires
+    private void submit(ReadyGatedOperation operation) {
+        if (isShutdown) {
+            operation.onUnavailable("Sync service has been shut down.");
+            return;
+        }
+
+        if (sheetsManager.isReady()) {
+            operation.settled = true;
+            operation.run();
+            return;
+        }
+
+        Diagnostics.d(TAG, "Sheets service not ready, parking operation: {}", operation.name);
+        parkedOperations.add(operation);
+
+        Runnable timeout = () -> settle(operation, false,
+                "Service not ready after " + (READY_TIMEOUT_MS / 1000) + " seconds.");
+        mainHandler.postDelayed(timeout, READY_TIMEOUT_MS);
+
+        sheetsManager.whenReady((success, message) -> {
+            mainHandler.removeCallbacks(timeout);
+            settle(operation, success, message);
+        });
+    }
+
+    private void settle(ReadyGatedOperation operation, boolean ready, String message) {
+        if (operation.settled) {
+            return;
+        }
+        operation.settled = true;
+        parkedOperations.remove(operation);
+
+        long waitedMillis = SystemClock.elapsedRealtime() - operation.submittedAtMillis;
+        metrics.recordRequest(SyncMetrics.Operation.READY_WAIT, waitedMillis, 0, 0);
+
+        if (ready) {
+            operation.run();
+        } else {
+            metrics.recordFailure(SyncMetrics.Operation.READY_WAIT);
+            Diagnostics.w(TAG, "Operation {} abandoned: {}", operation.name, message);
+            operation.onUnavailable(message);
+        }
+    }
+
+    public void syncMeal(Meal meal, SyncStatusListener listener) {
+        invalidateCachedDay(meal.getDate());
+        if (listener != null) {
+            listener.onSyncStarted();
         }
 
-        // Service is ready, proceed with sync
-        sheetsManager.syncMealToSheets(meal, new GoogleSheetsManager.SyncCallback() {
+        submit(new ReadyGatedOperation("sync meal") {
             @Override
-            public void onSuccess(String message) {
-                updateLastSyncTime();
-                if (listener != null) {
-                    listener.onSyncCompleted(true, message);
-                }
-                Log.d(TAG, "Meal synced successfully: " + meal.getName());
+            void run() {
+                sheetsManager.syncMealToSheets(meal, new GoogleSheetsManager.SyncCallback() {
+                    @Override
+                    public void onSuccess(String message) {
+                        updateLastSyncTime();
+                        if (listener != null) {
+                            listener.onSyncCompleted(true, message);
+                        }
+                        Diagnostics.d(TAG, "Meal synced successfully: {}", meal.getName());
+                    }
+
+                    @Override
+                    public void onError(String error) {
+                        // Add to pending sync for retry later
+                        addToPendingSync(meal);
+                        if (listener != null) {
+                            listener.onSyncCompleted(false, error);
+                        }
+                        Log.e(TAG, "Failed to sync meal: " + error);
+                    }
+                });
             }
 
             @Override
-            public void onError(String error) {
-                // Add to pending sync for retry later
+            void onUnavailable(String reason) {
                 addToPendingSync(meal);
                 if (listener != null) {
-                    listener.onSyncCompleted(false, error);
+                    listener.onSyncCompleted(false, reason + " Meal saved for later sync.");
                 }
-                Log.e(TAG, "Failed to sync meal: " + error);
             }
         });
     }
@@ -107,147 +284,285 @@ public class MealSyncManager {
     public void syncMultipleMeals(List<Meal> meals, SyncStatusListener listener) {
         if (meals.isEmpty()) return;
 
+        for (Meal meal : meals) {
+            invalidateCachedDay(meal.getDate());
+        }
         if (listener != null) {
             listener.onSyncStarted();
         }
 
-        syncMultipleMealsWithRetry(meals, listener, 0);
-    }
+        submit(new ReadyGatedOperation("sync " + meals.size() + " meals") {
+            @Override
+            void run() {
+                sheetsManager.syncMultipleMealsToSheets(meals, new GoogleSheetsManager.BulkSyncCallback() {
+                    @Override
+                    public void onProgress(int completed, int total) {
+                        if (listener != null) {
+                            listener.onSyncProgress(completed, total);
+                        }
+                    }
 
-    private void syncMultipleMealsWithRetry(List<Meal> meals, SyncStatusListener listener, int retryAttempt) {
-        if (!sheetsManager.isReady()) {
-            if (retryAttempt < MAX_RETRY_ATTEMPTS) {
-                Log.d(TAG, "Sheets service not ready for multiple sync, retrying in " + RETRY_DELAY_MS + "ms (attempt " + (retryAttempt + 1) + "/" + MAX_RETRY_ATTEMPTS + ")");
-                mainHandler.postDelayed(() -> {
-                    syncMultipleMealsWithRetry(meals, listener, retryAttempt + 1);
-                }, RETRY_DELAY_MS);
-                return;
-            } else {
-                // Max retries reached
-                addMultipleToPendingSync(meals);
-                if (listener != null) {
-                    listener.onSyncCompleted(false, "Service not ready after multiple attempts. Meals saved for later sync.");
-                }
-                return;
-            }
-        }
+                    @Override
+                    public void onComplete(int syncedCount, List<Meal> failedMeals, String error) {
+                        // Only meals from failed chunks stay pending; acknowledged ones are done
+                        List<Meal> syncedMeals = new ArrayList<>(meals);
+                        syncedMeals.removeAll(failedMeals);
+                        removeFromPendingSync(syncedMeals);
 
-        sheetsManager.syncMultipleMealsToSheets(meals, new GoogleSheetsManager.SyncCallback() {
-            @Override
-            public void onSuccess(String message) {
-                updateLastSyncTime();
-                if (listener != null) {
-                    listener.onSyncCompleted(true, message);
-                }
-                Log.d(TAG, "Multiple meals synced successfully");
+                        if (failedMeals.isEmpty()) {
+                            updateLastSyncTime();
+                            if (listener != null) {
+                                listener.onSyncCompleted(true, syncedCount + " meals synced successfully");
+                            }
+                            Diagnostics.d(TAG, "Multiple meals synced successfully");
+                            return;
+                        }
+
+                        if (syncedCount > 0) {
+                            updateLastSyncTime();
+                        }
+                        addMultipleToPendingSync(failedMeals);
+                        if (listener != null) {
+                            listener.onSyncCompleted(false, syncedCount + "/" + meals.size() + " meals synced. " + error);
+                        }
+                        Log.e(TAG, "Failed to sync " + failedMeals.size() + " meals: " + error);
+                    }
+                });
             }
 
             @Override
-            public void onError(String error) {
-                // Add all meals to pending sync for retry later
+            void onUnavailable(String reason) {
                 addMultipleToPendingSync(meals);
                 if (listener != null) {
-                    listener.onSyncCompleted(false, error);
+                    listener.onSyncCompleted(false, reason + " Meals saved for later sync.");
                 }
-                Log.e(TAG, "Failed to sync multiple meals: " + error);
             }
         });
     }
 
     public void loadMealsFromCloud(GoogleSheetsManager.LoadCallback callback) {
-        loadMealsFromCloudWithRetry(callback, 0);
-    }
-
-    private void loadMealsFromCloudWithRetry(GoogleSheetsManager.LoadCallback callback, int retryAttempt) {
-        if (!sheetsManager.isReady()) {
-            if (retryAttempt < MAX_RETRY_ATTEMPTS) {
-                Log.d(TAG, "Sheets service not ready for loading, retrying in " + RETRY_DELAY_MS + "ms (attempt " + (retryAttempt + 1) + "/" + MAX_RETRY_ATTEMPTS + ")");
-                mainHandler.postDelayed(() -> {
-                    loadMealsFromCloudWithRetry(callback, retryAttempt + 1);
-                }, RETRY_DELAY_MS);
-                return;
-            } else {
-                // Max retries reached
+        submit(new ReadyGatedOperation("load meals") {
+            @Override
+            void run() {
+                sheetsManager.loadMealsFromSheets(callback);
+            }
+
+            @Override
+            void onUnavailable(String reason) {
                 if (callback != null) {
-                    callback.onError("Service not ready after multiple attempts. Please try again later.");
+                    callback.onError(reason + " Please try again later.");
                 }
-                return;
             }
+        });
+    }
+
+    /**
+     * Load the meals of one day through the day cache. A cached day is served straight
+     * away, even offline; a missing one is fetched on its own once the service is ready
+     * and then cached.
+     * @param date Date in yyyy-MM-dd format
+     * @param callback Receives the day's meals on the main thread
+     */
+    public void loadMealsForDate(String date, GoogleSheetsManager.LoadCallback callback) {
+        if (isShutdown) {
+            callback.onError("Sync service has been shut down.");
+            return;
         }
 
-        sheetsManager.loadMealsFromSheets(callback);
+        dayCacheExecutor.execute(() -> {
+            List<Meal> cached = dayCache.get(date);
+            long generation = dayCache.getGeneration();
+            mainHandler.post(() -> {
+                if (cached != null) {
+                    callback.onMealsLoaded(cached);
+                } else {
+                    fetchMealsForDate(date, generation, callback);
+                }
+            });
+        });
     }
 
-    public void loadMealsForDate(String date, GoogleSheetsManager.LoadCallback callback) {
-        loadMealsForDateWithRetry(date, callback, 0);
-    }
-
-    private void loadMealsForDateWithRetry(String date, GoogleSheetsManager.LoadCallback callback, int retryAttempt) {
-        if (!sheetsManager.isReady()) {
-            if (retryAttempt < MAX_RETRY_ATTEMPTS) {
-                Log.d(TAG, "Sheets service not ready for date loading, retrying in " + RETRY_DELAY_MS + "ms");
-                mainHandler.postDelayed(() -> {
-                    loadMealsForDateWithRetry(date, callback, retryAttempt + 1);
-                }, RETRY_DELAY_MS);
-                return;
-            } else {
+    private void fetchMealsForDate(String date, long generation, GoogleSheetsManager.LoadCallback callback) {
+        submit(new ReadyGatedOperation("load meals for " + date) {
+            @Override
+            void run() {
+                sheetsManager.loadMealsForDate(date, new GoogleSheetsManager.LoadCallback() {
+                    @Override
+                    public void onMealsLoaded(List<Meal> meals) {
+                        if (!isShutdown) {
+                            dayCacheExecutor.execute(() -> dayCache.put(date, meals, generation));
+                        }
+                        callback.onMealsLoaded(meals);
+                    }
+
+                    @Override
+                    public void onError(String error) {
+                        callback.onError(error);
+                    }
+                });
+            }
+
+            @Override
+            void onUnavailable(String reason) {
                 if (callback != null) {
-                    callback.onError("Service not ready after multiple attempts.");
+                    callback.onError(reason);
                 }
-                return;
             }
-        }
-
-        sheetsManager.loadMealsForDate(date, callback);
+        });
     }
 
     public void deleteMeal(Meal meal, SyncStatusListener listener) {
+        invalidateCachedDay(meal.getDate());
         if (listener != null) {
             listener.onSyncStarted();
         }
 
-        deleteMealWithRetry(meal, listener, 0);
-    }
+        submit(new ReadyGatedOperation("delete meal") {
+            @Override
+            void run() {
+                sheetsManager.deleteMealFromSheets(meal, new GoogleSheetsManager.SyncCallback() {
+                    @Override
+                    public void onSuccess(String message) {
+                        updateLastSyncTime();
+                        // A pending add or edit of the meal must not bring it back
+                        if (!operationLog.isEmpty()) {
+                            operationLog.discard(meal.getId());
+                            saveOperationLog();
+                        }
+                        if (listener != null) {
+                            listener.onSyncCompleted(true, message);
+                        }
+                        Diagnostics.d(TAG, "Meal deleted successfully: {}", meal.getName());
+                    }
 
-    private void deleteMealWithRetry(Meal meal, SyncStatusListener listener, int retryAttempt) {
-        if (!sheetsManager.isReady()) {
-            if (retryAttempt < MAX_RETRY_ATTEMPTS) {
-                Log.d(TAG, "Sheets service not ready for deletion, retrying in " + RETRY_DELAY_MS + "ms");
-                mainHandler.postDelayed(() -> {
-                    deleteMealWithRetry(meal, listener, retryAttempt + 1);
-                }, RETRY_DELAY_MS);
-                return;
-            } else {
+                    @Override
+                    public void onError(String error) {
+                        // Keep the delete for the next retry
+                        recordOperation(SyncOperationLog.Type.DELETE, meal);
+                        if (listener != null) {
+                            listener.onSyncCompleted(false, error);
+                        }
+                        Log.e(TAG, "Failed to delete meal: " + error);
+                    }
+                });
+            }
+
+            @Override
+            void onUnavailable(String reason) {
+                recordOperation(SyncOperationLog.Type.DELETE, meal);
                 if (listener != null) {
-                    listener.onSyncCompleted(false, "Service not ready. Please try again later.");
+                    listener.onSyncCompleted(false, reason + " Delete saved for later sync.");
                 }
-                return;
             }
+        });
+    }
+
+    /**
+     * Send an edited meal to the sheet by rewriting its row in place
+     * @param before Copy of the meal taken before the edit
+     * @param meal The edited meal
+     * @param listener Notified when the row is rewritten; a failed edit stays pending
+     */
+    public void updateMeal(Meal before, Meal meal, SyncStatusListener listener) {
+        invalidateCachedDay(before.getDate());
+        invalidateCachedDay(meal.getDate());
+        if (listener != null) {
+            listener.onSyncStarted();
         }
 
-        sheetsManager.deleteMealFromSheets(meal, new GoogleSheetsManager.SyncCallback() {
+        submit(new ReadyGatedOperation("update meal") {
             @Override
-            public void onSuccess(String message) {
-                updateLastSyncTime();
-                if (listener != null) {
-                    listener.onSyncCompleted(true, message);
-                }
-                Log.d(TAG, "Meal deleted successfully: " + meal.getName());
+            void run() {
+                sheetsManager.updateMealInSheets(before, meal, new GoogleSheetsManager.SyncCallback() {
+                    @Override
+                    public void onSuccess(String message) {
+                        updateLastSyncTime();
+                        // The row now holds the latest values; a pending add or edit would only repeat them
+                        if (!operationLog.isEmpty()) {
+                            operationLog.discard(meal.getId());
+                            saveOperationLog();
+                        }
+                        if (listener != null) {
+                            listener.onSyncCompleted(true, message);
+                        }
+                        Diagnostics.d(TAG, "Meal updated successfully: {}", meal.getName());
+                    }
+
+                    @Override
+                    public void onError(String error) {
+                        recordOperation(SyncOperationLog.Type.UPDATE, meal, before);
+                        if (listener != null) {
+                            listener.onSyncCompleted(false, error);
+                        }
+                        Log.e(TAG, "Failed to update meal: " + error);
+                    }
+                });
             }
 
             @Override
-            public void onError(String error) {
+            void onUnavailable(String reason) {
+                recordOperation(SyncOperationLog.Type.UPDATE, meal, before);
                 if (listener != null) {
-                    listener.onSyncCompleted(false, error);
+                    listener.onSyncCompleted(false, reason + " Edit saved for later sync.");
                 }
-                Log.e(TAG, "Failed to delete meal: " + error);
             }
         });
     }
 
+    /**
+     * Record a meal edited while sync is unavailable; an edit of a meal whose add is still
+     * pending simply changes what the add uploads
+     * @param before Copy of the meal as it was before the edit
+     * @param meal The edited meal
+     */
+    public void queueUpdate(Meal before, Meal meal) {
+        invalidateCachedDay(meal.getDate());
+        recordOperation(SyncOperationLog.Type.UPDATE, meal, before);
+    }
+
+    /**
+     * Record a meal added while sync is unavailable; it is uploaded by {@link #retryPendingSync}
+     * @param meal The new meal
+     */
+    public void queueAdd(Meal meal) {
+        invalidateCachedDay(meal.getDate());
+        recordOperation(SyncOperationLog.Type.ADD, meal);
+    }
+
+    /**
+     * Record a meal deleted while sync is unavailable. If the meal's add is still pending,
+     * the two cancel out and nothing is sent.
+     * @param meal The deleted meal
+     */
+    public void queueDelete(Meal meal) {
+        invalidateCachedDay(meal.getDate());
+        recordOperation(SyncOperationLog.Type.DELETE, meal);
+    }
+
+    /**
+     * Replay the pending operation log: rewrites and deletes go out together with one ID
+     * lookup, then all adds in one chunked upload. Operations that fail stay in the log.
+     * @param listener Notified when the replay completes
+     */
     public void retryPendingSync(SyncStatusListener listener) {
-        Set<String> pendingMeals = prefs.getStringSet(KEY_PENDING_SYNC, new HashSet<>());
-        if (pendingMeals.isEmpty()) {
+        retryPendingSync(Integer.MAX_VALUE, listener);
+    }
+
+    /**
+     * Replay at most the given number of the oldest pending operations. A replay or full
+     * sync already running finishes first; the log is read only once it has.
+     * @param maxOperations Batch limit
+     * @param listener Notified when the replay completes
+     */
+    public void retryPendingSync(int maxOperations, SyncStatusListener listener) {
+        startUpload(() -> replayPendingOperations(maxOperations, finishingUpload(listener)));
+    }
+
+    private void replayPendingOperations(int maxOperations, SyncStatusListener listener) {
+        List<SyncOperationLog.Entry> allEntries = operationLog.getEntries();
+        List<SyncOperationLog.Entry> entries = allEntries.size() > maxOperations
+                ? new ArrayList<>(allEntries.subList(0, maxOperations)) : allEntries;
+        if (entries.isEmpty()) {
             if (listener != null) {
                 listener.onSyncCompleted(true, "No pending meals to sync");
             }
@@ -258,82 +573,187 @@ public class MealSyncManager {
             listener.onSyncStarted();
         }
 
-        // Convert stored meal data back to Meal objects and sync
-        List<Meal> mealsToSync = new ArrayList<>();
-        for (String mealData : pendingMeals) {
-            Meal meal = parseMealFromString(mealData);
-            if (meal != null) {
-                mealsToSync.add(meal);
+        List<Meal> adds = new ArrayList<>();
+        List<Meal> updates = new ArrayList<>();
+        List<Meal> deletes = new ArrayList<>();
+        Map<String, Meal> stored = new HashMap<>();
+        for (SyncOperationLog.Entry entry : entries) {
+            if (entry.getStored() != null) {
+                stored.put(entry.getMeal().getId(), entry.getStored());
+            }
+            switch (entry.getType()) {
+                case ADD:
+                    adds.add(entry.getMeal());
+                    break;
+                case UPDATE:
+                    updates.add(entry.getMeal());
+                    break;
+                case DELETE:
+                    deletes.add(entry.getMeal());
+                    break;
             }
         }
+        Diagnostics.d(TAG, "Replaying {} adds, {} updates, {} deletes", adds.size(), updates.size(), deletes.size());
 
-        if (!mealsToSync.isEmpty()) {
-            syncMultipleMeals(mealsToSync, new SyncStatusListener() {
-                @Override
-                public void onSyncStarted() {
-                    // Already notified
-                }
+        if (updates.isEmpty() && deletes.isEmpty()) {
+            replayAdds(adds, 0, null, listener);
+            return;
+        }
 
-                @Override
-                public void onSyncCompleted(boolean success, String message) {
-                    if (success) {
-                        clearPendingSync();
+        submit(new ReadyGatedOperation("replay " + entries.size() + " operations") {
+            @Override
+            void run() {
+                sheetsManager.applyRowChanges(updates, deletes, stored, new GoogleSheetsManager.BulkSyncCallback() {
+                    @Override
+                    public void onProgress(int completed, int total) {
                     }
-                    if (listener != null) {
-                        listener.onSyncCompleted(success, message);
+
+                    @Override
+                    public void onComplete(int syncedCount, List<Meal> failedMeals, String error) {
+                        for (SyncOperationLog.Entry entry : entries) {
+                            if (entry.getType() != SyncOperationLog.Type.ADD && !failedMeals.contains(entry.getMeal())) {
+                                operationLog.acknowledge(entry);
+                            }
+                        }
+                        saveOperationLog();
+                        if (syncedCount > 0) {
+                            updateLastSyncTime();
+                        }
+                        replayAdds(adds, failedMeals.size(), error, listener);
                     }
+                });
+            }
+
+            @Override
+            void onUnavailable(String reason) {
+                if (listener != null) {
+                    listener.onSyncCompleted(false, reason + " Changes saved for later sync.");
                 }
+            }
+        });
+    }
 
-                @Override
-                public void onSyncProgress(int completed, int total) {
-                    if (listener != null) {
-                        listener.onSyncProgress(completed, total);
+    private void replayAdds(List<Meal> adds, int failedChanges, String changeError, SyncStatusListener listener) {
+        if (adds.isEmpty()) {
+            if (listener != null) {
+                listener.onSyncCompleted(failedChanges == 0,
+                        failedChanges == 0 ? "Pending changes synced" : failedChanges + " changes failed. " + changeError);
+            }
+            return;
+        }
+
+        syncMultipleMeals(adds, new SyncStatusListener() {
+            @Override
+            public void onSyncStarted() {
+                // Already notified
+            }
+
+            @Override
+            public void onSyncCompleted(boolean success, String message) {
+                // syncMultipleMeals already dropped acknowledged adds from the log
+                if (listener != null) {
+                    if (failedChanges > 0) {
+                        listener.onSyncCompleted(false, message + " " + failedChanges + " changes failed. " + changeError);
+                    } else {
+                        listener.onSyncCompleted(success, message);
                     }
                 }
-            });
-        }
+            }
+
+            @Override
+            public void onSyncProgress(int completed, int total) {
+                if (listener != null) {
+                    listener.onSyncProgress(completed, total);
+                }
+            }
+        });
     }
 
+    /**
+     * Upload the local meals the cloud is missing. The total digest of both histories is
+     * compared first, so a sync with nothing to do costs a single-cell read. Only when the
+     * digests differ is the cloud history loaded, and then just the days whose digests
+     * differ are compared. Both histories are hashed and compared on a background thread.
+     * @param localMeals All meals held on the device; copied before this returns
+     * @param listener Completes with {@link #MESSAGE_ALREADY_SYNCED} when both sides matched
+     */
     public void performFullSync(List<Meal> localMeals, SyncStatusListener listener) {
         if (listener != null) {
             listener.onSyncStarted();
         }
-
-        performFullSyncWithRetry(localMeals, listener, 0);
+        // The caller's list keeps changing; sync the history as it is now
+        List<Meal> snapshot = new ArrayList<>(localMeals);
+        startUpload(() -> fullSync(snapshot, finishingUpload(listener)));
     }
 
-    private void performFullSyncWithRetry(List<Meal> localMeals, SyncStatusListener listener, int retryAttempt) {
-        if (!sheetsManager.isReady()) {
-            if (retryAttempt < MAX_RETRY_ATTEMPTS) {
-                Log.d(TAG, "Sheets service not ready for full sync, retrying in " + RETRY_DELAY_MS + "ms");
-                mainHandler.postDelayed(() -> {
-                    performFullSyncWithRetry(localMeals, listener, retryAttempt + 1);
-                }, RETRY_DELAY_MS);
-                return;
-            } else {
+    private void fullSync(List<Meal> localMeals, SyncStatusListener listener) {
+        submit(new ReadyGatedOperation("full sync") {
+            @Override
+            void run() {
+                compareExecutor.execute(() -> {
+                    MealDigests localDigests = MealDigests.of(localMeals);
+                    mainHandler.post(() -> compareTotalDigest(localMeals, localDigests, listener));
+                });
+            }
+
+            @Override
+            void onUnavailable(String reason) {
                 if (listener != null) {
-                    listener.onSyncCompleted(false, "Service not ready after multiple attempts. Please check your internet connection and try again.");
+                    listener.onSyncCompleted(false, reason + " Please check your internet connection and try again.");
                 }
-                return;
             }
+        });
+    }
+
+    private void compareTotalDigest(List<Meal> localMeals, MealDigests localDigests, SyncStatusListener listener) {
+        if (isShutdown) {
+            if (listener != null) {
+                listener.onSyncCompleted(false, "Sync service has been shut down.");
+            }
+            return;
         }
+        sheetsManager.loadTotalDigest(new GoogleSheetsManager.DigestCallback() {
+            @Override
+            public void onDigestLoaded(long totalDigest) {
+                if (totalDigest == localDigests.getTotal()) {
+                    Diagnostics.d(TAG, "Digests match, {} local meals already synced", localMeals.size());
+                    flushDigests();
+                    if (listener != null) {
+                        listener.onSyncCompleted(true, MESSAGE_ALREADY_SYNCED);
+                    }
+                    return;
+                }
+                syncDifferingDays(localMeals, localDigests, listener);
+            }
 
-        // First, load all meals from cloud
-        sheetsManager.loadMealsFromSheets(new GoogleSheetsManager.LoadCallback() {
             @Override
-            public void onMealsLoaded(List<Meal> cloudMeals) {
-                // Compare local and cloud meals
-                List<Meal> mealsToUpload = findMealsToUpload(localMeals, cloudMeals);
+            public void onError(String error) {
+                Diagnostics.w(TAG, "Digest unavailable, comparing full histories: {}", error);
+                syncDifferingDays(localMeals, localDigests, listener);
+            }
+        });
+    }
 
-                if (mealsToUpload.isEmpty()) {
+    // The sheet is not ordered by date, so the differing days are found in one full load
+    private void syncDifferingDays(List<Meal> localMeals, MealDigests localDigests, SyncStatusListener listener) {
+        sheetsManager.loadMealsAndRebuildDigests(new GoogleSheetsManager.LoadCallback() {
+            @Override
+            public void onMealsLoaded(List<Meal> cloudMeals) {
+                if (isShutdown) {
                     if (listener != null) {
-                        listener.onSyncCompleted(true, "All meals are already synced");
+                        listener.onSyncCompleted(false, "Sync service has been shut down.");
                     }
                     return;
                 }
+                compareExecutor.execute(() -> {
+                    Set<String> differingDays = MealDigests.differingKeys(
+                            localDigests.getDays(), MealDigests.of(cloudMeals).getDays());
+                    Diagnostics.d(TAG, "{} days differ between local and cloud", differingDays.size());
 
-                // Upload missing meals
-                syncMultipleMeals(mealsToUpload, listener);
+                    List<Meal> mealsToUpload = findMealsToUpload(
+                            mealsOnDays(localMeals, differingDays), mealsOnDays(cloudMeals, differingDays));
+                    mainHandler.post(() -> uploadMissingMeals(mealsToUpload, listener));
+                });
             }
 
             @Override
@@ -345,50 +765,236 @@ public class MealSyncManager {
         });
     }
 
-    private List<Meal> findMealsToUpload(List<Meal> localMeals, List<Meal> cloudMeals) {
-        List<Meal> mealsToUpload = new ArrayList<>();
+    private void uploadMissingMeals(List<Meal> mealsToUpload, SyncStatusListener listener) {
+        if (mealsToUpload.isEmpty()) {
+            // The cloud has meals this device doesn't
+            if (listener != null) {
+                listener.onSyncCompleted(true, "All local meals are already synced");
+            }
+            return;
+        }
 
-        // Create a set of cloud meal signatures for quick lookup
-        Set<String> cloudMealSignatures = new HashSet<>();
-        for (Meal cloudMeal : cloudMeals) {
-            cloudMealSignatures.add(createMealSignature(cloudMeal));
+        // Upload missing meals, then record them in the stored digests
+        syncMultipleMeals(mealsToUpload, new SyncStatusListener() {
+            @Override
+            public void onSyncStarted() {
+                // Already notified
+            }
+
+            @Override
+            public void onSyncCompleted(boolean success, String message) {
+                flushDigests();
+                if (listener != null) {
+                    listener.onSyncCompleted(success, message);
+                }
+            }
+
+            @Override
+            public void onSyncProgress(int completed, int total) {
+                if (listener != null) {
+                    listener.onSyncProgress(completed, total);
+                }
+            }
+        });
+    }
+
+    // Run an upload now, or once the one in progress has finished
+    private void startUpload(Runnable upload) {
+        if (uploadInProgress) {
+            Diagnostics.d(TAG, "Upload in progress, {} waiting", waitingUploads.size() + 1);
+            waitingUploads.add(upload);
+            return;
         }
+        uploadInProgress = true;
+        upload.run();
+    }
 
-        // Find local meals that aren't in cloud
-        for (Meal localMeal : localMeals) {
-            if (!cloudMealSignatures.contains(createMealSignature(localMeal))) {
-                mealsToUpload.add(localMeal);
+    // Passes results through, then releases the next waiting upload
+    private SyncStatusListener finishingUpload(SyncStatusListener listener) {
+        return new SyncStatusListener() {
+            @Override
+            public void onSyncStarted() {
+                if (listener != null) {
+                    listener.onSyncStarted();
+                }
+            }
+
+            @Override
+            public void onSyncCompleted(boolean success, String message) {
+                try {
+                    if (listener != null) {
+                        listener.onSyncCompleted(success, message);
+                    }
+                } finally {
+                    uploadInProgress = false;
+                    if (!waitingUploads.isEmpty()) {
+                        startUpload(waitingUploads.remove(0));
+                    } else {
+                        // Whatever is left (batch limit or failures) goes out at the next interval
+                        scheduleAutoFlush(false);
+                    }
+                }
+            }
+
+            @Override
+            public void onSyncProgress(int completed, int total) {
+                if (listener != null) {
+                    listener.onSyncProgress(completed, total);
+                }
+            }
+        };
+    }
+
+    private static List<Meal> mealsOnDays(List<Meal> meals, Set<String> days) {
+        List<Meal> result = new ArrayList<>();
+        for (Meal meal : meals) {
+            if (days.contains(meal.getDate())) {
+                result.add(meal);
             }
         }
+        return result;
+    }
 
-        Log.d(TAG, "Found " + mealsToUpload.size() + " meals to upload out of " + localMeals.size() + " local meals");
-        return mealsToUpload;
+    // Best effort: digest changes that can't be written now stay pending for the next sync
+    private void flushDigests() {
+        sheetsManager.flushDigests(new GoogleSheetsManager.SyncCallback() {
+            @Override
+            public void onSuccess(String message) {
+            }
+
+            @Override
+            public void onError(String error) {
+                Diagnostics.w(TAG, "Digest flush deferred: {}", error);
+            }
+        });
     }
 
-    private String createMealSignature(Meal meal) {
-        // Create a unique signature for comparing meals
-        return meal.getDate() + "|" + meal.getFormattedTime() + "|" + meal.getName() + "|" + meal.getCategory();
+    private List<Meal> findMealsToUpload(List<Meal> localMeals, List<Meal> cloudMeals) {
+        List<Meal> mealsToUpload = MealReconciler.findMealsToUpload(localMeals, cloudMeals);
+        Diagnostics.d(TAG, "Found {} meals to upload out of {} local meals", mealsToUpload.size(), localMeals.size());
+        return mealsToUpload;
     }
 
     private void addToPendingSync(Meal meal) {
-        Set<String> pendingMeals = new HashSet<>(prefs.getStringSet(KEY_PENDING_SYNC, new HashSet<>()));
-        pendingMeals.add(serializeMeal(meal));
-        prefs.edit().putStringSet(KEY_PENDING_SYNC, pendingMeals).apply();
+        recordOperation(SyncOperationLog.Type.ADD, meal);
     }
 
     private void addMultipleToPendingSync(List<Meal> meals) {
-        Set<String> pendingMeals = new HashSet<>(prefs.getStringSet(KEY_PENDING_SYNC, new HashSet<>()));
         for (Meal meal : meals) {
-            pendingMeals.add(serializeMeal(meal));
+            operationLog.record(SyncOperationLog.Type.ADD, meal);
         }
-        prefs.edit().putStringSet(KEY_PENDING_SYNC, pendingMeals).apply();
+        saveOperationLog();
     }
 
-    private void clearPendingSync() {
-        prefs.edit().remove(KEY_PENDING_SYNC).apply();
+    private void removeFromPendingSync(List<Meal> meals) {
+        if (operationLog.isEmpty()) {
+            return;
+        }
+        operationLog.acknowledgeAdded(meals);
+        saveOperationLog();
+    }
+
+    private void recordOperation(SyncOperationLog.Type type, Meal meal) {
+        recordOperation(type, meal, null);
+    }
+
+    private void recordOperation(SyncOperationLog.Type type, Meal meal, Meal stored) {
+        operationLog.record(type, meal, stored);
+        saveOperationLog();
+        // Something failed or was queued while online; try again at the network's cadence
+        scheduleAutoFlush(false);
+    }
+
+    // A cached day must not bring back what the user just changed or deleted locally
+    private void invalidateCachedDay(String date) {
+        if (!isShutdown) {
+            dayCacheExecutor.execute(() -> dayCache.invalidate(date));
+        }
+    }
+
+    // The next account must not see this one's cached days
+    private void clearDayCache() {
+        if (!isShutdown) {
+            dayCacheExecutor.execute(dayCache::clear);
+        }
+    }
+
+    private void onNetworkClassChanged(SyncFlushPolicy.NetworkClass networkClass) {
+        if (networkClass == SyncFlushPolicy.NetworkClass.NONE) {
+            mainHandler.removeCallbacks(autoFlush);
+            return;
+        }
+        scheduleAutoFlush(true);
+    }
+
+    // Flush the operation log once the current network allows it
+    private void scheduleAutoFlush(boolean networkAppeared) {
+        if (connectivityMonitor == null || isShutdown || operationLog.isEmpty()) {
+            return;
+        }
+        SyncFlushPolicy.NetworkClass networkClass = connectivityMonitor.getNetworkClass();
+        if (networkClass == SyncFlushPolicy.NetworkClass.NONE) {
+            return; // The network callback schedules the flush when one appears
+        }
+
+        long delay = networkAppeared
+                ? SyncFlushPolicy.flushDelayMillis(networkClass)
+                : SyncFlushPolicy.retryIntervalMillis(networkClass);
+        mainHandler.removeCallbacks(autoFlush);
+        mainHandler.postDelayed(autoFlush, delay);
+    }
+
+    private void flushPendingForNetwork() {
+        flushPending(connectivityMonitor.getNetworkClass());
+    }
+
+    /**
+     * Replay one batch of the operation log sized for the network. Skipped while another
+     * replay or full sync runs; the flush is rescheduled once that one has finished.
+     * @param networkClass Current network
+     */
+    void flushPending(SyncFlushPolicy.NetworkClass networkClass) {
+        int batch = SyncFlushPolicy.maxOperationsPerFlush(networkClass);
+        if (uploadInProgress || isShutdown || batch == 0 || operationLog.isEmpty()) {
+            return;
+        }
+
+        Diagnostics.d(TAG, "Flushing up to {} of {} pending operations on {} network",
+                batch, operationLog.size(), networkClass);
+        retryPendingSync(batch, new SyncStatusListener() {
+            @Override
+            public void onSyncStarted() {
+            }
+
+            @Override
+            public void onSyncCompleted(boolean success, String message) {
+                if (!success) {
+                    Diagnostics.w(TAG, "Automatic flush incomplete: {}", message);
+                }
+            }
+
+            @Override
+            public void onSyncProgress(int completed, int total) {
+            }
+        });
+    }
+
+    // Current network class as seen by the automatic flush, for the Sync Settings dialog
+    public String getNetworkSummary() {
+        return connectivityMonitor != null ? connectivityMonitor.getNetworkClass().name() : "Not monitored";
+    }
+
+    private void saveOperationLog() {
+        if (accountCleared) {
+            return;
+        }
+        prefs.edit().putStringSet(KEY_OPERATION_LOG, operationLog.encode()).apply();
     }
 
     private void updateLastSyncTime() {
+        if (accountCleared) {
+            return;
+        }
         prefs.edit().putLong(KEY_LAST_SYNC, System.currentTimeMillis()).apply();
     }
 
@@ -397,13 +1003,12 @@ public class MealSyncManager {
     }
 
     public boolean hasPendingSync() {
-        Set<String> pendingMeals = prefs.getStringSet(KEY_PENDING_SYNC, new HashSet<>());
-        return !pendingMeals.isEmpty();
+        return !operationLog.isEmpty();
     }
 
+    // Pending operations after folding, i.e. the changes a retry would still send
     public int getPendingSyncCount() {
-        Set<String> pendingMeals = prefs.getStringSet(KEY_PENDING_SYNC, new HashSet<>());
-        return pendingMeals.size();
+        return operationLog.size();
     }
 
     public boolean isReady() {
@@ -411,49 +1016,92 @@ public class MealSyncManager {
     }
 
     //serialization methods
-    private String serializeMeal(Meal meal) {
-        return meal.getName() + ";" + meal.getCategory() + ";" + meal.getDate() + ";" + meal.getFormattedTime();
+    private Meal parseMealFromString(String mealData) {
+        Meal meal = MealCodec.decodePending(mealData);
+        if (meal == null) {
+            Log.e(TAG, "Failed to parse meal data: " + mealData);
+        }
+        return meal;
     }
 
-    private Meal parseMealFromString(String mealData) {
-        try {
-            String[] parts = mealData.split(";");
-            if (parts.length >= 4) {
-                String name = parts[0];
-                String category = parts[1];
-                String date = parts[2];
-                String timeStr = parts[3];
+    public String getSpreadsheetUrl() {
+        return sheetsManager.getSpreadsheetUrl();
+    }
 
-                // Reconstruct timestamp from date and time
-                java.util.Date mealTimestamp = reconstructTimestampFromDateTime(date, timeStr);
+    public String getDetailedStatus() {
+        return sheetsManager.getDetailedStatus();
+    }
 
-                return new Meal(name, category, mealTimestamp, date);
-            }
-        } catch (Exception e) {
-            Log.e(TAG, "Failed to parse meal data: " + mealData, e);
-        }
-        return null;
+    // Per-operation metrics plus limiter counters, formatted for the Sync Settings dialog
+    public String getMetricsSummary() {
+        SheetsRateLimiter limiter = sheetsManager.getRateLimiter();
+        return metrics.formatSummary()
+                + "Throttled: " + limiter.getThrottledRequestCount() + " req, "
+                + limiter.getThrottledMillis() + "ms, "
+                + limiter.getRateLimitedResponseCount() + " × 429";
     }
 
-    private java.util.Date reconstructTimestampFromDateTime(String dateStr, String timeStr) {
-        try {
-            // Assuming date format is "yyyy-MM-dd" and time format is "HH:mm"
-            java.text.SimpleDateFormat dateTimeFormat = new java.text.SimpleDateFormat("yyyy-MM-dd HH:mm", java.util.Locale.getDefault());
-            return dateTimeFormat.parse(dateStr + " " + timeStr);
-        } catch (java.text.ParseException e) {
-            Log.w(TAG, "Failed to parse date/time: " + dateStr + " " + timeStr + ", using current time");
-            return new java.util.Date(); // Fallback to current time
-        }
+    // Day cache occupancy and counters, formatted for the Sync Settings dialog
+    public String getDayCacheSummary() {
+        return String.format(Locale.US,
+                "%d days (%d KB) in memory, %d days (%d KB) on disk\n"
+                        + "Hits: %d memory, %d disk · Misses: %d\n"
+                        + "Evictions: %d memory, %d disk",
+                dayCache.getMemoryDays(), dayCache.getMemoryBytes() / 1024,
+                dayCache.getDiskDays(), dayCache.getDiskBytes() / 1024,
+                dayCache.getMemoryHits(), dayCache.getDiskHits(), dayCache.getMisses(),
+                dayCache.getMemoryEvictions(), dayCache.getDiskEvictions());
     }
-    public String getSpreadsheetUrl() {
-        return sheetsManager.getSpreadsheetUrl();
+
+    /**
+     * Export all sync metrics as UTF-8 CSV. Does file I/O, so call it off the main thread.
+     * @param file Destination file, overwritten if it exists
+     * @throws IOException if the file cannot be written
+     */
+    public void exportMetrics(File file) throws IOException {
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8))) {
+            metrics.writeCsv(writer);
+        }
     }
 
     public void forceReinitialize() {
         sheetsManager.forceReinitialize();
     }
 
+    /**
+     * Forget the pending changes, last sync time and spreadsheet of an account that signed
+     * out. Call after {@link #shutdown()}; operations still finishing save nothing afterwards.
+     */
+    void clearAccountState() {
+        accountCleared = true;
+        operationLog.clear();
+        prefs.edit()
+                .remove(KEY_OPERATION_LOG)
+                .remove(KEY_PENDING_SYNC)
+                .remove(KEY_LAST_SYNC)
+                .remove(KEY_SPREADSHEET_ID)
+                .apply();
+        sheetsManager.clearAccountState();
+    }
+
     public void shutdown() {
+        isShutdown = true;
+        mainHandler.removeCallbacks(autoFlush);
+        if (connectivityMonitor != null) {
+            connectivityMonitor.stop();
+        }
+        for (ReadyGatedOperation operation : new ArrayList<>(parkedOperations)) {
+            settle(operation, false, "Sync service has been shut down.");
+        }
+        // Waiting uploads find the service shut down and report it to their listeners
+        List<Runnable> waiting = new ArrayList<>(waitingUploads);
+        waitingUploads.clear();
+        for (Runnable upload : waiting) {
+            upload.run();
+        }
+        dayCacheExecutor.shutdown(); // Lets queued cache writes finish
+        compareExecutor.shutdown(); // A comparison still running reports the shutdown when it posts back
+
         if (sheetsManager != null) {
             sheetsManager.shutdown();
         }
@@ -2,7 +2,7 @@ package com.eslamgamal.fooddiary;
 
 import android.content.Context;
 import android.net.ConnectivityManager;
-import android.net.NetworkInfo;
+import android.net.NetworkCapabilities;
 
 public class NetworkUtils {
 
@@ -24,8 +24,10 @@ public class NetworkUtils {
                 return false;
             }
 
-            NetworkInfo activeNetworkInfo = connectivityManager.getActiveNetworkInfo();
-            return activeNetworkInfo != null && activeNetworkInfo.isConnected();
+            NetworkCapabilities capabilities = connectivityManager.getNetworkCapabilities(
+                    connectivityManager.getActiveNetwork());
+            return capabilities != null
+                    && capabilities.hasCapability(NetworkCapabilities.NET_CAPABILITY_INTERNET);
 
         } catch (SecurityException e) {
             // In case ACCESS_NETWORK_STATE permission is missing
@@ -53,8 +55,9 @@ public class NetworkUtils {
                 return false;
             }
 
-            NetworkInfo wifiInfo = connectivityManager.getNetworkInfo(ConnectivityManager.TYPE_WIFI);
-            return wifiInfo != null && wifiInfo.isConnected();
+            NetworkCapabilities capabilities = connectivityManager.getNetworkCapabilities(
+                    connectivityManager.getActiveNetwork());
+            return capabilities != null && capabilities.hasTransport(NetworkCapabilities.TRANSPORT_WIFI);
 
         } catch (Exception e) {
             return false;
@@ -79,12 +82,22 @@ public class NetworkUtils {
                 return "Unknown";
             }
 
-            NetworkInfo activeNetwork = connectivityManager.getActiveNetworkInfo();
-            if (activeNetwork == null) {
+            NetworkCapabilities capabilities = connectivityManager.getNetworkCapabilities(
+                    connectivityManager.getActiveNetwork());
+            if (capabilities == null) {
                 return "No Connection";
             }
 
-            return activeNetwork.getTypeName();
+            if (capabilities.hasTransport(NetworkCapabilities.TRANSPORT_WIFI)) {
+                return "WIFI";
+            } else if (capabilities.hasTransport(NetworkCapabilities.TRANSPORT_CELLULAR)) {
+                return "MOBILE";
+            } else if (capabilities.hasTransport(NetworkCapabilities.TRANSPORT_ETHERNET)) {
+                return "ETHERNET";
+            } else if (capabilities.hasTransport(NetworkCapabilities.TRANSPORT_VPN)) {
+                return "VPN";
+            }
+            return "Unknown";
 
         } catch (Exception e) {
             return "Unknown";
@@ -14,11 +14,14 @@ public class SplashActivity extends AppCompatActivity {
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
+        StartupTracer.begin(StartupTracer.PHASE_SPLASH);
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_splash);
 
         new Handler().postDelayed(() -> {
+            StartupTracer.begin(StartupTracer.PHASE_AUTH_CHECK);
             FirebaseUser currentUser = FirebaseAuth.getInstance().getCurrentUser();
+            StartupTracer.end(StartupTracer.PHASE_AUTH_CHECK);
 
             if (currentUser != null) {
                 // Already logged in
@@ -27,6 +30,7 @@ public class SplashActivity extends AppCompatActivity {
                 // Not logged in yet
                 startActivity(new Intent(SplashActivity.this, LoginActivity.class));
             }
+            StartupTracer.end(StartupTracer.PHASE_SPLASH);
             finish();
         }, SPLASH_DELAY);
     }
@@ -0,0 +1,114 @@
+package com.eslamgamal.fooddiary;
+
+import android.app.Activity;
+import android.os.Build;
+import android.os.Process;
+import android.os.SystemClock;
+import android.os.Trace;
+import android.util.Log;
+import android.view.View;
+import android.view.ViewTreeObserver;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Records named cold-start phases as timing spans relative to process start.
+ * Spans are also emitted as async trace sections (API 29+) so they show up in
+ * system traces next to the framework's own startup slices.
+ */
+public final class StartupTracer {
+
+    private static final String TAG = "StartupTracer";
+
+    public static final String PHASE_SPLASH = "splash";
+    public static final String PHASE_AUTH_CHECK = "auth_check";
+    public static final String PHASE_MAIN_ON_CREATE = "main_on_create";
+    public static final String PHASE_FIRST_DIARY_FRAME = "first_diary_frame";
+    public static final String PHASE_SYNC_READY = "sync_ready";
+
+    // phase -> {start, end} in uptime millis; end is 0 while the span is open
+    private static final Map<String, long[]> spans = new LinkedHashMap<>();
+
+    private StartupTracer() {
+    }
+
+    public static synchronized void begin(String phase) {
+        if (spans.containsKey(phase)) {
+            return; // Only the first occurrence of a phase in this process is a cold-start phase
+        }
+        spans.put(phase, new long[]{SystemClock.uptimeMillis(), 0});
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            Trace.beginAsyncSection(phase, 0);
+        }
+    }
+
+    public static synchronized void end(String phase) {
+        long[] span = spans.get(phase);
+        if (span == null || span[1] != 0) {
+            return;
+        }
+        span[1] = SystemClock.uptimeMillis();
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            Trace.endAsyncSection(phase, 0);
+        }
+        Log.i(TAG, phase + ": " + (span[1] - span[0]) + "ms (ends at +" + (span[1] - Process.getStartUptimeMillis()) + "ms)");
+    }
+
+    /**
+     * Duration of a completed phase
+     * @param phase Phase name
+     * @return Duration in milliseconds, or -1 if the phase has not completed
+     */
+    public static synchronized long getDuration(String phase) {
+        long[] span = spans.get(phase);
+        if (span == null || span[1] == 0) {
+            return -1;
+        }
+        return span[1] - span[0];
+    }
+
+    // Whether a phase has started in this process, finished or not
+    static synchronized boolean hasBegun(String phase) {
+        return spans.containsKey(phase);
+    }
+
+    // Forget all phases, so a test can start from a cold process
+    static synchronized void reset() {
+        spans.clear();
+    }
+
+    public static synchronized String getSummary() {
+        long processStart = Process.getStartUptimeMillis();
+        StringBuilder summary = new StringBuilder();
+        for (Map.Entry<String, long[]> entry : spans.entrySet()) {
+            long[] span = entry.getValue();
+            summary.append(entry.getKey()).append(": ");
+            if (span[1] == 0) {
+                summary.append("running");
+            } else {
+                summary.append(span[1] - span[0]).append("ms (+").append(span[1] - processStart).append("ms)");
+            }
+            summary.append("\n");
+        }
+        return summary.toString();
+    }
+
+    /**
+     * Run an action once the activity's first frame has been drawn
+     * @param activity Activity whose first frame to wait for
+     * @param action Action to run on the main thread after the frame
+     */
+    public static void runAfterFirstFrame(Activity activity, Runnable action) {
+        View decorView = activity.getWindow().getDecorView();
+        decorView.getViewTreeObserver().addOnPreDrawListener(new ViewTreeObserver.OnPreDrawListener() {
+            @Override
+            public boolean onPreDraw() {
+                decorView.getViewTreeObserver().removeOnPreDrawListener(this);
+                // Posting from pre-draw lands right after the frame is drawn
+                decorView.post(action);
+                return true;
+            }
+        });
+    }
+}
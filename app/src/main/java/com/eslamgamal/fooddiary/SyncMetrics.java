@@ -0,0 +1,217 @@
+package com.eslamgamal.fooddiary;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Process-wide sync metrics: latency histograms, request/byte counters and retry/failure
+ * counts per operation type. Recording is lock-free so it can sit on every request path.
+ */
+public final class SyncMetrics {
+
+    public enum Operation {
+        APPEND("append"),
+        LOAD("load"),
+        UPDATE("update"),
+        DELETE("delete"),
+        VALIDATE("validate"),
+        CLEAR("clear"),
+        DIGEST("digest"),
+        READY_WAIT("ready_wait");
+
+        private final String label;
+
+        Operation(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+    }
+
+    // Upper bounds (ms) of the latency buckets; the last bucket catches everything above
+    private static final long[] LATENCY_BOUNDS_MS = {10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000, 30000};
+
+    private static final SyncMetrics INSTANCE = new SyncMetrics();
+
+    private final Map<Operation, OperationStats> stats = new EnumMap<>(Operation.class);
+
+    public static SyncMetrics getInstance() {
+        return INSTANCE;
+    }
+
+    private SyncMetrics() {
+        for (Operation operation : Operation.values()) {
+            stats.put(operation, new OperationStats());
+        }
+    }
+
+    public static class OperationStats {
+        private final AtomicLongArray latencyBuckets = new AtomicLongArray(LATENCY_BOUNDS_MS.length + 1);
+        private final LongAdder requests = new LongAdder();
+        private final LongAdder totalLatencyMs = new LongAdder();
+        private final LongAdder bytesSent = new LongAdder();
+        private final LongAdder bytesReceived = new LongAdder();
+        private final LongAdder retries = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+
+        void record(long latencyMs, long sent, long received) {
+            latencyBuckets.incrementAndGet(bucketFor(latencyMs));
+            requests.increment();
+            totalLatencyMs.add(latencyMs);
+            if (sent > 0) {
+                bytesSent.add(sent);
+            }
+            if (received > 0) {
+                bytesReceived.add(received);
+            }
+        }
+
+        public long getRequestCount() {
+            return requests.sum();
+        }
+
+        public long getRetryCount() {
+            return retries.sum();
+        }
+
+        public long getFailureCount() {
+            return failures.sum();
+        }
+
+        public long getBytesSent() {
+            return bytesSent.sum();
+        }
+
+        public long getBytesReceived() {
+            return bytesReceived.sum();
+        }
+
+        public long getMeanLatencyMs() {
+            long count = requests.sum();
+            return count == 0 ? 0 : totalLatencyMs.sum() / count;
+        }
+
+        /**
+         * Estimate a latency percentile from the histogram
+         * @param percentile Value between 0 and 100
+         * @return Upper bound of the bucket holding the percentile, -1 if nothing was recorded
+         *         or Long.MAX_VALUE if it falls in the overflow bucket
+         */
+        public long getLatencyPercentileMs(double percentile) {
+            long[] counts = new long[latencyBuckets.length()];
+            long total = 0;
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] = latencyBuckets.get(i);
+                total += counts[i];
+            }
+            if (total == 0) {
+                return -1;
+            }
+
+            long rank = (long) Math.ceil(total * percentile / 100.0);
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return i < LATENCY_BOUNDS_MS.length ? LATENCY_BOUNDS_MS[i] : Long.MAX_VALUE;
+                }
+            }
+            return Long.MAX_VALUE;
+        }
+
+        private static int bucketFor(long latencyMs) {
+            for (int i = 0; i < LATENCY_BOUNDS_MS.length; i++) {
+                if (latencyMs <= LATENCY_BOUNDS_MS[i]) {
+                    return i;
+                }
+            }
+            return LATENCY_BOUNDS_MS.length;
+        }
+    }
+
+    public void recordRequest(Operation operation, long latencyMs, long bytesSent, long bytesReceived) {
+        stats.get(operation).record(latencyMs, bytesSent, bytesReceived);
+    }
+
+    public void recordRetry(Operation operation) {
+        stats.get(operation).retries.increment();
+    }
+
+    public void recordFailure(Operation operation) {
+        stats.get(operation).failures.increment();
+    }
+
+    public OperationStats getStats(Operation operation) {
+        return stats.get(operation);
+    }
+
+    // Short human-readable summary for the Sync Settings dialog
+    public String formatSummary() {
+        StringBuilder summary = new StringBuilder();
+        for (Operation operation : Operation.values()) {
+            OperationStats operationStats = stats.get(operation);
+            long count = operationStats.getRequestCount();
+            if (count == 0 && operationStats.getFailureCount() == 0) {
+                continue;
+            }
+            summary.append(String.format(Locale.US, "%s: %d req, p50 %s, p95 %s",
+                    operation.getLabel(), count,
+                    formatBound(operationStats.getLatencyPercentileMs(50)),
+                    formatBound(operationStats.getLatencyPercentileMs(95))));
+            if (operationStats.getRetryCount() > 0) {
+                summary.append(", ").append(operationStats.getRetryCount()).append(" retries");
+            }
+            if (operationStats.getFailureCount() > 0) {
+                summary.append(", ").append(operationStats.getFailureCount()).append(" failed");
+            }
+            summary.append("\n");
+        }
+        return summary.length() == 0 ? "No requests yet\n" : summary.toString();
+    }
+
+    /**
+     * Write all counters and histogram buckets as CSV for offline analysis
+     * @param writer Destination writer; not closed
+     * @throws IOException if writing fails
+     */
+    public void writeCsv(Writer writer) throws IOException {
+        writer.write("operation,requests,retries,failures,bytes_sent,bytes_received,mean_ms,p50_ms,p95_ms,p99_ms");
+        for (long bound : LATENCY_BOUNDS_MS) {
+            writer.write(",le_" + bound);
+        }
+        writer.write(",le_inf\n");
+
+        for (Operation operation : Operation.values()) {
+            OperationStats operationStats = stats.get(operation);
+            writer.write(String.format(Locale.US, "%s,%d,%d,%d,%d,%d,%d,%d,%d,%d",
+                    operation.getLabel(),
+                    operationStats.getRequestCount(),
+                    operationStats.getRetryCount(),
+                    operationStats.getFailureCount(),
+                    operationStats.getBytesSent(),
+                    operationStats.getBytesReceived(),
+                    operationStats.getMeanLatencyMs(),
+                    operationStats.getLatencyPercentileMs(50),
+                    operationStats.getLatencyPercentileMs(95),
+                    operationStats.getLatencyPercentileMs(99)));
+            for (int i = 0; i < operationStats.latencyBuckets.length(); i++) {
+                writer.write("," + operationStats.latencyBuckets.get(i));
+            }
+            writer.write("\n");
+        }
+    }
+
+    private static String formatBound(long boundMs) {
+        if (boundMs < 0) {
+            return "-";
+        }
+        return boundMs == Long.MAX_VALUE ? ">" + LATENCY_BOUNDS_MS[LATENCY_BOUNDS_MS.length - 1] + "ms" : "≤" + boundMs + "ms";
+    }
+}
@@ -0,0 +1,21 @@
+package com.eslamgamal.fooddiary;
+
+import android.app.Activity;
+import android.view.Menu;
+import android.view.MenuItem;
+
+/**
+ * Release counterpart of the debug developer menu: no developer entries.
+ */
+final class DeveloperMenu {
+
+    private DeveloperMenu() {
+    }
+
+    static void install(Menu menu) {
+    }
+
+    static boolean onItemSelected(Activity activity, MenuItem item) {
+        return false;
+    }
+}
@@ -0,0 +1,186 @@
+package com.eslamgamal.fooddiary;
+
+import android.os.Looper;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+import static org.robolectric.Shadows.shadowOf;
+
+/**
+ * Appends that reach the server but lose their response must not be resent blindly:
+ * the retried sync has to leave exactly one row per meal.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34)
+public class AppendRetryTest {
+
+    private static final long TIMEOUT_MS = 20000;
+
+    private InMemorySheetsBackend sheets;
+    private LostAckBackend backend;
+    private GoogleSheetsManager manager;
+
+    /** Applies appends, then fails the first ones as if the response timed out. */
+    private static final class LostAckBackend implements SheetsBackend {
+        final SheetsBackend delegate;
+        final AtomicInteger lostAppends = new AtomicInteger();
+
+        LostAckBackend(SheetsBackend delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public String createSpreadsheet(String title) throws IOException {
+            return delegate.createSpreadsheet(title);
+        }
+
+        @Override
+        public void getSpreadsheet(String spreadsheetId) throws IOException {
+            delegate.getSpreadsheet(spreadsheetId);
+        }
+
+        @Override
+        public List<List<Object>> getValues(String spreadsheetId, String range) throws IOException {
+            return delegate.getValues(spreadsheetId, range);
+        }
+
+        @Override
+        public String appendValues(String spreadsheetId, String range, List<List<Object>> rows) throws IOException {
+            String updatedRange = delegate.appendValues(spreadsheetId, range, rows);
+            if (lostAppends.getAndDecrement() > 0) {
+                throw new SocketTimeoutException("Read timed out");
+            }
+            return updatedRange;
+        }
+
+        @Override
+        public void updateValues(String spreadsheetId, String range, List<List<Object>> rows) throws IOException {
+            delegate.updateValues(spreadsheetId, range, rows);
+        }
+
+        @Override
+        public void clearValues(String spreadsheetId, String range) throws IOException {
+            delegate.clearValues(spreadsheetId, range);
+        }
+
+        @Override
+        public void deleteRows(String spreadsheetId, int sheetId, int startIndex, int endIndex) throws IOException {
+            delegate.deleteRows(spreadsheetId, sheetId, startIndex, endIndex);
+        }
+
+        @Override
+        public int addSheet(String spreadsheetId, String title) throws IOException {
+            return delegate.addSheet(spreadsheetId, title);
+        }
+
+        @Override
+        public void hideColumns(String spreadsheetId, int sheetId, int startIndex, int endIndex) throws IOException {
+            delegate.hideColumns(spreadsheetId, sheetId, startIndex, endIndex);
+        }
+    }
+
+    @Before
+    public void setUp() {
+        sheets = InMemorySheetsBackend.builder().build();
+        backend = new LostAckBackend(sheets);
+        manager = new GoogleSheetsManager(RuntimeEnvironment.getApplication(), backend);
+
+        Boolean[] ready = new Boolean[1];
+        manager.whenReady((success, message) -> ready[0] = success);
+        await(() -> ready[0] != null);
+        assertEquals(Boolean.TRUE, ready[0]);
+    }
+
+    @After
+    public void tearDown() {
+        manager.shutdown();
+    }
+
+    @Test
+    public void singleAppendWithLostResponseIsNotDuplicated() {
+        int rowsBefore = sheets.getTotalRowCount();
+        backend.lostAppends.set(1);
+
+        String[] result = new String[1];
+        manager.syncMealToSheets(new Meal("Oats", "breakfast"), new GoogleSheetsManager.SyncCallback() {
+            @Override
+            public void onSuccess(String message) {
+                result[0] = "ok";
+            }
+
+            @Override
+            public void onError(String error) {
+                result[0] = error;
+            }
+        });
+        await(() -> result[0] != null);
+
+        assertEquals("ok", result[0]);
+        assertEquals(rowsBefore + 1, sheets.getTotalRowCount());
+    }
+
+    @Test
+    public void chunkAppendWithLostResponsesIsNotDuplicated() {
+        int rowsBefore = sheets.getTotalRowCount();
+        backend.lostAppends.set(1);
+        List<Meal> meals = Arrays.asList(new Meal("Oats", "breakfast"), new Meal("Soup", "lunch"),
+                new Meal("Rice", "dinner"));
+
+        List<Meal> failed = new ArrayList<>();
+        int[] synced = {-1};
+        manager.syncMultipleMealsToSheets(meals, new GoogleSheetsManager.BulkSyncCallback() {
+            @Override
+            public void onProgress(int completed, int total) {
+            }
+
+            @Override
+            public void onComplete(int syncedCount, List<Meal> failedMeals, String error) {
+                failed.addAll(failedMeals);
+                synced[0] = syncedCount;
+            }
+        });
+        await(() -> synced[0] >= 0);
+
+        assertEquals(3, synced[0]);
+        assertTrue(failed.isEmpty());
+        assertEquals(rowsBefore + 3, sheets.getTotalRowCount());
+    }
+
+    private interface Condition {
+        boolean holds();
+    }
+
+    // Run main-thread callbacks until the condition holds
+    private static void await(Condition condition) {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+        while (true) {
+            shadowOf(Looper.getMainLooper()).idle();
+            if (condition.holds()) {
+                return;
+            }
+            if (System.currentTimeMillis() > deadline) {
+                fail("No result within " + TIMEOUT_MS + "ms");
+            }
+            try {
+                Thread.sleep(1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                fail("Interrupted");
+            }
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.eslamgamal.fooddiary;
+
+import android.content.Context;
+import android.os.Looper;
+import android.view.View;
+
+import com.google.firebase.FirebaseApp;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.android.controller.ActivityController;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.*;
+import static org.robolectric.Shadows.shadowOf;
+
+/**
+ * What {@link MainActivity#onCreate} leaves for later: the diary shell is built there, and
+ * everything else (the Sheets client, the day cache, the cloud history) waits for the first
+ * frame through {@link StartupTracer#runAfterFirstFrame}. The test checks ordering, not
+ * timing: a host JVM says nothing about device startup, which the tracer's spans cover.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34)
+public class MainActivityStartupTest {
+
+    private Context context;
+
+    @Before
+    public void setUp() {
+        context = RuntimeEnvironment.getApplication();
+        if (FirebaseApp.getApps(context).isEmpty()) {
+            FirebaseApp.initializeApp(context);
+        }
+        // Phases are recorded once per process; start each test from a cold one
+        StartupTracer.reset();
+    }
+
+    @After
+    public void tearDown() {
+        MealSyncManager.releaseInstance();
+    }
+
+    @Test
+    public void onCreateDefersSyncUntilAfterFirstFrame() {
+        ActivityController<MainActivity> controller = Robolectric.buildActivity(MainActivity.class).create();
+
+        assertTrue(StartupTracer.getDuration(StartupTracer.PHASE_MAIN_ON_CREATE) >= 0);
+        assertFalse("Sync started inside onCreate", StartupTracer.hasBegun(StartupTracer.PHASE_SYNC_READY));
+
+        // Work merely posted from onCreate would run here; nothing has been drawn yet
+        shadowOf(Looper.getMainLooper()).idle();
+        assertFalse("Sync started before the first frame", StartupTracer.hasBegun(StartupTracer.PHASE_SYNC_READY));
+        assertEquals(-1, StartupTracer.getDuration(StartupTracer.PHASE_FIRST_DIARY_FRAME));
+        controller.destroy();
+    }
+
+    @Test
+    public void firstFrameStartsTheDeferredWork() {
+        ActivityController<MainActivity> controller = Robolectric.buildActivity(MainActivity.class)
+                .create().start().resume().visible();
+
+        // Draw the first frame; the pre-draw pass posts the deferred work behind it
+        View decorView = controller.get().getWindow().getDecorView();
+        decorView.getViewTreeObserver().dispatchOnPreDraw();
+        shadowOf(Looper.getMainLooper()).idle();
+
+        assertTrue(StartupTracer.getDuration(StartupTracer.PHASE_FIRST_DIARY_FRAME) >= 0);
+        assertTrue("Sync not started after the first frame", StartupTracer.hasBegun(StartupTracer.PHASE_SYNC_READY));
+        controller.destroy();
+    }
+}
@@ -0,0 +1,211 @@
+package com.eslamgamal.fooddiary;
+
+import android.content.Context;
+import android.os.Looper;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+import static org.robolectric.Shadows.shadowOf;
+
+/**
+ * Replays of the operation log that overlap (a connectivity flush and a manual retry, or
+ * a full sync) must upload each pending meal once: the second waits for the first and
+ * then sees only what is still pending.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34)
+public class PendingReplayTest {
+
+    private static final long TIMEOUT_MS = 20000;
+    private static final long TIMESTAMP = 1_709_625_000_000L;
+    private static final int PENDING_MEALS = 12;
+
+    private Context context;
+    private InMemorySheetsBackend backend;
+    private MealSyncManager engine;
+
+    @Before
+    public void setUp() {
+        context = RuntimeEnvironment.getApplication();
+        backend = InMemorySheetsBackend.builder().latency(50, 0).build();
+        engine = MealSyncManager.createWithBackend(context, backend);
+
+        List<Boolean> ready = new ArrayList<>();
+        engine.whenReady((success, message) -> ready.add(success));
+        await(() -> !ready.isEmpty());
+        assertEquals(Boolean.TRUE, ready.get(0));
+    }
+
+    @After
+    public void tearDown() {
+        engine.shutdown();
+    }
+
+    @Test
+    public void flushAndManualRetryUploadEachMealOnce() {
+        List<Meal> meals = queueMeals();
+
+        List<Boolean> retried = new ArrayList<>();
+        engine.flushPending(SyncFlushPolicy.NetworkClass.UNMETERED);
+        engine.retryPendingSync(listener(retried));
+        await(() -> !retried.isEmpty() && !engine.hasPendingSync());
+
+        assertEquals(Boolean.TRUE, retried.get(0));
+        assertEquals(ids(meals), cloudIds());
+    }
+
+    @Test
+    public void fullSyncWaitsForARunningFlush() {
+        List<Meal> meals = queueMeals();
+
+        List<Boolean> synced = new ArrayList<>();
+        engine.flushPending(SyncFlushPolicy.NetworkClass.METERED);
+        // The queued meals are local meals the cloud lacks, so the full sync would upload them too
+        engine.performFullSync(meals, listener(synced));
+        await(() -> !synced.isEmpty() && !engine.hasPendingSync());
+
+        assertEquals(Boolean.TRUE, synced.get(0));
+        assertEquals(ids(meals), cloudIds());
+    }
+
+    @Test
+    public void flushIsSkippedWhileARetryRuns() {
+        List<Meal> meals = queueMeals();
+        long requestsBefore = backend.getRequestCount();
+
+        List<Boolean> retried = new ArrayList<>();
+        engine.retryPendingSync(listener(retried));
+        engine.flushPending(SyncFlushPolicy.NetworkClass.UNMETERED);
+        await(() -> !retried.isEmpty());
+
+        assertEquals(ids(meals), cloudIds());
+        // One chunked append; the skipped flush cost nothing
+        assertEquals(1, backend.getRequestCount() - requestsBefore);
+    }
+
+    @Test
+    public void flushSendsOneBatchSizedForTheNetwork() {
+        int batch = SyncFlushPolicy.maxOperationsPerFlush(SyncFlushPolicy.NetworkClass.CONSTRAINED);
+        List<Meal> meals = queueMeals(batch + 5);
+        long requestsBefore = backend.getRequestCount();
+
+        // Offline: nothing is sent
+        engine.flushPending(SyncFlushPolicy.NetworkClass.NONE);
+        shadowOf(Looper.getMainLooper()).idle();
+        assertEquals(requestsBefore, backend.getRequestCount());
+
+        // A slow link takes the oldest batch and leaves the rest for the next interval
+        engine.flushPending(SyncFlushPolicy.NetworkClass.CONSTRAINED);
+        await(() -> engine.getPendingSyncCount() == 5);
+        assertEquals(ids(meals.subList(0, batch)), cloudIds());
+
+        List<Boolean> retried = new ArrayList<>();
+        engine.retryPendingSync(listener(retried));
+        await(() -> !retried.isEmpty() && !engine.hasPendingSync());
+        assertEquals(ids(meals), cloudIds());
+    }
+
+    private List<Meal> queueMeals() {
+        return queueMeals(PENDING_MEALS);
+    }
+
+    private List<Meal> queueMeals(int count) {
+        List<Meal> meals = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Meal meal = new Meal("meal-" + i, "Meal " + i, "lunch", new Date(TIMESTAMP + i * 60_000L),
+                    "2024-03-05", TIMESTAMP + i);
+            engine.queueAdd(meal);
+            meals.add(meal);
+        }
+        assertEquals(count, engine.getPendingSyncCount());
+        return meals;
+    }
+
+    // IDs in the sheet, failing on a duplicate row
+    private Set<String> cloudIds() {
+        List<Meal> loaded = new ArrayList<>();
+        List<String> errors = new ArrayList<>();
+        engine.loadMealsFromCloud(new GoogleSheetsManager.LoadCallback() {
+            @Override
+            public void onMealsLoaded(List<Meal> meals) {
+                loaded.addAll(meals);
+                errors.add("");
+            }
+
+            @Override
+            public void onError(String error) {
+                errors.add(error);
+            }
+        });
+        await(() -> !errors.isEmpty());
+        assertEquals("", errors.get(0));
+
+        Set<String> ids = new HashSet<>();
+        for (Meal meal : loaded) {
+            assertTrue("Duplicate row for " + meal.getId(), ids.add(meal.getId()));
+        }
+        return ids;
+    }
+
+    private static Set<String> ids(List<Meal> meals) {
+        Set<String> ids = new HashSet<>();
+        for (Meal meal : meals) {
+            ids.add(meal.getId());
+        }
+        return ids;
+    }
+
+    private static MealSyncManager.SyncStatusListener listener(List<Boolean> results) {
+        return new MealSyncManager.SyncStatusListener() {
+            @Override
+            public void onSyncStarted() {
+            }
+
+            @Override
+            public void onSyncCompleted(boolean success, String message) {
+                results.add(success);
+            }
+
+            @Override
+            public void onSyncProgress(int completed, int total) {
+            }
+        };
+    }
+
+    private interface Condition {
+        boolean holds();
+    }
+
+    // Run main-thread callbacks until the condition holds
+    private static void await(Condition condition) {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+        while (true) {
+            shadowOf(Looper.getMainLooper()).idle();
+            if (condition.holds()) {
+                return;
+            }
+            if (System.currentTimeMillis() > deadline) {
+                fail("No result within " + TIMEOUT_MS + "ms");
+            }
+            try {
+                Thread.sleep(1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                fail("Interrupted");
+            }
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.eslamgamal.fooddiary;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.Date;
+
+import static org.junit.Assert.*;
+
+/**
+ * Signing out through {@link MealSyncManager#releaseInstance()} must leave nothing of the
+ * account behind: the next account's engine starts with no pending changes to replay and
+ * no spreadsheet, so it never writes into the previous account's sheet or its own with
+ * the previous account's meals.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34)
+public class SignOutTest {
+
+    private static final long TIMESTAMP = 1_709_625_000_000L;
+    private static final String OLD_SPREADSHEET = "previous-account-sheet";
+
+    private Context context;
+    private SharedPreferences syncPrefs;
+    private SharedPreferences sheetsPrefs;
+
+    @Before
+    public void setUp() {
+        context = RuntimeEnvironment.getApplication();
+        syncPrefs = context.getSharedPreferences("meal_sync_prefs", Context.MODE_PRIVATE);
+        sheetsPrefs = context.getSharedPreferences("sheets_manager_prefs", Context.MODE_PRIVATE);
+        // The previous account's spreadsheet, as saved by an earlier session
+        sheetsPrefs.edit()
+                .putString("spreadsheet_id", OLD_SPREADSHEET)
+                .putInt("schema_version_" + OLD_SPREADSHEET, SheetSchema.VERSION_CURRENT)
+                .putBoolean("digest_sheet_" + OLD_SPREADSHEET, true)
+                .commit();
+    }
+
+    @After
+    public void tearDown() {
+        MealSyncManager.releaseInstance();
+    }
+
+    @Test
+    public void signOutForgetsPendingChangesAndSpreadsheet() {
+        MealSyncManager engine = MealSyncManager.getInstance(context);
+        Meal added = meal("a", "Oats");
+        Meal edited = meal("b", "Soup");
+        engine.queueAdd(added);
+        engine.queueUpdate(meal("b", "Lentil soup"), edited);
+        engine.queueDelete(meal("c", "Rice"));
+        assertEquals(3, engine.getPendingSyncCount());
+        assertTrue(syncPrefs.contains("pending_operations"));
+        assertEquals("https://docs.google.com/spreadsheets/d/" + OLD_SPREADSHEET, engine.getSpreadsheetUrl());
+
+        MealSyncManager.releaseInstance();
+
+        assertFalse(syncPrefs.contains("pending_operations"));
+        assertFalse(syncPrefs.contains("last_sync_timestamp"));
+        assertTrue(sheetsPrefs.getAll().isEmpty());
+
+        // The next account's engine starts clean
+        MealSyncManager next = MealSyncManager.getInstance(context);
+        assertNotSame(engine, next);
+        assertFalse(next.hasPendingSync());
+        assertEquals(0, next.getPendingSyncCount());
+        assertNull(next.getSpreadsheetUrl());
+    }
+
+    @Test
+    public void changesAfterSignOutAreNotSaved() {
+        MealSyncManager engine = MealSyncManager.getInstance(context);
+        MealSyncManager.releaseInstance();
+
+        // A late failure of an operation still in flight records it on the old engine
+        engine.queueAdd(meal("late", "Tea"));
+
+        assertFalse(syncPrefs.contains("pending_operations"));
+        assertFalse(MealSyncManager.getInstance(context).hasPendingSync());
+    }
+
+    private static Meal meal(String id, String name) {
+        return new Meal(id, name, "lunch", new Date(TIMESTAMP), "2024-03-05", TIMESTAMP);
+    }
+}
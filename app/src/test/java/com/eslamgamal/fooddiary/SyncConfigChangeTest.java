@@ -0,0 +1,117 @@
+package com.eslamgamal.fooddiary;
+
+import android.content.Context;
+import android.os.Looper;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+import static org.robolectric.Shadows.shadowOf;
+
+/**
+ * A configuration change while the diary waits for sync must not cost any extra Sheets
+ * requests: the recreated Activity takes over the wait held by {@link DiaryViewModel},
+ * and the destroyed one is no longer called back.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34)
+public class SyncConfigChangeTest {
+
+    private static final long TIMEOUT_MS = 10000;
+
+    private Context context;
+    private InMemorySheetsBackend backend;
+    private final List<MealSyncManager> engines = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        context = RuntimeEnvironment.getApplication();
+        backend = InMemorySheetsBackend.builder().latency(100, 0).build();
+
+        // A previous run created the spreadsheet, so a start costs one validation request
+        MealSyncManager firstRun = newEngine();
+        List<Boolean> ready = new ArrayList<>();
+        firstRun.whenReady((success, message) -> ready.add(success));
+        await(() -> !ready.isEmpty());
+        assertEquals(Boolean.TRUE, ready.get(0));
+    }
+
+    @After
+    public void tearDown() {
+        for (MealSyncManager engine : engines) {
+            engine.shutdown();
+        }
+    }
+
+    @Test
+    public void recreationWhileWaitingAddsNoRequests() {
+        MealSyncManager engine = newEngine();
+        DiaryViewModel viewModel = new DiaryViewModel();
+        long requestsBefore = backend.getRequestCount();
+
+        List<Boolean> destroyed = new ArrayList<>();
+        viewModel.setSyncReadyListener((success, message) -> destroyed.add(success));
+        viewModel.awaitSyncReady(engine);
+
+        // Rotation before the validation returns: onDestroy, then the new onCreate
+        viewModel.setSyncReadyListener(null);
+        List<Boolean> recreated = new ArrayList<>();
+        viewModel.setSyncReadyListener((success, message) -> recreated.add(success));
+        viewModel.awaitSyncReady(engine);
+
+        await(() -> !recreated.isEmpty());
+        shadowOf(Looper.getMainLooper()).idle();
+        assertEquals(1, recreated.size());
+        assertEquals(Boolean.TRUE, recreated.get(0));
+        assertTrue(destroyed.isEmpty());
+        assertEquals(1, backend.getRequestCount() - requestsBefore);
+
+        // Rotation once ready: answered from the engine's state alone
+        viewModel.setSyncReadyListener(null);
+        List<Boolean> again = new ArrayList<>();
+        viewModel.setSyncReadyListener((success, message) -> again.add(success));
+        viewModel.awaitSyncReady(engine);
+        await(() -> !again.isEmpty());
+        assertEquals(Boolean.TRUE, again.get(0));
+        assertEquals(1, backend.getRequestCount() - requestsBefore);
+    }
+
+    private MealSyncManager newEngine() {
+        MealSyncManager engine = MealSyncManager.createWithBackend(context, backend);
+        engines.add(engine);
+        return engine;
+    }
+
+    private interface Condition {
+        boolean holds();
+    }
+
+    // Run main-thread callbacks until the condition holds
+    private static void await(Condition condition) {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+        while (true) {
+            shadowOf(Looper.getMainLooper()).idle();
+            if (condition.holds()) {
+                return;
+            }
+            if (System.currentTimeMillis() > deadline) {
+                fail("No result within " + TIMEOUT_MS + "ms");
+            }
+            try {
+                Thread.sleep(1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                fail("Interrupted");
+            }
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package com.eslamgamal.fooddiary;
+
+import android.content.Context;
+import android.os.Looper;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+import static org.robolectric.Shadows.shadowOf;
+
+/**
+ * Time to ready of {@link GoogleSheetsManager} against an {@link InMemorySheetsBackend}:
+ * readiness is reported only once the saved spreadsheet has been validated, and the
+ * waiters are released as soon as that happens rather than on a polling interval.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34)
+public class SyncReadinessTest {
+
+    private static final long LATENCY_MS = 150;
+    // Posting to the main thread and pumping the looper; well below a polling interval
+    private static final long DISPATCH_SLACK_MS = 100;
+    private static final long TIMEOUT_MS = 20000;
+
+    private Context context;
+    private InMemorySheetsBackend backend;
+    private final List<GoogleSheetsManager> managers = new ArrayList<>();
+
+    /** Outcome of one whenReady call and when it arrived. */
+    private static final class Result {
+        Boolean success;
+        long atMillis;
+    }
+
+    @Before
+    public void setUp() {
+        context = RuntimeEnvironment.getApplication();
+        backend = InMemorySheetsBackend.builder().latency(LATENCY_MS, 0).build();
+    }
+
+    @After
+    public void tearDown() {
+        for (GoogleSheetsManager manager : managers) {
+            manager.shutdown();
+        }
+    }
+
+    @Test
+    public void savedSpreadsheetIsNotReadyUntilValidated() {
+        createSpreadsheet();
+
+        // A fresh process: the spreadsheet ID is known from preferences, nothing is validated yet
+        GoogleSheetsManager manager = newManager();
+        assertFalse(manager.isReady());
+
+        long requestsBefore = backend.getRequestCount();
+        long start = System.currentTimeMillis();
+        Result result = new Result();
+        manager.whenReady((success, message) -> {
+            result.success = success;
+            result.atMillis = System.currentTimeMillis();
+        });
+        assertFalse("Ready before the validation round trip", manager.isReady());
+
+        await(result);
+        assertEquals(Boolean.TRUE, result.success);
+        assertTrue(manager.isReady());
+        // One spreadsheet GET, answered as soon as it returns
+        assertEquals(1, backend.getRequestCount() - requestsBefore);
+        long elapsed = result.atMillis - start;
+        assertTrue("Ready after " + elapsed + "ms", elapsed >= LATENCY_MS);
+        assertTrue("Ready after " + elapsed + "ms", elapsed < LATENCY_MS + DISPATCH_SLACK_MS);
+    }
+
+    @Test
+    public void readyWaiterAfterValidationIsAnsweredWithoutRequests() {
+        GoogleSheetsManager manager = createSpreadsheet();
+
+        long requestsBefore = backend.getRequestCount();
+        Result result = new Result();
+        manager.whenReady((success, message) -> result.success = success);
+        await(result);
+
+        assertEquals(Boolean.TRUE, result.success);
+        assertEquals(requestsBefore, backend.getRequestCount());
+    }
+
+    @Test
+    public void failedValidationIsNotReadyAndRestartsOnNextWait() {
+        createSpreadsheet();
+        GoogleSheetsManager manager = newManager();
+
+        backend.setOffline(true);
+        Result failed = new Result();
+        manager.whenReady((success, message) -> failed.success = success);
+        await(failed);
+        assertEquals(Boolean.FALSE, failed.success);
+        // The saved spreadsheet ID alone must not make it look ready
+        assertFalse(manager.isReady());
+
+        backend.setOffline(false);
+        Result recovered = new Result();
+        manager.whenReady((success, message) -> recovered.success = success);
+        await(recovered);
+        assertEquals(Boolean.TRUE, recovered.success);
+        assertTrue(manager.isReady());
+    }
+
+    @Test
+    public void spreadsheetIsCheckedAgainOnlyAfterAFailure() {
+        GoogleSheetsManager manager = createSpreadsheet();
+
+        // Validated at start: an operation costs only its own request
+        long requestsBefore = backend.getRequestCount();
+        assertEquals("ok", sync(manager, new Meal("Oats", "breakfast")));
+        assertEquals(1, backend.getRequestCount() - requestsBefore);
+
+        backend.setOffline(true);
+        assertNotEquals("ok", sync(manager, new Meal("Soup", "lunch")));
+        backend.setOffline(false);
+
+        // The failure may mean the spreadsheet is gone: one check, then the operation
+        requestsBefore = backend.getRequestCount();
+        assertEquals("ok", sync(manager, new Meal("Rice", "dinner")));
+        assertEquals(2, backend.getRequestCount() - requestsBefore);
+
+        requestsBefore = backend.getRequestCount();
+        assertEquals("ok", sync(manager, new Meal("Tea", "snacks")));
+        assertEquals(1, backend.getRequestCount() - requestsBefore);
+    }
+
+    // "ok", or the error the sync reported
+    private static String sync(GoogleSheetsManager manager, Meal meal) {
+        String[] outcome = new String[1];
+        Result result = new Result();
+        manager.syncMealToSheets(meal, new GoogleSheetsManager.SyncCallback() {
+            @Override
+            public void onSuccess(String message) {
+                outcome[0] = "ok";
+                result.success = true;
+            }
+
+            @Override
+            public void onError(String error) {
+                outcome[0] = error;
+                result.success = false;
+            }
+        });
+        await(result);
+        return outcome[0];
+    }
+
+    // First run: create the spreadsheet and save its ID
+    private GoogleSheetsManager createSpreadsheet() {
+        GoogleSheetsManager manager = newManager();
+        Result created = new Result();
+        manager.whenReady((success, message) -> created.success = success);
+        await(created);
+        assertEquals(Boolean.TRUE, created.success);
+        return manager;
+    }
+
+    private GoogleSheetsManager newManager() {
+        GoogleSheetsManager manager = new GoogleSheetsManager(context, backend);
+        managers.add(manager);
+        return manager;
+    }
+
+    // Run main-thread callbacks until the result arrives
+    private static void await(Result result) {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+        while (result.success == null) {
+            shadowOf(Looper.getMainLooper()).idle();
+            if (result.success != null) {
+                break;
+            }
+            if (System.currentTimeMillis() > deadline) {
+                fail("No readiness result within " + TIMEOUT_MS + "ms");
+            }
+            try {
+                Thread.sleep(1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                fail("Interrupted");
+            }
+        }
+    }
+}
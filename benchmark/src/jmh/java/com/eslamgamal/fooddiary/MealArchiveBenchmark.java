@@ -0,0 +1,92 @@
+package com.eslamgamal.fooddiary;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Export and import throughput for a 1M-meal diary file, reported in meals per second.
+ * Import runs single-threaded and with one parser per core.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+public class MealArchiveBenchmark {
+
+    private static final int MEALS = 1_000_000;
+
+    @Param({"CSV", "JSON"})
+    public MealArchive.Format format;
+
+    private List<Meal> meals;
+    private Path directory;
+    private Path archive;
+    private Path exportTarget;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        // ~3.3 meals a day; generate a little more than needed and cut to exactly 1M
+        List<Meal> history = new DiaryWorkloadGenerator(42).generateHistory(new Date(), 320_000);
+        meals = new ArrayList<>(history.subList(0, MEALS));
+
+        directory = Files.createTempDirectory("meal-archive");
+        archive = directory.resolve("diary." + format.name().toLowerCase());
+        exportTarget = directory.resolve("export." + format.name().toLowerCase());
+        try (FileChannel channel = FileChannel.open(archive, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            MealArchive.export(meals, channel, format);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(archive);
+        Files.deleteIfExists(exportTarget);
+        Files.deleteIfExists(directory);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MEALS)
+    public int export() throws IOException {
+        try (FileChannel channel = FileChannel.open(exportTarget, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            return MealArchive.export(meals, channel, format);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MEALS)
+    public MealArchive.ImportResult importSingleThreaded() throws IOException {
+        return importWith(1);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MEALS)
+    public MealArchive.ImportResult importParallel() throws IOException {
+        return importWith(Runtime.getRuntime().availableProcessors());
+    }
+
+    private MealArchive.ImportResult importWith(int parallelism) throws IOException {
+        try (FileChannel channel = FileChannel.open(archive)) {
+            return MealArchive.importMeals(channel, format, Collections.emptySet(), parallelism);
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.eslamgamal.fooddiary;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-meal and whole-history costs of the domain and sync logic at realistic
+ * history sizes (one year, five years and a heavy ten-year diary).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class MealBenchmark {
+
+    private static final String[] NAMES = {
+            "Oatmeal", "Eggs and toast", "Chicken salad", "Rice with beans",
+            "Grilled fish", "Apple", "فول مدمس", "كشري", "Yogurt", "Pasta"
+    };
+
+    @Param({"1500", "7500", "15000"})
+    public int historySize;
+
+    private List<Meal> localMeals;
+    private List<Meal> cloudMeals;
+    private List<String> pendingEntries;
+    private List<List<Object>> cloudRows;
+    private Meal sampleMeal;
+    private Date sampleTimestamp;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        Calendar calendar = Calendar.getInstance();
+        calendar.set(2020, Calendar.JANUARY, 1, 7, 0, 0);
+
+        localMeals = new ArrayList<>(historySize);
+        for (int i = 0; i < historySize; i++) {
+            if (i % 4 == 0) {
+                calendar.add(Calendar.DAY_OF_MONTH, 1);
+            }
+            calendar.set(Calendar.HOUR_OF_DAY, 7 + (i % 4) * 4);
+            calendar.set(Calendar.MINUTE, random.nextInt(60));
+            Date timestamp = calendar.getTime();
+            String category = Meal.VALID_CATEGORIES[i % 4];
+            String name = NAMES[random.nextInt(NAMES.length)];
+            localMeals.add(new Meal(name, category, timestamp, String.format("%tF", timestamp)));
+        }
+
+        // The cloud holds the same history minus the newest 5% (not yet uploaded)
+        cloudRows = new ArrayList<>(historySize);
+        pendingEntries = new ArrayList<>(historySize);
+        for (Meal meal : localMeals) {
+            cloudRows.add(MealCodec.encodeRow(meal));
+            pendingEntries.add(MealCodec.encodePending(meal));
+        }
+        cloudRows = cloudRows.subList(0, historySize - historySize / 20);
+
+        cloudMeals = new ArrayList<>(cloudRows.size());
+        for (List<Object> row : cloudRows) {
+            cloudMeals.add(MealCodec.decodeRow(row));
+        }
+
+        sampleMeal = localMeals.get(historySize / 2);
+        sampleTimestamp = sampleMeal.getTimestamp();
+    }
+
+    @Benchmark
+    public Meal constructMeal() {
+        return new Meal("Chicken salad", "lunch", sampleTimestamp, "2024-05-01");
+    }
+
+    @Benchmark
+    public String formatTime() {
+        return sampleMeal.getFormattedTime();
+    }
+
+    @Benchmark
+    public String signature() {
+        return sampleMeal.getSignature();
+    }
+
+    @Benchmark
+    public void encodePendingQueue(Blackhole blackhole) {
+        for (Meal meal : localMeals) {
+            blackhole.consume(MealCodec.encodePending(meal));
+        }
+    }
+
+    @Benchmark
+    public void decodePendingQueue(Blackhole blackhole) {
+        for (String entry : pendingEntries) {
+            blackhole.consume(MealCodec.decodePending(entry));
+        }
+    }
+
+    @Benchmark
+    public void decodeCloudRows(Blackhole blackhole) {
+        for (List<Object> row : cloudRows) {
+            blackhole.consume(MealCodec.decodeRow(row));
+        }
+    }
+
+    @Benchmark
+    public List<Meal> findMealsToUpload() {
+        return MealReconciler.findMealsToUpload(localMeals, cloudMeals);
+    }
+
+    @Benchmark
+    public List<Meal> mergeCloudMeals() {
+        return MealReconciler.mergeCloudMeals(new ArrayList<>(localMeals), cloudMeals);
+    }
+}
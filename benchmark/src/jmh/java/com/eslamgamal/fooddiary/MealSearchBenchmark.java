@@ -0,0 +1,58 @@
+package com.eslamgamal.fooddiary;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Query and maintenance costs of the meal search index over a generated history of about
+ * 100k meals. Queries must stay well inside a frame, since the search dialog runs one per
+ * keystroke.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class MealSearchBenchmark {
+
+    private static final int SEARCH_LIMIT = 200;
+
+    // A rare term, a common one, a short prefix matching many tokens, a two-word query
+    // and Arabic with and without the definite article
+    @Param({"sushi", "chicken", "s", "grilled fi", "فول", "الملوخية"})
+    public String query;
+
+    private List<Meal> history;
+    private MealSearchIndex index;
+    private Meal sampleMeal;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        // ~3.3 meals a day, so 30,000 days is roughly 100k meals
+        history = new DiaryWorkloadGenerator(42).generateHistory(new Date(), 30_000);
+        index = MealSearchIndex.of(history);
+        sampleMeal = history.get(history.size() / 2);
+    }
+
+    @Benchmark
+    public MealSearchIndex.SearchResult search() {
+        return index.search(query, SEARCH_LIMIT);
+    }
+
+    // An edit: the meal's postings are unlinked and relinked
+    @Benchmark
+    public boolean removeAndReAdd() {
+        boolean removed = index.remove(sampleMeal);
+        index.add(sampleMeal);
+        return removed;
+    }
+}
@@ -0,0 +1,69 @@
+package com.eslamgamal.fooddiary;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decode throughput of a 50k-row sheet load, in rows per second, on one core and on
+ * every core. Legacy rows lack the hidden columns, so they also parse their timestamp
+ * and derive their ID from the row content.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+public class RowDecodeBenchmark {
+
+    private static final int ROWS = 50_000;
+
+    @Param({"current", "legacy"})
+    public String schema;
+
+    private List<List<Object>> rows;
+    private ForkJoinPool singleCore;
+    private ForkJoinPool allCores;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        List<Meal> history = new DiaryWorkloadGenerator(42).generateHistory(new Date(), 16_000);
+        rows = new ArrayList<>(ROWS);
+        for (Meal meal : history.subList(0, ROWS)) {
+            List<Object> row = MealCodec.encodeRow(meal);
+            rows.add("legacy".equals(schema) ? new ArrayList<>(row.subList(0, SheetSchema.COL_ID)) : row);
+        }
+        singleCore = new ForkJoinPool(1);
+        allCores = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        singleCore.shutdown();
+        allCores.shutdown();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public Meal[] decodeSingleCore() {
+        return MealCodec.decodeRows(rows, singleCore);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public Meal[] decodeAllCores() {
+        return MealCodec.decodeRows(rows, allCores);
+    }
+}
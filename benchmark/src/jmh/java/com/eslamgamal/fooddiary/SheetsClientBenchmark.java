@@ -0,0 +1,96 @@
+package com.eslamgamal.fooddiary;
+
+import com.google.api.client.json.JsonGenerator;
+import com.google.api.client.json.gson.GsonFactory;
+import com.google.api.services.sheets.v4.model.ValueRange;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-request cost of the Sheets JSON layer: {@link SheetsJson} against the google-api-client
+ * model classes it replaced (ValueRange through GsonFactory), reading a values response and
+ * writing an append body of meal rows. The old stack is on the benchmark classpath only, as
+ * the reference. Run with {@code -prof gc} for bytes allocated per request.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class SheetsClientBenchmark {
+
+    // One row is a single sync; 5000 is a migration chunk or a large day-range read
+    @Param({"1", "100", "5000"})
+    public int rows;
+
+    private List<List<Object>> values;
+    private byte[] response;
+    private final ByteArrayOutputStream sink = new ByteArrayOutputStream(1 << 20);
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        List<Meal> history = new DiaryWorkloadGenerator(42).generateHistory(new Date(), rows / 3 + 2);
+        values = new ArrayList<>(rows);
+        for (Meal meal : history.subList(0, rows)) {
+            values.add(MealCodec.encodeRow(meal));
+        }
+
+        // The values as a values.get response frames them
+        StringWriter body = new StringWriter();
+        SheetsJson.writeValues(body, values);
+        response = ("{\"range\":\"Sheet1!A2:G" + (rows + 1) + "\",\"majorDimension\":\"ROWS\","
+                + body.toString().substring(1)).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public List<List<Object>> readLean() throws IOException {
+        return SheetsJson.readValues(new SheetsJson.Parser(
+                new InputStreamReader(new ByteArrayInputStream(response), StandardCharsets.UTF_8)));
+    }
+
+    @Benchmark
+    public List<List<Object>> readApiClient() throws IOException {
+        return GsonFactory.getDefaultInstance()
+                .fromInputStream(new ByteArrayInputStream(response), StandardCharsets.UTF_8, ValueRange.class)
+                .getValues();
+    }
+
+    @Benchmark
+    public int writeLean() throws IOException {
+        sink.reset();
+        // Buffered as SheetsRestClient streams a request body
+        Writer writer = new BufferedWriter(new OutputStreamWriter(sink, StandardCharsets.UTF_8), SheetsJson.BUFFER_CHARS);
+        SheetsJson.writeValues(writer, values);
+        writer.flush();
+        return sink.size();
+    }
+
+    @Benchmark
+    public int writeApiClient() throws IOException {
+        sink.reset();
+        JsonGenerator generator = GsonFactory.getDefaultInstance().createJsonGenerator(sink, StandardCharsets.UTF_8);
+        generator.serialize(new ValueRange().setValues(values));
+        generator.flush();
+        return sink.size();
+    }
+}
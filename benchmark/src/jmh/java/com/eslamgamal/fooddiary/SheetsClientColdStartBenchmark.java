@@ -0,0 +1,71 @@
+package com.eslamgamal.fooddiary;
+
+import com.google.api.client.http.javanet.NetHttpTransport;
+import com.google.api.client.json.gson.GsonFactory;
+import com.google.api.services.sheets.v4.Sheets;
+import com.google.api.services.sheets.v4.model.ValueRange;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to the first decoded response in a fresh JVM, which is dominated by class loading
+ * and static initialisation: building the client and reading one small values response,
+ * with the lean client and with the google-api-client Sheets service it replaced. Each
+ * fork measures a single shot, so the Gradle jmh defaults must be overridden:
+ * {@code java -jar benchmark/build/libs/benchmark-jmh.jar SheetsClientColdStart -bm ss -wi 0 -i 1 -f 20}
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(20)
+public class SheetsClientColdStartBenchmark {
+
+    private static final byte[] RESPONSE = ("{\"range\":\"Sheet1!A2:G2\",\"majorDimension\":\"ROWS\",\"values\":"
+            + "[[\"2024-01-01\",\"lunch\",\"Rice\",\"12:30\",\"id-1\",\"1704112200000\",\"1704112200000\"]]}")
+            .getBytes(StandardCharsets.UTF_8);
+
+    private static final AccessTokenProvider NO_TOKENS = new AccessTokenProvider() {
+        @Override
+        public String getAccessToken() {
+            return "unused";
+        }
+
+        @Override
+        public void invalidateAccessToken(String token) {
+        }
+    };
+
+    @Benchmark
+    public List<List<Object>> leanFirstRequest(Blackhole blackhole) throws IOException {
+        blackhole.consume(new SheetsRestClient(NO_TOKENS, "Food Diary App"));
+        return SheetsJson.readValues(new SheetsJson.Parser(
+                new InputStreamReader(new ByteArrayInputStream(RESPONSE), StandardCharsets.UTF_8)));
+    }
+
+    @Benchmark
+    public List<List<Object>> apiClientFirstRequest(Blackhole blackhole) throws IOException {
+        Sheets sheets = new Sheets.Builder(new NetHttpTransport(), GsonFactory.getDefaultInstance(), null)
+                .setApplicationName("Food Diary App")
+                .build();
+        // Build the request the sync engine would send, then decode its response
+        blackhole.consume(sheets.spreadsheets().values().get("spreadsheet", SheetSchema.DATA_RANGE));
+        return GsonFactory.getDefaultInstance()
+                .fromInputStream(new ByteArrayInputStream(RESPONSE), StandardCharsets.UTF_8, ValueRange.class)
+                .getValues();
+    }
+}
@@ -0,0 +1,24 @@
+package com.eslamgamal.fooddiary;
+
+import java.io.IOException;
+
+/**
+ * Source of OAuth2 bearer tokens for {@link SheetsRestClient}. Implementations may cache
+ * tokens; the client invalidates a token the server rejected and asks for a fresh one once.
+ */
+public interface AccessTokenProvider {
+
+    /**
+     * Get a token for the Sheets scope; may block while it is fetched
+     * @return Access token without the "Bearer " prefix
+     * @throws IOException if no token can be obtained; a {@link SheetsBackendException}
+     *         with status 401 if the account is not authorized
+     */
+    String getAccessToken() throws IOException;
+
+    /**
+     * Forget a token the server rejected as expired or revoked
+     * @param token Token returned earlier by {@link #getAccessToken()}
+     */
+    void invalidateAccessToken(String token);
+}
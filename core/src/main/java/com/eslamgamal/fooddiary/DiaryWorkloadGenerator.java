@@ -0,0 +1,263 @@
+package com.eslamgamal.fooddiary;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.Deque;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * Deterministic generator of realistic diary workloads for load and soak runs. Histories
+ * follow per-category habits (most days have breakfast, lunch and dinner at roughly the
+ * same times, snacks vary), names repeat with a skewed popularity like real favourites do
+ * and mix Latin and Arabic, and every name passes {@link MealInputRules}. Sessions replay
+ * the diary forward as a stream of adds, deletes and full syncs interleaved with offline
+ * and online periods. The same seed always produces the same workload.
+ */
+public class DiaryWorkloadGenerator {
+
+    private static final String[][] NAMES = {
+            // breakfast
+            {"Oatmeal", "Eggs and toast", "فول مدمس", "Yogurt with honey", "طعمية", "Cheese sandwich",
+                    "Pancakes", "بيض بالبسطرمة", "Croissant", "Cereal with milk", "Fruit salad", "فطير مشلتت"},
+            // lunch
+            {"Chicken salad", "كشري", "Rice with beans", "Grilled fish", "ملوخية بالفراخ", "Pasta",
+                    "Beef burger", "محشي", "Lentil soup", "Shawarma wrap", "Tuna sandwich", "مكرونة بشاميل"},
+            // dinner
+            {"Grilled chicken", "فتة", "Vegetable soup", "Pizza", "كفتة", "Steak and potatoes",
+                    "Omelette", "حواوشي", "Sushi", "Salmon with rice", "Falafel plate", "شوربة عدس"},
+            // snacks
+            {"Apple", "Banana", "Nuts", "بسبوسة", "Dark chocolate", "Tea & biscuits", "تمر",
+                    "Popcorn", "Protein bar", "Orange juice", "كنافة", "Carrot sticks"}
+    };
+
+    // Probability that a day has the meal, and the usual time and spread in minutes
+    private static final double[] CATEGORY_PROBABILITY = {0.85, 0.80, 0.90};
+    private static final int[] CATEGORY_MEAN_MINUTE = {8 * 60, 13 * 60 + 30, 20 * 60};
+    private static final int[] CATEGORY_SPREAD_MINUTES = {60, 75, 75};
+    private static final double[] SNACK_COUNT_CDF = {0.40, 0.75, 0.93, 1.0};
+    private static final double SKIPPED_DAY_PROBABILITY = 0.05;
+    private static final double COMBINED_NAME_PROBABILITY = 0.08;
+
+    private final Random random;
+    private final double[][] nameCdf = new double[NAMES.length][];
+
+    public enum EventType {
+        ADD, DELETE, FULL_SYNC, GO_OFFLINE, GO_ONLINE
+    }
+
+    public static class Event {
+        private final EventType type;
+        private final Meal meal;
+        private final long thinkTimeMillis;
+
+        Event(EventType type, Meal meal, long thinkTimeMillis) {
+            this.type = type;
+            this.meal = meal;
+            this.thinkTimeMillis = thinkTimeMillis;
+        }
+
+        public EventType getType() {
+            return type;
+        }
+
+        // The added or deleted meal; null for the other event types
+        public Meal getMeal() {
+            return meal;
+        }
+
+        // Pause before the event, as a user would leave between actions
+        public long getThinkTimeMillis() {
+            return thinkTimeMillis;
+        }
+    }
+
+    public DiaryWorkloadGenerator(long seed) {
+        this.random = new Random(seed);
+        // Zipf-like popularity: a few favourites dominate, the rest form a long tail
+        for (int c = 0; c < NAMES.length; c++) {
+            double[] cdf = new double[NAMES[c].length];
+            double total = 0;
+            for (int i = 0; i < cdf.length; i++) {
+                total += 1.0 / (i + 1);
+                cdf[i] = total;
+            }
+            for (int i = 0; i < cdf.length; i++) {
+                cdf[i] /= total;
+            }
+            nameCdf[c] = cdf;
+        }
+    }
+
+    /**
+     * Generate a diary history ending the day before the given date
+     * @param endDate Day after the last generated day
+     * @param days Number of days to generate
+     * @return Meals ordered by timestamp
+     */
+    public List<Meal> generateHistory(Date endDate, int days) {
+        Calendar day = startOfDay(endDate);
+        day.add(Calendar.DAY_OF_MONTH, -days);
+
+        List<Meal> meals = new ArrayList<>(days * 4);
+        for (int i = 0; i < days; i++) {
+            meals.addAll(generateDay(day));
+            day.add(Calendar.DAY_OF_MONTH, 1);
+        }
+        return meals;
+    }
+
+    /**
+     * Generate the meals of one day
+     * @param day Any time on the day
+     * @return Meals ordered by timestamp, possibly none
+     */
+    public List<Meal> generateDay(Calendar day) {
+        List<Meal> meals = new ArrayList<>(6);
+        if (random.nextDouble() < SKIPPED_DAY_PROBABILITY) {
+            return meals; // Forgot to log, travelling, ...
+        }
+
+        Calendar start = startOfDay(day.getTime());
+        String date = new SimpleDateFormat("yyyy-MM-dd", Locale.getDefault()).format(start.getTime());
+
+        List<int[]> slots = new ArrayList<>(); // {category, minute of day}
+        for (int c = 0; c < CATEGORY_PROBABILITY.length; c++) {
+            if (random.nextDouble() < CATEGORY_PROBABILITY[c]) {
+                int minute = (int) Math.round(CATEGORY_MEAN_MINUTE[c] + random.nextGaussian() * CATEGORY_SPREAD_MINUTES[c]);
+                slots.add(new int[]{c, clampMinute(minute)});
+            }
+        }
+        int snacks = pick(SNACK_COUNT_CDF);
+        for (int i = 0; i < snacks; i++) {
+            slots.add(new int[]{3, 10 * 60 + random.nextInt(13 * 60)});
+        }
+        slots.sort((a, b) -> Integer.compare(a[1], b[1]));
+
+        for (int[] slot : slots) {
+            Calendar time = (Calendar) start.clone();
+            time.add(Calendar.MINUTE, slot[1]);
+            // IDs and change times come from the seed too, not from UUID.randomUUID() and the clock
+            String id = new UUID(random.nextLong(), random.nextLong()).toString();
+            meals.add(new Meal(id, nextName(slot[0]), Meal.VALID_CATEGORIES[slot[0]], time.getTime(), date,
+                    time.getTimeInMillis()));
+        }
+        return meals;
+    }
+
+    /**
+     * Start a session that continues the diary after the given history
+     * @param history Meals already in the diary; the session deletes from and adds to a copy
+     * @param startDate First day the session logs meals on
+     * @param meanThinkTimeMillis Average pause between events
+     * @return An endless event stream
+     */
+    public Session newSession(List<Meal> history, Date startDate, long meanThinkTimeMillis) {
+        return new Session(history, startDate, meanThinkTimeMillis);
+    }
+
+    /**
+     * Endless stream of user actions. Online periods last about 30 events and offline ones
+     * about 7, so every offline period leaves a small backlog for the next reconnect.
+     */
+    public class Session {
+        private static final double GO_OFFLINE_PROBABILITY = 0.03;
+        private static final double GO_ONLINE_PROBABILITY = 0.15;
+        private static final double DELETE_PROBABILITY = 0.10;
+        private static final double FULL_SYNC_PROBABILITY = 0.04;
+        private static final int RECENT_WINDOW = 50;
+
+        private final List<Meal> liveMeals;
+        private final Deque<Meal> upcoming = new ArrayDeque<>();
+        private final Calendar day;
+        private final long meanThinkTimeMillis;
+        private boolean online = true;
+
+        private Session(List<Meal> history, Date startDate, long meanThinkTimeMillis) {
+            this.liveMeals = new ArrayList<>(history);
+            this.day = startOfDay(startDate);
+            this.meanThinkTimeMillis = meanThinkTimeMillis;
+        }
+
+        public boolean isOnline() {
+            return online;
+        }
+
+        // Meals that exist after all events so far have been applied
+        public List<Meal> getLiveMeals() {
+            return liveMeals;
+        }
+
+        public Event next() {
+            long thinkTime = (long) (-Math.log(1 - random.nextDouble()) * meanThinkTimeMillis);
+
+            if (random.nextDouble() < (online ? GO_OFFLINE_PROBABILITY : GO_ONLINE_PROBABILITY)) {
+                online = !online;
+                return new Event(online ? EventType.GO_ONLINE : EventType.GO_OFFLINE, null, thinkTime);
+            }
+
+            double roll = random.nextDouble();
+            if (roll < DELETE_PROBABILITY && !liveMeals.isEmpty()) {
+                // Mostly fixing a recent mistake, sometimes pruning old entries
+                int size = liveMeals.size();
+                int index = random.nextDouble() < 0.8
+                        ? size - 1 - random.nextInt(Math.min(size, RECENT_WINDOW))
+                        : random.nextInt(size);
+                return new Event(EventType.DELETE, liveMeals.remove(index), thinkTime);
+            }
+            if (roll < DELETE_PROBABILITY + FULL_SYNC_PROBABILITY && online) {
+                return new Event(EventType.FULL_SYNC, null, thinkTime);
+            }
+
+            while (upcoming.isEmpty()) {
+                upcoming.addAll(generateDay(day));
+                day.add(Calendar.DAY_OF_MONTH, 1);
+            }
+            Meal meal = upcoming.poll();
+            liveMeals.add(meal);
+            return new Event(EventType.ADD, meal, thinkTime);
+        }
+    }
+
+    private String nextName(int category) {
+        String name = NAMES[category][pick(nameCdf[category])];
+        if (random.nextDouble() < COMBINED_NAME_PROBABILITY) {
+            // Long tail of one-off combinations such as "Pasta & Lentil soup"
+            String other = NAMES[category][random.nextInt(NAMES[category].length)];
+            String combined = name + " & " + other;
+            if (MealInputRules.validateMealName(combined).isValid()) {
+                name = combined;
+            }
+        }
+        return name;
+    }
+
+    private int pick(double[] cdf) {
+        double roll = random.nextDouble();
+        for (int i = 0; i < cdf.length; i++) {
+            if (roll < cdf[i]) {
+                return i;
+            }
+        }
+        return cdf.length - 1;
+    }
+
+    private static int clampMinute(int minute) {
+        return Math.max(0, Math.min(24 * 60 - 1, minute));
+    }
+
+    private static Calendar startOfDay(Date date) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTime(date);
+        calendar.set(Calendar.HOUR_OF_DAY, 0);
+        calendar.set(Calendar.MINUTE, 0);
+        calendar.set(Calendar.SECOND, 0);
+        calendar.set(Calendar.MILLISECOND, 0);
+        return calendar;
+    }
+}
@@ -0,0 +1,554 @@
+package com.eslamgamal.fooddiary;
+
+import java.io.IOException;
+import java.net.UnknownHostException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link SheetsBackend} that keeps spreadsheets in memory and imitates the service's
+ * timing and failure behaviour: per-request latency with jitter, a bandwidth cap on
+ * request and response bodies, the per-minute read/write quota (answered with 429 and
+ * Retry-After) and randomly injected 429s and 5xx errors. With a fixed seed the sequence
+ * of injected failures is reproducible, so sync throughput, retry behaviour and large-sheet
+ * loads can be measured without a Google account.
+ */
+public class InMemorySheetsBackend implements SheetsBackend {
+
+    private static final String SHEET_NAME = "Sheet1";
+
+    private final long latencyMillis;
+    private final long latencyJitterMillis;
+    private final long bandwidthBytesPerSecond;
+    private final int requestsPerMinute;
+    private final long quotaWindowMillis;
+    private final long retryAfterSeconds;
+    private final double rateLimitProbability;
+    private final double serverErrorProbability;
+    private final Random random;
+    private volatile boolean offline = false;
+
+    // spreadsheetId -> sheet title -> grid; cells are stored in their RAW string form
+    private final Map<String, Map<String, Grid>> spreadsheets = new HashMap<>();
+    private final Deque<Long> recentReads = new ArrayDeque<>();
+    private final Deque<Long> recentWrites = new ArrayDeque<>();
+
+    private final AtomicLong requestCount = new AtomicLong();
+    private final AtomicLong rateLimitedCount = new AtomicLong();
+    private final AtomicLong serverErrorCount = new AtomicLong();
+    private final AtomicLong requestBytesTotal = new AtomicLong();
+    private final AtomicLong responseBytesTotal = new AtomicLong();
+
+    private static final class Grid {
+        final int sheetId;
+        final List<List<Object>> rows = new ArrayList<>();
+        boolean[] hiddenColumns = new boolean[0];
+
+        Grid(int sheetId) {
+            this.sheetId = sheetId;
+        }
+    }
+
+    public static class Builder {
+        private long latencyMillis = 0;
+        private long latencyJitterMillis = 0;
+        private long bandwidthBytesPerSecond = 0;
+        private int requestsPerMinute = 0;
+        private long quotaWindowMillis = TimeUnit.MINUTES.toMillis(1);
+        private long retryAfterSeconds = 5;
+        private double rateLimitProbability = 0;
+        private double serverErrorProbability = 0;
+        private long seed = 42;
+
+        // Fixed round-trip time added to every request, plus up to jitterMillis extra
+        public Builder latency(long millis, long jitterMillis) {
+            this.latencyMillis = millis;
+            this.latencyJitterMillis = jitterMillis;
+            return this;
+        }
+
+        // Link speed applied to request and response bodies; 0 means unlimited
+        public Builder bandwidth(long bytesPerSecond) {
+            this.bandwidthBytesPerSecond = bytesPerSecond;
+            return this;
+        }
+
+        // Per-minute read and write quota (each), like the real per-user limit; 0 disables it
+        public Builder quota(int requestsPerMinute, long retryAfterSeconds) {
+            this.requestsPerMinute = requestsPerMinute;
+            this.retryAfterSeconds = retryAfterSeconds;
+            return this;
+        }
+
+        // Length of the quota window; shorter than the real minute to replay bursts in compressed time
+        public Builder quotaWindow(long millis) {
+            this.quotaWindowMillis = millis;
+            return this;
+        }
+
+        // Probability that a request is answered with a 429 regardless of the quota
+        public Builder rateLimitProbability(double probability) {
+            this.rateLimitProbability = probability;
+            return this;
+        }
+
+        // Probability that a request fails with a 503
+        public Builder serverErrorProbability(double probability) {
+            this.serverErrorProbability = probability;
+            return this;
+        }
+
+        public Builder seed(long seed) {
+            this.seed = seed;
+            return this;
+        }
+
+        public InMemorySheetsBackend build() {
+            return new InMemorySheetsBackend(this);
+        }
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    private InMemorySheetsBackend(Builder builder) {
+        this.latencyMillis = builder.latencyMillis;
+        this.latencyJitterMillis = builder.latencyJitterMillis;
+        this.bandwidthBytesPerSecond = builder.bandwidthBytesPerSecond;
+        this.requestsPerMinute = builder.requestsPerMinute;
+        this.quotaWindowMillis = builder.quotaWindowMillis;
+        this.retryAfterSeconds = builder.retryAfterSeconds;
+        this.rateLimitProbability = builder.rateLimitProbability;
+        this.serverErrorProbability = builder.serverErrorProbability;
+        this.random = new Random(builder.seed);
+    }
+
+    /**
+     * Append rows directly, without latency, quota or failure injection. Used to scale a
+     * spreadsheet up to a realistic history before a run.
+     * @param spreadsheetId Existing spreadsheet ID
+     * @param rows Rows to add after the last non-empty row
+     */
+    public synchronized void seedRows(String spreadsheetId, List<List<Object>> rows) {
+        Map<String, Grid> sheets = spreadsheets.get(spreadsheetId);
+        if (sheets == null) {
+            throw new IllegalArgumentException("Unknown spreadsheet: " + spreadsheetId);
+        }
+        List<List<Object>> sheet = sheets.get(SHEET_NAME).rows;
+        int next = lastNonEmptyRow(sheet, 0, Integer.MAX_VALUE) + 1;
+        writeRows(sheet, next, 0, rows);
+    }
+
+    /**
+     * Simulate losing or regaining connectivity. While offline every request fails with a
+     * transport error after the usual latency, like a DNS or connect failure would.
+     * @param offline true to fail all requests
+     */
+    public void setOffline(boolean offline) {
+        this.offline = offline;
+    }
+
+    // Rows of Sheet1, including the header row
+    public synchronized int getRowCount(String spreadsheetId) {
+        Map<String, Grid> sheets = spreadsheets.get(spreadsheetId);
+        return sheets == null ? 0 : lastNonEmptyRow(sheets.get(SHEET_NAME).rows, 0, Integer.MAX_VALUE) + 1;
+    }
+
+    // Rows across all spreadsheets and sheets, including header rows
+    public synchronized int getTotalRowCount() {
+        int rows = 0;
+        for (Map<String, Grid> sheets : spreadsheets.values()) {
+            for (Grid grid : sheets.values()) {
+                rows += lastNonEmptyRow(grid.rows, 0, Integer.MAX_VALUE) + 1;
+            }
+        }
+        return rows;
+    }
+
+    @Override
+    public String createSpreadsheet(String title) throws IOException {
+        beforeRequest(true, title.length());
+        String spreadsheetId;
+        synchronized (this) {
+            spreadsheetId = UUID.randomUUID().toString();
+            Map<String, Grid> sheets = new LinkedHashMap<>();
+            sheets.put(SHEET_NAME, new Grid(0));
+            spreadsheets.put(spreadsheetId, sheets);
+        }
+        afterResponse(spreadsheetId.length() + 64);
+        return spreadsheetId;
+    }
+
+    @Override
+    public void getSpreadsheet(String spreadsheetId) throws IOException {
+        beforeRequest(false, 0);
+        synchronized (this) {
+            requireSpreadsheet(spreadsheetId);
+        }
+        afterResponse(256);
+    }
+
+    @Override
+    public List<List<Object>> getValues(String spreadsheetId, String range) throws IOException {
+        beforeRequest(false, 0);
+        List<List<Object>> result = new ArrayList<>();
+        synchronized (this) {
+            Range r = Range.parse(range);
+            List<List<Object>> sheet = requireGrid(spreadsheetId, r.sheet, range).rows;
+            int last = lastNonEmptyRow(sheet, r.startColumn, r.endColumn);
+            for (int i = r.startRow; i <= last && i < r.endRow; i++) {
+                result.add(trimmedSlice(sheet.get(i), r.startColumn, r.endColumn));
+            }
+        }
+        afterResponse(SheetsBackend.estimatePayloadBytes(result));
+        return result;
+    }
+
+    @Override
+    public String appendValues(String spreadsheetId, String range, List<List<Object>> rows) throws IOException {
+        beforeRequest(true, SheetsBackend.estimatePayloadBytes(rows));
+        String updatedRange;
+        synchronized (this) {
+            Range r = Range.parse(range);
+            List<List<Object>> sheet = requireGrid(spreadsheetId, r.sheet, range).rows;
+            int first = Math.max(r.startRow, lastNonEmptyRow(sheet, r.startColumn, r.endColumn) + 1);
+            int width = writeRows(sheet, first, r.startColumn, rows);
+            updatedRange = Range.format(r.sheet, first, r.startColumn, first + rows.size() - 1, r.startColumn + Math.max(width, 1) - 1);
+        }
+        afterResponse(updatedRange.length() + 128);
+        return updatedRange;
+    }
+
+    @Override
+    public void updateValues(String spreadsheetId, String range, List<List<Object>> rows) throws IOException {
+        beforeRequest(true, SheetsBackend.estimatePayloadBytes(rows));
+        synchronized (this) {
+            Range r = Range.parse(range);
+            List<List<Object>> sheet = requireGrid(spreadsheetId, r.sheet, range).rows;
+            int width = 0;
+            for (List<Object> row : rows) {
+                width = Math.max(width, row.size());
+            }
+            if (r.startRow + rows.size() > r.endRow || r.startColumn + width - 1 > r.endColumn) {
+                throw new SheetsBackendException(SheetsBackendException.STATUS_BAD_REQUEST, "Requested writing within range [" + range + "], but tried writing beyond it");
+            }
+            writeRows(sheet, r.startRow, r.startColumn, rows);
+        }
+        afterResponse(128);
+    }
+
+    @Override
+    public void clearValues(String spreadsheetId, String range) throws IOException {
+        beforeRequest(true, 0);
+        synchronized (this) {
+            Range r = Range.parse(range);
+            List<List<Object>> sheet = requireGrid(spreadsheetId, r.sheet, range).rows;
+            for (int i = r.startRow; i < sheet.size() && i < r.endRow; i++) {
+                List<Object> row = sheet.get(i);
+                for (int c = r.startColumn; c < row.size() && c <= r.endColumn; c++) {
+                    row.set(c, "");
+                }
+            }
+        }
+        afterResponse(128);
+    }
+
+    @Override
+    public void deleteRows(String spreadsheetId, int sheetId, int startIndex, int endIndex) throws IOException {
+        beforeRequest(true, 128);
+        synchronized (this) {
+            List<List<Object>> sheet = requireGrid(spreadsheetId, sheetId).rows;
+            if (startIndex < 0 || endIndex <= startIndex) {
+                throw new SheetsBackendException(SheetsBackendException.STATUS_BAD_REQUEST, "Invalid dimension range " + startIndex + ".." + endIndex);
+            }
+            int end = Math.min(endIndex, sheet.size());
+            if (startIndex < end) {
+                sheet.subList(startIndex, end).clear();
+            }
+        }
+        afterResponse(128);
+    }
+
+    @Override
+    public int addSheet(String spreadsheetId, String title) throws IOException {
+        beforeRequest(true, title.length() + 64);
+        int sheetId;
+        synchronized (this) {
+            Map<String, Grid> sheets = requireSpreadsheet(spreadsheetId);
+            if (sheets.containsKey(title)) {
+                throw new SheetsBackendException(SheetsBackendException.STATUS_BAD_REQUEST, "A sheet with the name \"" + title + "\" already exists.");
+            }
+            sheetId = 1;
+            for (Grid grid : sheets.values()) {
+                sheetId = Math.max(sheetId, grid.sheetId + 1);
+            }
+            sheets.put(title, new Grid(sheetId));
+        }
+        afterResponse(256);
+        return sheetId;
+    }
+
+    @Override
+    public void hideColumns(String spreadsheetId, int sheetId, int startIndex, int endIndex) throws IOException {
+        beforeRequest(true, 128);
+        synchronized (this) {
+            Grid grid = requireGrid(spreadsheetId, sheetId);
+            if (startIndex < 0 || endIndex <= startIndex) {
+                throw new SheetsBackendException(SheetsBackendException.STATUS_BAD_REQUEST, "Invalid dimension range " + startIndex + ".." + endIndex);
+            }
+            // Hiding only affects how the sheet is displayed; values are unaffected
+            if (grid.hiddenColumns.length < endIndex) {
+                grid.hiddenColumns = Arrays.copyOf(grid.hiddenColumns, endIndex);
+            }
+            Arrays.fill(grid.hiddenColumns, startIndex, endIndex, true);
+        }
+        afterResponse(128);
+    }
+
+    public long getRequestCount() {
+        return requestCount.get();
+    }
+
+    public long getRateLimitedCount() {
+        return rateLimitedCount.get();
+    }
+
+    public long getServerErrorCount() {
+        return serverErrorCount.get();
+    }
+
+    public long getRequestBytes() {
+        return requestBytesTotal.get();
+    }
+
+    public long getResponseBytes() {
+        return responseBytesTotal.get();
+    }
+
+    // Upload the request, then decide whether the server accepts it
+    private void beforeRequest(boolean write, long requestBytes) throws IOException {
+        requestCount.incrementAndGet();
+        requestBytesTotal.addAndGet(requestBytes);
+
+        long delay;
+        boolean rateLimited;
+        boolean serverError;
+        synchronized (random) {
+            delay = latencyMillis + (latencyJitterMillis > 0 ? (long) (random.nextDouble() * latencyJitterMillis) : 0);
+            rateLimited = random.nextDouble() < rateLimitProbability;
+            serverError = random.nextDouble() < serverErrorProbability;
+        }
+        sleep(delay + transferMillis(requestBytes));
+
+        if (offline) {
+            throw new UnknownHostException("Unable to resolve host \"sheets.googleapis.com\": No address associated with hostname");
+        }
+        if (rateLimited || !admit(write)) {
+            rateLimitedCount.incrementAndGet();
+            throw new SheetsBackendException(SheetsBackendException.STATUS_TOO_MANY_REQUESTS,
+                    "Quota exceeded for quota metric '" + (write ? "Write" : "Read") + " requests'",
+                    retryAfterSeconds, null);
+        }
+        if (serverError) {
+            serverErrorCount.incrementAndGet();
+            throw new SheetsBackendException(503, "The service is currently unavailable.");
+        }
+    }
+
+    private void afterResponse(long responseBytes) {
+        responseBytesTotal.addAndGet(responseBytes);
+        sleep(transferMillis(responseBytes));
+    }
+
+    // Sliding window (one minute unless compressed) per request kind
+    private boolean admit(boolean write) {
+        if (requestsPerMinute <= 0) {
+            return true;
+        }
+        Deque<Long> recent = write ? recentWrites : recentReads;
+        long now = System.currentTimeMillis();
+        synchronized (recent) {
+            while (!recent.isEmpty() && now - recent.peekFirst() >= quotaWindowMillis) {
+                recent.pollFirst();
+            }
+            if (recent.size() >= requestsPerMinute) {
+                return false;
+            }
+            recent.addLast(now);
+            return true;
+        }
+    }
+
+    private long transferMillis(long bytes) {
+        return bandwidthBytesPerSecond > 0 ? bytes * 1000 / bandwidthBytesPerSecond : 0;
+    }
+
+    private static void sleep(long millis) {
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private Map<String, Grid> requireSpreadsheet(String spreadsheetId) throws SheetsBackendException {
+        Map<String, Grid> sheets = spreadsheets.get(spreadsheetId);
+        if (sheets == null) {
+            throw new SheetsBackendException(SheetsBackendException.STATUS_NOT_FOUND, "Requested entity was not found.");
+        }
+        return sheets;
+    }
+
+    private Grid requireGrid(String spreadsheetId, String title, String range) throws SheetsBackendException {
+        Grid grid = requireSpreadsheet(spreadsheetId).get(title);
+        if (grid == null) {
+            throw new SheetsBackendException(SheetsBackendException.STATUS_BAD_REQUEST, "Unable to parse range: " + range);
+        }
+        return grid;
+    }
+
+    private Grid requireGrid(String spreadsheetId, int sheetId) throws SheetsBackendException {
+        for (Grid grid : requireSpreadsheet(spreadsheetId).values()) {
+            if (grid.sheetId == sheetId) {
+                return grid;
+            }
+        }
+        throw new SheetsBackendException(SheetsBackendException.STATUS_BAD_REQUEST, "No grid with id: " + sheetId);
+    }
+
+    // Index of the last row with a non-empty cell in the column span, or -1
+    private static int lastNonEmptyRow(List<List<Object>> sheet, int startColumn, int endColumn) {
+        for (int i = sheet.size() - 1; i >= 0; i--) {
+            List<Object> row = sheet.get(i);
+            for (int c = startColumn; c < row.size() && c <= endColumn; c++) {
+                if (!"".equals(row.get(c))) {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    // Write rows at (startRow, startColumn), growing the grid as needed; returns the widest row
+    private static int writeRows(List<List<Object>> sheet, int startRow, int startColumn, List<List<Object>> rows) {
+        int width = 0;
+        for (int i = 0; i < rows.size(); i++) {
+            while (sheet.size() <= startRow + i) {
+                sheet.add(new ArrayList<>());
+            }
+            List<Object> target = sheet.get(startRow + i);
+            List<Object> source = rows.get(i);
+            while (target.size() < startColumn + source.size()) {
+                target.add("");
+            }
+            for (int c = 0; c < source.size(); c++) {
+                target.set(startColumn + c, source.get(c) == null ? "" : String.valueOf(source.get(c)));
+            }
+            width = Math.max(width, source.size());
+        }
+        return width;
+    }
+
+    // Columns of a row within the span, without trailing empty cells (as the API returns them)
+    private static List<Object> trimmedSlice(List<Object> row, int startColumn, int endColumn) {
+        int end = Math.min(row.size() - 1, endColumn);
+        while (end >= startColumn && "".equals(row.get(end))) {
+            end--;
+        }
+        return end < startColumn ? new ArrayList<>() : new ArrayList<>(row.subList(startColumn, end + 1));
+    }
+
+    // A1 range with 0-based inclusive columns and a 0-based half-open row span
+    private static final class Range {
+        final String sheet;
+        final int startRow;
+        final int endRow;
+        final int startColumn;
+        final int endColumn;
+
+        private Range(String sheet, int startRow, int endRow, int startColumn, int endColumn) {
+            this.sheet = sheet;
+            this.startRow = startRow;
+            this.endRow = endRow;
+            this.startColumn = startColumn;
+            this.endColumn = endColumn;
+        }
+
+        static Range parse(String range) throws SheetsBackendException {
+            int bang = range.indexOf('!');
+            String sheetName = bang >= 0 ? range.substring(0, bang) : SHEET_NAME;
+            String cells = range.substring(bang + 1);
+            int colon = cells.indexOf(':');
+            String start = colon >= 0 ? cells.substring(0, colon) : cells;
+            String end = colon >= 0 ? cells.substring(colon + 1) : cells;
+
+            int startColumn = parseColumn(start, range);
+            int endColumn = parseColumn(end, range);
+            int startRow = parseRow(start, 1, range) - 1;
+            int endRow = parseRow(end, Integer.MAX_VALUE, range);
+            if (endColumn < startColumn || endRow <= startRow) {
+                throw new SheetsBackendException(SheetsBackendException.STATUS_BAD_REQUEST, "Unable to parse range: " + range);
+            }
+            return new Range(sheetName, startRow, endRow, startColumn, endColumn);
+        }
+
+        static String format(String sheet, int startRow, int startColumn, int endRow, int endColumn) {
+            return sheet + "!" + columnName(startColumn) + (startRow + 1) + ":" + columnName(endColumn) + (endRow + 1);
+        }
+
+        private static int parseColumn(String cell, String range) throws SheetsBackendException {
+            int column = 0;
+            int i = 0;
+            while (i < cell.length() && Character.isLetter(cell.charAt(i))) {
+                column = column * 26 + (Character.toUpperCase(cell.charAt(i)) - 'A' + 1);
+                i++;
+            }
+            if (i == 0) {
+                throw new SheetsBackendException(SheetsBackendException.STATUS_BAD_REQUEST, "Unable to parse range: " + range);
+            }
+            return column - 1;
+        }
+
+        // 1-based row number of a cell reference, or the default when it has none ("A:D")
+        private static int parseRow(String cell, int defaultRow, String range) throws SheetsBackendException {
+            int i = 0;
+            while (i < cell.length() && Character.isLetter(cell.charAt(i))) {
+                i++;
+            }
+            if (i == cell.length()) {
+                return defaultRow;
+            }
+            try {
+                int row = Integer.parseInt(cell.substring(i));
+                if (row < 1) {
+                    throw new NumberFormatException();
+                }
+                return row;
+            } catch (NumberFormatException e) {
+                throw new SheetsBackendException(SheetsBackendException.STATUS_BAD_REQUEST, "Unable to parse range: " + range);
+            }
+        }
+
+        private static String columnName(int column) {
+            StringBuilder name = new StringBuilder();
+            for (int n = column + 1; n > 0; n = (n - 1) / 26) {
+                name.insert(0, (char) ('A' + (n - 1) % 26));
+            }
+            return name.toString();
+        }
+    }
+}
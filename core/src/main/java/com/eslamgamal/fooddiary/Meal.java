@@ -11,6 +11,7 @@ public class Meal {
     private String category; // breakfast, lunch, dinner, snacks
     private Date timestamp;
     private String date; // format: yyyy-MM-dd
+    private long updatedAt; // epoch millis of the last change, used to pick the newer copy
 
     // Constants for validation
     public static final int MAX_NAME_LENGTH = 100;
@@ -21,6 +22,7 @@ public class Meal {
         this.name = validateAndTrimName(name);
         this.category = validateCategory(category);
         this.timestamp = new Date();
+        this.updatedAt = timestamp.getTime();
 
         // Format date as yyyy-MM-dd for consistency
         SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd", Locale.getDefault());
@@ -28,20 +30,22 @@ public class Meal {
     }
 
     public Meal(String name, String category, Date timestamp, String date) {
-        this.id = UUID.randomUUID().toString();
-        this.name = validateAndTrimName(name);
-        this.category = validateCategory(category);
-        this.timestamp = timestamp != null ? timestamp : new Date();
-        this.date = date != null ? date : formatDate(this.timestamp);
+        this(null, name, category, timestamp, date);
     }
 
     // Constructor with ID (for loading from storage/cloud)
     public Meal(String id, String name, String category, Date timestamp, String date) {
+        this(id, name, category, timestamp, date, System.currentTimeMillis());
+    }
+
+    // Constructor with ID and last-change time (for loading from storage/cloud)
+    public Meal(String id, String name, String category, Date timestamp, String date, long updatedAt) {
         this.id = id != null ? id : UUID.randomUUID().toString();
         this.name = validateAndTrimName(name);
         this.category = validateCategory(category);
         this.timestamp = timestamp != null ? timestamp : new Date();
         this.date = date != null ? date : formatDate(this.timestamp);
+        this.updatedAt = updatedAt;
     }
 
     // Validation methods
@@ -99,6 +103,10 @@ public class Meal {
         return date;
     }
 
+    public long getUpdatedAt() {
+        return updatedAt;
+    }
+
     // Get formatted time string (HH:mm)
     public String getFormattedTime() {
         SimpleDateFormat timeFormat = new SimpleDateFormat("HH:mm", Locale.getDefault());
@@ -130,10 +138,12 @@ public class Meal {
     // Setters with validation
     public void setName(String name) {
         this.name = validateAndTrimName(name);
+        touch();
     }
 
     public void setCategory(String category) {
         this.category = validateCategory(category);
+        touch();
     }
 
     public void setTimestamp(Date timestamp) {
@@ -143,6 +153,7 @@ public class Meal {
         this.timestamp = timestamp;
         // Update date when timestamp changes
         this.date = formatDate(timestamp);
+        touch();
     }
 
     public void setDate(String date) {
@@ -150,6 +161,11 @@ public class Meal {
             throw new IllegalArgumentException("Date cannot be empty");
         }
         this.date = date.trim();
+        touch();
+    }
+
+    private void touch() {
+        this.updatedAt = System.currentTimeMillis();
     }
 
     // Utility methods
@@ -162,6 +178,11 @@ public class Meal {
         return timestamp.getTime();
     }
 
+    // Independent copy, e.g. to keep the values a meal had before an edit
+    public Meal copy() {
+        return new Meal(id, name, category, new Date(timestamp.getTime()), date, updatedAt);
+    }
+
     // Create a unique signature for this meal (useful for comparison)
     public String getSignature() {
         return date + "|" + getFormattedTime() + "|" + name + "|" + category;
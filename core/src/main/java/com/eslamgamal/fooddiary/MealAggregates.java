@@ -0,0 +1,541 @@
+package com.eslamgamal.fooddiary;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Running statistics over the meal history: meals per day and category, logging streaks
+ * and the most frequent meals. Per-day counters sit in Fenwick trees indexed by day, so
+ * the count for any date range (a week, a month, the whole history) is two O(log n)
+ * prefix sums, and adding or deleting a meal updates O(log n) nodes. Only a cold start
+ * walks the history, and it splits the per-meal work across cores.
+ */
+public class MealAggregates {
+
+    // Meals handled per fork/join leaf during a cold rebuild
+    private static final int REBUILD_CHUNK_SIZE = 4096;
+    // Free days kept before the first and after the last logged day when the trees grow
+    private static final int DAY_PADDING = 366;
+
+    // A frequently logged meal, under the spelling it was last counted with
+    public static class ItemCount {
+        private final String name;
+        private final int count;
+
+        ItemCount(String name, int count) {
+            this.name = name;
+            this.count = count;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getCount() {
+            return count;
+        }
+    }
+
+    // What a meal contributed, kept so it can be taken back out on delete or replace
+    private static final class Contribution {
+        final int day; // Epoch day, or NO_DAY for an unparseable date
+        final int category;
+        final String nameKey;
+        final String name;
+
+        Contribution(int day, int category, String nameKey, String name) {
+            this.day = day;
+            this.category = category;
+            this.nameKey = nameKey;
+            this.name = name;
+        }
+    }
+
+    private static final class FenwickTree {
+        final int[] tree;
+
+        FenwickTree(int[] values) {
+            // Linear-time construction: push each node into its parent once
+            tree = new int[values.length + 1];
+            for (int i = 1; i <= values.length; i++) {
+                tree[i] += values[i - 1];
+                int parent = i + (i & -i);
+                if (parent <= values.length) {
+                    tree[parent] += tree[i];
+                }
+            }
+        }
+
+        void add(int index, int delta) {
+            for (int i = index + 1; i < tree.length; i += i & -i) {
+                tree[i] += delta;
+            }
+        }
+
+        // Sum of values[0..index]
+        int prefix(int index) {
+            int sum = 0;
+            for (int i = Math.min(index + 1, tree.length - 1); i > 0; i -= i & -i) {
+                sum += tree[i];
+            }
+            return sum;
+        }
+    }
+
+    private static final int NO_DAY = Integer.MIN_VALUE;
+    private static final int CATEGORY_COUNT = Meal.VALID_CATEGORIES.length;
+
+    private final Map<String, Contribution> contributions = new HashMap<>();
+    // Epoch day -> name key -> count; only days with meals are present
+    private final Map<Integer, Map<String, Integer>> namesByDay = new HashMap<>();
+    private final Map<String, Integer> nameCounts = new HashMap<>();
+    private final Map<String, String> displayNames = new HashMap<>();
+
+    // Counters for the days origin .. origin + capacity - 1
+    private int origin;
+    private int capacity;
+    private int[][] dayCounts = new int[CATEGORY_COUNT][0];
+    private int[] dayTotals = new int[0];
+    private FenwickTree[] categoryTrees = new FenwickTree[CATEGORY_COUNT];
+    private FenwickTree loggedDaysTree; // 1 for every day with at least one meal
+    // The same per-day counts, packed small enough to save and map back for the calendar
+    private final MealDayCounts packedCounts = new MealDayCounts();
+
+    public MealAggregates() {
+        resize(0, 0);
+    }
+
+    /**
+     * Build the aggregates from a whole history; see {@link #rebuild(Collection)}
+     * @param meals Meals to count
+     * @return The aggregates
+     */
+    public static MealAggregates of(Collection<Meal> meals) {
+        MealAggregates aggregates = new MealAggregates();
+        aggregates.rebuild(meals);
+        return aggregates;
+    }
+
+    /**
+     * Replace everything with counts from a whole history. Parsing dates and normalizing
+     * names runs in parallel chunks on the common fork/join pool; folding the results in
+     * and building the trees is linear.
+     * @param meals Meals to count; a repeated meal ID is counted once
+     */
+    public void rebuild(Collection<Meal> meals) {
+        Meal[] mealArray = meals.toArray(new Meal[0]);
+        Contribution[] computed = new Contribution[mealArray.length];
+        ForkJoinPool.commonPool().invoke(new ContributionTask(mealArray, computed, 0, mealArray.length));
+
+        synchronized (this) {
+            contributions.clear();
+            namesByDay.clear();
+            nameCounts.clear();
+            displayNames.clear();
+
+            int minDay = Integer.MAX_VALUE;
+            int maxDay = Integer.MIN_VALUE;
+            for (int i = 0; i < mealArray.length; i++) {
+                Contribution contribution = computed[i];
+                if (contributions.putIfAbsent(mealArray[i].getId(), contribution) != null || contribution.day == NO_DAY) {
+                    continue;
+                }
+                minDay = Math.min(minDay, contribution.day);
+                maxDay = Math.max(maxDay, contribution.day);
+            }
+
+            if (minDay > maxDay) {
+                resize(0, 0);
+                packedCounts.clear();
+                return;
+            }
+            origin = minDay - DAY_PADDING;
+            capacity = maxDay - origin + 1 + DAY_PADDING;
+            dayCounts = new int[CATEGORY_COUNT][capacity];
+            dayTotals = new int[capacity];
+            for (Contribution contribution : contributions.values()) {
+                if (contribution.day != NO_DAY) {
+                    dayCounts[contribution.category][contribution.day - origin]++;
+                    dayTotals[contribution.day - origin]++;
+                    countName(contribution, 1);
+                }
+            }
+            rebuildTrees();
+            packedCounts.clear();
+            for (int c = 0; c < CATEGORY_COUNT; c++) {
+                for (int i = 0; i < capacity; i++) {
+                    if (dayCounts[c][i] > 0) {
+                        packedCounts.set(origin + i, c, dayCounts[c][i]);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Count a meal, replacing whatever was counted under its ID before. Call this again
+     * after a meal is edited in place.
+     * @param meal Meal to count
+     */
+    public synchronized void add(Meal meal) {
+        remove(meal);
+        Contribution contribution = contributionOf(meal);
+        contributions.put(meal.getId(), contribution);
+        apply(contribution, 1);
+    }
+
+    public synchronized void addAll(Collection<Meal> meals) {
+        for (Meal meal : meals) {
+            add(meal);
+        }
+    }
+
+    /**
+     * Stop counting a meal
+     * @param meal Meal to drop, matched by ID
+     * @return true if it was counted
+     */
+    public synchronized boolean remove(Meal meal) {
+        Contribution contribution = contributions.remove(meal.getId());
+        if (contribution == null) {
+            return false;
+        }
+        apply(contribution, -1);
+        return true;
+    }
+
+    public synchronized int size() {
+        return contributions.size();
+    }
+
+    /**
+     * @param fromDate First day, yyyy-MM-dd, inclusive
+     * @param toDate Last day, yyyy-MM-dd, inclusive
+     * @return Meals logged in the range
+     */
+    public synchronized int count(String fromDate, String toDate) {
+        int total = 0;
+        for (int count : categoryCounts(fromDate, toDate)) {
+            total += count;
+        }
+        return total;
+    }
+
+    /**
+     * @return Meals logged in the range per category, in Meal.VALID_CATEGORIES order
+     */
+    public synchronized int[] categoryCounts(String fromDate, String toDate) {
+        int[] counts = new int[CATEGORY_COUNT];
+        int[] range = dayRange(fromDate, toDate);
+        if (range != null) {
+            for (int c = 0; c < CATEGORY_COUNT; c++) {
+                counts[c] = rangeSum(categoryTrees[c], range[0], range[1]);
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * @return Days in the range on which at least one meal was logged
+     */
+    public synchronized int loggedDays(String fromDate, String toDate) {
+        int[] range = dayRange(fromDate, toDate);
+        return range != null ? rangeSum(loggedDaysTree, range[0], range[1]) : 0;
+    }
+
+    /**
+     * @return Meals per day for every day of the range, oldest first
+     */
+    public synchronized int[] dailyCounts(String fromDate, String toDate) {
+        int from = epochDay(fromDate);
+        int to = epochDay(toDate);
+        if (from == NO_DAY || to == NO_DAY || to < from) {
+            return new int[0];
+        }
+        int[] counts = new int[to - from + 1];
+        for (int day = Math.max(from, origin); day <= Math.min(to, origin + capacity - 1); day++) {
+            counts[day - from] = dayTotals[day - origin];
+        }
+        return counts;
+    }
+
+    /**
+     * Length of the run of consecutive logged days ending today, or ending yesterday if
+     * nothing has been logged yet today. Binary search over logged-day counts: O(log² n).
+     * @param today Today's date, yyyy-MM-dd
+     * @return The streak in days; 0 if neither today nor yesterday was logged
+     */
+    public synchronized int currentStreak(String today) {
+        int end = epochDay(today);
+        if (end == NO_DAY) {
+            return 0;
+        }
+        if (!isLogged(end)) {
+            end--; // Today isn't over yet
+        }
+        if (!isLogged(end)) {
+            return 0;
+        }
+        end -= origin;
+
+        // Longest run [end - length + 1, end] in which every day is logged
+        int low = 1;
+        int high = end + 1;
+        while (low < high) {
+            int length = (low + high + 1) >>> 1;
+            if (rangeSum(loggedDaysTree, end - length + 1, end) == length) {
+                low = length;
+            } else {
+                high = length - 1;
+            }
+        }
+        return low;
+    }
+
+    private boolean isLogged(int day) {
+        return day >= origin && day < origin + capacity && dayTotals[day - origin] > 0;
+    }
+
+    // Longest run of consecutive logged days anywhere in the history; one pass over the days
+    public synchronized int longestStreak() {
+        int longest = 0;
+        int run = 0;
+        for (int total : dayTotals) {
+            run = total > 0 ? run + 1 : 0;
+            longest = Math.max(longest, run);
+        }
+        return longest;
+    }
+
+    /**
+     * Most frequently logged meals in a date range; walks the days of the range
+     * @return Up to limit meals, most frequent first
+     */
+    public synchronized List<ItemCount> topItems(String fromDate, String toDate, int limit) {
+        int from = epochDay(fromDate);
+        int to = epochDay(toDate);
+        Map<String, Integer> counts = new HashMap<>();
+        if (from != NO_DAY && to != NO_DAY) {
+            for (int day = Math.max(from, origin); day <= Math.min(to, origin + capacity - 1); day++) {
+                Map<String, Integer> names = dayTotals[day - origin] > 0 ? namesByDay.get(day) : null;
+                if (names != null) {
+                    for (Map.Entry<String, Integer> entry : names.entrySet()) {
+                        counts.merge(entry.getKey(), entry.getValue(), Integer::sum);
+                    }
+                }
+            }
+        }
+        return top(counts, limit);
+    }
+
+    // Most frequently logged meals over the whole history
+    public synchronized List<ItemCount> topItems(int limit) {
+        return top(nameCounts, limit);
+    }
+
+    // Packed per-day category counts for the calendar; a copy, so it can be read or saved freely
+    public synchronized MealDayCounts copyDayCounts() {
+        return packedCounts.copy();
+    }
+
+    /**
+     * Days since 1970-01-01 of a yyyy-MM-dd date, computed arithmetically so it needs
+     * neither java.time (API 26) nor a shared SimpleDateFormat
+     * @return The epoch day, or Integer.MIN_VALUE if the date is malformed
+     */
+    public static int epochDay(String date) {
+        if (date == null || date.length() != 10 || date.charAt(4) != '-' || date.charAt(7) != '-') {
+            return NO_DAY;
+        }
+        int year = parseDigits(date, 0, 4);
+        int month = parseDigits(date, 5, 7);
+        int day = parseDigits(date, 8, 10);
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > 31) {
+            return NO_DAY;
+        }
+        return epochDay(year, month, day);
+    }
+
+    /**
+     * Days since 1970-01-01 of a calendar date
+     * @param year Year, e.g. 2025
+     * @param month Month, 1-12
+     * @param day Day of the month, 1-31
+     * @return The epoch day
+     */
+    public static int epochDay(int year, int month, int day) {
+        // Days from civil (proleptic Gregorian), counting years from March
+        int y = month <= 2 ? year - 1 : year;
+        int era = y / 400;
+        int yearOfEra = y - era * 400;
+        int dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+
+    private static int parseDigits(String text, int start, int end) {
+        int value = 0;
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    private static Contribution contributionOf(Meal meal) {
+        int category = 0;
+        for (int c = 0; c < CATEGORY_COUNT; c++) {
+            if (Meal.VALID_CATEGORIES[c].equals(meal.getCategory())) {
+                category = c;
+            }
+        }
+        return new Contribution(epochDay(meal.getDate()), category,
+                MealSuggester.normalize(meal.getName()), meal.getName());
+    }
+
+    private static final class ContributionTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Meal[] meals;
+        private final Contribution[] results;
+        private final int start;
+        private final int end;
+
+        ContributionTask(Meal[] meals, Contribution[] results, int start, int end) {
+            this.meals = meals;
+            this.results = results;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start <= REBUILD_CHUNK_SIZE) {
+                for (int i = start; i < end; i++) {
+                    results[i] = contributionOf(meals[i]);
+                }
+                return;
+            }
+            int middle = (start + end) >>> 1;
+            invokeAll(new ContributionTask(meals, results, start, middle),
+                    new ContributionTask(meals, results, middle, end));
+        }
+    }
+
+    private void apply(Contribution contribution, int delta) {
+        if (contribution.day == NO_DAY) {
+            return;
+        }
+        ensureDay(contribution.day);
+        int index = contribution.day - origin;
+        boolean wasLogged = dayTotals[index] > 0;
+        dayCounts[contribution.category][index] += delta;
+        dayTotals[index] += delta;
+        packedCounts.set(contribution.day, contribution.category, dayCounts[contribution.category][index]);
+        categoryTrees[contribution.category].add(index, delta);
+        boolean isLogged = dayTotals[index] > 0;
+        if (wasLogged != isLogged) {
+            loggedDaysTree.add(index, isLogged ? 1 : -1);
+        }
+        countName(contribution, delta);
+    }
+
+    private void countName(Contribution contribution, int delta) {
+        if (contribution.nameKey.isEmpty()) {
+            return;
+        }
+        Map<String, Integer> names = namesByDay.get(contribution.day);
+        if (names == null) {
+            names = new HashMap<>(4);
+            namesByDay.put(contribution.day, names);
+        }
+        if (names.merge(contribution.nameKey, delta, Integer::sum) <= 0) {
+            names.remove(contribution.nameKey);
+            if (names.isEmpty()) {
+                namesByDay.remove(contribution.day);
+            }
+        }
+        if (nameCounts.merge(contribution.nameKey, delta, Integer::sum) <= 0) {
+            nameCounts.remove(contribution.nameKey);
+            displayNames.remove(contribution.nameKey);
+        } else if (delta > 0) {
+            displayNames.put(contribution.nameKey, contribution.name);
+        }
+    }
+
+    // Grow the counters so the day fits, leaving padding to avoid growing again soon
+    private void ensureDay(int day) {
+        if (day >= origin && day < origin + capacity) {
+            return;
+        }
+        int newOrigin = capacity == 0 ? day - DAY_PADDING : Math.min(origin, day - DAY_PADDING);
+        int newEnd = capacity == 0 ? day + DAY_PADDING : Math.max(origin + capacity, day + DAY_PADDING);
+        resize(newOrigin, newEnd - newOrigin);
+    }
+
+    private void resize(int newOrigin, int newCapacity) {
+        int[][] newCounts = new int[CATEGORY_COUNT][newCapacity];
+        int[] newTotals = new int[newCapacity];
+        for (int i = 0; i < capacity; i++) {
+            int target = origin + i - newOrigin;
+            if (target >= 0 && target < newCapacity) {
+                for (int c = 0; c < CATEGORY_COUNT; c++) {
+                    newCounts[c][target] = dayCounts[c][i];
+                }
+                newTotals[target] = dayTotals[i];
+            }
+        }
+        origin = newOrigin;
+        capacity = newCapacity;
+        dayCounts = newCounts;
+        dayTotals = newTotals;
+        rebuildTrees();
+    }
+
+    private void rebuildTrees() {
+        for (int c = 0; c < CATEGORY_COUNT; c++) {
+            categoryTrees[c] = new FenwickTree(dayCounts[c]);
+        }
+        int[] logged = new int[capacity];
+        for (int i = 0; i < capacity; i++) {
+            logged[i] = dayTotals[i] > 0 ? 1 : 0;
+        }
+        loggedDaysTree = new FenwickTree(logged);
+    }
+
+    // Tree indexes for a date range clipped to the tracked days, or null if they don't overlap
+    private int[] dayRange(String fromDate, String toDate) {
+        int from = epochDay(fromDate);
+        int to = epochDay(toDate);
+        if (from == NO_DAY || to == NO_DAY) {
+            return null;
+        }
+        from = Math.max(from, origin) - origin;
+        to = Math.min(to, origin + capacity - 1) - origin;
+        return from <= to ? new int[]{from, to} : null;
+    }
+
+    private static int rangeSum(FenwickTree tree, int from, int to) {
+        return tree.prefix(to) - (from > 0 ? tree.prefix(from - 1) : 0);
+    }
+
+    private List<ItemCount> top(Map<String, Integer> counts, int limit) {
+        List<Map.Entry<String, Integer>> entries = new ArrayList<>(counts.entrySet());
+        entries.sort((a, b) -> Integer.compare(b.getValue(), a.getValue()));
+        List<ItemCount> top = new ArrayList<>(Math.min(limit, entries.size()));
+        for (int i = 0; i < entries.size() && i < limit; i++) {
+            String key = entries.get(i).getKey();
+            String name = displayNames.get(key);
+            top.add(new ItemCount(name != null ? name : key, entries.get(i).getValue()));
+        }
+        return top;
+    }
+}
@@ -0,0 +1,473 @@
+package com.eslamgamal.fooddiary;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Diary export and import as CSV or JSON. Both formats hold one meal per line with the
+ * spreadsheet's columns (see {@link SheetSchema}), so a file can be cut at any line break
+ * and its pieces parsed independently. Export streams through a fixed-size buffer; import
+ * reads fixed-size blocks, parses them on a bounded pool and keeps at most a few blocks
+ * in flight, so neither ever holds the raw file in memory.
+ */
+public final class MealArchive {
+
+    public enum Format {
+        // RFC 4180 CSV with the spreadsheet header row
+        CSV,
+        // A JSON array with one meal object per line
+        JSON
+    }
+
+    public static class ImportResult {
+        private final List<Meal> meals;
+        private final int duplicates;
+        private final int rejected;
+
+        ImportResult(List<Meal> meals, int duplicates, int rejected) {
+            this.meals = meals;
+            this.duplicates = duplicates;
+            this.rejected = rejected;
+        }
+
+        // New meals, in file order
+        public List<Meal> getMeals() {
+            return meals;
+        }
+
+        // Meals skipped because their ID already exists or appeared earlier in the file
+        public int getDuplicates() {
+            return duplicates;
+        }
+
+        // Lines that don't decode to a valid meal
+        public int getRejected() {
+            return rejected;
+        }
+    }
+
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+    private static final int READ_BLOCK_SIZE = 1024 * 1024;
+
+    private static final String[] JSON_KEYS = {"date", "category", "name", "time", "id", "timestamp", "updatedAt"};
+
+    private MealArchive() {
+    }
+
+    /**
+     * Write meals to a channel one line at a time
+     * @param meals Meals to export
+     * @param channel Destination; not closed
+     * @param format File format
+     * @return Number of meals written
+     */
+    public static int export(Iterable<Meal> meals, WritableByteChannel channel, Format format) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(WRITE_BUFFER_SIZE);
+        StringBuilder line = new StringBuilder(256);
+        int count = 0;
+
+        if (format == Format.CSV) {
+            appendCsvLine(line, SheetSchema.HEADERS);
+        } else {
+            line.append("[\n");
+        }
+        for (Meal meal : meals) {
+            if (format == Format.CSV) {
+                appendCsvLine(line, MealCodec.encodeRow(meal));
+            } else {
+                appendJsonLine(line, MealCodec.encodeRow(meal), count == 0);
+            }
+            count++;
+            if (line.length() >= 4096) {
+                write(channel, buffer, line);
+            }
+        }
+        if (format == Format.JSON) {
+            line.append(count > 0 ? "\n]\n" : "]\n");
+        }
+        write(channel, buffer, line);
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        return count;
+    }
+
+    /**
+     * Read meals from a channel, parsing blocks of lines in parallel. Every meal is checked
+     * against the same rules as typed input; meals whose ID is already known are skipped.
+     * @param channel Source; not closed
+     * @param format File format
+     * @param existingIds IDs of the meals already in the diary
+     * @param parallelism Parser threads
+     * @return The new meals and what was skipped
+     */
+    public static ImportResult importMeals(ReadableByteChannel channel, Format format,
+                                           Collection<String> existingIds, int parallelism) throws IOException {
+        int threads = Math.max(1, parallelism);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        Deque<Future<ParsedBlock>> inFlight = new ArrayDeque<>();
+        Set<String> seenIds = new HashSet<>(existingIds);
+        List<Meal> meals = new ArrayList<>();
+        int[] skipped = new int[2]; // duplicates, rejected
+
+        try {
+            ByteBuffer buffer = ByteBuffer.allocate(READ_BLOCK_SIZE);
+            boolean firstBlock = true;
+            boolean endOfInput = false;
+            while (!endOfInput) {
+                endOfInput = channel.read(buffer) < 0;
+                if (!endOfInput && buffer.hasRemaining()) {
+                    continue; // Fill the block before cutting it
+                }
+
+                // Hand everything up to the last line break to a parser, carry the rest over
+                byte[] bytes = buffer.array();
+                int end = buffer.position();
+                int cut = endOfInput ? end : lastLineBreak(bytes, end) + 1;
+                if (cut == 0 && !endOfInput) {
+                    // No meal line comes anywhere near a block
+                    throw new IOException("Line longer than " + READ_BLOCK_SIZE + " bytes");
+                }
+                if (cut > 0) {
+                    String text = new String(bytes, 0, cut, StandardCharsets.UTF_8);
+                    boolean skipHeader = firstBlock && format == Format.CSV;
+                    inFlight.add(pool.submit(() -> parseBlock(text, format, skipHeader)));
+                    firstBlock = false;
+                }
+
+                buffer.limit(end);
+                buffer.position(cut);
+                buffer.compact();
+
+                // Keep memory bounded: fold in the oldest block before reading far ahead
+                while (inFlight.size() > 2 * threads || (endOfInput && !inFlight.isEmpty())) {
+                    fold(inFlight.poll(), seenIds, meals, skipped);
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        return new ImportResult(meals, skipped[0], skipped[1]);
+    }
+
+    private static final class ParsedBlock {
+        final List<Meal> meals = new ArrayList<>();
+        int rejected;
+    }
+
+    // Runs on a pool thread; touches nothing shared
+    private static ParsedBlock parseBlock(String text, Format format, boolean skipHeader) {
+        ParsedBlock block = new ParsedBlock();
+        int start = 0;
+        boolean header = skipHeader;
+        while (start < text.length()) {
+            int end = text.indexOf('\n', start);
+            if (end < 0) {
+                end = text.length();
+            }
+            String line = text.substring(start, end > start && text.charAt(end - 1) == '\r' ? end - 1 : end).trim();
+            start = end + 1;
+
+            if (header) {
+                header = false;
+                List<Object> cells = parseCsvLine(line);
+                if (cells != null && SheetSchema.HEADERS.get(SheetSchema.COL_DATE).equals(cells.get(0))) {
+                    continue; // Header row; a file written by hand may not have one
+                }
+            }
+            if (line.isEmpty() || (format == Format.JSON && (line.equals("[") || line.equals("]")))) {
+                continue;
+            }
+
+            List<Object> row = format == Format.CSV ? parseCsvLine(line) : parseJsonLine(line);
+            Meal meal = row != null ? decode(row) : null;
+            if (meal != null) {
+                block.meals.add(meal);
+            } else {
+                block.rejected++;
+            }
+        }
+        return block;
+    }
+
+    // A row as a meal, if it passes the rules typed meals go through
+    private static Meal decode(List<Object> row) {
+        if (row.size() <= SheetSchema.COL_TIME
+                || !MealInputRules.validateMealName(row.get(SheetSchema.COL_NAME).toString()).isValid()
+                || MealAggregates.epochDay(row.get(SheetSchema.COL_DATE).toString()) == Integer.MIN_VALUE) {
+            return null;
+        }
+        return MealCodec.decodeRow(row);
+    }
+
+    private static void fold(Future<ParsedBlock> future, Set<String> seenIds, List<Meal> meals,
+                             int[] skipped) throws IOException {
+        ParsedBlock block;
+        try {
+            block = future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Import interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Import failed", e.getCause());
+        }
+        for (Meal meal : block.meals) {
+            if (seenIds.add(meal.getId())) {
+                meals.add(meal);
+            } else {
+                skipped[0]++;
+            }
+        }
+        skipped[1] += block.rejected;
+    }
+
+    private static int lastLineBreak(byte[] bytes, int end) {
+        for (int i = end - 1; i >= 0; i--) {
+            if (bytes[i] == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static void write(WritableByteChannel channel, ByteBuffer buffer, StringBuilder text) throws IOException {
+        byte[] bytes = text.toString().getBytes(StandardCharsets.UTF_8);
+        text.setLength(0);
+        int offset = 0;
+        while (offset < bytes.length) {
+            int length = Math.min(buffer.remaining(), bytes.length - offset);
+            buffer.put(bytes, offset, length);
+            offset += length;
+            if (!buffer.hasRemaining()) {
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                buffer.clear();
+            }
+        }
+    }
+
+    // Names are single-line input, so a stray line break is folded to a space to keep one meal per line
+    private static String singleLine(Object cell) {
+        return String.valueOf(cell).replace('\r', ' ').replace('\n', ' ');
+    }
+
+    private static void appendCsvLine(StringBuilder line, List<Object> cells) {
+        for (int i = 0; i < cells.size(); i++) {
+            String value = singleLine(cells.get(i));
+            if (i > 0) {
+                line.append(',');
+            }
+            if (value.indexOf(',') >= 0 || value.indexOf('"') >= 0) {
+                line.append('"').append(value.replace("\"", "\"\"")).append('"');
+            } else {
+                line.append(value);
+            }
+        }
+        line.append('\n');
+    }
+
+    private static List<Object> parseCsvLine(String line) {
+        List<Object> cells = new ArrayList<>(SheetSchema.COLUMN_COUNT);
+        StringBuilder cell = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c != '"') {
+                    cell.append(c);
+                } else if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    cell.append('"');
+                    i++;
+                } else {
+                    quoted = false;
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                cells.add(cell.toString());
+                cell.setLength(0);
+            } else {
+                cell.append(c);
+            }
+        }
+        if (quoted) {
+            return null; // Unterminated quote
+        }
+        cells.add(cell.toString());
+        return cells;
+    }
+
+    private static void appendJsonLine(StringBuilder line, List<Object> cells, boolean first) {
+        line.append(first ? "" : ",\n").append('{');
+        for (int i = 0; i < cells.size(); i++) {
+            line.append(i > 0 ? "," : "").append('"').append(JSON_KEYS[i]).append("\":");
+            if (i == SheetSchema.COL_TIMESTAMP || i == SheetSchema.COL_UPDATED_AT) {
+                line.append(cells.get(i)); // Epoch millis as JSON numbers
+            } else {
+                appendJsonString(line, singleLine(cells.get(i)));
+            }
+        }
+        line.append('}');
+    }
+
+    private static void appendJsonString(StringBuilder line, String value) {
+        line.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                line.append('\\').append(c);
+            } else if (c < 0x20) {
+                line.append(String.format("\\u%04x", (int) c));
+            } else {
+                line.append(c);
+            }
+        }
+        line.append('"');
+    }
+
+    /**
+     * Parse one flat meal object, e.g. {"date":"2024-05-01","name":"Tea",...}, into row
+     * cells; keys may come in any order and unknown keys are ignored
+     * @return The cells in spreadsheet column order, or null if the line isn't such an object
+     */
+    private static List<Object> parseJsonLine(String line) {
+        int end = line.endsWith(",") ? line.length() - 1 : line.length();
+        if (end < 2 || line.charAt(0) != '{' || line.charAt(end - 1) != '}') {
+            return null;
+        }
+
+        Object[] cells = new Object[JSON_KEYS.length];
+        int[] position = {1};
+        while (true) {
+            skipSpaces(line, position);
+            if (position[0] >= end - 1) {
+                break;
+            }
+            String key = parseJsonString(line, position);
+            skipSpaces(line, position);
+            if (key == null || position[0] >= end || line.charAt(position[0]) != ':') {
+                return null;
+            }
+            position[0]++;
+            skipSpaces(line, position);
+
+            String value;
+            if (position[0] < end && line.charAt(position[0]) == '"') {
+                value = parseJsonString(line, position);
+            } else {
+                int start = position[0];
+                while (position[0] < end - 1 && line.charAt(position[0]) != ',') {
+                    position[0]++;
+                }
+                value = line.substring(start, position[0]).trim();
+            }
+            if (value == null) {
+                return null;
+            }
+            for (int i = 0; i < JSON_KEYS.length; i++) {
+                if (JSON_KEYS[i].equals(key)) {
+                    cells[i] = value;
+                }
+            }
+
+            skipSpaces(line, position);
+            if (position[0] < end - 1 && line.charAt(position[0]) == ',') {
+                position[0]++;
+            }
+        }
+
+        // Trailing cells may be missing, as in a legacy sheet row; the leading four may not
+        int size = cells.length;
+        while (size > SheetSchema.COL_TIME + 1 && cells[size - 1] == null) {
+            size--;
+        }
+        List<Object> row = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            if (cells[i] == null) {
+                if (i <= SheetSchema.COL_TIME) {
+                    return null;
+                }
+                cells[i] = "";
+            }
+            row.add(cells[i]);
+        }
+        return row;
+    }
+
+    private static String parseJsonString(String line, int[] position) {
+        int i = position[0];
+        if (i >= line.length() || line.charAt(i) != '"') {
+            return null;
+        }
+        StringBuilder value = new StringBuilder();
+        for (i++; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '"') {
+                position[0] = i + 1;
+                return value.toString();
+            }
+            if (c != '\\') {
+                value.append(c);
+                continue;
+            }
+            if (++i >= line.length()) {
+                return null;
+            }
+            char escaped = line.charAt(i);
+            switch (escaped) {
+                case 'n':
+                    value.append('\n');
+                    break;
+                case 't':
+                    value.append('\t');
+                    break;
+                case 'r':
+                    value.append('\r');
+                    break;
+                case 'b':
+                    value.append('\b');
+                    break;
+                case 'f':
+                    value.append('\f');
+                    break;
+                case 'u':
+                    if (i + 4 >= line.length()) {
+                        return null;
+                    }
+                    try {
+                        value.append((char) Integer.parseInt(line.substring(i + 1, i + 5), 16));
+                    } catch (NumberFormatException e) {
+                        return null;
+                    }
+                    i += 4;
+                    break;
+                default:
+                    value.append(escaped); // \" \\ \/
+            }
+        }
+        return null; // Unterminated string
+    }
+
+    private static void skipSpaces(String line, int[] position) {
+        while (position[0] < line.length() && Character.isWhitespace(line.charAt(position[0]))) {
+            position[0]++;
+        }
+    }
+}
@@ -0,0 +1,291 @@
+package com.eslamgamal.fooddiary;
+
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.RandomAccess;
+import java.util.TimeZone;
+import java.util.UUID;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Platform-independent encoding of meals: the pending-sync queue entry format, the
+ * spreadsheet row layout (see {@link SheetSchema}) and the comparison signature.
+ */
+public final class MealCodec {
+
+    // Rows decoded per fork/join leaf; fewer than two leaves' worth are decoded inline
+    private static final int DECODE_CHUNK_ROWS = 2048;
+
+    // SimpleDateFormat and Calendar aren't thread-safe; each decoding thread keeps its own
+    // (ThreadLocal.withInitial needs API 26)
+    private static final ThreadLocal<Calendar> PARSE_CALENDAR = new ThreadLocal<Calendar>() {
+        @Override
+        protected Calendar initialValue() {
+            return Calendar.getInstance();
+        }
+    };
+    private static final ThreadLocal<SimpleDateFormat> PARSE_FORMAT = new ThreadLocal<SimpleDateFormat>() {
+        @Override
+        protected SimpleDateFormat initialValue() {
+            return new SimpleDateFormat("yyyy-MM-dd HH:mm", Locale.getDefault());
+        }
+    };
+
+    private MealCodec() {
+    }
+
+    /**
+     * Encode a meal for the pending-sync queue
+     * @param meal Meal to encode
+     * @return "name;category;date;HH:mm;id;timestampMillis;updatedAtMillis"
+     */
+    public static String encodePending(Meal meal) {
+        return escapeName(meal.getName()) + ";" + meal.getCategory() + ";" + meal.getDate() + ";" + meal.getFormattedTime()
+                + ";" + meal.getId() + ";" + meal.getTimestampMillis() + ";" + meal.getUpdatedAt();
+    }
+
+    /**
+     * Decode a pending-sync queue entry
+     * @param mealData Entry produced by {@link #encodePending(Meal)}
+     * @return The meal, or null if the entry is malformed
+     */
+    public static Meal decodePending(String mealData) {
+        try {
+            String[] parts = mealData.split(";");
+            if (parts.length >= 4) {
+                String name = unescapeName(parts[0]);
+                String category = parts[1];
+                String date = parts[2];
+                String timeStr = parts[3];
+
+                if (parts.length >= 7) {
+                    return new Meal(parts[4], name, category, new Date(Long.parseLong(parts[5])), date,
+                            Long.parseLong(parts[6]));
+                }
+                if (parts.length == 6) {
+                    return new Meal(parts[4], name, category, new Date(Long.parseLong(parts[5])), date);
+                }
+                // Entry queued before meals carried their ID
+                return new Meal(legacyId(date, timeStr, name, category), name, category,
+                        parseTimestampOrNow(date, timeStr), date);
+            }
+        } catch (IllegalArgumentException e) {
+            // Invalid name or category; treat like any other malformed entry
+        }
+        return null;
+    }
+
+    /**
+     * Encode a meal as a spreadsheet row in the current schema
+     * @param meal Meal to encode
+     * @return Cell values in {@link SheetSchema} column order
+     */
+    public static List<Object> encodeRow(Meal meal) {
+        return Arrays.asList(
+                meal.getDate(),
+                meal.getCategory(),
+                meal.getName(),
+                meal.getFormattedTime(),
+                meal.getId(),
+                String.valueOf(meal.getTimestampMillis()),
+                String.valueOf(meal.getUpdatedAt())
+        );
+    }
+
+    /**
+     * Decode one spreadsheet row. Rows without the hidden columns (legacy rows, or rows typed
+     * into the sheet by hand) get an ID derived from their content, so they decode to the
+     * same ID on every load.
+     * @param row Cell values as returned by the Sheets API
+     * @return The meal, or null if the row is too short or holds an invalid name/category
+     */
+    public static Meal decodeRow(List<Object> row) {
+        if (row.size() <= SheetSchema.COL_TIME) {
+            return null;
+        }
+
+        String date = row.get(SheetSchema.COL_DATE).toString();
+        String category = row.get(SheetSchema.COL_CATEGORY).toString();
+        String name = row.get(SheetSchema.COL_NAME).toString();
+        String timeStr = row.get(SheetSchema.COL_TIME).toString();
+
+        try {
+            String id = cell(row, SheetSchema.COL_ID);
+            if (id == null) {
+                id = legacyId(date, timeStr, name, category);
+            }
+
+            String timestampCell = cell(row, SheetSchema.COL_TIMESTAMP);
+            Date timestamp = timestampCell != null
+                    ? new Date(Long.parseLong(timestampCell))
+                    : parseTimestampOrNow(date, timeStr); // Reconstruct timestamp from date and time
+
+            String updatedAtCell = cell(row, SheetSchema.COL_UPDATED_AT);
+            long updatedAt = updatedAtCell != null ? Long.parseLong(updatedAtCell) : timestamp.getTime();
+
+            return new Meal(id, name, category, timestamp, date, updatedAt);
+        } catch (IllegalArgumentException e) {
+            return null; // Hand-edited row that no longer passes Meal validation
+        }
+    }
+
+    /**
+     * Decode many spreadsheet rows, split into chunks on the common fork/join pool
+     * @param rows Rows as returned by the Sheets API
+     * @return One entry per row, in row order; null where {@link #decodeRow(List)} gives null
+     */
+    public static Meal[] decodeRows(List<List<Object>> rows) {
+        return decodeRows(rows, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Decode many spreadsheet rows, split into chunks on the given pool
+     * @param rows Rows as returned by the Sheets API
+     * @param pool Pool to decode on; with parallelism 1 the rows are decoded inline
+     * @return One entry per row, in row order; null where {@link #decodeRow(List)} gives null
+     */
+    public static Meal[] decodeRows(List<List<Object>> rows, ForkJoinPool pool) {
+        List<List<Object>> indexed = rows instanceof RandomAccess ? rows : new ArrayList<>(rows);
+        Meal[] meals = new Meal[indexed.size()];
+        if (indexed.size() < 2 * DECODE_CHUNK_ROWS || pool.getParallelism() <= 1) {
+            for (int i = 0; i < meals.length; i++) {
+                meals[i] = decodeRow(indexed.get(i));
+            }
+        } else {
+            pool.invoke(new DecodeTask(indexed, meals, 0, meals.length));
+        }
+        return meals;
+    }
+
+    // Each leaf writes only its own slice of the result, so row order needs no merging
+    private static final class DecodeTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final List<List<Object>> rows;
+        private final Meal[] meals;
+        private final int start;
+        private final int end;
+
+        DecodeTask(List<List<Object>> rows, Meal[] meals, int start, int end) {
+            this.rows = rows;
+            this.meals = meals;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start <= DECODE_CHUNK_ROWS) {
+                for (int i = start; i < end; i++) {
+                    meals[i] = decodeRow(rows.get(i));
+                }
+                return;
+            }
+            int middle = (start + end) >>> 1;
+            invokeAll(new DecodeTask(rows, meals, start, middle), new DecodeTask(rows, meals, middle, end));
+        }
+    }
+
+    /**
+     * Stable ID for a meal stored without one, derived from its signature
+     * @return A name-based (version 3) UUID string
+     */
+    public static String legacyId(String date, String time, String name, String category) {
+        return UUID.nameUUIDFromBytes(signature(date, time, name, category).getBytes(StandardCharsets.UTF_8)).toString();
+    }
+
+    // Names may contain the separator; "%" is escaped too so the escape itself stays unambiguous
+    private static String escapeName(String name) {
+        if (name.indexOf(';') < 0 && name.indexOf('%') < 0) {
+            return name;
+        }
+        return name.replace("%", "%25").replace(";", "%3B");
+    }
+
+    private static String unescapeName(String name) {
+        if (name.indexOf('%') < 0) {
+            return name;
+        }
+        return name.replace("%3B", ";").replace("%25", "%");
+    }
+
+    // Trimmed cell text, or null if the cell is missing or blank
+    private static String cell(List<Object> row, int column) {
+        if (row.size() <= column) {
+            return null;
+        }
+        String value = row.get(column).toString().trim();
+        return value.isEmpty() ? null : value;
+    }
+
+    // Signature used to match meals between local storage and the spreadsheet
+    public static String signature(String date, String time, String name, String category) {
+        return date + "|" + time + "|" + name + "|" + category;
+    }
+
+    /**
+     * Parse "yyyy-MM-dd" and "HH:mm" strings into a timestamp
+     * @param dateStr Date string
+     * @param timeStr Time string
+     * @return The timestamp, or null if either part cannot be parsed
+     */
+    public static Date parseTimestamp(String dateStr, String timeStr) {
+        // Fast path for the well-formed values the app writes: digits only, no formatter
+        int year = number(dateStr, 0, 4, '-');
+        int month = number(dateStr, 5, 7, '-');
+        int day = number(dateStr, 8, 10, (char) 0);
+        int hour = number(timeStr, 0, 2, ':');
+        int minute = number(timeStr, 3, 5, (char) 0);
+        if (year >= 0 && month >= 1 && month <= 12 && day >= 1 && day <= 31
+                && hour >= 0 && hour <= 23 && minute >= 0 && minute <= 59) {
+            Calendar calendar = PARSE_CALENDAR.get();
+            calendar.setTimeZone(TimeZone.getDefault());
+            calendar.clear();
+            calendar.set(year, month - 1, day, hour, minute);
+            return calendar.getTime();
+        }
+
+        // Anything else, e.g. a hand-typed "9:05", gets the formatter's lenient parsing
+        try {
+            SimpleDateFormat dateTimeFormat = PARSE_FORMAT.get();
+            dateTimeFormat.setTimeZone(TimeZone.getDefault());
+            return dateTimeFormat.parse(dateStr + " " + timeStr);
+        } catch (ParseException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Digits text[start..end), which must be followed by the separator (or end the text
+     * when the separator is 0)
+     * @return The number, or -1 if the text doesn't have that shape
+     */
+    private static int number(String text, int start, int end, char separator) {
+        if (text.length() < end || (separator == 0 ? text.length() != end : text.length() == end
+                || text.charAt(end) != separator)) {
+            return -1;
+        }
+        int value = 0;
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    private static Date parseTimestampOrNow(String dateStr, String timeStr) {
+        Date timestamp = parseTimestamp(dateStr, timeStr);
+        return timestamp != null ? timestamp : new Date(); // Fallback to current time
+    }
+}
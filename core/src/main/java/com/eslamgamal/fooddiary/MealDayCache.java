@@ -0,0 +1,317 @@
+package com.eslamgamal.fooddiary;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Two-level LRU cache of the cloud meals of single days, for days the device does not
+ * hold locally. Days live in memory up to a byte budget; every day is also written to a
+ * file of its own, and the files are kept to a disk budget, least recently used first,
+ * across restarts. A cached day with no meals is a hit too, so empty days are not
+ * fetched again.
+ * <p>
+ * Loads race with local writes, so {@link #put} takes the {@link #getGeneration()} read
+ * before the fetch started and drops days fetched before the latest invalidation.
+ */
+public class MealDayCache {
+
+    private static final String FILE_SUFFIX = ".day";
+    private static final String FORMAT_HEADER = "food-diary-day 1";
+
+    // Rough heap cost of a cached day and of each of its meals: headers, ID, date and boxed fields
+    private static final int DAY_OVERHEAD_BYTES = 100;
+    private static final int MEAL_OVERHEAD_BYTES = 200;
+
+    private static final class Day {
+        final List<Meal> meals;
+        final long bytes;
+
+        Day(List<Meal> meals, long bytes) {
+            this.meals = meals;
+            this.bytes = bytes;
+        }
+    }
+
+    private final File directory;
+    private final long maxMemoryBytes;
+    private final long maxDiskBytes;
+
+    // Access-ordered, so iteration starts at the least recently used day
+    private final LinkedHashMap<String, Day> memory = new LinkedHashMap<>(16, 0.75f, true);
+    private long memoryBytes;
+    // Day -> file size, loaded from the directory on first use
+    private LinkedHashMap<String, Long> disk;
+    private long diskBytes;
+    private long generation;
+
+    private final LongAdder memoryHits = new LongAdder();
+    private final LongAdder diskHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder memoryEvictions = new LongAdder();
+    private final LongAdder diskEvictions = new LongAdder();
+
+    /**
+     * @param directory Directory holding the day files; created on first write
+     * @param maxMemoryBytes Memory budget, estimated from the cached meals
+     * @param maxDiskBytes Disk budget in bytes; 0 keeps days in memory only
+     */
+    public MealDayCache(File directory, long maxMemoryBytes, long maxDiskBytes) {
+        this.directory = directory;
+        this.maxMemoryBytes = maxMemoryBytes;
+        this.maxDiskBytes = maxDiskBytes;
+    }
+
+    /**
+     * Get the cached meals of a day, promoting a day found on disk into memory
+     * @param date Date in yyyy-MM-dd format
+     * @return The meals, possibly none, or null if the day is not cached
+     */
+    public synchronized List<Meal> get(String date) {
+        Day day = memory.get(date);
+        if (day != null) {
+            memoryHits.increment();
+            return day.meals;
+        }
+
+        Long size = diskIndex().get(date);
+        List<Meal> meals = size != null ? readDay(date) : null;
+        if (meals == null) {
+            if (size != null) {
+                // Unreadable file; forget it and fetch the day again
+                removeFromDisk(date);
+            }
+            misses.increment();
+            return null;
+        }
+
+        diskHits.increment();
+        fileFor(date).setLastModified(System.currentTimeMillis());
+        putInMemory(date, meals);
+        return meals;
+    }
+
+    /**
+     * Cache the cloud meals of a day, unless it was invalidated since the fetch began
+     * @param date Date in yyyy-MM-dd format
+     * @param meals Every meal of the day
+     * @param fetchGeneration {@link #getGeneration()} read before the fetch started
+     * @return Whether the day was cached
+     */
+    public synchronized boolean put(String date, List<Meal> meals, long fetchGeneration) {
+        if (fetchGeneration != generation || MealAggregates.epochDay(date) == Integer.MIN_VALUE) {
+            return false;
+        }
+
+        List<Meal> copy = Collections.unmodifiableList(new ArrayList<>(meals));
+        putInMemory(date, copy);
+        if (maxDiskBytes > 0) {
+            writeDay(date, copy);
+        }
+        return true;
+    }
+
+    // Bumped by every invalidation; see put(String, List, long)
+    public synchronized long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Drop a day after a local change to it, so the next read fetches it again
+     * @param date Date in yyyy-MM-dd format
+     */
+    public synchronized void invalidate(String date) {
+        generation++;
+        Day day = memory.remove(date);
+        if (day != null) {
+            memoryBytes -= day.bytes;
+        }
+        if (diskIndex().containsKey(date)) {
+            removeFromDisk(date);
+        }
+    }
+
+    // Drop every day from memory and disk, e.g. when the user logs out
+    public synchronized void clear() {
+        generation++;
+        memory.clear();
+        memoryBytes = 0;
+        for (String date : new ArrayList<>(diskIndex().keySet())) {
+            removeFromDisk(date);
+        }
+    }
+
+    public long getMemoryHits() {
+        return memoryHits.sum();
+    }
+
+    public long getDiskHits() {
+        return diskHits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getMemoryEvictions() {
+        return memoryEvictions.sum();
+    }
+
+    public long getDiskEvictions() {
+        return diskEvictions.sum();
+    }
+
+    public synchronized int getMemoryDays() {
+        return memory.size();
+    }
+
+    public synchronized long getMemoryBytes() {
+        return memoryBytes;
+    }
+
+    public synchronized int getDiskDays() {
+        return diskIndex().size();
+    }
+
+    public synchronized long getDiskBytes() {
+        diskIndex();
+        return diskBytes;
+    }
+
+    private void putInMemory(String date, List<Meal> meals) {
+        long bytes = DAY_OVERHEAD_BYTES;
+        for (Meal meal : meals) {
+            bytes += MEAL_OVERHEAD_BYTES + 2L * meal.getName().length();
+        }
+        Day previous = memory.put(date, new Day(meals, bytes));
+        memoryBytes += bytes - (previous != null ? previous.bytes : 0);
+        trimMemory();
+    }
+
+    private void trimMemory() {
+        Iterator<Map.Entry<String, Day>> eldest = memory.entrySet().iterator();
+        // The newest day always stays, even if it alone is over budget
+        while (memoryBytes > maxMemoryBytes && memory.size() > 1) {
+            memoryBytes -= eldest.next().getValue().bytes;
+            eldest.remove();
+            memoryEvictions.increment();
+        }
+    }
+
+    private void trimDisk() {
+        LinkedHashMap<String, Long> index = diskIndex();
+        while (diskBytes > maxDiskBytes && !index.isEmpty()) {
+            removeFromDisk(index.keySet().iterator().next());
+            diskEvictions.increment();
+        }
+    }
+
+    private void removeFromDisk(String date) {
+        Long size = diskIndex().remove(date);
+        if (size != null) {
+            diskBytes -= size;
+        }
+        fileFor(date).delete();
+    }
+
+    // Least recently used first, by file modification time
+    private LinkedHashMap<String, Long> diskIndex() {
+        if (disk != null) {
+            return disk;
+        }
+        disk = new LinkedHashMap<>(16, 0.75f, true);
+        diskBytes = 0;
+
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(FILE_SUFFIX));
+        if (files != null) {
+            Arrays.sort(files, (a, b) -> Long.compare(a.lastModified(), b.lastModified()));
+            for (File file : files) {
+                String date = file.getName().substring(0, file.getName().length() - FILE_SUFFIX.length());
+                disk.put(date, file.length());
+                diskBytes += file.length();
+            }
+        }
+        trimDisk();
+        return disk;
+    }
+
+    private File fileFor(String date) {
+        return new File(directory, date + FILE_SUFFIX);
+    }
+
+    // One pending-queue line per meal under a format header; null if missing or corrupt
+    private List<Meal> readDay(String date) {
+        try (BufferedReader reader = new BufferedReader(reader(fileFor(date)))) {
+            if (!FORMAT_HEADER.equals(reader.readLine())) {
+                return null;
+            }
+            List<Meal> meals = new ArrayList<>();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                Meal meal = MealCodec.decodePending(line);
+                if (meal == null || !date.equals(meal.getDate())) {
+                    return null;
+                }
+                meals.add(meal);
+            }
+            return Collections.unmodifiableList(meals);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private void writeDay(String date, List<Meal> meals) {
+        File file = fileFor(date);
+        File temp = new File(directory, date + FILE_SUFFIX + ".tmp");
+        diskIndex();
+        try {
+            if (!directory.isDirectory() && !directory.mkdirs()) {
+                return;
+            }
+            try (Writer writer = new BufferedWriter(writer(temp))) {
+                writer.write(FORMAT_HEADER);
+                writer.write('\n');
+                for (Meal meal : meals) {
+                    writer.write(MealCodec.encodePending(meal));
+                    writer.write('\n');
+                }
+            }
+            if (!temp.renameTo(file)) {
+                temp.delete();
+                return;
+            }
+        } catch (IOException e) {
+            // The day stays cached in memory only
+            temp.delete();
+            return;
+        }
+
+        Long previous = disk.put(date, file.length());
+        diskBytes += file.length() - (previous != null ? previous : 0);
+        trimDisk();
+    }
+
+    private static Reader reader(File file) throws IOException {
+        return new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8);
+    }
+
+    private static Writer writer(File file) throws IOException {
+        return new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,184 @@
+package com.eslamgamal.fooddiary;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Meals per category for every day, packed into 16 bits a day: one nibble per category
+ * in {@link Meal#VALID_CATEGORIES} order, saturating at {@link #MAX_COUNT}. Days are
+ * indexed by epoch day from an origin, so ten years of history take about 7 KB and a
+ * calendar reads a day with a single array access.
+ * <p>
+ * The counts can be written to a file and mapped back read-only, so a calendar opens
+ * from the last saved counts before the history has been loaded. A mapped instance copies
+ * itself to the heap on the first change.
+ */
+public final class MealDayCounts {
+
+    public static final int MAX_COUNT = 15;
+
+    private static final int MAGIC = 0x4D444331; // "MDC1"
+    private static final int HEADER_BYTES = 12; // Magic, origin epoch day, day count
+    private static final int BYTES_PER_DAY = 2;
+    // Free days added on either side when the range grows
+    private static final int DAY_PADDING = 366;
+
+    private ByteBuffer days = ByteBuffer.allocate(0);
+    private int origin;
+    private int length;
+
+    /**
+     * Get the packed counts of a day
+     * @param epochDay Days since 1970-01-01
+     * @return Category i's count in bits 4i..4i+3; 0 for days outside the stored range
+     */
+    public synchronized int get(int epochDay) {
+        int index = epochDay - origin;
+        return index >= 0 && index < length ? days.getShort(index * BYTES_PER_DAY) & 0xFFFF : 0;
+    }
+
+    /**
+     * @param packed Value returned by {@link #get(int)}
+     * @param category Index into {@link Meal#VALID_CATEGORIES}
+     * @return The category's count, at most {@link #MAX_COUNT}
+     */
+    public static int count(int packed, int category) {
+        return (packed >>> (category * 4)) & 0xF;
+    }
+
+    // Sum of the category counts of a packed day
+    public static int total(int packed) {
+        int total = 0;
+        for (int c = 0; c < Meal.VALID_CATEGORIES.length; c++) {
+            total += count(packed, c);
+        }
+        return total;
+    }
+
+    /**
+     * Set one category's count for a day
+     * @param epochDay Days since 1970-01-01
+     * @param category Index into {@link Meal#VALID_CATEGORIES}
+     * @param count Meals logged; clamped to 0..{@link #MAX_COUNT}
+     */
+    public synchronized void set(int epochDay, int category, int count) {
+        int shift = category * 4;
+        int packed = get(epochDay);
+        int updated = (packed & ~(0xF << shift)) | (Math.max(0, Math.min(MAX_COUNT, count)) << shift);
+        if (updated == packed) {
+            return;
+        }
+        ensureWritable(epochDay);
+        days.putShort((epochDay - origin) * BYTES_PER_DAY, (short) updated);
+    }
+
+    public synchronized void clear() {
+        days = ByteBuffer.allocate(0);
+        origin = 0;
+        length = 0;
+    }
+
+    // A heap copy that later changes to this instance don't affect
+    public synchronized MealDayCounts copy() {
+        MealDayCounts copy = new MealDayCounts();
+        copy.days = ByteBuffer.allocate(length * BYTES_PER_DAY);
+        copy.days.put(readOnlyView());
+        copy.origin = origin;
+        copy.length = length;
+        return copy;
+    }
+
+    /**
+     * Write the counts to a file, replacing it atomically
+     * @param file Destination
+     * @throws IOException if the file cannot be written
+     */
+    public void writeTo(File file) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        ByteBuffer body;
+        synchronized (this) {
+            header.putInt(MAGIC).putInt(origin).putInt(length).flip();
+            body = ByteBuffer.allocate(length * BYTES_PER_DAY);
+            body.put(readOnlyView()).flip();
+        }
+
+        File temp = new File(file.getPath() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(temp)) {
+            FileChannel channel = out.getChannel();
+            while (header.hasRemaining()) {
+                channel.write(header);
+            }
+            while (body.hasRemaining()) {
+                channel.write(body);
+            }
+        }
+        if (!temp.renameTo(file)) {
+            temp.delete();
+            throw new IOException("Failed to replace " + file);
+        }
+    }
+
+    /**
+     * Map counts written by {@link #writeTo(File)}; nothing is read until a day is asked for
+     * @param file Source file
+     * @return The counts, backed by the file until the first change
+     * @throws IOException if the file is missing or not a day count file
+     */
+    public static MealDayCounts map(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            FileChannel channel = raf.getChannel();
+            ByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (mapped.capacity() < HEADER_BYTES || mapped.getInt(0) != MAGIC) {
+                throw new IOException("Not a day count file: " + file);
+            }
+            int length = mapped.getInt(8);
+            if (length < 0 || mapped.capacity() != HEADER_BYTES + (long) length * BYTES_PER_DAY) {
+                throw new IOException("Truncated day count file: " + file);
+            }
+
+            MealDayCounts counts = new MealDayCounts();
+            mapped.position(HEADER_BYTES);
+            counts.days = mapped.slice(); // The mapping outlives the channel
+            counts.origin = mapped.getInt(4);
+            counts.length = length;
+            return counts;
+        }
+    }
+
+    private ByteBuffer readOnlyView() {
+        ByteBuffer view = days.asReadOnlyBuffer();
+        view.clear().limit(length * BYTES_PER_DAY);
+        return view;
+    }
+
+    // Make the day writable: grow the range to include it and leave the file mapping
+    private void ensureWritable(int epochDay) {
+        boolean inRange = epochDay >= origin && epochDay < origin + length;
+        if (inRange && !days.isReadOnly()) {
+            return;
+        }
+        int newOrigin = origin;
+        int newEnd = origin + length;
+        if (length == 0) {
+            newOrigin = epochDay - DAY_PADDING;
+            newEnd = epochDay + DAY_PADDING;
+        } else if (!inRange) {
+            newOrigin = Math.min(origin, epochDay - DAY_PADDING);
+            newEnd = Math.max(origin + length, epochDay + DAY_PADDING);
+        }
+
+        ByteBuffer grown = ByteBuffer.allocate((newEnd - newOrigin) * BYTES_PER_DAY);
+        if (length > 0) {
+            grown.position((origin - newOrigin) * BYTES_PER_DAY);
+            grown.put(readOnlyView());
+            grown.clear();
+        }
+        days = grown;
+        origin = newOrigin;
+        length = newEnd - newOrigin;
+    }
+}
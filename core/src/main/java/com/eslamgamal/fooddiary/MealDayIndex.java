@@ -0,0 +1,103 @@
+package com.eslamgamal.fooddiary;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Meals grouped by day, so showing a day costs the size of that day rather than a pass
+ * over the whole history. Meals of a day keep the order they were added in. Every change
+ * bumps a version, which lets callers tell whether something built from the index
+ * earlier is still current. Safe to read from background threads while the owner keeps
+ * it in step with the history.
+ */
+public class MealDayIndex {
+
+    private final Map<String, List<Meal>> mealsByDate = new HashMap<>();
+    private final Map<String, String> datesById = new HashMap<>();
+    private long version;
+
+    /**
+     * Add a meal, replacing the meal with the same ID if there is one
+     * @param meal Meal to add
+     */
+    public synchronized void add(Meal meal) {
+        version++;
+        String previousDate = datesById.put(meal.getId(), meal.getDate());
+        if (previousDate != null) {
+            List<Meal> day = mealsByDate.get(previousDate);
+            int position = indexOf(day, meal.getId());
+            if (previousDate.equals(meal.getDate())) {
+                day.set(position, meal);
+                return;
+            }
+            removeAt(previousDate, day, position);
+        }
+
+        List<Meal> day = mealsByDate.get(meal.getDate());
+        if (day == null) {
+            day = new ArrayList<>(4);
+            mealsByDate.put(meal.getDate(), day);
+        }
+        day.add(meal);
+    }
+
+    public synchronized void addAll(Collection<Meal> meals) {
+        for (Meal meal : meals) {
+            add(meal);
+        }
+    }
+
+    /**
+     * Remove a meal by ID
+     * @param meal Meal to remove
+     * @return Whether it was in the index
+     */
+    public synchronized boolean remove(Meal meal) {
+        String date = datesById.remove(meal.getId());
+        if (date == null) {
+            return false;
+        }
+        version++;
+        List<Meal> day = mealsByDate.get(date);
+        removeAt(date, day, indexOf(day, meal.getId()));
+        return true;
+    }
+
+    /**
+     * Get the meals of a day
+     * @param date Date in yyyy-MM-dd format
+     * @return A copy of the day's meals in the order they were added; empty if none
+     */
+    public synchronized List<Meal> mealsOn(String date) {
+        List<Meal> day = mealsByDate.get(date);
+        return day != null ? new ArrayList<>(day) : new ArrayList<>();
+    }
+
+    // Changes with every add and remove
+    public synchronized long getVersion() {
+        return version;
+    }
+
+    public synchronized int size() {
+        return datesById.size();
+    }
+
+    private void removeAt(String date, List<Meal> day, int position) {
+        day.remove(position);
+        if (day.isEmpty()) {
+            mealsByDate.remove(date);
+        }
+    }
+
+    private static int indexOf(List<Meal> day, String id) {
+        for (int i = 0; i < day.size(); i++) {
+            if (day.get(i).getId().equals(id)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
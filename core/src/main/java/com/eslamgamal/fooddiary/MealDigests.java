@@ -0,0 +1,181 @@
+package com.eslamgamal.fooddiary;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Order-independent digests of a meal history, kept per day and rolled up per month and
+ * in total. A digest is the wrapping sum of 64-bit hashes of the meals' row contents, so
+ * it can be maintained incrementally: adding a meal adds its hash, deleting subtracts it.
+ * Two histories with equal totals hold the same meals; otherwise comparing month and day
+ * digests narrows down where they differ.
+ */
+public final class MealDigests {
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    // "yyyy-MM-dd" -> digest; days summing to zero are dropped
+    private final Map<String, Long> days = new HashMap<>();
+
+    /**
+     * Digest a history. Meals with an ID seen before are skipped, so a row appended twice
+     * by a retried request does not make an otherwise identical history look different.
+     * @param meals Meals to digest
+     * @return The digests
+     */
+    public static MealDigests of(Collection<Meal> meals) {
+        MealDigests digests = new MealDigests();
+        Set<String> seenIds = new HashSet<>(meals.size() * 2);
+        for (Meal meal : meals) {
+            if (seenIds.add(meal.getId())) {
+                digests.add(meal);
+            }
+        }
+        return digests;
+    }
+
+    /**
+     * 64-bit hash of everything a meal's spreadsheet row holds
+     * @param meal Meal to hash
+     * @return FNV-1a over the row cells, with a final avalanche so the sums spread well
+     */
+    public static long hash(Meal meal) {
+        long hash = FNV_OFFSET_BASIS;
+        List<Object> row = MealCodec.encodeRow(meal);
+        for (Object cell : row) {
+            String value = String.valueOf(cell);
+            for (int i = 0; i < value.length(); i++) {
+                hash = (hash ^ value.charAt(i)) * FNV_PRIME;
+            }
+            hash = (hash ^ 0x1f) * FNV_PRIME; // Cell separator
+        }
+        // splitmix64 finalizer
+        hash = (hash ^ (hash >>> 30)) * 0xbf58476d1ce4e5b9L;
+        hash = (hash ^ (hash >>> 27)) * 0x94d049bb133111ebL;
+        return hash ^ (hash >>> 31);
+    }
+
+    public synchronized void add(Meal meal) {
+        addToDay(meal.getDate(), hash(meal));
+    }
+
+    public synchronized void remove(Meal meal) {
+        addToDay(meal.getDate(), -hash(meal));
+    }
+
+    /**
+     * Subtract another set of digests, e.g. deltas that have just been written out
+     * @param other Digests to subtract
+     */
+    public synchronized void subtract(MealDigests other) {
+        for (Map.Entry<String, Long> entry : other.getDays().entrySet()) {
+            addToDay(entry.getKey(), -entry.getValue());
+        }
+    }
+
+    public synchronized void clear() {
+        days.clear();
+    }
+
+    public synchronized boolean isEmpty() {
+        return days.isEmpty();
+    }
+
+    public synchronized MealDigests copy() {
+        MealDigests copy = new MealDigests();
+        copy.days.putAll(days);
+        return copy;
+    }
+
+    // Digest of every day, by "yyyy-MM-dd"
+    public synchronized Map<String, Long> getDays() {
+        return new HashMap<>(days);
+    }
+
+    // Digest of every month, by "yyyy-MM", in month order
+    public synchronized Map<String, Long> getMonths() {
+        Map<String, Long> months = new TreeMap<>();
+        for (Map.Entry<String, Long> entry : days.entrySet()) {
+            String month = monthOf(entry.getKey());
+            Long current = months.get(month);
+            months.put(month, (current != null ? current : 0L) + entry.getValue());
+        }
+        months.values().removeIf(digest -> digest == 0L);
+        return months;
+    }
+
+    public synchronized long getTotal() {
+        long total = 0;
+        for (long digest : days.values()) {
+            total += digest;
+        }
+        return total;
+    }
+
+    /**
+     * Keys whose digests differ between two maps; a missing key counts as digest 0
+     * @return Days or months that are not the same on both sides
+     */
+    public static Set<String> differingKeys(Map<String, Long> a, Map<String, Long> b) {
+        Set<String> differing = new HashSet<>();
+        for (Map.Entry<String, Long> entry : a.entrySet()) {
+            if (!entry.getValue().equals(b.getOrDefault(entry.getKey(), 0L))) {
+                differing.add(entry.getKey());
+            }
+        }
+        for (Map.Entry<String, Long> entry : b.entrySet()) {
+            if (!a.containsKey(entry.getKey()) && entry.getValue() != 0L) {
+                differing.add(entry.getKey());
+            }
+        }
+        return differing;
+    }
+
+    // "yyyy-MM" of a "yyyy-MM-dd" date
+    public static String monthOf(String date) {
+        return date.length() >= 7 ? date.substring(0, 7) : date;
+    }
+
+    // Fixed-width hex, as stored in the spreadsheet
+    public static String format(long digest) {
+        return String.format(Locale.US, "%016x", digest);
+    }
+
+    /**
+     * Parse a stored digest
+     * @param value Hex digest, possibly blank
+     * @return The digest; 0 for a blank or malformed cell
+     */
+    public static long parse(String value) {
+        String trimmed = value.trim();
+        if (trimmed.length() > 16) {
+            return 0L;
+        }
+        // Long.parseUnsignedLong needs API 26
+        long digest = 0;
+        for (int i = 0; i < trimmed.length(); i++) {
+            int nibble = Character.digit(trimmed.charAt(i), 16);
+            if (nibble < 0) {
+                return 0L;
+            }
+            digest = (digest << 4) | nibble;
+        }
+        return digest;
+    }
+
+    private void addToDay(String day, long delta) {
+        long digest = days.getOrDefault(day, 0L) + delta;
+        if (digest == 0L) {
+            days.remove(day);
+        } else {
+            days.put(day, digest);
+        }
+    }
+}
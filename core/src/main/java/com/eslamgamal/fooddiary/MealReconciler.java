@@ -0,0 +1,70 @@
+package com.eslamgamal.fooddiary;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Platform-independent comparison of local and cloud meal histories. Meals are matched
+ * by their stable ID, which the spreadsheet stores in a hidden column.
+ */
+public final class MealReconciler {
+
+    private MealReconciler() {
+    }
+
+    /**
+     * Find local meals that are missing from the cloud
+     * @param localMeals Meals held on the device
+     * @param cloudMeals Meals loaded from the spreadsheet
+     * @return Local meals to upload, in local order
+     */
+    public static List<Meal> findMealsToUpload(List<Meal> localMeals, List<Meal> cloudMeals) {
+        List<Meal> mealsToUpload = new ArrayList<>();
+
+        Set<String> cloudIds = new HashSet<>(cloudMeals.size() * 2);
+        for (Meal cloudMeal : cloudMeals) {
+            cloudIds.add(cloudMeal.getId());
+        }
+
+        // Find local meals that aren't in cloud
+        for (Meal localMeal : localMeals) {
+            if (!cloudIds.contains(localMeal.getId())) {
+                mealsToUpload.add(localMeal);
+            }
+        }
+
+        return mealsToUpload;
+    }
+
+    /**
+     * Merge cloud meals into the local list: meals unknown locally are added, and a local
+     * meal is replaced by its cloud copy when the cloud copy was changed more recently.
+     * @param localMeals Local history; modified in place
+     * @param cloudMeals Meals loaded from the spreadsheet
+     * @return The cloud meals that were added or replaced a local copy
+     */
+    public static List<Meal> mergeCloudMeals(List<Meal> localMeals, List<Meal> cloudMeals) {
+        Map<String, Integer> localIndex = new HashMap<>(localMeals.size() * 2);
+        for (int i = 0; i < localMeals.size(); i++) {
+            localIndex.put(localMeals.get(i).getId(), i);
+        }
+
+        List<Meal> merged = new ArrayList<>();
+        for (Meal cloudMeal : cloudMeals) {
+            Integer index = localIndex.get(cloudMeal.getId());
+            if (index == null) {
+                localIndex.put(cloudMeal.getId(), localMeals.size());
+                localMeals.add(cloudMeal);
+                merged.add(cloudMeal);
+            } else if (cloudMeal.getUpdatedAt() > localMeals.get(index).getUpdatedAt()) {
+                localMeals.set(index, cloudMeal);
+                merged.add(cloudMeal);
+            }
+        }
+        return merged;
+    }
+}
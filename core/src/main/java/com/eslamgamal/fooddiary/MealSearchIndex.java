@@ -0,0 +1,398 @@
+package com.eslamgamal.fooddiary;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Inverted index over normalized meal-name tokens. Every meal gets a small integer slot;
+ * each token maps to the slots of the meals whose names contain it, and the tokens are
+ * kept sorted so a prefix query is a range scan of the dictionary. Meals are added,
+ * replaced and removed one at a time, so the index follows the history without rebuilds.
+ *
+ * <p>Names are tokenized along the same character classes {@link MealInputRules} accepts:
+ * Latin and Arabic letters and digits form tokens, everything else separates them. Arabic
+ * text is folded the way people type it inconsistently: diacritics and tatweel are dropped,
+ * alef, ya and ta marbuta variants are unified, presentation forms are decomposed and a
+ * leading definite article is indexed both with and without.
+ */
+public class MealSearchIndex {
+
+    // Search hits of one day, split by category in Meal.VALID_CATEGORIES order
+    public static class DayHits {
+        private final String date;
+        private final Map<String, List<Meal>> categories = new LinkedHashMap<>();
+
+        DayHits(String date) {
+            this.date = date;
+        }
+
+        public String getDate() {
+            return date;
+        }
+
+        // Category -> matching meals by time of day; categories without hits are absent
+        public Map<String, List<Meal>> getCategories() {
+            return Collections.unmodifiableMap(categories);
+        }
+    }
+
+    public static class SearchResult {
+        private final List<DayHits> days;
+        private final int totalHits;
+
+        SearchResult(List<DayHits> days, int totalHits) {
+            this.days = Collections.unmodifiableList(days);
+            this.totalHits = totalHits;
+        }
+
+        // Days with hits, newest first
+        public List<DayHits> getDays() {
+            return days;
+        }
+
+        // Every matching meal, including those cut off by the limit
+        public int getTotalHits() {
+            return totalHits;
+        }
+    }
+
+    // Slots of the meals containing a token; unordered, removal swaps in the last slot
+    private static final class Postings {
+        int[] slots = new int[4];
+        int size;
+
+        void add(int slot) {
+            if (size == slots.length) {
+                slots = Arrays.copyOf(slots, size * 2);
+            }
+            slots[size++] = slot;
+        }
+
+        void remove(int slot) {
+            for (int i = 0; i < size; i++) {
+                if (slots[i] == slot) {
+                    slots[i] = slots[--size];
+                    return;
+                }
+            }
+        }
+    }
+
+    private final NavigableMap<String, Postings> postings = new TreeMap<>();
+    private final Map<String, Integer> slotsById = new HashMap<>();
+    private Meal[] meals = new Meal[64];
+    private String[][] mealTokens = new String[64][];
+    private int[] mealDays = new int[64]; // yyyyMMdd, so hits sort by day without parsing
+    private int[] freeSlots = new int[16];
+    private int freeCount;
+    private int slotCount;
+
+    /**
+     * Build an index over a whole history
+     * @param meals Meals to index
+     * @return The index
+     */
+    public static MealSearchIndex of(Collection<Meal> meals) {
+        MealSearchIndex index = new MealSearchIndex();
+        index.addAll(meals);
+        return index;
+    }
+
+    /**
+     * Index a meal, replacing whatever was indexed under its ID before. Call this again
+     * after a meal is edited in place.
+     * @param meal Meal to index
+     */
+    public synchronized void add(Meal meal) {
+        Integer existing = slotsById.get(meal.getId());
+        int slot;
+        if (existing != null) {
+            slot = existing;
+            unlinkTokens(slot);
+        } else {
+            slot = allocateSlot();
+            slotsById.put(meal.getId(), slot);
+        }
+
+        String[] tokens = tokenize(meal.getName(), true);
+        meals[slot] = meal;
+        mealTokens[slot] = tokens;
+        mealDays[slot] = dayKey(meal.getDate());
+        for (String token : tokens) {
+            Postings list = postings.get(token);
+            if (list == null) {
+                list = new Postings();
+                postings.put(token, list);
+            }
+            list.add(slot);
+        }
+    }
+
+    public synchronized void addAll(Collection<Meal> meals) {
+        for (Meal meal : meals) {
+            add(meal);
+        }
+    }
+
+    /**
+     * Drop a meal from the index
+     * @param meal Meal to drop, matched by ID
+     * @return true if it was indexed
+     */
+    public synchronized boolean remove(Meal meal) {
+        Integer slot = slotsById.remove(meal.getId());
+        if (slot == null) {
+            return false;
+        }
+        unlinkTokens(slot);
+        meals[slot] = null;
+        mealTokens[slot] = null;
+        if (freeCount == freeSlots.length) {
+            freeSlots = Arrays.copyOf(freeSlots, freeCount * 2);
+        }
+        freeSlots[freeCount++] = slot;
+        return true;
+    }
+
+    public synchronized void clear() {
+        postings.clear();
+        slotsById.clear();
+        Arrays.fill(meals, null);
+        Arrays.fill(mealTokens, null);
+        freeCount = 0;
+        slotCount = 0;
+    }
+
+    public synchronized int size() {
+        return slotsById.size();
+    }
+
+    /**
+     * Find the meals whose names contain every token of the query. Each query token
+     * matches any indexed token it is a prefix of, so a complete word is a term query and
+     * a partly typed one still finds its meals.
+     * @param query Free text, in any mix of Latin and Arabic
+     * @param limit Most meals returned; the newest ones are kept
+     * @return Hits grouped by day (newest first) and category; empty for a blank query
+     */
+    public synchronized SearchResult search(String query, int limit) {
+        String[] queryTokens = tokenize(query, false);
+        if (queryTokens.length == 0 || slotCount == 0) {
+            return new SearchResult(new ArrayList<>(), 0);
+        }
+
+        BitSet matches = null;
+        for (String token : queryTokens) {
+            BitSet tokenMatches = new BitSet(slotCount);
+            for (Postings list : postings.subMap(token, true, token + Character.MAX_VALUE, false).values()) {
+                for (int i = 0; i < list.size; i++) {
+                    tokenMatches.set(list.slots[i]);
+                }
+            }
+            if (matches == null) {
+                matches = tokenMatches;
+            } else {
+                matches.and(tokenMatches);
+            }
+            if (matches.isEmpty()) {
+                return new SearchResult(new ArrayList<>(), 0);
+            }
+        }
+
+        // Day in the high half, slot in the low half: sorting the keys orders hits by day
+        int totalHits = matches.cardinality();
+        long[] keys = new long[totalHits];
+        int count = 0;
+        for (int slot = matches.nextSetBit(0); slot >= 0; slot = matches.nextSetBit(slot + 1)) {
+            keys[count++] = ((long) mealDays[slot] << 32) | slot;
+        }
+        Arrays.sort(keys);
+
+        List<DayHits> days = new ArrayList<>();
+        DayHits current = null;
+        int returned = 0;
+        for (int i = keys.length - 1; i >= 0 && returned < limit; i--, returned++) {
+            Meal meal = meals[(int) keys[i]];
+            if (current == null || !current.date.equals(meal.getDate())) {
+                current = new DayHits(meal.getDate());
+                for (String category : Meal.VALID_CATEGORIES) {
+                    current.categories.put(category, new ArrayList<>());
+                }
+                days.add(current);
+            }
+            List<Meal> bucket = current.categories.get(meal.getCategory());
+            if (bucket != null) {
+                bucket.add(meal);
+            }
+        }
+
+        for (DayHits day : days) {
+            day.categories.values().removeIf(List::isEmpty);
+            for (List<Meal> bucket : day.categories.values()) {
+                bucket.sort((a, b) -> Long.compare(a.getTimestampMillis(), b.getTimestampMillis()));
+            }
+        }
+        return new SearchResult(days, totalHits);
+    }
+
+    /**
+     * Split text into normalized search tokens
+     * @param text Meal name or query
+     * @param withArticleForms true to emit both forms of Arabic words with a definite
+     *                         article (for indexing); false to emit only the bare form
+     * @return Distinct tokens, in order of appearance
+     */
+    public static String[] tokenize(String text, boolean withArticleForms) {
+        if (text == null || text.isEmpty()) {
+            return new String[0];
+        }
+        String folded = hasPresentationForms(text) ? Normalizer.normalize(text, Normalizer.Form.NFKC) : text;
+
+        List<String> tokens = new ArrayList<>(4);
+        StringBuilder token = new StringBuilder();
+        for (int i = 0; i <= folded.length(); i++) {
+            char c = i < folded.length() ? folded.charAt(i) : ' ';
+            if (isIgnorable(c)) {
+                continue; // Diacritics and tatweel, and apostrophes inside Latin words
+            }
+            char normalized = normalizeChar(c);
+            if (Character.isLetterOrDigit(normalized)) {
+                token.append(normalized);
+            } else if (token.length() > 0) {
+                addToken(tokens, token.toString(), withArticleForms);
+                token.setLength(0);
+            }
+        }
+        return tokens.toArray(new String[0]);
+    }
+
+    private static void addToken(List<String> tokens, String token, boolean withArticleForms) {
+        String bare = stripArticle(token);
+        if (withArticleForms && !bare.equals(token) && !tokens.contains(token)) {
+            tokens.add(token);
+        }
+        if (!tokens.contains(bare)) {
+            tokens.add(bare);
+        }
+    }
+
+    // "الفول" -> "فول", also with a joined و/ف/ب/ك ("بالفراخ" -> "فراخ") and "لل" ("للغداء" -> "غداء")
+    private static String stripArticle(String token) {
+        int start;
+        if (token.startsWith("ال")) {
+            start = 2;
+        } else if (token.startsWith("لل")) {
+            start = 2;
+        } else if (token.length() > 3 && token.startsWith("ال", 1) && "وفبك".indexOf(token.charAt(0)) >= 0) {
+            start = 3;
+        } else {
+            return token;
+        }
+        // Keep short words whole, e.g. "الو" is not an article plus "و"
+        return token.length() - start >= 2 ? token.substring(start) : token;
+    }
+
+    private static boolean isIgnorable(char c) {
+        return (c >= '\u064B' && c <= '\u065F') // Harakat, tanween, shadda, sukun
+                || c == '\u0670' // Superscript alef
+                || c == '\u0640' // Tatweel
+                || (c >= '\u06D6' && c <= '\u06ED') // Quranic annotation marks
+                || c == '\'';
+    }
+
+    private static char normalizeChar(char c) {
+        if (c < 0x80) {
+            return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+        }
+        switch (c) {
+            case '\u0622': // Alef with madda
+            case '\u0623': // Alef with hamza above
+            case '\u0625': // Alef with hamza below
+            case '\u0671': // Alef wasla
+                return '\u0627';
+            case '\u0649': // Alef maksura
+            case '\u0626': // Ya with hamza
+            case '\u06CC': // Farsi ya
+                return '\u064A';
+            case '\u0624': // Waw with hamza
+                return '\u0648';
+            case '\u0629': // Ta marbuta
+                return '\u0647';
+            case '\u06A9': // Keheh
+                return '\u0643';
+            default:
+                break;
+        }
+        if (c >= '\u0660' && c <= '\u0669') {
+            return (char) ('0' + (c - '\u0660')); // Arabic-Indic digits
+        }
+        if (c >= '\u06F0' && c <= '\u06F9') {
+            return (char) ('0' + (c - '\u06F0')); // Extended Arabic-Indic digits
+        }
+        return Character.toLowerCase(c);
+    }
+
+    private static boolean hasPresentationForms(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if ((c >= '\uFB50' && c <= '\uFDFF') || (c >= '\uFE70' && c <= '\uFEFF')) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // "yyyy-MM-dd" -> yyyyMMdd; 0 for anything else, which sorts as the oldest day
+    static int dayKey(String date) {
+        if (date == null || date.length() != 10) {
+            return 0;
+        }
+        int key = 0;
+        for (int i = 0; i < date.length(); i++) {
+            char c = date.charAt(i);
+            if (c == '-') {
+                continue;
+            }
+            if (c < '0' || c > '9') {
+                return 0;
+            }
+            key = key * 10 + (c - '0');
+        }
+        return key;
+    }
+
+    private int allocateSlot() {
+        if (freeCount > 0) {
+            return freeSlots[--freeCount];
+        }
+        if (slotCount == meals.length) {
+            int capacity = slotCount * 2;
+            meals = Arrays.copyOf(meals, capacity);
+            mealTokens = Arrays.copyOf(mealTokens, capacity);
+            mealDays = Arrays.copyOf(mealDays, capacity);
+        }
+        return slotCount++;
+    }
+
+    private void unlinkTokens(int slot) {
+        for (String token : mealTokens[slot]) {
+            Postings list = postings.get(token);
+            if (list != null) {
+                list.remove(slot);
+                if (list.size == 0) {
+                    postings.remove(token);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,299 @@
+package com.eslamgamal.fooddiary;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Meal-name suggestions ranked by how often and how recently a name was eaten, in which
+ * category and at what time of day. Each distinct name keeps one small record per category
+ * it was logged under: an exponentially decayed use count (frequency and recency in one
+ * number) and a histogram of the hours it was eaten. Names are kept in a map sorted by
+ * their normalized form, so the candidates for a typed prefix are one range of it.
+ */
+public class MealSuggester {
+
+    // A use loses half its weight after this long
+    static final long HALF_LIFE_MILLIS = 21L * 24 * 60 * 60 * 1000;
+    // Names eaten under another category still come up, well below the category's own
+    private static final double OTHER_CATEGORY_WEIGHT = 0.2;
+    private static final int HOUR_BUCKETS = 8; // Three hours each
+
+    private static final class Usage {
+        double weight; // Decayed use count as of lastUsed
+        long lastUsed;
+        final int[] hourCounts = new int[HOUR_BUCKETS];
+
+        void record(long time, int hourOfDay) {
+            if (time >= lastUsed) {
+                weight = weight * decay(time - lastUsed) + 1;
+                lastUsed = time;
+            } else {
+                weight += decay(lastUsed - time); // An older meal arriving late, e.g. from the cloud
+            }
+            hourCounts[hourOfDay / 3]++;
+        }
+
+        // Take back one use recorded with the same time and hour; true once nothing is left
+        boolean forget(long time, int hourOfDay) {
+            weight = Math.max(0, weight - decay(Math.max(0, lastUsed - time)));
+            int bucket = hourOfDay / 3;
+            if (hourCounts[bucket] > 0) {
+                hourCounts[bucket]--;
+            }
+            for (int count : hourCounts) {
+                if (count > 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        double score(long now, int hourOfDay) {
+            int total = 0;
+            for (int count : hourCounts) {
+                total += count;
+            }
+            // 1x for a name never eaten at this time, up to 2x for one only eaten now
+            double timeAffinity = total > 0 ? (double) hourCounts[hourOfDay / 3] / total : 0;
+            return weight * decay(Math.max(0, now - lastUsed)) * (1 + timeAffinity);
+        }
+    }
+
+    private static final class Name {
+        String displayName;
+        long displayNameTime;
+        final Usage[] usages = new Usage[Meal.VALID_CATEGORIES.length];
+    }
+
+    private static final class Candidate {
+        final String name;
+        final double score;
+
+        Candidate(String name, double score) {
+            this.name = name;
+            this.score = score;
+        }
+    }
+
+    // Normalized name -> usage
+    private final TreeMap<String, Name> names = new TreeMap<>();
+
+    /**
+     * Build the suggestions from a whole history
+     * @param meals Meals to learn from
+     * @return The suggester
+     */
+    public static MealSuggester of(Collection<Meal> meals) {
+        MealSuggester suggester = new MealSuggester();
+        Calendar calendar = Calendar.getInstance();
+        for (Meal meal : meals) {
+            calendar.setTimeInMillis(meal.getTimestampMillis());
+            suggester.record(meal.getName(), meal.getCategory(), meal.getTimestampMillis(),
+                    calendar.get(Calendar.HOUR_OF_DAY));
+        }
+        return suggester;
+    }
+
+    /**
+     * Learn one use of a name
+     * @param mealName Name as typed; the most recently used spelling is the one suggested
+     * @param category Meal category
+     * @param time When the meal was eaten, epoch millis
+     * @param hourOfDay Local hour the meal was eaten, 0-23
+     */
+    public synchronized void record(String mealName, String category, long time, int hourOfDay) {
+        int categoryIndex = categoryIndex(category);
+        String key = normalize(mealName);
+        if (categoryIndex < 0 || key.isEmpty() || hourOfDay < 0 || hourOfDay > 23) {
+            return;
+        }
+
+        Name name = names.get(key);
+        if (name == null) {
+            name = new Name();
+            names.put(key, name);
+        }
+        if (name.displayName == null || time >= name.displayNameTime) {
+            name.displayName = mealName.trim();
+            name.displayNameTime = time;
+        }
+        Usage usage = name.usages[categoryIndex];
+        if (usage == null) {
+            usage = new Usage();
+            name.usages[categoryIndex] = usage;
+        }
+        usage.record(time, hourOfDay);
+    }
+
+    /**
+     * Take back one use learned with {@link #record}, e.g. when that meal is renamed. A name
+     * with no uses left is no longer suggested.
+     * @param mealName Name the meal was recorded with
+     * @param category Meal category
+     * @param time When the meal was eaten, epoch millis
+     * @param hourOfDay Local hour the meal was eaten, 0-23
+     */
+    public synchronized void forget(String mealName, String category, long time, int hourOfDay) {
+        int categoryIndex = categoryIndex(category);
+        String key = normalize(mealName);
+        Name name = names.get(key);
+        if (categoryIndex < 0 || name == null || name.usages[categoryIndex] == null
+                || hourOfDay < 0 || hourOfDay > 23) {
+            return;
+        }
+
+        if (name.usages[categoryIndex].forget(time, hourOfDay)) {
+            name.usages[categoryIndex] = null;
+            for (Usage usage : name.usages) {
+                if (usage != null) {
+                    return;
+                }
+            }
+            names.remove(key);
+        }
+    }
+
+    /**
+     * Rank the names starting with what has been typed so far
+     * @param prefix Text typed so far; blank for the overall favourites
+     * @param category Category the meal is being added to
+     * @param now Current time, epoch millis
+     * @param hourOfDay Current local hour, 0-23
+     * @param limit Most names returned
+     * @return Names, best first
+     */
+    public synchronized List<String> suggest(String prefix, String category, long now, int hourOfDay, int limit) {
+        int categoryIndex = categoryIndex(category);
+        if (limit <= 0 || hourOfDay < 0 || hourOfDay > 23) {
+            return new ArrayList<>();
+        }
+        String key = normalize(prefix);
+        Map<String, Name> candidates = key.isEmpty() ? names
+                : names.subMap(key, true, key + Character.MAX_VALUE, false);
+
+        // Min-heap of the best names seen so far
+        PriorityQueue<Candidate> best = new PriorityQueue<>(limit + 1, (a, b) -> Double.compare(a.score, b.score));
+        for (Map.Entry<String, Name> entry : candidates.entrySet()) {
+            Name name = entry.getValue();
+            double score = 0;
+            for (int i = 0; i < name.usages.length; i++) {
+                if (name.usages[i] != null) {
+                    double weight = i == categoryIndex ? 1 : OTHER_CATEGORY_WEIGHT;
+                    score += weight * name.usages[i].score(now, hourOfDay);
+                }
+            }
+            if (best.size() < limit) {
+                best.add(new Candidate(name.displayName, score));
+            } else if (score > best.peek().score) {
+                best.poll();
+                best.add(new Candidate(name.displayName, score));
+            }
+        }
+
+        List<String> suggestions = new ArrayList<>(best.size());
+        while (!best.isEmpty()) {
+            suggestions.add(best.poll().name);
+        }
+        Collections.reverse(suggestions);
+        return suggestions;
+    }
+
+    public synchronized int size() {
+        return names.size();
+    }
+
+    /**
+     * Encode the suggestions for storage in an unordered string set
+     * @return One "category|weight|lastUsed|hourCounts|name" string per name and category
+     */
+    public synchronized Set<String> encode() {
+        Set<String> encoded = new HashSet<>(names.size() * 2);
+        for (Name name : names.values()) {
+            for (int i = 0; i < name.usages.length; i++) {
+                Usage usage = name.usages[i];
+                if (usage == null) {
+                    continue;
+                }
+                StringBuilder value = new StringBuilder();
+                value.append(Meal.VALID_CATEGORIES[i]).append('|')
+                        .append(usage.weight).append('|')
+                        .append(usage.lastUsed).append('|');
+                for (int b = 0; b < HOUR_BUCKETS; b++) {
+                    value.append(b > 0 ? "," : "").append(usage.hourCounts[b]);
+                }
+                value.append('|').append(name.displayName);
+                encoded.add(value.toString());
+            }
+        }
+        return encoded;
+    }
+
+    /**
+     * Restore suggestions saved with {@link #encode()}; malformed entries are skipped
+     * @param encoded Stored strings
+     * @return The suggester
+     */
+    public static MealSuggester decode(Collection<String> encoded) {
+        MealSuggester suggester = new MealSuggester();
+        for (String value : encoded) {
+            String[] parts = value.split("\\|", 5);
+            if (parts.length != 5) {
+                continue;
+            }
+            try {
+                int categoryIndex = categoryIndex(parts[0]);
+                String[] counts = parts[3].split(",");
+                String key = normalize(parts[4]);
+                if (categoryIndex < 0 || counts.length != HOUR_BUCKETS || key.isEmpty()) {
+                    continue;
+                }
+                Usage usage = new Usage();
+                usage.weight = Double.parseDouble(parts[1]);
+                usage.lastUsed = Long.parseLong(parts[2]);
+                for (int b = 0; b < HOUR_BUCKETS; b++) {
+                    usage.hourCounts[b] = Integer.parseInt(counts[b]);
+                }
+
+                Name name = suggester.names.get(key);
+                if (name == null) {
+                    name = new Name();
+                    suggester.names.put(key, name);
+                }
+                if (name.displayName == null || usage.lastUsed >= name.displayNameTime) {
+                    name.displayName = parts[4];
+                    name.displayNameTime = usage.lastUsed;
+                }
+                name.usages[categoryIndex] = usage;
+            } catch (NumberFormatException e) {
+                // Corrupt entry; the next rebuild from the history restores it
+            }
+        }
+        return suggester;
+    }
+
+    // Case-, diacritic- and spacing-insensitive form, as used by the search index
+    static String normalize(String text) {
+        return String.join(" ", MealSearchIndex.tokenize(text, false));
+    }
+
+    private static double decay(long elapsedMillis) {
+        return Math.pow(0.5, (double) elapsedMillis / HALF_LIFE_MILLIS);
+    }
+
+    private static int categoryIndex(String category) {
+        for (int i = 0; i < Meal.VALID_CATEGORIES.length; i++) {
+            if (Meal.VALID_CATEGORIES[i].equals(category)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,103 @@
+package com.eslamgamal.fooddiary;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Column layout of the diary spreadsheet. Version 1 sheets only have the visible
+ * Date, Category, Meal Name and Time columns; version 2 adds hidden ID, Timestamp
+ * (epoch millis) and Updated At (epoch millis) columns so rows can be addressed by
+ * meal ID. The header row tells the versions apart.
+ */
+public final class SheetSchema {
+
+    public static final int VERSION_LEGACY = 1;
+    public static final int VERSION_CURRENT = 2;
+
+    public static final int COL_DATE = 0;
+    public static final int COL_CATEGORY = 1;
+    public static final int COL_NAME = 2;
+    public static final int COL_TIME = 3;
+    public static final int COL_ID = 4;
+    public static final int COL_TIMESTAMP = 5;
+    public static final int COL_UPDATED_AT = 6;
+    public static final int COLUMN_COUNT = 7;
+
+    // First hidden column and the column after the last one
+    public static final int HIDDEN_START = COL_ID;
+    public static final int HIDDEN_END = COLUMN_COUNT;
+
+    public static final List<Object> HEADERS = Arrays.asList(
+            "Date", "Category", "Meal Name", "Time", "ID", "Timestamp", "Updated At");
+
+    public static final String SHEET = "Sheet1";
+    // Grid ID of SHEET, needed by row deletes and column hiding. The app creates its
+    // spreadsheets without sheets, so the server adds Sheet1 as sheetId 0; the ID survives
+    // renames and moves, and only a hand-deleted Sheet1 would change it, which also loses
+    // every range above
+    public static final int SHEET_ID = 0;
+    public static final String HEADER_RANGE = "Sheet1!A1:G1";
+    public static final String TABLE_RANGE = "Sheet1!A:G";
+    public static final String DATA_RANGE = "Sheet1!A2:G";
+    public static final String ID_COLUMN_RANGE = "Sheet1!E:E";
+    public static final String DATE_COLUMN_RANGE = "Sheet1!A:A";
+
+    // Visible columns of the data rows, as written by version 1
+    public static final String LEGACY_DATA_RANGE = "Sheet1!A2:D";
+
+    // Second sheet holding the history digests (see MealDigests): a header row, the total
+    // digest in row 2, then one row per month
+    public static final String DIGEST_SHEET = "Digests";
+    public static final List<Object> DIGEST_HEADERS = Arrays.asList("Month", "Digest");
+    public static final String DIGEST_TOTAL_LABEL = "Total";
+    public static final String DIGEST_HEADER_RANGE = "Digests!A1:B1";
+    public static final String DIGEST_TOTAL_RANGE = "Digests!B2";
+    public static final String DIGEST_TABLE_RANGE = "Digests!A2:B";
+    public static final String DIGEST_MONTHS_RANGE = "Digests!A3:B";
+
+    private SheetSchema() {
+    }
+
+    /**
+     * Work out the schema version from the header row
+     * @param header First row of the sheet, possibly empty
+     * @return {@link #VERSION_CURRENT} if the ID column is present, otherwise {@link #VERSION_LEGACY}
+     */
+    public static int detectVersion(List<Object> header) {
+        if (header != null && header.size() > COL_ID && "ID".equals(String.valueOf(header.get(COL_ID)))) {
+            return VERSION_CURRENT;
+        }
+        return VERSION_LEGACY;
+    }
+
+    /**
+     * A1 range covering some columns of a block of rows
+     * @param firstColumn 0-based first column
+     * @param lastColumn 0-based last column, inclusive
+     * @param firstRow 1-based first row
+     * @param lastRow 1-based last row, inclusive
+     * @return e.g. "Sheet1!E2:G501"
+     */
+    public static String range(int firstColumn, int lastColumn, int firstRow, int lastRow) {
+        return SHEET + "!" + (char) ('A' + firstColumn) + firstRow + ":" + (char) ('A' + lastColumn) + lastRow;
+    }
+
+    /**
+     * A1 range of rows of the Digests sheet
+     * @param firstRow 1-based first row
+     * @param lastRow 1-based last row, inclusive
+     * @return e.g. "Digests!A2:B40"
+     */
+    public static String digestRange(int firstRow, int lastRow) {
+        return DIGEST_SHEET + "!A" + firstRow + ":B" + lastRow;
+    }
+
+    /**
+     * A1 range of one whole data row
+     * @param row 1-based row number
+     * @return e.g. "Sheet1!A12:G12"
+     */
+    public static String rowRange(int row) {
+        return range(0, COLUMN_COUNT - 1, row, row);
+    }
+}
@@ -0,0 +1,114 @@
+package com.eslamgamal.fooddiary;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * The subset of the Sheets v4 API the sync engine uses. Ranges are A1 notation
+ * ("Sheet1!A2:G"); cell values travel as their RAW string form. Failures reported by
+ * the server are thrown as {@link SheetsBackendException} so callers can tell quota,
+ * missing-spreadsheet and server errors apart from plain transport failures.
+ */
+public interface SheetsBackend {
+
+    /**
+     * Create a spreadsheet with a single sheet (sheetId 0) titled "Sheet1"
+     * @param title Spreadsheet title
+     * @return The new spreadsheet ID
+     * @throws IOException on transport or server failure
+     */
+    String createSpreadsheet(String title) throws IOException;
+
+    /**
+     * Fetch spreadsheet metadata, used only to check the spreadsheet still exists
+     * @param spreadsheetId Spreadsheet ID
+     * @throws IOException on failure; a {@link SheetsBackendException} with status 404 if it is gone
+     */
+    void getSpreadsheet(String spreadsheetId) throws IOException;
+
+    /**
+     * Read the values in a range
+     * @param spreadsheetId Spreadsheet ID
+     * @param range A1 range
+     * @return Rows in sheet order with trailing empty rows omitted; never null
+     * @throws IOException on transport or server failure
+     */
+    List<List<Object>> getValues(String spreadsheetId, String range) throws IOException;
+
+    /**
+     * Insert rows after the last row of the table in the range
+     * @param spreadsheetId Spreadsheet ID
+     * @param range A1 range identifying the table, e.g. "Sheet1!A:D"
+     * @param rows Rows to append
+     * @return The A1 range the rows were written to, e.g. "Sheet1!A12:D14"
+     * @throws IOException on transport or server failure
+     */
+    String appendValues(String spreadsheetId, String range, List<List<Object>> rows) throws IOException;
+
+    /**
+     * Overwrite the cells of a range starting at its top-left corner
+     * @param spreadsheetId Spreadsheet ID
+     * @param range A1 range
+     * @param rows Rows to write
+     * @throws IOException on transport or server failure
+     */
+    void updateValues(String spreadsheetId, String range, List<List<Object>> rows) throws IOException;
+
+    /**
+     * Clear the values in a range; the rows themselves are kept
+     * @param spreadsheetId Spreadsheet ID
+     * @param range A1 range
+     * @throws IOException on transport or server failure
+     */
+    void clearValues(String spreadsheetId, String range) throws IOException;
+
+    /**
+     * Delete whole rows, shifting the rows below up (batchUpdate deleteDimension)
+     * @param spreadsheetId Spreadsheet ID
+     * @param sheetId Sheet ID within the spreadsheet
+     * @param startIndex First row to delete, 0-based inclusive
+     * @param endIndex Last row to delete, 0-based exclusive
+     * @throws IOException on transport or server failure
+     */
+    void deleteRows(String spreadsheetId, int sheetId, int startIndex, int endIndex) throws IOException;
+
+    /**
+     * Add a sheet (tab) to the spreadsheet (batchUpdate addSheet)
+     * @param spreadsheetId Spreadsheet ID
+     * @param title Title of the new sheet, used in A1 ranges
+     * @return The new sheet's ID
+     * @throws IOException on failure; a {@link SheetsBackendException} with status 400 if the title is taken
+     */
+    int addSheet(String spreadsheetId, String title) throws IOException;
+
+    /**
+     * Hide whole columns from the spreadsheet UI (batchUpdate updateDimensionProperties)
+     * @param spreadsheetId Spreadsheet ID
+     * @param sheetId Sheet ID within the spreadsheet
+     * @param startIndex First column to hide, 0-based inclusive
+     * @param endIndex Last column to hide, 0-based exclusive
+     * @throws IOException on transport or server failure
+     */
+    void hideColumns(String spreadsheetId, int sheetId, int startIndex, int endIndex) throws IOException;
+
+    /**
+     * Approximate size of rows as a JSON values array, for request and response accounting
+     * @param rows Rows of cell values
+     * @return Estimated UTF-8 byte count
+     */
+    static long estimatePayloadBytes(List<List<Object>> rows) {
+        long bytes = 2;
+        for (List<Object> row : rows) {
+            bytes += 3;
+            for (Object cell : row) {
+                String value = String.valueOf(cell);
+                bytes += 3;
+                for (int i = 0; i < value.length(); i++) {
+                    char c = value.charAt(i);
+                    bytes += c < 0x80 ? 1 : c < 0x800 ? 2 : 3;
+                }
+            }
+        }
+        return bytes;
+    }
+}
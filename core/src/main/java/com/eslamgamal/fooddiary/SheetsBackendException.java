@@ -0,0 +1,47 @@
+package com.eslamgamal.fooddiary;
+
+import java.io.IOException;
+
+/**
+ * An error response from a {@link SheetsBackend}: the HTTP status and, for 429s,
+ * the server's Retry-After hint.
+ */
+public class SheetsBackendException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    public static final int STATUS_BAD_REQUEST = 400;
+    public static final int STATUS_UNAUTHORIZED = 401;
+    public static final int STATUS_NOT_FOUND = 404;
+    public static final int STATUS_TOO_MANY_REQUESTS = 429;
+
+    private final int statusCode;
+    private final long retryAfterSeconds;
+
+    public SheetsBackendException(int statusCode, String message) {
+        this(statusCode, message, -1, null);
+    }
+
+    public SheetsBackendException(int statusCode, String message, long retryAfterSeconds, Throwable cause) {
+        super(statusCode + " " + message, cause);
+        this.statusCode = statusCode;
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    // Seconds the server asked us to wait, or -1 if it gave no hint
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+
+    public boolean isRateLimited() {
+        return statusCode == STATUS_TOO_MANY_REQUESTS;
+    }
+
+    public boolean isServerError() {
+        return statusCode >= 500;
+    }
+}
@@ -0,0 +1,312 @@
+package com.eslamgamal.fooddiary;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Just enough streaming JSON for the Sheets v4 REST bodies: a pull parser over a
+ * character stream and writers for the request bodies {@link SheetsRestClient} sends.
+ * Nothing is bound by reflection; callers walk a response and keep only the fields they
+ * need, so a values read allocates the cells and little else.
+ */
+final class SheetsJson {
+
+    // Buffer size for parsing and for writing request bodies; most requests are a row or two
+    static final int BUFFER_CHARS = 1024;
+
+    private SheetsJson() {
+    }
+
+    /**
+     * Pull parser. Commas and colons are consumed for the caller: iterate an object with
+     * {@link #hasNext()} and {@link #nextName()}, an array with {@link #hasNext()} alone.
+     */
+    static final class Parser {
+
+        private final Reader in;
+        private final char[] buffer = new char[BUFFER_CHARS];
+        private final StringBuilder text = new StringBuilder();
+        private int position;
+        private int limit;
+
+        Parser(Reader in) {
+            this.in = in;
+        }
+
+        void beginObject() throws IOException {
+            expect('{');
+        }
+
+        void endObject() throws IOException {
+            expect('}');
+        }
+
+        void beginArray() throws IOException {
+            expect('[');
+        }
+
+        void endArray() throws IOException {
+            expect(']');
+        }
+
+        // Whether the current object or array has another member
+        boolean hasNext() throws IOException {
+            int c = peek();
+            if (c == ',') {
+                position++;
+                return true;
+            }
+            return c != '}' && c != ']' && c != -1;
+        }
+
+        String nextName() throws IOException {
+            String name = readString();
+            expect(':');
+            return name;
+        }
+
+        /**
+         * Read a scalar: strings unescaped, numbers and booleans as their literal text
+         * @return The value, or null for a JSON null
+         */
+        String nextString() throws IOException {
+            if (peek() == '"') {
+                return readString();
+            }
+            String literal = readLiteral();
+            return literal.equals("null") ? null : literal;
+        }
+
+        int nextInt() throws IOException {
+            String value = nextString();
+            try {
+                return Integer.parseInt(value);
+            } catch (NumberFormatException e) {
+                throw new IOException("Expected an integer but was " + value);
+            }
+        }
+
+        void skipValue() throws IOException {
+            int c = peek();
+            if (c == '{') {
+                beginObject();
+                while (hasNext()) {
+                    nextName();
+                    skipValue();
+                }
+                endObject();
+            } else if (c == '[') {
+                beginArray();
+                while (hasNext()) {
+                    skipValue();
+                }
+                endArray();
+            } else {
+                nextString();
+            }
+        }
+
+        /**
+         * Skip members of the current object up to the named one
+         * @param name Member name
+         * @return Whether it was found; if so, its value is next
+         */
+        boolean skipTo(String name) throws IOException {
+            while (hasNext()) {
+                if (nextName().equals(name)) {
+                    return true;
+                }
+                skipValue();
+            }
+            return false;
+        }
+
+        private void expect(char expected) throws IOException {
+            int c = peek();
+            if (c != expected) {
+                throw new IOException("Expected '" + expected + "' but was "
+                        + (c == -1 ? "end of input" : "'" + (char) c + "'"));
+            }
+            position++;
+        }
+
+        // Next non-whitespace character without consuming it; -1 at the end of input
+        private int peek() throws IOException {
+            while (true) {
+                if (position == limit && !fill()) {
+                    return -1;
+                }
+                char c = buffer[position];
+                if (c != ' ' && c != '\n' && c != '\r' && c != '\t') {
+                    return c;
+                }
+                position++;
+            }
+        }
+
+        private String readString() throws IOException {
+            expect('"');
+            text.setLength(0);
+            while (true) {
+                if (position == limit && !fill()) {
+                    throw new EOFException("Unterminated string");
+                }
+                // Copy the run up to the next quote or escape in one go
+                int start = position;
+                while (position < limit && buffer[position] != '"' && buffer[position] != '\\') {
+                    position++;
+                }
+                text.append(buffer, start, position - start);
+                if (position == limit) {
+                    continue;
+                }
+                if (buffer[position++] == '"') {
+                    return text.toString();
+                }
+                text.append(readEscape());
+            }
+        }
+
+        private char readEscape() throws IOException {
+            char c = nextChar();
+            switch (c) {
+                case 'n': return '\n';
+                case 'r': return '\r';
+                case 't': return '\t';
+                case 'b': return '\b';
+                case 'f': return '\f';
+                case 'u':
+                    int code = 0;
+                    for (int i = 0; i < 4; i++) {
+                        int digit = Character.digit(nextChar(), 16);
+                        if (digit < 0) {
+                            throw new IOException("Malformed \\u escape");
+                        }
+                        code = code * 16 + digit;
+                    }
+                    return (char) code;
+                default:
+                    return c; // \" \\ \/
+            }
+        }
+
+        private String readLiteral() throws IOException {
+            text.setLength(0);
+            while (position < limit || fill()) {
+                char c = buffer[position];
+                if (c == ',' || c == '}' || c == ']' || c == ' ' || c == '\n' || c == '\r' || c == '\t') {
+                    break;
+                }
+                text.append(c);
+                position++;
+            }
+            if (text.length() == 0) {
+                throw new IOException("Expected a value");
+            }
+            return text.toString();
+        }
+
+        private char nextChar() throws IOException {
+            if (position == limit && !fill()) {
+                throw new EOFException("Unexpected end of input");
+            }
+            return buffer[position++];
+        }
+
+        private boolean fill() throws IOException {
+            int read = in.read(buffer, 0, buffer.length);
+            position = 0;
+            limit = Math.max(read, 0);
+            return read > 0;
+        }
+    }
+
+    /**
+     * Read the "values" member of a ValueRange
+     * @param parser Parser positioned at the ValueRange object
+     * @return Rows of cells as strings; empty if the range had no values
+     */
+    static List<List<Object>> readValues(Parser parser) throws IOException {
+        List<List<Object>> rows = new ArrayList<>();
+        parser.beginObject();
+        while (parser.hasNext()) {
+            if (!parser.nextName().equals("values")) {
+                parser.skipValue();
+                continue;
+            }
+            parser.beginArray();
+            while (parser.hasNext()) {
+                List<Object> row = new ArrayList<>(SheetSchema.COLUMN_COUNT);
+                parser.beginArray();
+                while (parser.hasNext()) {
+                    row.add(parser.nextString());
+                }
+                parser.endArray();
+                rows.add(row);
+            }
+            parser.endArray();
+        }
+        parser.endObject();
+        return rows;
+    }
+
+    // A ValueRange body: {"values":[[...],...]}
+    static void writeValues(Writer out, List<List<Object>> rows) throws IOException {
+        out.write("{\"values\":[");
+        for (int r = 0; r < rows.size(); r++) {
+            if (r > 0) {
+                out.write(',');
+            }
+            out.write('[');
+            List<Object> row = rows.get(r);
+            for (int c = 0; c < row.size(); c++) {
+                if (c > 0) {
+                    out.write(',');
+                }
+                writeValue(out, row.get(c));
+            }
+            out.write(']');
+        }
+        out.write("]}");
+    }
+
+    static void writeValue(Writer out, Object value) throws IOException {
+        if (value == null) {
+            out.write("null");
+        } else if (value instanceof Number || value instanceof Boolean) {
+            out.write(value.toString());
+        } else {
+            writeString(out, value.toString());
+        }
+    }
+
+    static void writeString(Writer out, String value) throws IOException {
+        out.write('"');
+        int start = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c >= 0x20 && c != '"' && c != '\\') {
+                continue;
+            }
+            out.write(value, start, i - start);
+            start = i + 1;
+            switch (c) {
+                case '"': out.write("\\\""); break;
+                case '\\': out.write("\\\\"); break;
+                case '\n': out.write("\\n"); break;
+                case '\r': out.write("\\r"); break;
+                case '\t': out.write("\\t"); break;
+                default: // Remaining control characters, all below 0x20
+                    out.write("\\u00");
+                    out.write(Character.forDigit(c >> 4, 16));
+                    out.write(Character.forDigit(c & 0xF, 16));
+            }
+        }
+        out.write(value, start, value.length() - start);
+        out.write('"');
+    }
+}
@@ -0,0 +1,113 @@
+package com.eslamgamal.fooddiary;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token-bucket limiter in front of Sheets API traffic with separate read and write budgets.
+ * Callers block until a token is available instead of being rejected, so bursts are shaped
+ * to the per-user quota rather than turned into 429s. A 429 with Retry-After pauses the
+ * affected bucket for the requested time.
+ */
+public class SheetsRateLimiter {
+
+    // Sheets allows 60 reads and 60 writes per minute per user. Burst + refill over any
+    // 60 s window must stay within that: 10 + 50 = 60.
+    private static final int BURST_CAPACITY = 10;
+    private static final int REFILL_PER_MINUTE = 50;
+
+    private final TokenBucket readBucket;
+    private final TokenBucket writeBucket;
+
+    private final AtomicLong throttledNanos = new AtomicLong();
+    private final AtomicLong throttledRequests = new AtomicLong();
+    private final AtomicLong rateLimitedResponses = new AtomicLong();
+
+    public SheetsRateLimiter() {
+        this(BURST_CAPACITY, REFILL_PER_MINUTE, BURST_CAPACITY, REFILL_PER_MINUTE);
+    }
+
+    public SheetsRateLimiter(int readBurst, int readsPerMinute, int writeBurst, int writesPerMinute) {
+        this.readBucket = new TokenBucket(readBurst, readsPerMinute);
+        this.writeBucket = new TokenBucket(writeBurst, writesPerMinute);
+    }
+
+    /**
+     * Block until the request is allowed by its budget
+     * @param write true for requests that modify the spreadsheet
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void acquire(boolean write) throws InterruptedException {
+        long waitNanos = (write ? writeBucket : readBucket).reserve();
+        if (waitNanos > 0) {
+            throttledRequests.incrementAndGet();
+            throttledNanos.addAndGet(waitNanos);
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+    }
+
+    /**
+     * Record a 429 response so following requests of the same kind wait it out
+     * @param write true if the throttled request was a write
+     * @param retryAfterMillis Server-provided delay, or a local estimate when absent
+     */
+    public void onRateLimited(boolean write, long retryAfterMillis) {
+        rateLimitedResponses.incrementAndGet();
+        (write ? writeBucket : readBucket).pause(TimeUnit.MILLISECONDS.toNanos(retryAfterMillis));
+    }
+
+    public long getThrottledMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(throttledNanos.get());
+    }
+
+    public long getThrottledRequestCount() {
+        return throttledRequests.get();
+    }
+
+    public long getRateLimitedResponseCount() {
+        return rateLimitedResponses.get();
+    }
+
+    private static class TokenBucket {
+        private final double capacity;
+        private final double tokensPerNano;
+        private double tokens;
+        private long lastRefillNanos;
+        private long pausedUntilNanos;
+
+        TokenBucket(int capacity, int tokensPerMinute) {
+            this.capacity = capacity;
+            this.tokensPerNano = tokensPerMinute / (double) TimeUnit.MINUTES.toNanos(1);
+            this.tokens = capacity;
+            this.lastRefillNanos = System.nanoTime();
+        }
+
+        // Take a token, possibly going into debt, and return how long the caller must wait
+        synchronized long reserve() {
+            long now = System.nanoTime();
+            refill(now);
+
+            tokens -= 1;
+            long waitNanos = tokens < 0 ? (long) Math.ceil(-tokens / tokensPerNano) : 0;
+            if (pausedUntilNanos - now > waitNanos) {
+                waitNanos = pausedUntilNanos - now;
+            }
+            return waitNanos;
+        }
+
+        synchronized void pause(long nanos) {
+            long now = System.nanoTime();
+            refill(now);
+            if (now + nanos - pausedUntilNanos > 0) {
+                pausedUntilNanos = now + nanos;
+            }
+            // No burst allowance right after the server pushed back
+            tokens = Math.min(tokens, 0);
+        }
+
+        private void refill(long now) {
+            tokens = Math.min(capacity, tokens + (now - lastRefillNanos) * tokensPerNano);
+            lastRefillNanos = now;
+        }
+    }
+}
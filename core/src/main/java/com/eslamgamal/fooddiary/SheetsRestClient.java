@@ -0,0 +1,303 @@
+package com.eslamgamal.fooddiary;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * {@link SheetsBackend} speaking the Sheets v4 REST API directly over
+ * {@link HttpURLConnection}, in place of the google-api-client service and its model
+ * classes. Request bodies are streamed out as they are written and responses are parsed
+ * as they arrive with {@link SheetsJson}; every call asks for only the response fields it
+ * reads. Tokens come from an {@link AccessTokenProvider}, and a token the server rejects
+ * is invalidated and replaced once before the 401 is surfaced.
+ */
+public class SheetsRestClient implements SheetsBackend {
+
+    public static final String SCOPE_SPREADSHEETS = "https://www.googleapis.com/auth/spreadsheets";
+
+    private static final String DEFAULT_BASE_URL = "https://sheets.googleapis.com/v4/spreadsheets";
+    private static final int CONNECT_TIMEOUT_MS = 20000;
+    private static final int READ_TIMEOUT_MS = 20000;
+
+    /** Writes a request body; called once per attempt. */
+    private interface Body {
+        void writeTo(Writer out) throws IOException;
+    }
+
+    /** Reads the parts of a successful response the caller needs. */
+    private interface ResponseHandler<T> {
+        T read(SheetsJson.Parser parser) throws IOException;
+    }
+
+    private final String baseUrl;
+    private final AccessTokenProvider tokens;
+    private final String userAgent;
+
+    /**
+     * @param tokens Source of OAuth2 tokens for {@link #SCOPE_SPREADSHEETS}
+     * @param applicationName Sent as the User-Agent
+     */
+    public SheetsRestClient(AccessTokenProvider tokens, String applicationName) {
+        this(DEFAULT_BASE_URL, tokens, applicationName);
+    }
+
+    /**
+     * @param baseUrl Spreadsheets collection URL, e.g. a local stub server's
+     * @param tokens Source of OAuth2 tokens
+     * @param applicationName Sent as the User-Agent
+     */
+    public SheetsRestClient(String baseUrl, AccessTokenProvider tokens, String applicationName) {
+        this.baseUrl = baseUrl;
+        this.tokens = tokens;
+        this.userAgent = applicationName;
+    }
+
+    @Override
+    public String createSpreadsheet(String title) throws IOException {
+        // The server adds "Sheet1" with sheetId 0 to a spreadsheet created without sheets
+        return execute("POST", baseUrl + "?fields=spreadsheetId", out -> {
+            out.write("{\"properties\":{\"title\":");
+            SheetsJson.writeString(out, title);
+            out.write("}}");
+        }, parser -> readStringField(parser, "spreadsheetId"));
+    }
+
+    @Override
+    public void getSpreadsheet(String spreadsheetId) throws IOException {
+        execute("GET", spreadsheetUrl(spreadsheetId) + "?fields=spreadsheetId", null, null);
+    }
+
+    @Override
+    public List<List<Object>> getValues(String spreadsheetId, String range) throws IOException {
+        return execute("GET", valuesUrl(spreadsheetId, range, "") + "?fields=values", null,
+                SheetsJson::readValues);
+    }
+
+    @Override
+    public String appendValues(String spreadsheetId, String range, List<List<Object>> rows) throws IOException {
+        String url = valuesUrl(spreadsheetId, range, ":append")
+                + "?valueInputOption=RAW&insertDataOption=INSERT_ROWS&fields=updates.updatedRange";
+        return execute("POST", url, out -> SheetsJson.writeValues(out, rows), parser -> {
+            parser.beginObject();
+            String updatedRange = parser.skipTo("updates") ? readStringField(parser, "updatedRange") : null;
+            skipRest(parser);
+            return updatedRange;
+        });
+    }
+
+    @Override
+    public void updateValues(String spreadsheetId, String range, List<List<Object>> rows) throws IOException {
+        String url = valuesUrl(spreadsheetId, range, "") + "?valueInputOption=RAW&fields=updatedRange";
+        execute("PUT", url, out -> SheetsJson.writeValues(out, rows), null);
+    }
+
+    @Override
+    public void clearValues(String spreadsheetId, String range) throws IOException {
+        execute("POST", valuesUrl(spreadsheetId, range, ":clear") + "?fields=clearedRange",
+                out -> out.write("{}"), null);
+    }
+
+    @Override
+    public void deleteRows(String spreadsheetId, int sheetId, int startIndex, int endIndex) throws IOException {
+        batchUpdate(spreadsheetId, "{\"deleteDimension\":{\"range\":"
+                + dimensionRange(sheetId, "ROWS", startIndex, endIndex) + "}}", "spreadsheetId", null);
+    }
+
+    @Override
+    public int addSheet(String spreadsheetId, String title) throws IOException {
+        StringWriter request = new StringWriter();
+        request.write("{\"addSheet\":{\"properties\":{\"title\":");
+        SheetsJson.writeString(request, title);
+        request.write("}}}");
+
+        Integer sheetId = batchUpdate(spreadsheetId, request.toString(),
+                "replies.addSheet.properties.sheetId", parser -> {
+                    // {"replies":[{"addSheet":{"properties":{"sheetId":N}}}]}
+                    parser.beginObject();
+                    Integer id = null;
+                    if (parser.skipTo("replies")) {
+                        parser.beginArray();
+                        if (parser.hasNext()) {
+                            parser.beginObject();
+                            if (parser.skipTo("addSheet")) {
+                                parser.beginObject();
+                                if (parser.skipTo("properties")) {
+                                    parser.beginObject();
+                                    if (parser.skipTo("sheetId")) {
+                                        id = parser.nextInt();
+                                    }
+                                    skipRest(parser);
+                                }
+                                skipRest(parser);
+                            }
+                            skipRest(parser);
+                        }
+                        while (parser.hasNext()) {
+                            parser.skipValue();
+                        }
+                        parser.endArray();
+                    }
+                    skipRest(parser);
+                    return id;
+                });
+        if (sheetId == null) {
+            throw new IOException("addSheet response has no sheetId");
+        }
+        return sheetId;
+    }
+
+    @Override
+    public void hideColumns(String spreadsheetId, int sheetId, int startIndex, int endIndex) throws IOException {
+        batchUpdate(spreadsheetId, "{\"updateDimensionProperties\":{\"range\":"
+                + dimensionRange(sheetId, "COLUMNS", startIndex, endIndex)
+                + ",\"properties\":{\"hiddenByUser\":true},\"fields\":\"hiddenByUser\"}}", "spreadsheetId", null);
+    }
+
+    private <T> T batchUpdate(String spreadsheetId, String request, String fields,
+                              ResponseHandler<T> handler) throws IOException {
+        return execute("POST", spreadsheetUrl(spreadsheetId) + ":batchUpdate?fields=" + fields,
+                out -> {
+                    out.write("{\"requests\":[");
+                    out.write(request);
+                    out.write("]}");
+                }, handler);
+    }
+
+    private <T> T execute(String method, String url, Body body, ResponseHandler<T> handler) throws IOException {
+        String token = tokens.getAccessToken();
+        HttpURLConnection connection = open(method, url, token, body);
+        if (connection.getResponseCode() == SheetsBackendException.STATUS_UNAUTHORIZED) {
+            // Expired or revoked; one fresh token before giving up
+            connection.disconnect();
+            tokens.invalidateAccessToken(token);
+            connection = open(method, url, tokens.getAccessToken(), body);
+        }
+
+        try {
+            int status = connection.getResponseCode();
+            if (status / 100 != 2) {
+                throw errorFor(connection, status);
+            }
+            try (InputStream in = responseStream(connection, connection.getInputStream())) {
+                if (handler == null) {
+                    return null;
+                }
+                SheetsJson.Parser parser = new SheetsJson.Parser(new InputStreamReader(in, StandardCharsets.UTF_8));
+                return handler.read(parser);
+            }
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    private HttpURLConnection open(String method, String url, String token, Body body) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        connection.setRequestMethod(method);
+        connection.setConnectTimeout(CONNECT_TIMEOUT_MS);
+        connection.setReadTimeout(READ_TIMEOUT_MS);
+        connection.setRequestProperty("Authorization", "Bearer " + token);
+        connection.setRequestProperty("User-Agent", userAgent);
+        connection.setRequestProperty("Accept-Encoding", "gzip");
+        if (body != null) {
+            connection.setDoOutput(true);
+            connection.setChunkedStreamingMode(0);
+            connection.setRequestProperty("Content-Type", "application/json; charset=UTF-8");
+            try (Writer out = new BufferedWriter(new OutputStreamWriter(connection.getOutputStream(),
+                    StandardCharsets.UTF_8), SheetsJson.BUFFER_CHARS)) {
+                body.writeTo(out);
+            }
+        }
+        return connection;
+    }
+
+    private static SheetsBackendException errorFor(HttpURLConnection connection, int status) throws IOException {
+        String message = connection.getResponseMessage();
+        // {"error":{"code":429,"message":"...","status":"RESOURCE_EXHAUSTED"}}
+        try (InputStream in = responseStream(connection, connection.getErrorStream())) {
+            if (in != null) {
+                SheetsJson.Parser parser = new SheetsJson.Parser(new InputStreamReader(in, StandardCharsets.UTF_8));
+                parser.beginObject();
+                if (parser.skipTo("error")) {
+                    String detail = readStringField(parser, "message");
+                    if (detail != null) {
+                        message = detail;
+                    }
+                }
+            }
+        } catch (IOException e) {
+            // Not the usual error body; the status line will do
+        }
+        return new SheetsBackendException(status, message != null ? message : "", parseRetryAfter(connection), null);
+    }
+
+    private static long parseRetryAfter(HttpURLConnection connection) {
+        String retryAfter = connection.getHeaderField("Retry-After");
+        if (retryAfter != null) {
+            try {
+                return Long.parseLong(retryAfter.trim());
+            } catch (NumberFormatException ignored) {
+                // HTTP-date form is not used by the Sheets API
+            }
+        }
+        return -1;
+    }
+
+    // Accept-Encoding is set by hand, so gzip bodies are ours to unwrap
+    private static InputStream responseStream(HttpURLConnection connection, InputStream in) throws IOException {
+        if (in != null && "gzip".equalsIgnoreCase(connection.getContentEncoding())) {
+            return new GZIPInputStream(in);
+        }
+        return in;
+    }
+
+    // Read one string member of the object about to start, skipping everything else in it
+    private static String readStringField(SheetsJson.Parser parser, String name) throws IOException {
+        parser.beginObject();
+        String value = parser.skipTo(name) ? parser.nextString() : null;
+        skipRest(parser);
+        return value;
+    }
+
+    // Skip the remaining members of the current object and close it
+    private static void skipRest(SheetsJson.Parser parser) throws IOException {
+        while (parser.hasNext()) {
+            parser.nextName();
+            parser.skipValue();
+        }
+        parser.endObject();
+    }
+
+    private String spreadsheetUrl(String spreadsheetId) {
+        return baseUrl + "/" + encode(spreadsheetId);
+    }
+
+    private String valuesUrl(String spreadsheetId, String range, String action) {
+        return spreadsheetUrl(spreadsheetId) + "/values/" + encode(range) + action;
+    }
+
+    private static String dimensionRange(int sheetId, String dimension, int startIndex, int endIndex) {
+        return "{\"sheetId\":" + sheetId + ",\"dimension\":\"" + dimension
+                + "\",\"startIndex\":" + startIndex + ",\"endIndex\":" + endIndex + "}";
+    }
+
+    // Percent-encode a path segment; URLEncoder targets forms, so undo its '+' for spaces
+    private static String encode(String segment) {
+        try {
+            return URLEncoder.encode(segment, "UTF-8").replace("+", "%20");
+        } catch (UnsupportedEncodingException e) {
+            throw new AssertionError(e); // UTF-8 is always supported
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.eslamgamal.fooddiary;
+
+/**
+ * How eagerly pending changes are flushed on the current network. Unmetered networks get
+ * the whole backlog at once; metered ones get bounded batches with breathing room between
+ * them, and slow links get small batches spaced far apart so a flush never competes with
+ * the rest of the device for a poor connection.
+ */
+public final class SyncFlushPolicy {
+
+    public enum NetworkClass {
+        NONE, CONSTRAINED, METERED, UNMETERED
+    }
+
+    // Below this downstream estimate a network counts as constrained, metered or not
+    public static final int CONSTRAINED_BANDWIDTH_KBPS = 250;
+
+    private SyncFlushPolicy() {
+    }
+
+    /**
+     * Classify a network from its capabilities
+     * @param validated true once the system has confirmed the network reaches the internet
+     * @param metered true if the user pays per byte
+     * @param downstreamKbps Estimated downstream bandwidth, or 0 if unknown
+     * @return The class used to pick batch size and cadence
+     */
+    public static NetworkClass classify(boolean validated, boolean metered, int downstreamKbps) {
+        if (!validated) {
+            return NetworkClass.NONE; // Captive portals and half-up links can't reach Sheets anyway
+        }
+        if (downstreamKbps > 0 && downstreamKbps < CONSTRAINED_BANDWIDTH_KBPS) {
+            return NetworkClass.CONSTRAINED;
+        }
+        return metered ? NetworkClass.METERED : NetworkClass.UNMETERED;
+    }
+
+    /**
+     * @return Most pending operations replayed by one flush; 0 if nothing may be sent
+     */
+    public static int maxOperationsPerFlush(NetworkClass networkClass) {
+        switch (networkClass) {
+            case UNMETERED:
+                return Integer.MAX_VALUE;
+            case METERED:
+                return 200;
+            case CONSTRAINED:
+                return 25;
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * @return Delay before flushing once a network appears, letting it settle (and a
+     *         burst of network switches collapse into one flush)
+     */
+    public static long flushDelayMillis(NetworkClass networkClass) {
+        switch (networkClass) {
+            case UNMETERED:
+                return 2_000;
+            case METERED:
+                return 5_000;
+            default:
+                return 15_000;
+        }
+    }
+
+    /**
+     * @return Delay before the next flush while changes are still pending, either because
+     *         the batch limit left some behind or because the last flush failed
+     */
+    public static long retryIntervalMillis(NetworkClass networkClass) {
+        switch (networkClass) {
+            case UNMETERED:
+                return 30_000;
+            case METERED:
+                return 2 * 60_000;
+            default:
+                return 10 * 60_000;
+        }
+    }
+}
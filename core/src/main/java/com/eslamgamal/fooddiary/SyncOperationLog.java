@@ -0,0 +1,236 @@
+package com.eslamgamal.fooddiary;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Ordered log of meal changes that still have to reach the spreadsheet. The log holds at
+ * most one operation per meal ID: a new change is folded into the one already pending,
+ * so an add followed by a delete leaves nothing to send and repeated edits leave a single
+ * update. Changes to different meals touch different rows and never need ordering among
+ * each other, so replaying the log costs one request per batch, not one per change.
+ */
+public class SyncOperationLog {
+
+    public enum Type {
+        ADD, UPDATE, DELETE
+    }
+
+    public static final class Entry {
+        private final long sequence;
+        private final Type type;
+        private final Meal meal;
+        private final Meal stored;
+        private final long version;
+
+        Entry(long sequence, Type type, Meal meal, Meal stored) {
+            this.sequence = sequence;
+            this.type = type;
+            this.meal = meal;
+            this.stored = stored;
+            this.version = meal.getUpdatedAt(); // The meal object may be edited after it was logged
+        }
+
+        public long getSequence() {
+            return sequence;
+        }
+
+        public Type getType() {
+            return type;
+        }
+
+        public Meal getMeal() {
+            return meal;
+        }
+
+        /**
+         * @return The meal as its sheet row still holds it, for an update or delete; null
+         *         if that is not known
+         */
+        public Meal getStored() {
+            return stored;
+        }
+    }
+
+    // Meal ID -> pending operation, in the order the meals were first changed
+    private final Map<String, Entry> entries = new LinkedHashMap<>();
+    private long nextSequence = 1;
+
+    // Fields of one encoded meal; a stored copy follows them in the same string
+    private static final int MEAL_FIELDS = 7;
+
+    /**
+     * Record a change, folding it into the operation already pending for the same meal
+     * @param type Kind of change
+     * @param meal Meal as it is after the change (or as it was, for a delete)
+     */
+    public synchronized void record(Type type, Meal meal) {
+        record(type, meal, null);
+    }
+
+    /**
+     * Record a change along with what the sheet holds for the meal, so replaying it can
+     * keep the sheet's digests exact
+     * @param type Kind of change
+     * @param meal Meal as it is after the change (or as it was, for a delete)
+     * @param stored Meal as it was before the change, or null if not known
+     */
+    public synchronized void record(Type type, Meal meal, Meal stored) {
+        String id = meal.getId();
+        Entry pending = entries.get(id);
+        Type merged = pending == null ? type : merge(pending.type, type);
+
+        if (merged == null) {
+            entries.remove(id); // Never reached the sheet and no longer exists
+            return;
+        }
+
+        Meal row;
+        if (merged == Type.ADD) {
+            row = null;
+        } else if (pending != null && pending.type != Type.ADD) {
+            row = pending.stored; // The sheet hasn't changed since the first pending change
+        } else if (stored == null && type == Type.DELETE) {
+            row = meal;
+        } else {
+            row = stored;
+        }
+        entries.put(id, new Entry(nextSequence++, merged, meal, row));
+    }
+
+    // The operation that has the same effect as "first, then second", or null for none
+    private static Type merge(Type first, Type second) {
+        switch (first) {
+            case ADD:
+                // The row doesn't exist yet: edits go into the add, a delete cancels it
+                return second == Type.DELETE ? null : Type.ADD;
+            case UPDATE:
+                return second == Type.DELETE ? Type.DELETE : Type.UPDATE;
+            case DELETE:
+                // The row was never removed, so a re-added meal only has to be rewritten
+                return second == Type.DELETE ? Type.DELETE : Type.UPDATE;
+            default:
+                return second;
+        }
+    }
+
+    /**
+     * Drop an operation that has been applied to the sheet. Nothing is dropped if the meal
+     * changed again in the meantime; that newer operation still has to be replayed.
+     * @param entry Entry returned by {@link #getEntries()}
+     */
+    public synchronized void acknowledge(Entry entry) {
+        Entry current = entries.get(entry.meal.getId());
+        if (current != null && current.sequence == entry.sequence) {
+            entries.remove(entry.meal.getId());
+        }
+    }
+
+    /**
+     * Drop pending adds made redundant by meals uploaded some other way, e.g. by a full sync
+     * @param meals Meals now stored in the sheet as they are
+     */
+    public synchronized void acknowledgeAdded(Collection<Meal> meals) {
+        for (Meal meal : meals) {
+            Entry current = entries.get(meal.getId());
+            if (current != null && current.type == Type.ADD && current.version == meal.getUpdatedAt()) {
+                entries.remove(meal.getId());
+            }
+        }
+    }
+
+    /**
+     * Drop whatever is pending for a meal that has just been deleted from the sheet directly
+     * @param mealId ID of the deleted meal
+     */
+    public synchronized void discard(String mealId) {
+        entries.remove(mealId);
+    }
+
+    // Drop every pending operation, e.g. those of an account that signed out
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    // Pending operations, oldest first
+    public synchronized List<Entry> getEntries() {
+        return new ArrayList<>(entries.values());
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    /**
+     * Encode the log for storage in an unordered string set
+     * @return One "sequence|TYPE|pending-meal" string per operation, with the stored
+     *         meal's fields appended to the pending meal's where known
+     */
+    public synchronized Set<String> encode() {
+        Set<String> encoded = new HashSet<>(entries.size() * 2);
+        for (Entry entry : entries.values()) {
+            String value = entry.sequence + "|" + entry.type + "|" + MealCodec.encodePending(entry.meal);
+            if (entry.stored != null) {
+                value += ";" + MealCodec.encodePending(entry.stored);
+            }
+            encoded.add(value);
+        }
+        return encoded;
+    }
+
+    /**
+     * Restore a log saved with {@link #encode()}; malformed entries are skipped
+     * @param encoded Stored strings
+     * @return The log, in its original order
+     */
+    public static SyncOperationLog decode(Collection<String> encoded) {
+        List<Entry> decoded = new ArrayList<>(encoded.size());
+        for (String value : encoded) {
+            int first = value.indexOf('|');
+            int second = first >= 0 ? value.indexOf('|', first + 1) : -1;
+            if (second < 0) {
+                continue;
+            }
+            try {
+                long sequence = Long.parseLong(value.substring(0, first));
+                Type type = Type.valueOf(value.substring(first + 1, second));
+                String mealData = value.substring(second + 1);
+                Meal meal = MealCodec.decodePending(mealData);
+                if (meal != null) {
+                    decoded.add(new Entry(sequence, type, meal, decodeStored(mealData)));
+                }
+            } catch (IllegalArgumentException e) {
+                // Corrupt entry; the next full sync still uploads the meal if it exists locally
+            }
+        }
+        decoded.sort((a, b) -> Long.compare(a.sequence, b.sequence));
+
+        SyncOperationLog log = new SyncOperationLog();
+        for (Entry entry : decoded) {
+            log.entries.put(entry.meal.getId(), entry);
+            log.nextSequence = Math.max(log.nextSequence, entry.sequence + 1);
+        }
+        return log;
+    }
+
+    // The stored meal appended after the pending one's fields, or null for an older entry
+    private static Meal decodeStored(String mealData) {
+        int separator = -1;
+        for (int i = 0; i < MEAL_FIELDS; i++) {
+            separator = mealData.indexOf(';', separator + 1);
+            if (separator < 0) {
+                return null;
+            }
+        }
+        return MealCodec.decodePending(mealData.substring(separator + 1));
+    }
+}
@@ -0,0 +1,88 @@
+package com.eslamgamal.fooddiary;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * The workload generator is seeded so soak runs can be repeated: the same seed must give
+ * the same history and the same event stream, down to meal IDs and think times.
+ */
+public class DiaryWorkloadGeneratorTest {
+
+    private static final Date END_DATE = new Date(1_709_625_000_000L);
+    private static final int HISTORY_DAYS = 120;
+    private static final int SESSION_EVENTS = 2_000;
+
+    @Test
+    public void sameSeedProducesTheSameHistory() {
+        List<Meal> first = new DiaryWorkloadGenerator(42).generateHistory(END_DATE, HISTORY_DAYS);
+        List<Meal> second = new DiaryWorkloadGenerator(42).generateHistory(END_DATE, HISTORY_DAYS);
+
+        assertFalse(first.isEmpty());
+        assertEquals(describe(first), describe(second));
+    }
+
+    @Test
+    public void sameSeedProducesTheSameSession() {
+        List<String> first = replaySession(42);
+        List<String> second = replaySession(42);
+
+        assertEquals(first, second);
+    }
+
+    @Test
+    public void differentSeedsProduceDifferentWorkloads() {
+        List<Meal> first = new DiaryWorkloadGenerator(42).generateHistory(END_DATE, HISTORY_DAYS);
+        List<Meal> second = new DiaryWorkloadGenerator(43).generateHistory(END_DATE, HISTORY_DAYS);
+
+        assertNotEquals(describe(first), describe(second));
+        assertNotEquals(replaySession(42), replaySession(43));
+    }
+
+    @Test
+    public void generatedMealsHaveDistinctIds() {
+        List<Meal> history = new DiaryWorkloadGenerator(7).generateHistory(END_DATE, HISTORY_DAYS);
+
+        Set<String> ids = new HashSet<>();
+        for (Meal meal : history) {
+            assertTrue("Duplicate ID " + meal.getId(), ids.add(meal.getId()));
+        }
+    }
+
+    private static List<String> replaySession(long seed) {
+        DiaryWorkloadGenerator generator = new DiaryWorkloadGenerator(seed);
+        List<Meal> history = generator.generateHistory(END_DATE, HISTORY_DAYS);
+        DiaryWorkloadGenerator.Session session = generator.newSession(history, END_DATE, 500);
+
+        List<String> events = new ArrayList<>(SESSION_EVENTS);
+        for (int i = 0; i < SESSION_EVENTS; i++) {
+            DiaryWorkloadGenerator.Event event = session.next();
+            Meal meal = event.getMeal();
+            events.add(event.getType() + " " + event.getThinkTimeMillis() + " "
+                    + (meal != null ? describe(meal) : "-"));
+        }
+        // The live diary the session leaves behind must match as well
+        events.add(describe(session.getLiveMeals()).toString());
+        return events;
+    }
+
+    private static List<String> describe(List<Meal> meals) {
+        List<String> descriptions = new ArrayList<>(meals.size());
+        for (Meal meal : meals) {
+            descriptions.add(describe(meal));
+        }
+        return descriptions;
+    }
+
+    private static String describe(Meal meal) {
+        return meal.getId() + "|" + meal.getName() + "|" + meal.getCategory() + "|" + meal.getDate()
+                + "|" + meal.getTimestampMillis() + "|" + meal.getUpdatedAt();
+    }
+}
@@ -0,0 +1,182 @@
+package com.eslamgamal.fooddiary;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TimeZone;
+
+import static org.junit.Assert.*;
+
+/**
+ * Range counts, streaks and top meals of {@link MealAggregates}, checked against plain
+ * counting over the same meals, for cold rebuilds as well as incremental changes.
+ */
+public class MealAggregatesTest {
+
+    private static final String[] NAMES = {"Oats", "Soup", "Rice", "Salad", "Tea"};
+
+    private static int sequence;
+
+    private static String date(int epochDay) {
+        Calendar calendar = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+        calendar.clear();
+        calendar.setTimeInMillis(epochDay * 86_400_000L);
+        return String.format(Locale.US, "%04d-%02d-%02d", calendar.get(Calendar.YEAR), calendar.get(Calendar.MONTH) + 1,
+                calendar.get(Calendar.DAY_OF_MONTH));
+    }
+
+    private static Meal meal(String name, String category, String date) {
+        sequence++;
+        return new Meal("meal-" + sequence, name, category, new Date(0), date, sequence);
+    }
+
+    @Test
+    public void epochDayMatchesTheCalendar() {
+        assertEquals(0, MealAggregates.epochDay("1970-01-01"));
+        assertEquals(19787, MealAggregates.epochDay("2024-03-05"));
+        assertEquals(11016, MealAggregates.epochDay("2000-02-29"));
+        assertEquals(-25508, MealAggregates.epochDay("1900-03-01"));
+        for (int day = 19000; day < 19800; day += 7) {
+            assertEquals(day, MealAggregates.epochDay(date(day)));
+        }
+        assertEquals(Integer.MIN_VALUE, MealAggregates.epochDay("2024-13-01"));
+        assertEquals(Integer.MIN_VALUE, MealAggregates.epochDay("5 March"));
+    }
+
+    @Test
+    public void rangeCountsAndStreaks() {
+        MealAggregates aggregates = new MealAggregates();
+        aggregates.add(meal("Oats", "breakfast", "2024-03-01"));
+        aggregates.add(meal("Soup", "lunch", "2024-03-02"));
+        aggregates.add(meal("Rice", "dinner", "2024-03-02"));
+        aggregates.add(meal("Tea", "snacks", "2024-03-03"));
+        aggregates.add(meal("Oats", "breakfast", "2024-03-05"));
+
+        assertEquals(3, aggregates.count("2024-03-02", "2024-03-03"));
+        assertArrayEquals(new int[] {1, 1, 1, 1}, aggregates.categoryCounts("2024-03-01", "2024-03-03"));
+        assertEquals(4, aggregates.loggedDays("2024-02-01", "2024-03-31"));
+        assertArrayEquals(new int[] {1, 2, 1, 0, 1, 0}, aggregates.dailyCounts("2024-03-01", "2024-03-06"));
+        assertEquals(0, aggregates.count("2024-03-06", "2024-03-01"));
+
+        assertEquals(3, aggregates.longestStreak());
+        assertEquals(1, aggregates.currentStreak("2024-03-05"));
+        assertEquals(1, aggregates.currentStreak("2024-03-06")); // Today not logged yet
+        assertEquals(0, aggregates.currentStreak("2024-03-07"));
+        assertEquals(3, aggregates.currentStreak("2024-03-03"));
+
+        aggregates.add(meal("Soup", "lunch", "2024-03-04"));
+        assertEquals(5, aggregates.currentStreak("2024-03-05"));
+        assertEquals(5, aggregates.longestStreak());
+    }
+
+    @Test
+    public void topItemsMergeSpellingsAndFollowRanges() {
+        MealAggregates aggregates = new MealAggregates();
+        aggregates.add(meal("Oats", "breakfast", "2024-03-01"));
+        aggregates.add(meal("oats", "breakfast", "2024-03-02"));
+        aggregates.add(meal("Soup", "lunch", "2024-03-02"));
+        aggregates.add(meal("Soup", "lunch", "2024-04-01"));
+        aggregates.add(meal("Soup", "dinner", "2024-04-02"));
+
+        List<MealAggregates.ItemCount> overall = aggregates.topItems(5);
+        assertEquals("Soup", overall.get(0).getName());
+        assertEquals(3, overall.get(0).getCount());
+        assertEquals(2, overall.get(1).getCount());
+        assertEquals("oats", overall.get(1).getName().toLowerCase());
+
+        List<MealAggregates.ItemCount> march = aggregates.topItems("2024-03-01", "2024-03-31", 1);
+        assertEquals(1, march.size());
+        assertEquals(2, march.get(0).getCount());
+    }
+
+    @Test
+    public void editsAndDeletesTakeTheOldCountsBack() {
+        MealAggregates aggregates = new MealAggregates();
+        Meal meal = meal("Oats", "breakfast", "2024-03-01");
+        aggregates.add(meal);
+
+        // Edited in place: moved to another day and renamed
+        meal.setDate("2024-03-10");
+        meal.setName("Porridge");
+        aggregates.add(meal);
+        assertEquals(1, aggregates.size());
+        assertEquals(0, aggregates.count("2024-03-01", "2024-03-01"));
+        assertEquals(1, aggregates.count("2024-03-10", "2024-03-10"));
+        assertEquals("Porridge", aggregates.topItems(1).get(0).getName());
+
+        assertTrue(aggregates.remove(meal));
+        assertFalse(aggregates.remove(meal));
+        assertEquals(0, aggregates.count("2024-01-01", "2024-12-31"));
+        assertEquals(0, aggregates.longestStreak());
+        assertTrue(aggregates.topItems(5).isEmpty());
+    }
+
+    @Test
+    public void incrementalAndRebuiltMatchPlainCounting() {
+        Random random = new Random(44);
+        List<Meal> meals = new ArrayList<>();
+        MealAggregates incremental = new MealAggregates();
+        // Two clusters far enough apart that the trees have to grow on both sides
+        for (int i = 0; i < 3000; i++) {
+            int day = (i % 2 == 0 ? 19000 : 20500) + random.nextInt(400) - (i > 1500 ? 900 : 0);
+            Meal meal = meal(NAMES[random.nextInt(NAMES.length)],
+                    Meal.VALID_CATEGORIES[random.nextInt(Meal.VALID_CATEGORIES.length)], date(day));
+            meals.add(meal);
+            incremental.add(meal);
+        }
+        for (int i = 0; i < 500; i++) {
+            Meal removed = meals.remove(random.nextInt(meals.size()));
+            assertTrue(incremental.remove(removed));
+        }
+        List<Meal> withDuplicates = new ArrayList<>(meals);
+        withDuplicates.addAll(meals.subList(0, 100)); // A repeated ID counts once
+        MealAggregates rebuilt = MealAggregates.of(withDuplicates);
+
+        Map<Integer, int[]> byDay = new HashMap<>();
+        for (Meal meal : meals) {
+            int[] counts = byDay.computeIfAbsent(MealAggregates.epochDay(meal.getDate()), day -> new int[4]);
+            counts[Arrays.asList(Meal.VALID_CATEGORIES).indexOf(meal.getCategory())]++;
+        }
+
+        for (MealAggregates aggregates : Arrays.asList(incremental, rebuilt)) {
+            assertEquals(meals.size(), aggregates.size());
+            for (int i = 0; i < 50; i++) {
+                int from = 17900 + random.nextInt(3200);
+                int to = from + random.nextInt(400);
+                int[] expected = new int[4];
+                Set<Integer> loggedDays = new HashSet<>();
+                for (int day = from; day <= to; day++) {
+                    int[] counts = byDay.get(day);
+                    if (counts != null) {
+                        loggedDays.add(day);
+                        for (int c = 0; c < 4; c++) {
+                            expected[c] += counts[c];
+                        }
+                    }
+                }
+                assertArrayEquals(expected, aggregates.categoryCounts(date(from), date(to)));
+                assertEquals(loggedDays.size(), aggregates.loggedDays(date(from), date(to)));
+            }
+
+            int longest = 0;
+            int run = 0;
+            for (int day = 17000; day < 22000; day++) {
+                run = byDay.containsKey(day) ? run + 1 : 0;
+                longest = Math.max(longest, run);
+            }
+            assertEquals(longest, aggregates.longestStreak());
+        }
+        assertArrayEquals(incremental.dailyCounts("2021-01-01", "2026-12-31"),
+                rebuilt.dailyCounts("2021-01-01", "2026-12-31"));
+    }
+}
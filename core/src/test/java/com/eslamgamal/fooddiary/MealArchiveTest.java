@@ -0,0 +1,147 @@
+package com.eslamgamal.fooddiary;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Export and re-import of a diary in both formats. The large history spans several read
+ * blocks, so lines cut at block boundaries and blocks parsed out of order are exercised too.
+ */
+public class MealArchiveTest {
+
+    private static final long TIMESTAMP = 1_709_625_000_000L;
+    private static final String[] NAMES = {"Oats", "Fish, chips", "Mom's pie", "فول مدمس", "Tea (green)"};
+
+    private static List<Meal> history(int size) {
+        List<Meal> meals = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            meals.add(new Meal("meal-" + i, NAMES[i % NAMES.length], Meal.VALID_CATEGORIES[i % 4],
+                    new Date(TIMESTAMP + i * 600_000L), null, TIMESTAMP + i));
+        }
+        return meals;
+    }
+
+    private static byte[] export(List<Meal> meals, MealArchive.Format format) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        assertEquals(meals.size(), MealArchive.export(meals, Channels.newChannel(output), format));
+        return output.toByteArray();
+    }
+
+    private static MealArchive.ImportResult importBytes(byte[] bytes, MealArchive.Format format,
+                                                        List<String> existingIds) throws IOException {
+        return MealArchive.importMeals(Channels.newChannel(new ByteArrayInputStream(bytes)), format, existingIds, 4);
+    }
+
+    private static MealArchive.ImportResult importText(String text, MealArchive.Format format) throws IOException {
+        return importBytes(text.getBytes(StandardCharsets.UTF_8), format, Collections.<String>emptyList());
+    }
+
+    private static void assertSameMeals(List<Meal> expected, List<Meal> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            Meal a = expected.get(i);
+            Meal b = actual.get(i);
+            assertEquals(a.getId(), b.getId());
+            assertEquals(a.getName(), b.getName());
+            assertEquals(a.getCategory(), b.getCategory());
+            assertEquals(a.getDate(), b.getDate());
+            assertEquals(a.getTimestampMillis(), b.getTimestampMillis());
+            assertEquals(a.getUpdatedAt(), b.getUpdatedAt());
+        }
+    }
+
+    @Test
+    public void csvRoundTripsAcrossBlocks() throws IOException {
+        List<Meal> meals = history(50_000);
+        byte[] csv = export(meals, MealArchive.Format.CSV);
+        assertTrue("Only " + csv.length + " bytes", csv.length > 3 * 1024 * 1024);
+
+        MealArchive.ImportResult result = importBytes(csv, MealArchive.Format.CSV, Collections.<String>emptyList());
+
+        assertSameMeals(meals, result.getMeals());
+        assertEquals(0, result.getDuplicates());
+        assertEquals(0, result.getRejected());
+    }
+
+    @Test
+    public void jsonRoundTripsAcrossBlocks() throws IOException {
+        List<Meal> meals = history(30_000);
+        byte[] json = export(meals, MealArchive.Format.JSON);
+        assertTrue("Only " + json.length + " bytes", json.length > 3 * 1024 * 1024);
+
+        MealArchive.ImportResult result = importBytes(json, MealArchive.Format.JSON, Collections.<String>emptyList());
+
+        assertSameMeals(meals, result.getMeals());
+        assertEquals(0, result.getRejected());
+    }
+
+    @Test
+    public void emptyDiaryRoundTrips() throws IOException {
+        for (MealArchive.Format format : MealArchive.Format.values()) {
+            MealArchive.ImportResult result = importBytes(export(Collections.<Meal>emptyList(), format), format,
+                    Collections.<String>emptyList());
+            assertTrue(result.getMeals().isEmpty());
+            assertEquals(0, result.getRejected());
+        }
+    }
+
+    @Test
+    public void knownAndRepeatedIdsAreSkipped() throws IOException {
+        List<Meal> meals = history(10);
+        List<Meal> withRepeat = new ArrayList<>(meals);
+        withRepeat.add(meals.get(5));
+        byte[] csv = export(withRepeat, MealArchive.Format.CSV);
+
+        MealArchive.ImportResult result = importBytes(csv, MealArchive.Format.CSV, Arrays.asList("meal-0", "meal-1"));
+
+        assertSameMeals(meals.subList(2, 10), result.getMeals());
+        assertEquals(3, result.getDuplicates());
+    }
+
+    @Test
+    public void invalidLinesAreCountedNotImported() throws IOException {
+        String csv = "2024-03-05,lunch,Soup,12:30,a,1709638200000,1709638200000\n"
+                + "2024-03-05,lunch,<script>,12:30,b,1709638200000,1709638200000\n" // Name fails the input rules
+                + "March 5,lunch,Soup,12:30,c,1709638200000,1709638200000\n"
+                + "2024-03-05,brunch,Soup,12:30,d,1709638200000,1709638200000\n"
+                + "2024-03-05,lunch,\"Soup,12:30\n"
+                + "2024-03-05,lunch\n";
+
+        MealArchive.ImportResult result = importText(csv, MealArchive.Format.CSV);
+
+        assertEquals(1, result.getMeals().size());
+        assertEquals("a", result.getMeals().get(0).getId());
+        assertEquals(5, result.getRejected());
+    }
+
+    @Test
+    public void handWrittenFilesWithoutHiddenColumns() throws IOException {
+        // No header row, no ID: the ID is derived from the content, as for a legacy sheet row
+        MealArchive.ImportResult csv = importText("2024-03-05,dinner,Pasta,19:15\r\n", MealArchive.Format.CSV);
+        assertEquals(1, csv.getMeals().size());
+        assertEquals(MealCodec.legacyId("2024-03-05", "19:15", "Pasta", "dinner"), csv.getMeals().get(0).getId());
+
+        // Keys in any order, unknown keys ignored, trailing fields missing
+        String json = "[\n"
+                + "{\"name\":\"Pasta\",\"time\":\"19:15\",\"note\":\"x\",\"category\":\"dinner\",\"date\":\"2024-03-05\"},\n"
+                + "{\"date\":\"2024-03-06\",\"category\":\"lunch\",\"name\":\"Say \\\"cheese\\\"\",\"time\":\"12:00\"},\n"
+                + "{\"date\":\"2024-03-06\",\"category\":\"lunch\"}\n"
+                + "]\n";
+        MealArchive.ImportResult parsed = importText(json, MealArchive.Format.JSON);
+        assertEquals(1, parsed.getMeals().size());
+        assertEquals(csv.getMeals().get(0).getId(), parsed.getMeals().get(0).getId());
+        assertEquals(2, parsed.getRejected()); // A quote isn't valid in a name; the last line has no name
+    }
+}
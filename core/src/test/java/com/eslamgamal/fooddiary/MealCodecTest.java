@@ -0,0 +1,132 @@
+package com.eslamgamal.fooddiary;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.*;
+
+/**
+ * Round trips of the pending-queue and spreadsheet row formats, including entries and rows
+ * written before meals carried an ID.
+ */
+public class MealCodecTest {
+
+    private static final long TIMESTAMP = 1_709_625_000_000L;
+    private static final long UPDATED_AT = TIMESTAMP + 60_000;
+
+    private static Meal meal(String name) {
+        return new Meal("meal-1", name, "lunch", new Date(TIMESTAMP), null, UPDATED_AT);
+    }
+
+    private static void assertSameMeal(Meal expected, Meal actual) {
+        assertNotNull(actual);
+        assertEquals(expected.getId(), actual.getId());
+        assertEquals(expected.getName(), actual.getName());
+        assertEquals(expected.getCategory(), actual.getCategory());
+        assertEquals(expected.getDate(), actual.getDate());
+        assertEquals(expected.getTimestampMillis(), actual.getTimestampMillis());
+        assertEquals(expected.getUpdatedAt(), actual.getUpdatedAt());
+    }
+
+    @Test
+    public void pendingEntryRoundTrips() {
+        Meal meal = meal("Chicken soup");
+        assertSameMeal(meal, MealCodec.decodePending(MealCodec.encodePending(meal)));
+    }
+
+    @Test
+    public void separatorAndEscapeInNamesRoundTrip() {
+        for (String name : Arrays.asList("Rice; beans", "100% juice", "a%3Bb", ";%;", "%25")) {
+            Meal meal = meal(name);
+            String encoded = MealCodec.encodePending(meal);
+            assertEquals(7, encoded.split(";", -1).length);
+            assertSameMeal(meal, MealCodec.decodePending(encoded));
+        }
+    }
+
+    @Test
+    public void legacyEntryWithoutIdGetsStableId() {
+        String entry = "Oats;breakfast;2024-03-05;08:30";
+
+        Meal first = MealCodec.decodePending(entry);
+        Meal second = MealCodec.decodePending(entry);
+
+        assertNotNull(first);
+        assertEquals("Oats", first.getName());
+        assertEquals("breakfast", first.getCategory());
+        assertEquals("2024-03-05", first.getDate());
+        assertEquals(MealCodec.legacyId("2024-03-05", "08:30", "Oats", "breakfast"), first.getId());
+        assertEquals(first.getId(), second.getId());
+        assertEquals(MealCodec.parseTimestamp("2024-03-05", "08:30").getTime(), first.getTimestampMillis());
+    }
+
+    @Test
+    public void entryWithoutUpdateTimeKeepsIdAndTimestamp() {
+        Meal meal = MealCodec.decodePending("Tea;snacks;2024-03-05;16:00;meal-9;" + TIMESTAMP);
+        assertNotNull(meal);
+        assertEquals("meal-9", meal.getId());
+        assertEquals(TIMESTAMP, meal.getTimestampMillis());
+    }
+
+    @Test
+    public void malformedEntriesDecodeToNull() {
+        assertNull(MealCodec.decodePending("Oats;breakfast"));
+        assertNull(MealCodec.decodePending("Oats;brunch;2024-03-05;08:30"));
+        assertNull(MealCodec.decodePending(";breakfast;2024-03-05;08:30"));
+        assertNull(MealCodec.decodePending("Oats;breakfast;2024-03-05;08:30;meal-1;soon;later"));
+    }
+
+    @Test
+    public void rowRoundTrips() {
+        Meal meal = meal("Rice; beans");
+        assertSameMeal(meal, MealCodec.decodeRow(MealCodec.encodeRow(meal)));
+    }
+
+    @Test
+    public void legacyRowWithoutHiddenColumns() {
+        List<Object> row = Arrays.<Object>asList("2024-03-05", "dinner", "Pasta", "19:15");
+        Meal meal = MealCodec.decodeRow(row);
+
+        assertNotNull(meal);
+        assertEquals(MealCodec.legacyId("2024-03-05", "19:15", "Pasta", "dinner"), meal.getId());
+        assertEquals(meal.getTimestampMillis(), meal.getUpdatedAt());
+        assertNull(MealCodec.decodeRow(Arrays.<Object>asList("2024-03-05", "dinner", "Pasta")));
+    }
+
+    @Test
+    public void handTypedTimeIsParsedLeniently() {
+        Date strict = MealCodec.parseTimestamp("2024-03-05", "09:05");
+        assertEquals(strict, MealCodec.parseTimestamp("2024-03-05", "9:05"));
+        assertNull(MealCodec.parseTimestamp("yesterday", "noon"));
+    }
+
+    @Test
+    public void parallelDecodeKeepsRowOrder() {
+        List<List<Object>> rows = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            Meal meal = new Meal("meal-" + i, "Meal " + i, "lunch", new Date(TIMESTAMP + i * 60_000L), null, UPDATED_AT);
+            rows.add(i % 1000 == 0 ? Collections.<Object>singletonList("broken") : MealCodec.encodeRow(meal));
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            Meal[] meals = MealCodec.decodeRows(rows, pool);
+            assertEquals(rows.size(), meals.length);
+            for (int i = 0; i < meals.length; i++) {
+                if (i % 1000 == 0) {
+                    assertNull(meals[i]);
+                } else {
+                    assertEquals("meal-" + i, meals[i].getId());
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
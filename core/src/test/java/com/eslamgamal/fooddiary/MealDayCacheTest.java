@@ -0,0 +1,196 @@
+package com.eslamgamal.fooddiary;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Generation checks against fetches racing local changes, and the memory and disk levels
+ * of {@link MealDayCache}.
+ */
+public class MealDayCacheTest {
+
+    private static final String DATE = "2024-03-05";
+    private static final long TIMESTAMP = 1_709_625_000_000L;
+
+    private File directory;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("day-cache").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    private static List<Meal> day(String date, String... names) {
+        List<Meal> meals = new ArrayList<>();
+        for (int i = 0; i < names.length; i++) {
+            meals.add(new Meal(date + "-" + i, names[i], "lunch", new Date(TIMESTAMP), date, TIMESTAMP));
+        }
+        return meals;
+    }
+
+    @Test
+    public void fetchStartedBeforeAnInvalidationIsDropped() {
+        MealDayCache cache = new MealDayCache(directory, 1 << 20, 1 << 20);
+        long generation = cache.getGeneration();
+
+        // The user edits a meal of some day while the fetch is in flight
+        cache.invalidate("2024-03-01");
+
+        assertFalse(cache.put(DATE, day(DATE, "Soup"), generation));
+        assertNull(cache.get(DATE));
+        assertTrue(cache.put(DATE, day(DATE, "Soup"), cache.getGeneration()));
+        assertEquals(1, cache.get(DATE).size());
+    }
+
+    @Test
+    public void racingFetchesNeverCacheAnInvalidatedDay() throws Exception {
+        MealDayCache cache = new MealDayCache(directory, 1 << 20, 0);
+        AtomicInteger version = new AtomicInteger();
+        AtomicBoolean running = new AtomicBoolean(true);
+        CountDownLatch start = new CountDownLatch(1);
+
+        List<Thread> fetchers = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            Thread fetcher = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                while (running.get()) {
+                    // Read the generation, then the sheet
+                    long generation = cache.getGeneration();
+                    List<Meal> fetched = day(DATE, "v" + version.get());
+                    cache.put(DATE, fetched, generation);
+                }
+            });
+            fetcher.start();
+            fetchers.add(fetcher);
+        }
+
+        start.countDown();
+        for (int i = 0; i < 20_000; i++) {
+            // A local edit: the sheet changes first, then the cached day is dropped
+            version.incrementAndGet();
+            cache.invalidate(DATE);
+        }
+        running.set(false);
+        for (Thread fetcher : fetchers) {
+            fetcher.join();
+        }
+
+        List<Meal> cached = cache.get(DATE);
+        if (cached != null) {
+            assertEquals("v" + version.get(), cached.get(0).getName());
+        }
+    }
+
+    @Test
+    public void invalidDatesAreNotCached() {
+        MealDayCache cache = new MealDayCache(directory, 1 << 20, 1 << 20);
+        assertFalse(cache.put("../../etc", day(DATE, "Soup"), cache.getGeneration()));
+        assertEquals(0, cache.getDiskDays());
+    }
+
+    @Test
+    public void emptyDayIsAHit() {
+        MealDayCache cache = new MealDayCache(directory, 1 << 20, 1 << 20);
+        assertTrue(cache.put(DATE, Collections.<Meal>emptyList(), cache.getGeneration()));
+
+        assertEquals(Collections.<Meal>emptyList(), cache.get(DATE));
+        assertEquals(1, cache.getMemoryHits());
+        assertNull(cache.get("2024-03-06"));
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    public void memoryKeepsTheMostRecentlyUsedDays() {
+        MealDayCache cache = new MealDayCache(directory, 1600, 0); // Room for three of these days
+        for (int d = 1; d <= 5; d++) {
+            String date = "2024-03-0" + d;
+            cache.put(date, day(date, "Soup", "Rice"), cache.getGeneration());
+            cache.get("2024-03-01"); // Keep the first day in use
+        }
+
+        assertTrue(cache.getMemoryBytes() <= 1600);
+        assertEquals(3, cache.getMemoryDays());
+        assertTrue(cache.getMemoryEvictions() > 0);
+        assertNotNull(cache.get("2024-03-01"));
+        assertNotNull(cache.get("2024-03-05"));
+        assertNull(cache.get("2024-03-02"));
+    }
+
+    @Test
+    public void daysSurviveARestartOnDisk() {
+        MealDayCache cache = new MealDayCache(directory, 1 << 20, 1 << 20);
+        cache.put(DATE, day(DATE, "Rice; beans", "Soup"), cache.getGeneration());
+
+        MealDayCache restarted = new MealDayCache(directory, 1 << 20, 1 << 20);
+        List<Meal> meals = restarted.get(DATE);
+
+        assertNotNull(meals);
+        assertEquals("Rice; beans", meals.get(0).getName());
+        assertEquals(2, meals.size());
+        assertEquals(1, restarted.getDiskHits());
+        assertEquals(1, restarted.getMemoryDays()); // Promoted into memory
+    }
+
+    @Test
+    public void corruptFileIsAMissAndRemoved() throws IOException {
+        try (FileOutputStream output = new FileOutputStream(new File(directory, DATE + ".day"))) {
+            output.write("food-diary-day 1\nnot a meal\n".getBytes(StandardCharsets.UTF_8));
+        }
+        MealDayCache cache = new MealDayCache(directory, 1 << 20, 1 << 20);
+
+        assertNull(cache.get(DATE));
+        assertEquals(0, cache.getDiskDays());
+        assertFalse(new File(directory, DATE + ".day").exists());
+    }
+
+    @Test
+    public void diskIsTrimmedToBudgetAndCleared() {
+        MealDayCache cache = new MealDayCache(directory, 1 << 20, 600);
+        for (int d = 1; d <= 9; d++) {
+            String date = "2024-03-0" + d;
+            cache.put(date, day(date, "Soup", "Rice"), cache.getGeneration());
+        }
+
+        assertTrue(cache.getDiskBytes() <= 600);
+        assertTrue(cache.getDiskEvictions() > 0);
+        assertTrue(new File(directory, "2024-03-09.day").exists());
+        assertFalse(new File(directory, "2024-03-01.day").exists());
+
+        long generation = cache.getGeneration();
+        cache.clear();
+        assertTrue(cache.getGeneration() > generation);
+        assertEquals(0, cache.getDiskDays());
+        assertEquals(0, cache.getMemoryDays());
+        assertNull(cache.get("2024-03-09"));
+    }
+}
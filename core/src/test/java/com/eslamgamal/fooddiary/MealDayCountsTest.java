@@ -0,0 +1,141 @@
+package com.eslamgamal.fooddiary;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.Date;
+
+import static org.junit.Assert.*;
+
+/**
+ * Packed per-day counts: growth of the day range, saturation, and the saved file mapped
+ * back read-only and copied on the first change.
+ */
+public class MealDayCountsTest {
+
+    private static final int DAY = 19787; // 2024-03-05
+
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        file = Files.createTempFile("calendar_counts", ".bin").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+        new File(file.getPath() + ".tmp").delete();
+    }
+
+    @Test
+    public void countsArePackedPerCategoryAndSaturate() {
+        MealDayCounts counts = new MealDayCounts();
+        counts.set(DAY, 0, 2);
+        counts.set(DAY, 3, 40);
+        counts.set(DAY, 1, -1);
+
+        int packed = counts.get(DAY);
+        assertEquals(2, MealDayCounts.count(packed, 0));
+        assertEquals(0, MealDayCounts.count(packed, 1));
+        assertEquals(MealDayCounts.MAX_COUNT, MealDayCounts.count(packed, 3));
+        assertEquals(2 + MealDayCounts.MAX_COUNT, MealDayCounts.total(packed));
+        assertEquals(0, counts.get(DAY + 1));
+        assertEquals(0, counts.get(Integer.MIN_VALUE));
+    }
+
+    @Test
+    public void rangeGrowsOnBothSidesKeepingCounts() {
+        MealDayCounts counts = new MealDayCounts();
+        counts.set(DAY, 2, 3);
+        counts.set(DAY - 5000, 0, 1);
+        counts.set(DAY + 5000, 1, 4);
+
+        assertEquals(3, MealDayCounts.count(counts.get(DAY), 2));
+        assertEquals(1, MealDayCounts.count(counts.get(DAY - 5000), 0));
+        assertEquals(4, MealDayCounts.count(counts.get(DAY + 5000), 1));
+
+        counts.clear();
+        assertEquals(0, counts.get(DAY));
+    }
+
+    @Test
+    public void copyIsIndependent() {
+        MealDayCounts counts = new MealDayCounts();
+        counts.set(DAY, 0, 1);
+        MealDayCounts copy = counts.copy();
+
+        counts.set(DAY, 0, 5);
+        copy.set(DAY + 1000, 1, 2);
+
+        assertEquals(1, MealDayCounts.count(copy.get(DAY), 0));
+        assertEquals(5, MealDayCounts.count(counts.get(DAY), 0));
+        assertEquals(0, counts.get(DAY + 1000));
+    }
+
+    @Test
+    public void mappedCountsMatchAndCopyOnWrite() throws IOException {
+        MealDayCounts counts = new MealDayCounts();
+        for (int d = 0; d < 3650; d += 3) {
+            counts.set(DAY - d, d % 4, d % 16);
+        }
+        counts.writeTo(file);
+
+        MealDayCounts mapped = MealDayCounts.map(file);
+        for (int d = -400; d < 4100; d++) {
+            assertEquals(counts.get(DAY - d), mapped.get(DAY - d));
+        }
+
+        // A change leaves the mapping for a heap copy; the file keeps the saved counts
+        mapped.set(DAY, 0, 9);
+        mapped.set(DAY + 2000, 1, 1);
+        assertEquals(9, MealDayCounts.count(mapped.get(DAY), 0));
+        assertEquals(counts.get(DAY - 3), mapped.get(DAY - 3));
+        MealDayCounts remapped = MealDayCounts.map(file);
+        assertEquals(counts.get(DAY), remapped.get(DAY));
+        assertEquals(0, remapped.get(DAY + 2000));
+
+        // Saving over a mapped file replaces it without touching the mapping
+        mapped.writeTo(file);
+        assertEquals(counts.get(DAY), remapped.get(DAY));
+        assertEquals(9, MealDayCounts.count(MealDayCounts.map(file).get(DAY), 0));
+    }
+
+    @Test
+    public void aggregatesCountsRoundTripThroughAFile() throws IOException {
+        MealAggregates aggregates = new MealAggregates();
+        aggregates.add(new Meal("a", "Oats", "breakfast", new Date(0), "2024-03-05", 1));
+        aggregates.add(new Meal("b", "Tea", "snacks", new Date(0), "2024-03-05", 1));
+        aggregates.add(new Meal("c", "Soup", "lunch", new Date(0), "2023-12-31", 1));
+        aggregates.copyDayCounts().writeTo(file);
+
+        MealDayCounts mapped = MealDayCounts.map(file);
+        assertEquals(2, MealDayCounts.total(mapped.get(MealAggregates.epochDay("2024-03-05"))));
+        assertEquals(1, MealDayCounts.count(mapped.get(MealAggregates.epochDay("2023-12-31")), 1));
+    }
+
+    @Test(expected = IOException.class)
+    public void otherFilesAreRejected() throws IOException {
+        try (FileOutputStream output = new FileOutputStream(file)) {
+            output.write(new byte[] {1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12});
+        }
+        MealDayCounts.map(file);
+    }
+
+    @Test(expected = IOException.class)
+    public void truncatedFilesAreRejected() throws IOException {
+        MealDayCounts counts = new MealDayCounts();
+        counts.set(DAY, 0, 1);
+        counts.writeTo(file);
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(raf.length() - 1);
+        }
+        MealDayCounts.map(file);
+    }
+}
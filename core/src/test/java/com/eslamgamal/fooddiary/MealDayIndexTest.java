@@ -0,0 +1,200 @@
+package com.eslamgamal.fooddiary;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Day grouping of {@link MealDayIndex} and the version that tells a day snapshot built
+ * earlier (e.g. a prefetched neighbour day) whether it is still current.
+ */
+public class MealDayIndexTest {
+
+    private static final long TIMESTAMP = 1_709_625_000_000L;
+
+    private static Meal meal(String id, String name, String date) {
+        return new Meal(id, name, "lunch", new Date(TIMESTAMP), date, TIMESTAMP);
+    }
+
+    private static List<String> ids(List<Meal> meals) {
+        List<String> ids = new ArrayList<>();
+        for (Meal meal : meals) {
+            ids.add(meal.getId());
+        }
+        return ids;
+    }
+
+    /** What a prefetched snapshot keeps: the day's meals and the version they were read at. */
+    private static final class Snapshot {
+        final List<Meal> meals;
+        final long version;
+
+        Snapshot(MealDayIndex index, String date) {
+            synchronized (index) {
+                meals = index.mealsOn(date);
+                version = index.getVersion();
+            }
+        }
+
+        boolean isCurrent(MealDayIndex index) {
+            return version == index.getVersion();
+        }
+    }
+
+    @Test
+    public void mealsAreGroupedByDayInInsertionOrder() {
+        MealDayIndex index = new MealDayIndex();
+        index.addAll(Arrays.asList(
+                meal("a", "Oats", "2024-03-05"),
+                meal("b", "Soup", "2024-03-06"),
+                meal("c", "Rice", "2024-03-05")));
+
+        assertEquals(Arrays.asList("a", "c"), ids(index.mealsOn("2024-03-05")));
+        assertEquals(Arrays.asList("b"), ids(index.mealsOn("2024-03-06")));
+        assertTrue(index.mealsOn("2024-03-07").isEmpty());
+        assertEquals(3, index.size());
+
+        // Callers get a copy
+        index.mealsOn("2024-03-05").clear();
+        assertEquals(2, index.mealsOn("2024-03-05").size());
+    }
+
+    @Test
+    public void editOnTheSameDayReplacesInPlace() {
+        MealDayIndex index = new MealDayIndex();
+        index.add(meal("a", "Oats", "2024-03-05"));
+        index.add(meal("b", "Soup", "2024-03-05"));
+
+        index.add(meal("a", "Porridge", "2024-03-05"));
+
+        List<Meal> day = index.mealsOn("2024-03-05");
+        assertEquals(Arrays.asList("a", "b"), ids(day));
+        assertEquals("Porridge", day.get(0).getName());
+        assertEquals(2, index.size());
+    }
+
+    @Test
+    public void editThatChangesTheDateMovesTheMeal() {
+        MealDayIndex index = new MealDayIndex();
+        index.add(meal("a", "Oats", "2024-03-05"));
+        index.add(meal("b", "Soup", "2024-03-05"));
+        index.add(meal("c", "Rice", "2024-03-06"));
+
+        index.add(meal("a", "Oats", "2024-03-06"));
+
+        assertEquals(Arrays.asList("b"), ids(index.mealsOn("2024-03-05")));
+        assertEquals(Arrays.asList("c", "a"), ids(index.mealsOn("2024-03-06")));
+        assertEquals(3, index.size());
+
+        // Moving the last meal off a day leaves the day empty
+        index.add(meal("b", "Soup", "2024-03-07"));
+        assertTrue(index.mealsOn("2024-03-05").isEmpty());
+        assertEquals(Arrays.asList("b"), ids(index.mealsOn("2024-03-07")));
+    }
+
+    @Test
+    public void removeDropsTheMealByIdOnly() {
+        MealDayIndex index = new MealDayIndex();
+        index.add(meal("a", "Oats", "2024-03-05"));
+        index.add(meal("b", "Soup", "2024-03-05"));
+
+        // The caller may hold an older copy of the meal, e.g. from before an edit
+        assertTrue(index.remove(meal("a", "Old name", "2024-03-01")));
+        assertFalse(index.remove(meal("a", "Oats", "2024-03-05")));
+
+        assertEquals(Arrays.asList("b"), ids(index.mealsOn("2024-03-05")));
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    public void versionAdvancesOnAddRemoveAndMove() {
+        MealDayIndex index = new MealDayIndex();
+        long version = index.getVersion();
+
+        index.add(meal("a", "Oats", "2024-03-05"));
+        assertTrue(index.getVersion() > version);
+        version = index.getVersion();
+
+        index.add(meal("a", "Porridge", "2024-03-05"));
+        assertTrue("Edit in place", index.getVersion() > version);
+        version = index.getVersion();
+
+        index.add(meal("a", "Porridge", "2024-03-06"));
+        assertTrue("Move", index.getVersion() > version);
+        version = index.getVersion();
+
+        assertTrue(index.remove(meal("a", "Porridge", "2024-03-06")));
+        assertTrue("Remove", index.getVersion() > version);
+        version = index.getVersion();
+
+        // Nothing changed, so snapshots stay current
+        assertFalse(index.remove(meal("a", "Porridge", "2024-03-06")));
+        assertEquals(version, index.getVersion());
+        index.mealsOn("2024-03-06");
+        assertEquals(version, index.getVersion());
+    }
+
+    @Test
+    public void snapshotsOfEveryAffectedDayGoStale() {
+        MealDayIndex index = new MealDayIndex();
+        index.add(meal("a", "Oats", "2024-03-05"));
+        index.add(meal("b", "Soup", "2024-03-06"));
+
+        // Prefetched neighbour days
+        Snapshot from = new Snapshot(index, "2024-03-05");
+        Snapshot to = new Snapshot(index, "2024-03-06");
+        assertTrue(from.isCurrent(index));
+        assertTrue(to.isCurrent(index));
+
+        // Moving a meal changes both days; neither snapshot may be reused
+        index.add(meal("a", "Oats", "2024-03-06"));
+        assertFalse(from.isCurrent(index));
+        assertFalse(to.isCurrent(index));
+        assertEquals(Arrays.asList("a"), ids(from.meals));
+
+        // Rebuilt snapshots reflect the move
+        Snapshot rebuiltFrom = new Snapshot(index, "2024-03-05");
+        Snapshot rebuiltTo = new Snapshot(index, "2024-03-06");
+        assertTrue(rebuiltFrom.meals.isEmpty());
+        assertEquals(Arrays.asList("b", "a"), ids(rebuiltTo.meals));
+        assertTrue(rebuiltTo.isCurrent(index));
+    }
+
+    @Test
+    public void currentSnapshotsBuiltDuringChangesMatchTheIndex() throws InterruptedException {
+        MealDayIndex index = new MealDayIndex();
+        String[] dates = {"2024-03-05", "2024-03-06", "2024-03-07"};
+        Thread writer = new Thread(() -> {
+            for (int i = 0; i < 20000; i++) {
+                Meal meal = meal("m" + (i % 50), "Meal " + i, dates[i % dates.length]);
+                if (i % 7 == 0) {
+                    index.remove(meal);
+                } else {
+                    index.add(meal);
+                }
+            }
+        });
+        writer.start();
+
+        // Whenever a snapshot still claims to be current, its meals are the day's meals
+        int checked = 0;
+        while (writer.isAlive() || checked == 0) {
+            for (String date : dates) {
+                Snapshot snapshot = new Snapshot(index, date);
+                synchronized (index) {
+                    if (snapshot.isCurrent(index)) {
+                        assertEquals(ids(index.mealsOn(date)), ids(snapshot.meals));
+                        checked++;
+                    }
+                }
+            }
+        }
+        writer.join();
+        assertTrue(checked > 0);
+    }
+}
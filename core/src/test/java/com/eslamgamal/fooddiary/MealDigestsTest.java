@@ -0,0 +1,114 @@
+package com.eslamgamal.fooddiary;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * Order-independent digests of a history: equal histories give equal totals whatever the
+ * row order, and a changed meal shows up only in its own day and month.
+ */
+public class MealDigestsTest {
+
+    private static final long DAY = 24 * 60 * 60 * 1000L;
+    private static final long TIMESTAMP = 1_709_625_000_000L;
+
+    private static Meal meal(String id, String name, long timestamp) {
+        return new Meal(id, name, "lunch", new Date(timestamp), null, timestamp);
+    }
+
+    @Test
+    public void digestIgnoresOrderAndDuplicateRows() {
+        Meal a = meal("a", "Soup", TIMESTAMP);
+        Meal b = meal("b", "Rice", TIMESTAMP + DAY);
+        Meal c = meal("c", "Salad", TIMESTAMP + 40 * DAY);
+
+        MealDigests forward = MealDigests.of(Arrays.asList(a, b, c));
+        MealDigests reversed = MealDigests.of(Arrays.asList(c, b, a, b)); // b appended twice
+
+        assertEquals(forward.getTotal(), reversed.getTotal());
+        assertEquals(forward.getDays(), reversed.getDays());
+        assertEquals(forward.getMonths(), reversed.getMonths());
+    }
+
+    @Test
+    public void editShowsUpInItsDayAndMonthOnly() {
+        Meal a = meal("a", "Soup", TIMESTAMP);
+        Meal b = meal("b", "Rice", TIMESTAMP + 40 * DAY);
+        MealDigests sheet = MealDigests.of(Arrays.asList(a, b));
+
+        Meal edited = a.copy();
+        edited.setName("Stew");
+        MealDigests local = MealDigests.of(Arrays.asList(edited, b));
+
+        assertNotEquals(sheet.getTotal(), local.getTotal());
+        assertEquals(Collections.singleton(MealDigests.monthOf(a.getDate())),
+                MealDigests.differingKeys(sheet.getMonths(), local.getMonths()));
+        assertEquals(Collections.singleton(a.getDate()), MealDigests.differingKeys(sheet.getDays(), local.getDays()));
+    }
+
+    @Test
+    public void incrementalChangesMatchARebuild() {
+        Meal a = meal("a", "Soup", TIMESTAMP);
+        Meal b = meal("b", "Rice", TIMESTAMP);
+        MealDigests digests = MealDigests.of(Collections.singletonList(a));
+
+        digests.add(b);
+        Meal edited = a.copy();
+        edited.setName("Stew");
+        digests.remove(a);
+        digests.add(edited);
+        assertEquals(MealDigests.of(Arrays.asList(edited, b)).getDays(), digests.getDays());
+
+        digests.remove(edited);
+        digests.remove(b);
+        assertTrue(digests.isEmpty()); // Days summing to zero are dropped
+        assertEquals(0L, digests.getTotal());
+    }
+
+    @Test
+    public void subtractingWrittenDeltasLeavesTheRest() {
+        Meal a = meal("a", "Soup", TIMESTAMP);
+        Meal b = meal("b", "Rice", TIMESTAMP + DAY);
+        MealDigests pending = MealDigests.of(Arrays.asList(a, b));
+
+        MealDigests written = pending.copy();
+        pending.add(meal("c", "Salad", TIMESTAMP + 2 * DAY));
+        pending.subtract(written);
+
+        assertEquals(MealDigests.of(Collections.singletonList(meal("c", "Salad", TIMESTAMP + 2 * DAY))).getDays(),
+                pending.getDays());
+    }
+
+    @Test
+    public void differingKeysTreatsMissingAsZero() {
+        Map<String, Long> a = new HashMap<>();
+        a.put("2024-03", 5L);
+        a.put("2024-04", 0L);
+        Map<String, Long> b = new HashMap<>();
+        b.put("2024-03", 5L);
+        b.put("2024-05", 7L);
+
+        Set<String> differing = MealDigests.differingKeys(a, b);
+        assertEquals(Collections.singleton("2024-05"), differing);
+    }
+
+    @Test
+    public void storedDigestsRoundTrip() {
+        for (long digest : new long[] {0L, 1L, -1L, Long.MIN_VALUE, 0x0123456789abcdefL}) {
+            String stored = MealDigests.format(digest);
+            assertEquals(16, stored.length());
+            assertEquals(digest, MealDigests.parse(stored));
+        }
+        assertEquals(0L, MealDigests.parse("  "));
+        assertEquals(0L, MealDigests.parse("not hex"));
+        assertEquals(0L, MealDigests.parse("00000000000000000"));
+    }
+}
@@ -0,0 +1,52 @@
+package com.eslamgamal.fooddiary;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * The meal name and category rules shared by the app's input validation and JVM-side tools.
+ */
+public class MealInputRulesTest {
+
+    @Test
+    public void acceptsLatinArabicAndCommonPunctuation() {
+        assertTrue(MealInputRules.validateMealName("Fish & chips (large)").isValid());
+        assertTrue(MealInputRules.validateMealName("فول مدمس").isValid());
+        assertTrue(MealInputRules.validateMealName("  Mom's pie, 2 slices!  ").isValid());
+    }
+
+    @Test
+    public void rejectsBlankTooLongAndInvalidNames() {
+        assertFalse(MealInputRules.validateMealName(null).isValid());
+        assertFalse(MealInputRules.validateMealName("   ").isValid());
+        assertEquals("Please enter a meal name", MealInputRules.validateMealName("").getErrorMessage());
+
+        StringBuilder name = new StringBuilder();
+        for (int i = 0; i < MealInputRules.MAX_MEAL_NAME_LENGTH; i++) {
+            name.append('a');
+        }
+        assertTrue(MealInputRules.validateMealName(name.toString()).isValid());
+        assertFalse(MealInputRules.validateMealName(name.append('a').toString()).isValid());
+
+        assertFalse(MealInputRules.validateMealName("Rice; beans").isValid());
+        assertFalse(MealInputRules.validateMealName("<script>").isValid());
+    }
+
+    @Test
+    public void validatesCategories() {
+        for (String category : Meal.VALID_CATEGORIES) {
+            assertTrue(MealInputRules.validateMealCategory(category).isValid());
+        }
+        assertFalse(MealInputRules.validateMealCategory("brunch").isValid());
+        assertFalse(MealInputRules.validateMealCategory(null).isValid());
+    }
+
+    @Test
+    public void cleansAndSanitizes() {
+        assertEquals("Oats", MealInputRules.cleanMealName("  Oats "));
+        assertNull(MealInputRules.cleanMealName("Oats;"));
+        assertEquals("Green tea", MealInputRules.sanitizeInput("  Green \t  tea\u0007 "));
+        assertEquals("", MealInputRules.sanitizeInput(null));
+    }
+}
@@ -0,0 +1,77 @@
+package com.eslamgamal.fooddiary;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Matching local and cloud histories by meal ID: the more recently changed copy of a meal
+ * wins, and a meal is uploaded only if the cloud doesn't hold it at all.
+ */
+public class MealReconcilerTest {
+
+    private static final long TIMESTAMP = 1_709_625_000_000L;
+
+    private static Meal meal(String id, String name, long updatedAt) {
+        return new Meal(id, name, "dinner", new Date(TIMESTAMP), null, updatedAt);
+    }
+
+    @Test
+    public void mergeAddsUnknownAndReplacesOlderLocalCopies() {
+        Meal localOnly = meal("a", "Soup", 100);
+        Meal staleLocal = meal("b", "Pasta", 100);
+        Meal newerLocal = meal("c", "Rice", 300);
+        List<Meal> local = new ArrayList<>(Arrays.asList(localOnly, staleLocal, newerLocal));
+
+        Meal editedInCloud = meal("b", "Penne", 200);
+        Meal olderInCloud = meal("c", "Rice and beans", 200);
+        Meal cloudOnly = meal("d", "Salad", 100);
+        List<Meal> merged = MealReconciler.mergeCloudMeals(local,
+                Arrays.asList(editedInCloud, olderInCloud, cloudOnly));
+
+        assertEquals(Arrays.asList(editedInCloud, cloudOnly), merged);
+        assertEquals(4, local.size());
+        assertSame(localOnly, local.get(0));
+        assertSame(editedInCloud, local.get(1)); // Replaced in place
+        assertSame(newerLocal, local.get(2));
+        assertSame(cloudOnly, local.get(3));
+    }
+
+    @Test
+    public void mergeKeepsLocalCopyOnEqualUpdateTime() {
+        Meal local = meal("a", "Soup", 100);
+        List<Meal> history = new ArrayList<>(Collections.singletonList(local));
+
+        assertTrue(MealReconciler.mergeCloudMeals(history, Collections.singletonList(meal("a", "Stew", 100))).isEmpty());
+        assertSame(local, history.get(0));
+    }
+
+    @Test
+    public void cloudIdAppearingTwiceIsAddedOnce() {
+        List<Meal> history = new ArrayList<>();
+        Meal first = meal("a", "Soup", 100);
+
+        List<Meal> merged = MealReconciler.mergeCloudMeals(history, Arrays.asList(first, meal("a", "Soup", 100)));
+
+        assertEquals(Collections.singletonList(first), merged);
+        assertEquals(1, history.size());
+    }
+
+    @Test
+    public void uploadsOnlyMealsMissingFromCloud() {
+        Meal synced = meal("a", "Soup", 100);
+        Meal editedLocally = meal("b", "Pasta", 300);
+        Meal unsynced = meal("c", "Rice", 100);
+
+        List<Meal> toUpload = MealReconciler.findMealsToUpload(Arrays.asList(synced, editedLocally, unsynced),
+                Arrays.asList(meal("a", "Soup", 100), meal("b", "Pasta", 100)));
+
+        assertEquals(Collections.singletonList(unsynced), toUpload);
+    }
+}
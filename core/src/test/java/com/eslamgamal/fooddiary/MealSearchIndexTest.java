@@ -0,0 +1,248 @@
+package com.eslamgamal.fooddiary;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tokenizing and folding of meal names, prefix and multi-token queries, edits and removals
+ * that reuse slots, and hits grouped by day and category, newest first.
+ */
+public class MealSearchIndexTest {
+
+    private static final long TIMESTAMP = 1_709_625_000_000L;
+    private static final long MINUTE = 60_000L;
+
+    private static Meal meal(String id, String name, String category, String date, long minutes) {
+        return new Meal(id, name, category, new Date(TIMESTAMP + minutes * MINUTE), date, TIMESTAMP);
+    }
+
+    private static Meal meal(String id, String name) {
+        return meal(id, name, "lunch", "2024-03-05", 0);
+    }
+
+    // IDs of every hit, in result order
+    private static List<String> ids(MealSearchIndex.SearchResult result) {
+        List<String> ids = new ArrayList<>();
+        for (MealSearchIndex.DayHits day : result.getDays()) {
+            for (List<Meal> meals : day.getCategories().values()) {
+                for (Meal meal : meals) {
+                    ids.add(meal.getId());
+                }
+            }
+        }
+        return ids;
+    }
+
+    private static Set<String> found(MealSearchIndex index, String query) {
+        return new HashSet<>(ids(index.search(query, Integer.MAX_VALUE)));
+    }
+
+    private static Set<String> set(String... ids) {
+        return new HashSet<>(Arrays.asList(ids));
+    }
+
+    @Test
+    public void latinNamesAreLowercasedAndSplitOnPunctuation() {
+        assertArrayEquals(new String[] {"chicken", "rice", "2"}, MealSearchIndex.tokenize("Chicken-Rice (2)", true));
+        assertArrayEquals(new String[] {"moms", "soup"}, MealSearchIndex.tokenize("Mom's soup, soup", true));
+        assertEquals(0, MealSearchIndex.tokenize(" - ", true).length);
+        assertEquals(0, MealSearchIndex.tokenize(null, true).length);
+    }
+
+    @Test
+    public void arabicLetterVariantsFoldTogether() {
+        // Alef with hamza above/below, madda and wasla type as plain alef
+        assertArrayEquals(MealSearchIndex.tokenize("ارز", false), MealSearchIndex.tokenize("أرز", false));
+        assertArrayEquals(MealSearchIndex.tokenize("افطار", false), MealSearchIndex.tokenize("إفطار", false));
+        assertArrayEquals(MealSearchIndex.tokenize("اخر", false), MealSearchIndex.tokenize("آخر", false));
+        // Ta marbuta as ha, alef maksura and Farsi ya as ya
+        assertArrayEquals(MealSearchIndex.tokenize("شوربه", false), MealSearchIndex.tokenize("شوربة", false));
+        assertArrayEquals(MealSearchIndex.tokenize("حلوي", false), MealSearchIndex.tokenize("حلوى", false));
+        assertArrayEquals(MealSearchIndex.tokenize("شاي", false), MealSearchIndex.tokenize("شای", false));
+        // Arabic-Indic digits as ASCII
+        assertArrayEquals(new String[] {"2"}, MealSearchIndex.tokenize("٢", false));
+    }
+
+    @Test
+    public void diacriticsTatweelAndPresentationFormsAreIgnored() {
+        String[] plain = MealSearchIndex.tokenize("فول", false);
+        assertArrayEquals(plain, MealSearchIndex.tokenize("فُولٌ", false));
+        assertArrayEquals(plain, MealSearchIndex.tokenize("فـــول", false));
+        // Isolated/final presentation forms of the same letters, as some keyboards produce
+        assertArrayEquals(plain, MealSearchIndex.tokenize("ﻓﻮﻝ", false));
+    }
+
+    @Test
+    public void definiteArticleIsIndexedWithAndWithout() {
+        assertArrayEquals(new String[] {"الفول", "فول"}, MealSearchIndex.tokenize("الفول", true));
+        assertArrayEquals(new String[] {"فول"}, MealSearchIndex.tokenize("الفول", false));
+        // With a joined preposition or conjunction, and "لل"
+        assertArrayEquals(new String[] {"فراخ"}, MealSearchIndex.tokenize("بالفراخ", false));
+        assertArrayEquals(new String[] {"جبنه"}, MealSearchIndex.tokenize("والجبنة", false));
+        assertArrayEquals(new String[] {"غداء"}, MealSearchIndex.tokenize("للغداء", false));
+        // Too short to be an article plus a word
+        assertArrayEquals(new String[] {"الو"}, MealSearchIndex.tokenize("الو", false));
+    }
+
+    @Test
+    public void arabicQueriesMatchHoweverTheNameWasTyped() {
+        MealSearchIndex index = MealSearchIndex.of(Arrays.asList(
+                meal("a", "الفول المدمس"),
+                meal("b", "فول بالطحينة"),
+                meal("c", "شوربة عدس"),
+                meal("d", "أرز بالخلطة")));
+
+        assertEquals(set("a", "b"), found(index, "فول"));
+        assertEquals(set("a", "b"), found(index, "الفول"));
+        assertEquals(set("b"), found(index, "طحينه"));
+        assertEquals(set("c"), found(index, "شوربه"));
+        assertEquals(set("d"), found(index, "ارز"));
+        assertEquals(set("d"), found(index, "خلطة"));
+    }
+
+    @Test
+    public void queryTokensArePrefixesAndAllMustMatch() {
+        MealSearchIndex index = MealSearchIndex.of(Arrays.asList(
+                meal("a", "Chicken rice"),
+                meal("b", "Chicken soup"),
+                meal("c", "Rice pudding"),
+                meal("d", "Chickpea salad")));
+
+        assertEquals(set("a", "b", "d"), found(index, "chick"));
+        assertEquals(set("a", "b"), found(index, "chicken"));
+        assertEquals(set("a"), found(index, "chi ri"));
+        assertEquals(set("a", "c"), found(index, "RICE"));
+        assertEquals(set("c"), found(index, "rice pud"));
+        assertTrue(found(index, "chicken pudding").isEmpty());
+        assertTrue(found(index, "fish").isEmpty());
+        assertEquals(0, index.search("  ", 10).getTotalHits());
+    }
+
+    @Test
+    public void multiTokenQueriesMatchAScan() {
+        String[] words = {"rice", "soup", "salad", "chicken", "beans", "oats", "tea", "lentil"};
+        Random random = new Random(42);
+        List<Meal> meals = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            String name = words[random.nextInt(words.length)] + " " + words[random.nextInt(words.length)]
+                    + " " + words[random.nextInt(words.length)];
+            meals.add(meal("m" + i, name, "dinner", "2024-03-" + (10 + i % 20), i % 1440));
+        }
+        MealSearchIndex index = MealSearchIndex.of(meals);
+
+        String[][] queries = {{"ri", "so"}, {"chicken", "be"}, {"t", "l", "o"}, {"salad"}};
+        for (String[] query : queries) {
+            Set<String> expected = new HashSet<>();
+            for (Meal meal : meals) {
+                List<String> tokens = Arrays.asList(MealSearchIndex.tokenize(meal.getName(), true));
+                boolean all = true;
+                for (String prefix : query) {
+                    boolean any = false;
+                    for (String token : tokens) {
+                        any |= token.startsWith(prefix);
+                    }
+                    all &= any;
+                }
+                if (all) {
+                    expected.add(meal.getId());
+                }
+            }
+            String text = String.join(" ", query);
+            assertEquals(text, expected, found(index, text));
+            assertEquals(text, expected.size(), index.search(text, 5).getTotalHits());
+        }
+    }
+
+    @Test
+    public void addingAnExistingIdReplacesTheMeal() {
+        MealSearchIndex index = new MealSearchIndex();
+        index.add(meal("a", "Oats", "breakfast", "2024-03-05", 0));
+        index.add(meal("b", "Oat cookies", "snacks", "2024-03-05", 600));
+
+        // Renamed and moved to another day
+        index.add(meal("a", "Porridge", "breakfast", "2024-03-07", 0));
+
+        assertEquals(2, index.size());
+        assertEquals(set("b"), found(index, "oat"));
+        MealSearchIndex.SearchResult result = index.search("porridge", 10);
+        assertEquals(1, result.getTotalHits());
+        assertEquals("2024-03-07", result.getDays().get(0).getDate());
+    }
+
+    @Test
+    public void removedSlotsAreReusedWithoutStaleHits() {
+        MealSearchIndex index = new MealSearchIndex();
+        for (int i = 0; i < 100; i++) {
+            index.add(meal("old" + i, "Lentil soup " + i));
+        }
+        for (int i = 0; i < 100; i += 2) {
+            assertTrue(index.remove(meal("old" + i, "Removed")));
+        }
+        assertFalse(index.remove(meal("old0", "Removed")));
+        assertEquals(50, index.size());
+
+        // New meals take the freed slots; none of them may answer for the removed ones
+        for (int i = 0; i < 50; i++) {
+            index.add(meal("new" + i, "Fruit salad"));
+        }
+        assertEquals(100, index.size());
+        assertEquals(50, found(index, "lentil").size());
+        assertEquals(50, found(index, "fruit").size());
+        assertTrue(found(index, "0").isEmpty()); // "Lentil soup 0" was removed
+        assertEquals(set("old99"), found(index, "lentil 99"));
+
+        index.clear();
+        assertEquals(0, index.size());
+        assertTrue(found(index, "fruit").isEmpty());
+    }
+
+    @Test
+    public void hitsAreGroupedByDayNewestFirstThenCategoryAndTime() {
+        MealSearchIndex index = MealSearchIndex.of(Arrays.asList(
+                meal("d1-snack", "Tea", "snacks", "2024-03-04", 960),
+                meal("d1-breakfast", "Tea and toast", "breakfast", "2024-03-04", 480),
+                meal("d3-late", "Green tea", "dinner", "2024-03-06", 1200),
+                meal("d3-early", "Mint tea", "dinner", "2024-03-06", 1140),
+                meal("d2-lunch", "Iced tea", "lunch", "2024-03-05", 780),
+                meal("other", "Coffee", "breakfast", "2024-03-06", 420)));
+
+        MealSearchIndex.SearchResult result = index.search("tea", 10);
+
+        assertEquals(5, result.getTotalHits());
+        List<MealSearchIndex.DayHits> days = result.getDays();
+        assertEquals(3, days.size());
+        assertEquals("2024-03-06", days.get(0).getDate());
+        assertEquals("2024-03-05", days.get(1).getDate());
+        assertEquals("2024-03-04", days.get(2).getDate());
+
+        assertEquals(Collections.singleton("dinner"), days.get(0).getCategories().keySet());
+        assertEquals(Arrays.asList("d3-early", "d3-late"), ids(result).subList(0, 2));
+        Map<String, List<Meal>> oldest = days.get(2).getCategories();
+        assertEquals(Arrays.asList("breakfast", "snacks"), new ArrayList<>(oldest.keySet()));
+    }
+
+    @Test
+    public void limitKeepsTheNewestHits() {
+        List<Meal> meals = new ArrayList<>();
+        for (int day = 1; day <= 9; day++) {
+            meals.add(meal("day" + day, "Soup", "lunch", "2024-03-0" + day, 0));
+        }
+        MealSearchIndex index = MealSearchIndex.of(meals);
+
+        MealSearchIndex.SearchResult result = index.search("soup", 3);
+
+        assertEquals(9, result.getTotalHits());
+        assertEquals(Arrays.asList("day9", "day8", "day7"), ids(result));
+    }
+}
@@ -0,0 +1,58 @@
+package com.eslamgamal.fooddiary;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+/**
+ * A renamed meal is learned in place of the use it was recorded as: the old name keeps
+ * only its other uses, and drops out once it has none.
+ */
+public class MealSuggesterTest {
+
+    private static final long HOUR = 60 * 60 * 1000L;
+    private static final long NOW = 1_700_000_000_000L;
+
+    @Test
+    public void forgettingTheOnlyUseDropsTheName() {
+        MealSuggester suggester = new MealSuggester();
+        suggester.record("Oats", "breakfast", NOW - HOUR, 8);
+
+        suggester.forget("Oats", "breakfast", NOW - HOUR, 8);
+        suggester.record("Overnight oats", "breakfast", NOW - HOUR, 8);
+
+        assertEquals(Collections.singletonList("Overnight oats"), suggester.suggest("o", "breakfast", NOW, 8, 5));
+        assertEquals(1, suggester.size());
+    }
+
+    @Test
+    public void forgettingOneUseKeepsTheOthers() {
+        MealSuggester suggester = new MealSuggester();
+        for (int i = 1; i <= 3; i++) {
+            suggester.record("Oats", "breakfast", NOW - i * 24 * HOUR, 8);
+        }
+        suggester.record("Omelette", "breakfast", NOW - 24 * HOUR, 8);
+        suggester.record("Omelette", "breakfast", NOW - 2 * 24 * HOUR, 8);
+        assertEquals(Arrays.asList("Oats", "Omelette"), suggester.suggest("o", "breakfast", NOW, 8, 5));
+
+        // Two of the three oats were renamed
+        suggester.forget("Oats", "breakfast", NOW - 24 * HOUR, 8);
+        suggester.forget("Oats", "breakfast", NOW - 2 * 24 * HOUR, 8);
+
+        assertEquals(Arrays.asList("Omelette", "Oats"), suggester.suggest("o", "breakfast", NOW, 8, 5));
+    }
+
+    @Test
+    public void forgettingAnUnknownUseChangesNothing() {
+        MealSuggester suggester = new MealSuggester();
+        suggester.record("Soup", "lunch", NOW - HOUR, 13);
+
+        suggester.forget("Soup", "dinner", NOW - HOUR, 19);
+        suggester.forget("Salad", "lunch", NOW - HOUR, 13);
+
+        assertEquals(Collections.singletonList("Soup"), suggester.suggest("", "lunch", NOW, 13, 5));
+    }
+}
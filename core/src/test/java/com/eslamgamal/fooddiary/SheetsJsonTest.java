@@ -0,0 +1,146 @@
+package com.eslamgamal.fooddiary;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * The streaming parser and writers behind {@link SheetsRestClient}: values read back
+ * whatever way the response is split across reads, escapes and non-Latin text survive,
+ * and request bodies parse back to the rows that were written.
+ */
+public class SheetsJsonTest {
+
+    private static final String ARABIC = "فول مدمس بالطحينة";
+
+    /** Hands out at most a few characters per read, as a slow socket would. */
+    private static final class TrickleReader extends Reader {
+        private final Reader in;
+        private final int chunk;
+
+        TrickleReader(String text, int chunk) {
+            this.in = new StringReader(text);
+            this.chunk = chunk;
+        }
+
+        @Override
+        public int read(char[] buffer, int offset, int length) throws IOException {
+            return in.read(buffer, offset, Math.min(length, chunk));
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    @Test
+    public void valuesReadTheSameWhateverTheSplit() throws IOException {
+        String json = "{\n  \"range\": \"Sheet1!A1:G3\",\n  \"majorDimension\": \"ROWS\",\n  \"values\": [\n"
+                + "    [\"2024-03-05\", \"breakfast\", \"" + ARABIC + "\", \"08:30\"],\n"
+                + "    [\"2024-03-05\", \"snacks\", \"Tea \\\"chai\\\" \\u0026 cake\\n\", 1709625000000, true, null],\n"
+                + "    [\"\\ud83c\\udf5a Rice\", \"back\\\\slash\", \"a\\/b\\tc\"]\n"
+                + "  ]\n}";
+        List<List<Object>> expected = Arrays.asList(
+                Arrays.<Object>asList("2024-03-05", "breakfast", ARABIC, "08:30"),
+                Arrays.<Object>asList("2024-03-05", "snacks", "Tea \"chai\" & cake\n", "1709625000000", "true", null),
+                Arrays.<Object>asList("\uD83C\uDF5A Rice", "back\\slash", "a/b\tc"));
+
+        for (int chunk = 1; chunk <= 8; chunk++) {
+            assertEquals("chunk " + chunk, expected, read(new TrickleReader(json, chunk)));
+        }
+        assertEquals(expected, read(new StringReader(json)));
+    }
+
+    @Test
+    public void cellsSpanningTheBufferBoundaryReadWhole() throws IOException {
+        // Cells longer than the buffer, with escapes landing on and around its edges
+        StringBuilder long1 = new StringBuilder();
+        while (long1.length() < 3 * SheetsJson.BUFFER_CHARS) {
+            long1.append(ARABIC).append(" \\u00e9\\ud83c\\udf5a ");
+        }
+        String json = "{\"values\":[[\"" + long1 + "\",\"" + long1 + "\"]]}";
+        String unescaped = long1.toString().replace("\\u00e9", "\u00e9").replace("\\ud83c\\udf5a", "\uD83C\uDF5A");
+
+        for (int pad = 0; pad < 8; pad++) {
+            String padded = "{" + spaces(SheetsJson.BUFFER_CHARS - 16 + pad) + json.substring(1);
+            List<List<Object>> rows = read(new StringReader(padded));
+            assertEquals(1, rows.size());
+            assertEquals(Arrays.<Object>asList(unescaped, unescaped), rows.get(0));
+        }
+    }
+
+    @Test
+    public void responseWithoutValuesIsEmpty() throws IOException {
+        // An empty range comes back without a "values" member at all
+        assertEquals(Collections.emptyList(),
+                read(new StringReader("{\"range\":\"Sheet1!E1:E1000\",\"majorDimension\":\"ROWS\"}")));
+        assertEquals(Collections.emptyList(), read(new StringReader("{}")));
+    }
+
+    @Test
+    public void unknownMembersAreSkipped() throws IOException {
+        String json = "{\"spreadsheetId\":\"abc\",\"nested\":{\"a\":[1,{\"b\":[]}],\"c\":null},"
+                + "\"values\":[[\"x\"]],\"after\":[[\"y\"]]}";
+        assertEquals(Collections.singletonList(Collections.<Object>singletonList("x")),
+                read(new StringReader(json)));
+    }
+
+    @Test(expected = IOException.class)
+    public void truncatedResponseFails() throws IOException {
+        read(new StringReader("{\"values\":[[\"2024-03-05\",\"break"));
+    }
+
+    @Test(expected = IOException.class)
+    public void malformedEscapeFails() throws IOException {
+        read(new StringReader("{\"values\":[[\"\\u00zz\"]]}"));
+    }
+
+    @Test
+    public void writtenValuesReadBack() throws IOException {
+        List<List<Object>> rows = new ArrayList<>();
+        rows.add(Arrays.<Object>asList("2024-03-05", "lunch", ARABIC, "13:05", "id-1", 1709625000000L, 3));
+        rows.add(Arrays.<Object>asList("quote \" backslash \\ slash /", "tab\tnewline\nreturn\r",
+                "bell\u0007 nul\u0000 unit\u001f", "\uD83C\uDF5A", ""));
+        rows.add(Collections.emptyList());
+
+        StringWriter out = new StringWriter();
+        SheetsJson.writeValues(out, rows);
+
+        List<List<Object>> read = read(new TrickleReader(out.toString(), 3));
+        assertEquals(rows.size(), read.size());
+        for (int r = 0; r < rows.size(); r++) {
+            List<Object> expected = new ArrayList<>();
+            for (Object cell : rows.get(r)) {
+                expected.add(String.valueOf(cell)); // Numbers come back as their literal text
+            }
+            assertEquals(expected, read.get(r));
+        }
+    }
+
+    @Test
+    public void controlCharactersAreEscaped() throws IOException {
+        StringWriter out = new StringWriter();
+        SheetsJson.writeString(out, "a\u0001b\"c");
+        assertEquals("\"a\\u0001b\\\"c\"", out.toString());
+    }
+
+    private static List<List<Object>> read(Reader in) throws IOException {
+        return SheetsJson.readValues(new SheetsJson.Parser(in));
+    }
+
+    private static String spaces(int count) {
+        char[] chars = new char[count];
+        Arrays.fill(chars, ' ');
+        return new String(chars);
+    }
+}
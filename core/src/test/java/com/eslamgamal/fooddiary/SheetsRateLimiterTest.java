@@ -0,0 +1,109 @@
+package com.eslamgamal.fooddiary;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Replays request bursts against an {@link InMemorySheetsBackend} enforcing the per-user
+ * quota. Time is compressed: the quota window is half a second instead of a minute, and the
+ * limiter's rates are scaled to match, so the default 10 burst + 50 refill per window is
+ * exercised as it is in production.
+ */
+public class SheetsRateLimiterTest {
+
+    private static final long WINDOW_MS = 500;
+    private static final int QUOTA_PER_WINDOW = 60;
+    private static final int BURST = 10;
+    private static final int REFILL_PER_WINDOW = 50;
+    private static final int REFILL_PER_MINUTE = (int) (REFILL_PER_WINDOW * 60000 / WINDOW_MS);
+
+    private static final int BURST_OPERATIONS = 500;
+    private static final List<List<Object>> ROW = Collections.singletonList(Collections.<Object>singletonList("meal"));
+
+    private InMemorySheetsBackend backend;
+    private String spreadsheetId;
+
+    @Before
+    public void setUp() throws Exception {
+        backend = InMemorySheetsBackend.builder()
+                .quota(QUOTA_PER_WINDOW, 1)
+                .quotaWindow(WINDOW_MS)
+                .build();
+        spreadsheetId = backend.createSpreadsheet("Burst");
+        // Warm up both paths, then let these requests leave the window
+        backend.appendValues(spreadsheetId, SheetSchema.TABLE_RANGE, ROW);
+        for (int i = 0; i < 3; i++) {
+            backend.getValues(spreadsheetId, SheetSchema.ID_COLUMN_RANGE);
+        }
+        Thread.sleep(WINDOW_MS + 50);
+    }
+
+    @Test
+    public void burstIsShapedWithinQuota() throws Exception {
+        SheetsRateLimiter limiter = new SheetsRateLimiter(BURST, REFILL_PER_MINUTE, BURST, REFILL_PER_MINUTE);
+        long requestsBefore = backend.getRequestCount();
+
+        long start = System.nanoTime();
+        // Alternate reads and writes, as a sync interleaves row lookups and appends
+        for (int i = 0; i < BURST_OPERATIONS; i++) {
+            boolean write = i % 2 == 0;
+            limiter.acquire(write);
+            if (write) {
+                backend.appendValues(spreadsheetId, SheetSchema.TABLE_RANGE, ROW);
+            } else {
+                backend.getValues(spreadsheetId, SheetSchema.ID_COLUMN_RANGE);
+            }
+        }
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+        assertEquals(0, backend.getRateLimitedCount());
+        assertEquals(BURST_OPERATIONS, backend.getRequestCount() - requestsBefore);
+        // Plus the warm-up row
+        assertEquals(1 + BURST_OPERATIONS / 2, backend.getRowCount(spreadsheetId));
+
+        // Each budget takes half the operations: the burst goes at once, the rest at the refill rate
+        long expectedMs = (BURST_OPERATIONS / 2 - BURST) * WINDOW_MS / REFILL_PER_WINDOW;
+        assertTrue("Burst took " + elapsedMs + "ms, expected about " + expectedMs + "ms",
+                elapsedMs >= expectedMs * 98 / 100);
+        assertTrue("Burst took " + elapsedMs + "ms, expected about " + expectedMs + "ms",
+                elapsedMs < expectedMs + WINDOW_MS);
+        assertEquals(0, limiter.getRateLimitedResponseCount());
+    }
+
+    @Test
+    public void unshapedBurstIsRateLimited() {
+        int rejected = 0;
+        for (int i = 0; i < 2 * QUOTA_PER_WINDOW; i++) {
+            try {
+                backend.appendValues(spreadsheetId, SheetSchema.TABLE_RANGE, ROW);
+            } catch (IOException e) {
+                assertTrue(e instanceof SheetsBackendException && ((SheetsBackendException) e).isRateLimited());
+                rejected++;
+            }
+        }
+        assertTrue("Only " + rejected + " requests were rejected", rejected >= QUOTA_PER_WINDOW / 2);
+    }
+
+    @Test
+    public void rateLimitedResponsePausesTheBudget() throws Exception {
+        SheetsRateLimiter limiter = new SheetsRateLimiter(BURST, REFILL_PER_MINUTE, BURST, REFILL_PER_MINUTE);
+        limiter.onRateLimited(true, 200);
+
+        long start = System.nanoTime();
+        limiter.acquire(true);
+        long writeWaitMs = (System.nanoTime() - start) / 1_000_000;
+        start = System.nanoTime();
+        limiter.acquire(false);
+        long readWaitMs = (System.nanoTime() - start) / 1_000_000;
+
+        assertTrue("Write waited " + writeWaitMs + "ms", writeWaitMs >= 190);
+        assertTrue("Read waited " + readWaitMs + "ms", readWaitMs < 50);
+        assertEquals(1, limiter.getRateLimitedResponseCount());
+    }
+}
@@ -0,0 +1,261 @@
+package com.eslamgamal.fooddiary;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.*;
+
+/**
+ * {@link SheetsRestClient} against a local HTTP stub standing in for the Sheets API:
+ * error bodies and Retry-After, the one retry with a fresh token after a 401, gzip
+ * responses, and request bodies as the server receives them.
+ */
+public class SheetsRestClientTest {
+
+    private static final String SPREADSHEET = "sheet-1";
+    private static final String ARABIC = "كشري";
+
+    /** A canned response; the stub replays them in order and repeats the last one. */
+    private static final class Response {
+        final int status;
+        final String body;
+        final boolean gzip;
+        final String retryAfter;
+
+        Response(int status, String body, boolean gzip, String retryAfter) {
+            this.status = status;
+            this.body = body;
+            this.gzip = gzip;
+            this.retryAfter = retryAfter;
+        }
+    }
+
+    /** What the stub saw of one request. */
+    private static final class Request {
+        final String method;
+        final String uri;
+        final String authorization;
+        final String body;
+
+        Request(String method, String uri, String authorization, String body) {
+            this.method = method;
+            this.uri = uri;
+            this.authorization = authorization;
+            this.body = body;
+        }
+    }
+
+    /** Hands out numbered tokens and remembers which ones were rejected. */
+    private static final class CountingTokens implements AccessTokenProvider {
+        final List<String> invalidated = new ArrayList<>();
+        int issued;
+
+        @Override
+        public synchronized String getAccessToken() {
+            return "token-" + (++issued);
+        }
+
+        @Override
+        public synchronized void invalidateAccessToken(String token) {
+            invalidated.add(token);
+        }
+    }
+
+    private final List<Response> responses = Collections.synchronizedList(new ArrayList<>());
+    private final List<Request> requests = Collections.synchronizedList(new ArrayList<>());
+    private HttpServer server;
+    private CountingTokens tokens;
+    private SheetsRestClient client;
+
+    @Before
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/v4/spreadsheets", this::handle);
+        server.start();
+        tokens = new CountingTokens();
+        client = new SheetsRestClient("http://127.0.0.1:" + server.getAddress().getPort() + "/v4/spreadsheets",
+                tokens, "FoodDiaryTest");
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    public void valuesAreReadFromAGzipResponse() throws IOException {
+        respond(200, "{\"values\":[[\"2024-03-05\",\"dinner\",\"" + ARABIC + "\",\"20:15\"]]}", true, null);
+
+        List<List<Object>> rows = client.getValues(SPREADSHEET, SheetSchema.DATA_RANGE);
+
+        assertEquals(Collections.singletonList(Arrays.<Object>asList("2024-03-05", "dinner", ARABIC, "20:15")), rows);
+        Request request = requests.get(0);
+        assertEquals("GET", request.method);
+        assertEquals("/v4/spreadsheets/sheet-1/values/Sheet1%21A2%3AG?fields=values", request.uri);
+        assertEquals("Bearer token-1", request.authorization);
+    }
+
+    @Test
+    public void emptyRangeReadsAsNoRows() throws IOException {
+        respond(200, "{\"range\":\"Sheet1!E1:E1000\",\"majorDimension\":\"ROWS\"}", false, null);
+
+        assertTrue(client.getValues(SPREADSHEET, SheetSchema.ID_COLUMN_RANGE).isEmpty());
+    }
+
+    @Test
+    public void writtenRowsReachTheServerIntact() throws IOException {
+        respond(200, "{\"updatedRange\":\"Sheet1!A12:G12\"}", false, null);
+        List<List<Object>> rows = Collections.singletonList(Arrays.<Object>asList(
+                "2024-03-05", "snacks", ARABIC + " \"extra\"\n", "16:40", "id-7", 1709625000000L, 1709625000001L));
+
+        client.updateValues(SPREADSHEET, SheetSchema.rowRange(12), rows);
+
+        Request request = requests.get(0);
+        assertEquals("PUT", request.method);
+        List<List<Object>> received = SheetsJson.readValues(new SheetsJson.Parser(new StringReader(request.body)));
+        assertEquals(Collections.singletonList(Arrays.<Object>asList(
+                "2024-03-05", "snacks", ARABIC + " \"extra\"\n", "16:40", "id-7", "1709625000000", "1709625000001")),
+                received);
+    }
+
+    @Test
+    public void errorBodyBecomesABackendException() {
+        respond(429, "{\"error\":{\"code\":429,\"message\":\"Quota exceeded for quota metric 'Write requests'\","
+                + "\"status\":\"RESOURCE_EXHAUSTED\"}}", true, "17");
+
+        try {
+            client.appendValues(SPREADSHEET, SheetSchema.TABLE_RANGE,
+                    Collections.singletonList(Collections.<Object>singletonList("x")));
+            fail("Expected a SheetsBackendException");
+        } catch (SheetsBackendException e) {
+            assertTrue(e.isRateLimited());
+            assertEquals(17, e.getRetryAfterSeconds());
+            assertTrue(e.getMessage(), e.getMessage().contains("Quota exceeded"));
+        } catch (IOException e) {
+            fail("Expected a SheetsBackendException but was " + e);
+        }
+    }
+
+    @Test
+    public void errorWithoutAJsonBodyKeepsTheStatus() {
+        respond(503, "<html>Service Unavailable</html>", false, null);
+
+        try {
+            client.getSpreadsheet(SPREADSHEET);
+            fail("Expected a SheetsBackendException");
+        } catch (SheetsBackendException e) {
+            assertTrue(e.isServerError());
+            assertEquals(-1, e.getRetryAfterSeconds());
+        } catch (IOException e) {
+            fail("Expected a SheetsBackendException but was " + e);
+        }
+    }
+
+    @Test
+    public void rejectedTokenIsReplacedOnceAndTheBodyResent() throws IOException {
+        respond(401, "{\"error\":{\"code\":401,\"message\":\"Invalid Credentials\"}}", false, null);
+        respond(200, "{\"updates\":{\"updatedRange\":\"Sheet1!A5:G5\"}}", false, null);
+        List<List<Object>> rows = Collections.singletonList(Arrays.<Object>asList("2024-03-05", "lunch", ARABIC));
+
+        String updatedRange = client.appendValues(SPREADSHEET, SheetSchema.TABLE_RANGE, rows);
+
+        assertEquals("Sheet1!A5:G5", updatedRange);
+        assertEquals(Collections.singletonList("token-1"), tokens.invalidated);
+        assertEquals(2, requests.size());
+        assertEquals("Bearer token-1", requests.get(0).authorization);
+        assertEquals("Bearer token-2", requests.get(1).authorization);
+        assertEquals(requests.get(0).body, requests.get(1).body);
+        assertTrue(requests.get(1).body.contains(ARABIC));
+    }
+
+    @Test
+    public void secondRejectionIsSurfaced() {
+        respond(401, "{\"error\":{\"code\":401,\"message\":\"Invalid Credentials\"}}", false, null);
+
+        try {
+            client.getValues(SPREADSHEET, SheetSchema.DATA_RANGE);
+            fail("Expected a SheetsBackendException");
+        } catch (SheetsBackendException e) {
+            assertEquals(SheetsBackendException.STATUS_UNAUTHORIZED, e.getStatusCode());
+        } catch (IOException e) {
+            fail("Expected a SheetsBackendException but was " + e);
+        }
+        assertEquals(2, requests.size());
+        assertEquals(Collections.singletonList("token-1"), tokens.invalidated);
+    }
+
+    @Test
+    public void addSheetReturnsTheNewSheetId() throws IOException {
+        respond(200, "{\"spreadsheetId\":\"sheet-1\",\"replies\":[{\"addSheet\":{\"properties\":"
+                + "{\"sheetId\":123456,\"title\":\"Digests\",\"index\":1}}}]}", true, null);
+
+        assertEquals(123456, client.addSheet(SPREADSHEET, SheetSchema.DIGEST_SHEET));
+        assertTrue(requests.get(0).body.contains("\"title\":\"Digests\""));
+    }
+
+    private void respond(int status, String body, boolean gzip, String retryAfter) {
+        responses.add(new Response(status, body, gzip, retryAfter));
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        String body;
+        try (InputStream in = exchange.getRequestBody()) {
+            body = new String(readAll(in), StandardCharsets.UTF_8);
+        }
+        requests.add(new Request(exchange.getRequestMethod(), exchange.getRequestURI().toString(),
+                exchange.getRequestHeaders().getFirst("Authorization"), body));
+
+        Response response;
+        synchronized (responses) {
+            response = responses.size() > 1 ? responses.remove(0) : responses.get(0);
+        }
+        byte[] bytes = response.body.getBytes(StandardCharsets.UTF_8);
+        if (response.gzip) {
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+            try (GZIPOutputStream out = new GZIPOutputStream(compressed)) {
+                out.write(bytes);
+            }
+            bytes = compressed.toByteArray();
+            exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+        }
+        if (response.status == SheetsBackendException.STATUS_UNAUTHORIZED) {
+            exchange.getResponseHeaders().set("WWW-Authenticate", "Bearer realm=\"https://accounts.google.com/\"");
+        }
+        if (response.retryAfter != null) {
+            exchange.getResponseHeaders().set("Retry-After", response.retryAfter);
+        }
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=UTF-8");
+        exchange.sendResponseHeaders(response.status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int read;
+        while ((read = in.read(buffer)) > 0) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,82 @@
+package com.eslamgamal.fooddiary;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Network classification and the batch size and cadence the automatic flush picks for
+ * each class: everything at once on unmetered networks, bounded batches spaced further
+ * apart on metered and slow ones, and nothing while offline.
+ */
+public class SyncFlushPolicyTest {
+
+    private static final SyncFlushPolicy.NetworkClass NONE = SyncFlushPolicy.NetworkClass.NONE;
+    private static final SyncFlushPolicy.NetworkClass CONSTRAINED = SyncFlushPolicy.NetworkClass.CONSTRAINED;
+    private static final SyncFlushPolicy.NetworkClass METERED = SyncFlushPolicy.NetworkClass.METERED;
+    private static final SyncFlushPolicy.NetworkClass UNMETERED = SyncFlushPolicy.NetworkClass.UNMETERED;
+
+    @Test
+    public void unvalidatedNetworksCountAsOffline() {
+        assertEquals(NONE, SyncFlushPolicy.classify(false, false, 50_000));
+        assertEquals(NONE, SyncFlushPolicy.classify(false, true, 0));
+    }
+
+    @Test
+    public void validatedNetworksAreClassifiedByCostThenBandwidth() {
+        assertEquals(UNMETERED, SyncFlushPolicy.classify(true, false, 50_000));
+        assertEquals(METERED, SyncFlushPolicy.classify(true, true, 10_000));
+        // An unknown estimate doesn't make a network slow
+        assertEquals(UNMETERED, SyncFlushPolicy.classify(true, false, 0));
+        assertEquals(METERED, SyncFlushPolicy.classify(true, true, 0));
+
+        int slow = SyncFlushPolicy.CONSTRAINED_BANDWIDTH_KBPS - 1;
+        assertEquals(CONSTRAINED, SyncFlushPolicy.classify(true, false, slow));
+        assertEquals(CONSTRAINED, SyncFlushPolicy.classify(true, true, slow));
+        assertEquals(METERED, SyncFlushPolicy.classify(true, true, SyncFlushPolicy.CONSTRAINED_BANDWIDTH_KBPS));
+    }
+
+    @Test
+    public void batchShrinksAsTheNetworkGetsCostlier() {
+        assertEquals(0, SyncFlushPolicy.maxOperationsPerFlush(NONE));
+        assertEquals(Integer.MAX_VALUE, SyncFlushPolicy.maxOperationsPerFlush(UNMETERED));
+
+        int metered = SyncFlushPolicy.maxOperationsPerFlush(METERED);
+        int constrained = SyncFlushPolicy.maxOperationsPerFlush(CONSTRAINED);
+        assertTrue(metered > 0 && metered < Integer.MAX_VALUE);
+        assertTrue(constrained > 0 && constrained < metered);
+    }
+
+    @Test
+    public void batchesCoverABacklogInBoundedFlushes() {
+        int backlog = 1000;
+        assertEquals(1, flushesFor(backlog, UNMETERED));
+        assertEquals(5, flushesFor(backlog, METERED));
+        assertEquals(40, flushesFor(backlog, CONSTRAINED));
+    }
+
+    @Test
+    public void cadenceSlowsAsTheNetworkGetsCostlier() {
+        assertTrue(SyncFlushPolicy.flushDelayMillis(UNMETERED) < SyncFlushPolicy.flushDelayMillis(METERED));
+        assertTrue(SyncFlushPolicy.flushDelayMillis(METERED) < SyncFlushPolicy.flushDelayMillis(CONSTRAINED));
+        assertTrue(SyncFlushPolicy.retryIntervalMillis(UNMETERED) < SyncFlushPolicy.retryIntervalMillis(METERED));
+        assertTrue(SyncFlushPolicy.retryIntervalMillis(METERED) < SyncFlushPolicy.retryIntervalMillis(CONSTRAINED));
+
+        // A new network settles before its first flush, sooner than the retry cadence
+        for (SyncFlushPolicy.NetworkClass networkClass : new SyncFlushPolicy.NetworkClass[] {CONSTRAINED, METERED, UNMETERED}) {
+            assertTrue(SyncFlushPolicy.flushDelayMillis(networkClass) > 0);
+            assertTrue(SyncFlushPolicy.flushDelayMillis(networkClass) < SyncFlushPolicy.retryIntervalMillis(networkClass));
+        }
+    }
+
+    // Flushes needed to drain a backlog with the class's batch size
+    private static int flushesFor(int backlog, SyncFlushPolicy.NetworkClass networkClass) {
+        int batch = SyncFlushPolicy.maxOperationsPerFlush(networkClass);
+        int flushes = 0;
+        while (backlog > 0) {
+            backlog -= Math.min(backlog, batch);
+            flushes++;
+        }
+        return flushes;
+    }
+}
@@ -0,0 +1,183 @@
+package com.eslamgamal.fooddiary;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * Folding of pending changes into one operation per meal, acknowledgement of replayed
+ * operations, and the stored form of the log.
+ */
+public class SyncOperationLogTest {
+
+    private static final long TIMESTAMP = 1_709_625_000_000L;
+
+    private static Meal meal(String id, String name, long updatedAt) {
+        return new Meal(id, name, "dinner", new Date(TIMESTAMP), null, updatedAt);
+    }
+
+    private static SyncOperationLog.Entry only(SyncOperationLog log) {
+        assertEquals(1, log.size());
+        return log.getEntries().get(0);
+    }
+
+    @Test
+    public void addThenDeleteLeavesNothing() {
+        SyncOperationLog log = new SyncOperationLog();
+        Meal meal = meal("a", "Soup", 1);
+        log.record(SyncOperationLog.Type.ADD, meal);
+        log.record(SyncOperationLog.Type.UPDATE, meal);
+        log.record(SyncOperationLog.Type.DELETE, meal);
+
+        assertTrue(log.isEmpty());
+    }
+
+    @Test
+    public void editsOfAPendingAddStayAnAdd() {
+        SyncOperationLog log = new SyncOperationLog();
+        log.record(SyncOperationLog.Type.ADD, meal("a", "Soup", 1));
+        Meal edited = meal("a", "Stew", 2);
+        log.record(SyncOperationLog.Type.UPDATE, edited, meal("a", "Soup", 1));
+
+        SyncOperationLog.Entry entry = only(log);
+        assertEquals(SyncOperationLog.Type.ADD, entry.getType());
+        assertSame(edited, entry.getMeal());
+        assertNull(entry.getStored()); // The sheet has no row for it yet
+    }
+
+    @Test
+    public void repeatedEditsKeepTheFirstStoredCopy() {
+        SyncOperationLog log = new SyncOperationLog();
+        Meal stored = meal("a", "Soup", 1);
+        log.record(SyncOperationLog.Type.UPDATE, meal("a", "Stew", 2), stored);
+        Meal latest = meal("a", "Chili", 3);
+        log.record(SyncOperationLog.Type.UPDATE, latest, meal("a", "Stew", 2));
+
+        SyncOperationLog.Entry entry = only(log);
+        assertEquals(SyncOperationLog.Type.UPDATE, entry.getType());
+        assertSame(latest, entry.getMeal());
+        assertSame(stored, entry.getStored());
+    }
+
+    @Test
+    public void editThenDeleteDeletesTheStoredRow() {
+        SyncOperationLog log = new SyncOperationLog();
+        Meal stored = meal("a", "Soup", 1);
+        Meal edited = meal("a", "Stew", 2);
+        log.record(SyncOperationLog.Type.UPDATE, edited, stored);
+        log.record(SyncOperationLog.Type.DELETE, edited);
+
+        SyncOperationLog.Entry entry = only(log);
+        assertEquals(SyncOperationLog.Type.DELETE, entry.getType());
+        assertSame(stored, entry.getStored());
+    }
+
+    @Test
+    public void deleteThenReAddRewritesTheRow() {
+        SyncOperationLog log = new SyncOperationLog();
+        Meal meal = meal("a", "Soup", 1);
+        log.record(SyncOperationLog.Type.DELETE, meal);
+        assertSame(meal, only(log).getStored()); // A deleted meal is what its row holds
+
+        log.record(SyncOperationLog.Type.ADD, meal("a", "Soup", 2));
+        assertEquals(SyncOperationLog.Type.UPDATE, only(log).getType());
+        assertSame(meal, only(log).getStored());
+    }
+
+    @Test
+    public void acknowledgeKeepsNewerChanges() {
+        SyncOperationLog log = new SyncOperationLog();
+        log.record(SyncOperationLog.Type.UPDATE, meal("a", "Stew", 2));
+        log.record(SyncOperationLog.Type.UPDATE, meal("b", "Rice", 2));
+        List<SyncOperationLog.Entry> replayed = log.getEntries();
+
+        // "a" changes again while the replay is in flight
+        log.record(SyncOperationLog.Type.UPDATE, meal("a", "Chili", 3));
+        for (SyncOperationLog.Entry entry : replayed) {
+            log.acknowledge(entry);
+        }
+
+        assertEquals("Chili", only(log).getMeal().getName());
+    }
+
+    @Test
+    public void acknowledgeAddedOnlyDropsTheSameVersion() {
+        SyncOperationLog log = new SyncOperationLog();
+        log.record(SyncOperationLog.Type.ADD, meal("a", "Soup", 1));
+        log.record(SyncOperationLog.Type.ADD, meal("b", "Rice", 1));
+        log.record(SyncOperationLog.Type.UPDATE, meal("c", "Salad", 1));
+
+        // A full sync uploaded "a" as logged, an older "b", and "c"
+        log.acknowledgeAdded(Arrays.asList(meal("a", "Soup", 1), meal("b", "Rice", 0), meal("c", "Salad", 1)));
+
+        assertEquals(2, log.size());
+        assertEquals("b", log.getEntries().get(0).getMeal().getId());
+        assertEquals(SyncOperationLog.Type.UPDATE, log.getEntries().get(1).getType());
+
+        log.discard("b");
+        log.discard("c");
+        assertTrue(log.isEmpty());
+    }
+
+    @Test
+    public void encodedLogRestoresOrderAndStoredCopies() {
+        SyncOperationLog log = new SyncOperationLog();
+        Meal stored = meal("b", "Rice; beans", 1);
+        log.record(SyncOperationLog.Type.ADD, meal("a", "Soup | bowl", 1));
+        log.record(SyncOperationLog.Type.UPDATE, meal("b", "Rice", 2), stored);
+        log.record(SyncOperationLog.Type.DELETE, meal("c", "Salad", 1));
+
+        SyncOperationLog restored = SyncOperationLog.decode(log.encode());
+
+        List<SyncOperationLog.Entry> entries = restored.getEntries();
+        assertEquals(3, entries.size());
+        assertEquals("Soup | bowl", entries.get(0).getMeal().getName());
+        assertNull(entries.get(0).getStored());
+        assertEquals(SyncOperationLog.Type.UPDATE, entries.get(1).getType());
+        assertEquals("Rice", entries.get(1).getMeal().getName());
+        assertEquals("Rice; beans", entries.get(1).getStored().getName());
+        assertEquals(stored.getUpdatedAt(), entries.get(1).getStored().getUpdatedAt());
+        assertEquals("Salad", entries.get(2).getStored().getName());
+
+        // Sequence numbers carry on after the restored ones
+        restored.record(SyncOperationLog.Type.ADD, meal("d", "Tea", 1));
+        assertTrue(restored.getEntries().get(3).getSequence() > entries.get(2).getSequence());
+    }
+
+    @Test
+    public void decodeAcceptsOldEntriesAndSkipsCorruptOnes() {
+        Meal meal = meal("a", "Soup", 1);
+        Set<String> stored = new HashSet<>(Arrays.asList(
+                "7|UPDATE|" + MealCodec.encodePending(meal), // Written before stored copies were kept
+                "8|RENAME|" + MealCodec.encodePending(meal("b", "Rice", 1)),
+                "x|ADD|" + MealCodec.encodePending(meal("c", "Salad", 1)),
+                "9|ADD"));
+
+        SyncOperationLog log = SyncOperationLog.decode(stored);
+
+        SyncOperationLog.Entry entry = only(log);
+        assertEquals(7, entry.getSequence());
+        assertEquals("a", entry.getMeal().getId());
+        assertNull(entry.getStored());
+        assertTrue(SyncOperationLog.decode(Collections.<String>emptySet()).isEmpty());
+    }
+
+    @Test
+    public void clearDropsEverythingPending() {
+        SyncOperationLog log = new SyncOperationLog();
+        log.record(SyncOperationLog.Type.ADD, meal("a", "Soup", 1));
+        log.record(SyncOperationLog.Type.DELETE, meal("b", "Rice", 1));
+
+        log.clear();
+
+        assertTrue(log.isEmpty());
+        assertTrue(log.encode().isEmpty());
+    }
+}